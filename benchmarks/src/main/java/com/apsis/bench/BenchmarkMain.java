@@ -0,0 +1,40 @@
+package com.apsis.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.profile.ProfilerConfig;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks like JMH's own main, but with the GC profiler on so
+ * allocation per operation (<code>gc.alloc.rate.norm</code>) is reported, and with the
+ * results written as JSON to <code>target/results.json</code> so they can be compared with
+ * {@link CompareBaseline}. Any of JMH's command line options can still be given,
+ * such as a regex of the benchmarks to run or <code>-rff</code> to write the results elsewhere.
+ *
+ * @author Cal Stephens
+ */
+public class BenchmarkMain {
+
+	/**
+	 * Where the results are written unless <code>-rff</code> is given
+	 */
+	public final static String RESULTS = "target/results.json";
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cli = new CommandLineOptions(args);
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(cli);
+		boolean gc = false;
+		for (ProfilerConfig profiler : cli.getProfilers()) {
+			gc |= profiler.getKlass().equals(GCProfiler.class.getName()) || profiler.getKlass().equals("gc");
+		}
+		if (!gc) options.addProfiler(GCProfiler.class);
+		if (!cli.getResultFormat().hasValue()) options.resultFormat(ResultFormatType.JSON);
+		if (!cli.getResult().hasValue()) options.result(RESULTS);
+		new Runner(options.build()).run();
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.apsis.bench;
+
+import com.apsis.util.Color;
+import com.apsis.util.ColorHSV;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Converts colors between RGB and {@link ColorHSV}.
+ *
+ * @author Cal Stephens
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ColorHSVBenchmark {
+
+	private final ColorHSV hsv = new ColorHSV(200, 0.6, 0.8);
+	private final Color into = new Color("000000");
+
+	@Benchmark
+	public ColorHSV fromRGB() {
+		return new ColorHSV(Color.ORANGE);
+	}
+
+	@Benchmark
+	public Color toRGB() {
+		return hsv.inRGB();
+	}
+
+	@Benchmark
+	public Color toRGBInto() {
+		return hsv.inRGB(into);
+	}
+
+	@Benchmark
+	public int toPackedARGB() {
+		return hsv.toPackedARGB();
+	}
+
+}
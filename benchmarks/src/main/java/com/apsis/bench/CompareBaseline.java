@@ -0,0 +1,250 @@
+package com.apsis.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files, such as <code>baseline.json</code> and a new run,
+ * benchmark by benchmark, on both time (or throughput) and bytes allocated per operation.<br>
+ * Exits with status 1 if any benchmark got worse by more than the threshold.<br>
+ * Usage: <code>CompareBaseline baseline.json target/results.json [threshold percent, default 10]</code>
+ *
+ * @author Cal Stephens
+ */
+public class CompareBaseline {
+
+	private final static String ALLOC = "gc.alloc.rate.norm";
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: CompareBaseline <baseline.json> <results.json> [threshold percent]");
+			System.exit(2);
+		}
+		Map<String, Result> baseline = read(args[0]);
+		Map<String, Result> results = read(args[1]);
+		double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+		int regressions = 0;
+		System.out.printf("%-70s %14s %14s %8s %12s %12s%n", "benchmark", "baseline", "current", "change", "B/op before", "B/op now");
+		for (Map.Entry<String, Result> entry : results.entrySet()) {
+			Result now = entry.getValue();
+			Result before = baseline.get(entry.getKey());
+			if (before == null) {
+				System.out.printf("%-70s %14s %14.3f %8s %12s %12.1f  (new)%n", entry.getKey(), "-", now.score, "", "-", now.alloc);
+				continue;
+			}
+			double change = (now.score - before.score) / before.score * 100;
+			//throughput is better when higher, every other mode when lower
+			double worse = now.higherIsBetter ? -change : change;
+			boolean slower = worse > threshold;
+			boolean allocates = now.alloc > before.alloc * (1 + threshold / 100) && now.alloc - before.alloc >= 8;
+			if (slower || allocates) regressions++;
+			System.out.printf("%-70s %14.3f %14.3f %+7.1f%% %12.1f %12.1f%s%n", entry.getKey(), before.score, now.score, change,
+					before.alloc, now.alloc, slower ? "  SLOWER" : allocates ? "  ALLOCATES MORE" : "");
+		}
+		for (String missing : baseline.keySet()) {
+			if (!results.containsKey(missing)) System.out.printf("%-70s (not run)%n", missing);
+		}
+		System.out.println(regressions + " regression(s) over " + threshold + "%");
+		if (regressions > 0) System.exit(1);
+	}
+
+	/**
+	 * Reads the results of a JMH JSON file, keyed by benchmark name and parameters.
+	 */
+	private static Map<String, Result> read(String file) throws IOException {
+		Object json = new Parser(new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8)).parse();
+		Map<String, Result> results = new TreeMap<>();
+		if (!(json instanceof List)) throw new IOException(file + " is not a JMH JSON result file");
+		for (Object element : (List<?>) json) {
+			Map<?, ?> run = (Map<?, ?>) element;
+			String key = (String) run.get("benchmark");
+			Object params = run.get("params");
+			if (params instanceof Map) key += new TreeMap<>((Map<?, ?>) params);
+			Map<?, ?> primary = (Map<?, ?>) run.get("primaryMetric");
+			Result result = new Result();
+			result.score = ((Number) primary.get("score")).doubleValue();
+			result.higherIsBetter = "thrpt".equals(run.get("mode"));
+			Object secondary = run.get("secondaryMetrics");
+			if (secondary instanceof Map) {
+				for (Map.Entry<?, ?> metric : ((Map<?, ?>) secondary).entrySet()) {
+					if (((String) metric.getKey()).endsWith(ALLOC)) {
+						result.alloc = ((Number) ((Map<?, ?>) metric.getValue()).get("score")).doubleValue();
+					}
+				}
+			}
+			results.put(key, result);
+		}
+		return results;
+	}
+
+	private static class Result {
+
+		private double score;
+		private double alloc = Double.NaN;
+		private boolean higherIsBetter;
+
+	}
+
+	/**
+	 * Just enough of a JSON parser to read JMH's result files.
+	 * Objects become Maps, arrays Lists and numbers Doubles; JMH's "NaN" scores are read as NaN.
+	 */
+	private static class Parser {
+
+		private final String text;
+		private int at = 0;
+
+		private Parser(String text) {
+			this.text = text;
+		}
+
+		private Object parse() throws IOException {
+			Object value = value();
+			skipSpace();
+			if (at != text.length()) throw error("trailing characters");
+			return value;
+		}
+
+		private Object value() throws IOException {
+			skipSpace();
+			if (at >= text.length()) throw error("unexpected end");
+			char c = text.charAt(at);
+			switch (c) {
+				case '{':
+					return object();
+				case '[':
+					return array();
+				case '"':
+					String string = string();
+					return string.equals("NaN") ? (Object) Double.NaN : string;
+				case 't':
+					return literal("true", Boolean.TRUE);
+				case 'f':
+					return literal("false", Boolean.FALSE);
+				case 'n':
+					return literal("null", null);
+				default:
+					return number();
+			}
+		}
+
+		private Map<String, Object> object() throws IOException {
+			Map<String, Object> map = new LinkedHashMap<>();
+			at++;
+			skipSpace();
+			if (text.charAt(at) == '}') {
+				at++;
+				return map;
+			}
+			while (true) {
+				skipSpace();
+				String key = string();
+				skipSpace();
+				expect(':');
+				map.put(key, value());
+				skipSpace();
+				if (text.charAt(at) == ',') at++;
+				else {
+					expect('}');
+					return map;
+				}
+			}
+		}
+
+		private List<Object> array() throws IOException {
+			List<Object> list = new ArrayList<>();
+			at++;
+			skipSpace();
+			if (text.charAt(at) == ']') {
+				at++;
+				return list;
+			}
+			while (true) {
+				list.add(value());
+				skipSpace();
+				if (text.charAt(at) == ',') at++;
+				else {
+					expect(']');
+					return list;
+				}
+			}
+		}
+
+		private String string() throws IOException {
+			expect('"');
+			StringBuilder builder = new StringBuilder();
+			while (at < text.length()) {
+				char c = text.charAt(at++);
+				if (c == '"') return builder.toString();
+				if (c != '\\') {
+					builder.append(c);
+					continue;
+				}
+				char escaped = text.charAt(at++);
+				switch (escaped) {
+					case 'n':
+						builder.append('\n');
+						break;
+					case 't':
+						builder.append('\t');
+						break;
+					case 'r':
+						builder.append('\r');
+						break;
+					case 'b':
+						builder.append('\b');
+						break;
+					case 'f':
+						builder.append('\f');
+						break;
+					case 'u':
+						builder.append((char) Integer.parseInt(text.substring(at, at + 4), 16));
+						at += 4;
+						break;
+					default:
+						builder.append(escaped);
+				}
+			}
+			throw error("unterminated string");
+		}
+
+		private Double number() throws IOException {
+			int start = at;
+			while (at < text.length() && "+-0123456789.eE".indexOf(text.charAt(at)) >= 0) {
+				at++;
+			}
+			if (start == at) throw error("unexpected character '" + text.charAt(at) + "'");
+			return Double.valueOf(text.substring(start, at));
+		}
+
+		private Object literal(String word, Object value) throws IOException {
+			if (!text.startsWith(word, at)) throw error("expected " + word);
+			at += word.length();
+			return value;
+		}
+
+		private void expect(char c) throws IOException {
+			if (at >= text.length() || text.charAt(at) != c) throw error("expected '" + c + "'");
+			at++;
+		}
+
+		private void skipSpace() {
+			while (at < text.length() && Character.isWhitespace(text.charAt(at))) {
+				at++;
+			}
+		}
+
+		private IOException error(String message) {
+			return new IOException("Bad JSON at character " + at + ": " + message);
+		}
+
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.apsis.bench;
+
+import com.apsis.event.Event;
+import com.apsis.event.EventHandler;
+import com.apsis.event.EventListener;
+import com.apsis.event.Listener;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Triggers an event through an {@link EventHandler} with different numbers of subscribed listeners,
+ * both to every listener and to a single one.
+ *
+ * @author Cal Stephens
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventHandlerBenchmark {
+
+	@Param({"1", "10", "100", "1000"})
+	public int listeners;
+
+	private EventHandler handler;
+	private Target[] targets;
+	private final Ping event = new Ping();
+
+	@Setup
+	public void setup() {
+		handler = new EventHandler();
+		targets = new Target[listeners];
+		for (int i = 0; i < listeners; i++) {
+			targets[i] = new Target();
+			handler.subscribeAll(targets[i]);
+		}
+	}
+
+	@Benchmark
+	public void triggerAll() {
+		handler.triggerEvent(event);
+	}
+
+	@Benchmark
+	public void triggerOne() {
+		//the last listener, so the lookup has to go through every subscriber
+		handler.triggerEvent(event, targets[listeners - 1]);
+	}
+
+	public static class Ping extends Event {
+	}
+
+	public static class Target implements Listener {
+
+		public int count;
+
+		@EventListener
+		public void onPing(Ping ping) {
+			count++;
+		}
+
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.apsis.bench;
+
+import com.apsis.util.Group;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adds to, removes from and copies a {@link Group} of different sizes.
+ *
+ * @author Cal Stephens
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GroupBenchmark {
+
+	@Param({"10", "1000", "100000"})
+	public int size;
+
+	private Group<Object> group;
+	private Object[] objects;
+	private final Object extra = new Object();
+
+	@Setup
+	public void setup() {
+		objects = new Object[size];
+		for (int i = 0; i < size; i++) {
+			objects[i] = new Object();
+		}
+		group = new Group<>(objects);
+	}
+
+	@Benchmark
+	public int addRemove() {
+		group.add(extra);
+		group.remove(extra);
+		return group.size();
+	}
+
+	@Benchmark
+	public ArrayList<Object> getContent() {
+		return group.getContent();
+	}
+
+	@Benchmark
+	public Group<Object> addAll() {
+		Group<Object> filled = new Group<>();
+		filled.add(objects);
+		return filled;
+	}
+
+}
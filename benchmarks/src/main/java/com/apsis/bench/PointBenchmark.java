@@ -0,0 +1,62 @@
+package com.apsis.bench;
+
+import com.apsis.util.Point;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@link Point} math used throughout the engine.
+ *
+ * @author Cal Stephens
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PointBenchmark {
+
+	private final Point a = Point.make(3, 4);
+	private final Point b = Point.make(-7, 11);
+	private final Point center = Point.make(1, 1);
+
+	@Benchmark
+	public Point addSubtract() {
+		return a.add(b).subtract(b);
+	}
+
+	@Benchmark
+	public Point multiplyDivide() {
+		return a.multiply(2, 3).divide(2, 3);
+	}
+
+	@Benchmark
+	public Point rotateAround() {
+		return a.rotateAround(center, 1);
+	}
+
+	@Benchmark
+	public double distance() {
+		return a.distance(b);
+	}
+
+	@Benchmark
+	public Point midpoint() {
+		return a.midpoint(b);
+	}
+
+	@Benchmark
+	public Point make() {
+		return Point.make(a.x(), b.y());
+	}
+
+}
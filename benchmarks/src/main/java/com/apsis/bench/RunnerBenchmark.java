@@ -0,0 +1,81 @@
+package com.apsis.bench;
+
+import com.apsis.util.Runner;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs a {@link Runner} over lists of different sizes, with and without arguments.
+ *
+ * @author Cal Stephens
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RunnerBenchmark {
+
+	@Param({"10", "1000"})
+	public int size;
+
+	private final ArrayList<Item> items = new ArrayList<>();
+	private final Runner<Item> value = new Value();
+	private final Runner<Item> scale = new Scale();
+
+	@Setup
+	public void setup() {
+		for (int i = 0; i < size; i++) {
+			items.add(new Item(i));
+		}
+	}
+
+	@Benchmark
+	public Object[] runOnAll() {
+		return value.runOnAll(items);
+	}
+
+	@Benchmark
+	public Object[] runOnAllWithArgs() {
+		return scale.runOnAll(items, 3);
+	}
+
+	public static class Item {
+
+		private final int value;
+
+		public Item(int value) {
+			this.value = value;
+		}
+
+	}
+
+	private static class Value extends Runner<Item> {
+
+		private int value(Item item) {
+			return item.value;
+		}
+
+	}
+
+	private static class Scale extends Runner<Item> {
+
+		private int scale(Item item, int factor) {
+			return item.value * factor;
+		}
+
+	}
+
+}
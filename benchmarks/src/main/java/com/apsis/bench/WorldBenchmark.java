@@ -0,0 +1,96 @@
+package com.apsis.bench;
+
+import com.apsis.event.EventListener;
+import com.apsis.event.Listener;
+import com.apsis.event.world.TickEvent;
+import com.apsis.render.Graphics;
+import com.apsis.render.RecordingBackend;
+import com.apsis.render.Renderable;
+import com.apsis.util.Bounds;
+import com.apsis.util.Color;
+import com.apsis.util.Point;
+import com.apsis.world.PointObject;
+import com.apsis.world.World;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ticks and renders a World of objects that listen to every tick,
+ * rendering into a {@link RecordingBackend} so no display is needed.
+ *
+ * @author Cal Stephens
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WorldBenchmark {
+
+	@Param({"100", "10000"})
+	public int objects;
+
+	private World world;
+	private Graphics g;
+
+	@Setup
+	public void setup() {
+		world = new World();
+		for (int i = 0; i < objects; i++) {
+			world.add(new Spinner(Point.make(i % 100 * 10, i / 100 * 10)));
+		}
+		g = new Graphics(new RecordingBackend());
+	}
+
+	@Benchmark
+	public void tick() {
+		world.tick();
+	}
+
+	@Benchmark
+	public int render() {
+		g.beginFrame();
+		world.render(g);
+		g.endFrame();
+		return g.getPrimitives();
+	}
+
+	public static class Spinner extends PointObject implements Renderable, Listener {
+
+		private final static Point DIM = Point.make(4, 4);
+		private final Bounds bounds = new Bounds();
+		private final Point corner = Point.make(0, 0);
+
+		public Spinner(Point pos) {
+			super(pos);
+		}
+
+		@EventListener
+		public void onTick(TickEvent tick) {
+			rotate(1);
+		}
+
+		@Override
+		public Bounds getBounds() {
+			return bounds.setAround(x(), y(), 4);
+		}
+
+		@Override
+		public void render(Graphics g) {
+			g.drawRectangle(Color.RED, corner.set(x() - 2, y() - 2), DIM, getRot(), pos());
+		}
+
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.apsis.event;
+
+/**
+ * An event that fires many times between ticks but only needs to be handled
+ * once per tick, such as a position update or a resize, where only the latest
+ * value matters.<br>
+ * <br>
+ * Coalescible events {@link EventHandler#post(com.apsis.event.Event) posted}
+ * to an EventHandler are held until it is {@link EventHandler#flush() flushed},
+ * which a World does at the end of every tick. Events of the same class with
+ * equal keys replace each other while they wait, so only the latest one is
+ * triggered. Events are triggered in the order their keys were first posted.
+ *
+ * @author Cal Stephens
+ * @see EventHandler#post(com.apsis.event.Event)
+ */
+public interface Coalescible {
+
+	/**
+	 * Gets what the event is about, so that a later event about the same thing
+	 * can replace it. Keys are compared with <code>equals</code>, so an event
+	 * about a PointObject should use the object's {@link com.apsis.world.PointObject#getId() ID}
+	 * rather than the object, since different PointObjects can be equal.
+	 *
+	 * @return the key of the event, or null if every event of the class replaces the last
+	 */
+	public Object getCoalesceKey();
+
+}
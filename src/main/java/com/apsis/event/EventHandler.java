@@ -1,5 +1,6 @@
 package com.apsis.event;
 
+import com.apsis.jfr.DispatchEvent;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -17,6 +18,101 @@ import java.util.Map.Entry;
 public class EventHandler {
 
 	private final HashMap<Class<? extends Event>, HashMap<Method, ArrayList<Listener>>> listeners = new HashMap<>();
+	//coalescible events posted since the last flush, double buffered so listeners can post while they're triggered
+	private ArrayList<Event> pending = new ArrayList<>();
+	private ArrayList<Event> draining = new ArrayList<>();
+	//the index in the pending list of the event for each key, by event class
+	private final HashMap<Class<? extends Event>, HashMap<Object, Integer>> pendingSlots = new HashMap<>();
+	private boolean flushing = false;
+	private long posted = 0;
+	private long delivered = 0;
+
+	/**
+	 * Posts an event, to be triggered when the EventHandler is next
+	 * {@link EventHandler#flush() flushed} if it is {@link Coalescible}.
+	 * A coalescible event replaces the one waiting with the same class and
+	 * {@link Coalescible#getCoalesceKey() key}, if there is one, but keeps its
+	 * place in line. Other events are triggered right away.
+	 *
+	 * @param event the event being posted
+	 * @see EventHandler#flush()
+	 */
+	public synchronized void post(Event event) {
+		if (event == null) throw new IllegalArgumentException("Event cannot be null.");
+		posted++;
+		if (!(event instanceof Coalescible)) {
+			delivered++;
+			triggerEvent(event);
+			return;
+		}
+		HashMap<Object, Integer> slots = pendingSlots.get(event.getClass());
+		if (slots == null) {
+			slots = new HashMap<>();
+			pendingSlots.put(event.getClass(), slots);
+		}
+		Object key = ((Coalescible) event).getCoalesceKey();
+		Integer slot = slots.get(key);
+		if (slot != null) pending.set(slot, event);
+		else {
+			slots.put(key, pending.size());
+			pending.add(event);
+		}
+	}
+
+	/**
+	 * Triggers the coalescible events posted since the last flush, once each.
+	 * Events posted by listeners while they're triggered wait for the next flush.
+	 * Does nothing if called from a listener during a flush.
+	 *
+	 * @return the number of events triggered
+	 * @see EventHandler#post(com.apsis.event.Event)
+	 */
+	public synchronized int flush() {
+		if (flushing || pending.isEmpty()) return 0;
+		ArrayList<Event> events = pending;
+		pending = draining;
+		draining = events;
+		for (HashMap<Object, Integer> slots : pendingSlots.values()) {
+			slots.clear();
+		}
+		flushing = true;
+		try {
+			for (int i = 0; i < events.size(); i++) {
+				delivered++;
+				triggerEvent(events.get(i));
+			}
+			return events.size();
+		} finally {
+			events.clear();
+			flushing = false;
+		}
+	}
+
+	/**
+	 * @return the number of events {@link EventHandler#post(com.apsis.event.Event) posted} to the EventHandler
+	 */
+	public synchronized long getPostedCount() {
+		return posted;
+	}
+
+	/**
+	 * Gets the number of posted events that have been triggered. Coalescible
+	 * events replaced by later ones before a flush are never triggered, so
+	 * this falls behind {@link EventHandler#getPostedCount()} by the number of
+	 * events coalesced and the number still waiting.
+	 *
+	 * @return the number of posted events triggered
+	 */
+	public synchronized long getDeliveredCount() {
+		return delivered;
+	}
+
+	/**
+	 * @return the number of coalescible events waiting for the next flush
+	 */
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
 
 	/**
 	 * Triggers all listener methods that are subscribed to the given event
@@ -27,14 +123,19 @@ public class EventHandler {
 	 */
 	public synchronized void triggerEvent(Event event) {
 		if (!listeners.containsKey(event.getClass())) return;
+		DispatchEvent dispatch = new DispatchEvent();
+		dispatch.begin();
+		int invoked = 0;
 		HashMap<Method, ArrayList<Listener>> eventListeners = listeners.get(event.getClass());
 		Iterator<Entry<Method, ArrayList<Listener>>> i = eventListeners.entrySet().iterator();
 		while (i.hasNext()) {
 			Entry<Method, ArrayList<Listener>> entry = i.next();
 			for (Listener listener : entry.getValue()) {
 				invoke(entry.getKey(), listener, event, entry.getValue());
+				invoked++;
 			}
 		}
+		commit(dispatch, event, invoked, false);
 	}
 
 	/**
@@ -48,16 +149,33 @@ public class EventHandler {
 	 */
 	public synchronized void triggerEvent(Event event, Listener... triggerOn) {
 		if (!listeners.containsKey(event.getClass())) return;
+		DispatchEvent dispatch = new DispatchEvent();
+		dispatch.begin();
+		int invoked = 0;
 		HashMap<Method, ArrayList<Listener>> eventListeners = listeners.get(event.getClass());
 		Iterator<Entry<Method, ArrayList<Listener>>> i = eventListeners.entrySet().iterator();
 		while (i.hasNext()) {
 			Entry<Method, ArrayList<Listener>> entry = i.next();
 			for (Listener trigger : triggerOn) {
-				if (entry.getValue().contains(trigger)) {
+				if (indexOf(entry.getValue(), trigger) >= 0) {
 					invoke(entry.getKey(), trigger, event, entry.getValue());
+					invoked++;
 				}
 			}
 		}
+		commit(dispatch, event, invoked, true);
+	}
+
+	/**
+	 * Records a triggered event with Flight Recorder, if it is recording event dispatch.
+	 */
+	private void commit(DispatchEvent dispatch, Event event, int invoked, boolean targeted) {
+		dispatch.end();
+		if (!dispatch.shouldCommit()) return;
+		dispatch.eventClass = event.getClass();
+		dispatch.listeners = invoked;
+		dispatch.targeted = targeted;
+		dispatch.commit();
 	}
 
 	/**
@@ -79,8 +197,8 @@ public class EventHandler {
 	public synchronized void subscribe(Method method, Listener listener) {
 		if (method == null) throw new IllegalArgumentException("Method cannot be null.");
 		if (listener == null) throw new IllegalArgumentException("Listener Object cannot be null.");
-		if (!methodIsListener(method)) throw new IllegalArgumentException("Method must be a valid listener.");
-		Class<? extends Event> event = getEventOfMethod(method);
+		Class<? extends Event> event = eventOf(method, listener);
+		if (event == null) throw new IllegalArgumentException("Method must be a valid listener.");
 		HashMap<Method, ArrayList<Listener>> eventListeners;
 		if (listeners.containsKey(event)) eventListeners = listeners.get(event);
 		else {
@@ -89,7 +207,7 @@ public class EventHandler {
 		}
 		if (eventListeners.containsKey(method)) {
 			ArrayList<Listener> methodObjects = eventListeners.get(method);
-			if (!methodObjects.contains(listener)) methodObjects.add(listener);
+			if (indexOf(methodObjects, listener) < 0) methodObjects.add(listener);
 		} else {
 			ArrayList<Listener> methodObjects = new ArrayList<Listener>();
 			methodObjects.add(listener);
@@ -111,12 +229,11 @@ public class EventHandler {
 	 */
 	public synchronized ArrayList<Method> subscribeAll(Listener listener) {
 		if (listener == null) throw new IllegalArgumentException("Listener cannot be null.");
-		ArrayList<Method> subscribed = new ArrayList<>();
-		for (Method method : listener.getClass().getMethods()) {
-			if (methodIsListener(method)) {
-				subscribe(method, listener);
-				subscribed.add(method);
-			}
+		Method[] methods = ListenerIndex.of(listener.getClass()).methods;
+		ArrayList<Method> subscribed = new ArrayList<>(methods.length);
+		for (Method method : methods) {
+			subscribe(method, listener);
+			subscribed.add(method);
 		}
 		return subscribed;
 	}
@@ -131,16 +248,34 @@ public class EventHandler {
 	 */
 	public synchronized ArrayList<Method> unsubscribeAll(Listener listener) {
 		if (listener == null) throw new IllegalArgumentException("Listener cannot be null.");
-		ArrayList<Method> unsubscribed = new ArrayList<>();
-		for (Method method : listener.getClass().getMethods()) {
-			if (methodIsListener(method)) {
-				unsubscribe(method, listener);
-				unsubscribed.add(method);
-			}
+		Method[] methods = ListenerIndex.of(listener.getClass()).methods;
+		ArrayList<Method> unsubscribed = new ArrayList<>(methods.length);
+		for (Method method : methods) {
+			unsubscribe(method, listener);
+			unsubscribed.add(method);
 		}
 		return unsubscribed;
 	}
 
+	/**
+	 * Gets the methods of the given listener that are subscribed to their
+	 * events, which are fewer than {@link EventHandler#subscribeAll(com.apsis.event.Listener)}
+	 * subscribed if some have been unsubscribed since.
+	 *
+	 * @param listener the listener object to look up
+	 * @return a new list of the listener's subscribed methods
+	 * @see EventHandler#subscribe(java.lang.reflect.Method, com.apsis.event.Listener)
+	 */
+	public synchronized ArrayList<Method> getSubscriptions(Listener listener) {
+		ArrayList<Method> subscribed = new ArrayList<>();
+		for (HashMap<Method, ArrayList<Listener>> eventListeners : listeners.values()) {
+			for (Entry<Method, ArrayList<Listener>> entry : eventListeners.entrySet()) {
+				if (indexOf(entry.getValue(), listener) >= 0) subscribed.add(entry.getKey());
+			}
+		}
+		return subscribed;
+	}
+
 	/**
 	 * Unsubscribes the method from the event it is listening to.<br>
 	 * The given method will no longer be called when
@@ -153,21 +288,35 @@ public class EventHandler {
 	 * @see EventHandler#subscribe(java.lang.Class, java.lang.reflect.Method, com.apsis.event.Listener)
 	 */
 	public synchronized void unsubscribe(Method method, Listener listener) {
-		Class<? extends Event> event = getEventOfMethod(method);
+		Class<? extends Event> event = listener == null ? getEventOfMethod(method) : eventOf(method, listener);
 		if (event == null) throw new IllegalArgumentException("Method must be a valid listener.");
 		HashMap<Method, ArrayList<Listener>> eventListeners;
 		if (listeners.containsKey(event)) eventListeners = listeners.get(event);
 		else return;
 		if (!eventListeners.containsKey(method)) return;
-		if (eventListeners.size() == 1) listeners.remove(event);
-		else {
-			ArrayList<Listener> methodObjects = eventListeners.get(method);
-			if (!methodObjects.contains(listener)) return;
-			if (methodObjects.size() == 1) eventListeners.remove(method);
-			else methodObjects.remove(listener);
+		ArrayList<Listener> methodObjects = eventListeners.get(method);
+		int index = indexOf(methodObjects, listener);
+		if (index < 0) return;
+		methodObjects.remove(index);
+		if (methodObjects.isEmpty()) {
+			eventListeners.remove(method);
+			if (eventListeners.isEmpty()) listeners.remove(event);
 		}
 	}
 
+	/**
+	 * Finds a listener by identity, since listeners such as PointObjects
+	 * can be equal to each other without being the same object.
+	 *
+	 * @return the index of the listener, or -1 if it isn't in the list
+	 */
+	private static int indexOf(ArrayList<Listener> list, Listener listener) {
+		for (int i = list.size() - 1; i >= 0; i--) {
+			if (list.get(i) == listener) return i;
+		}
+		return -1;
+	}
+
 	/**
 	 * Gets the class of the event that the method
 	 * is built for.
@@ -197,12 +346,31 @@ public class EventHandler {
 	 * @return whether or not the given method is an event
 	 */
 	public boolean methodIsListener(Method method) {
-		if (method == null) return false;
-		if (method.getAnnotation(EventListener.class) == null) return false;
-		Class[] parameters = method.getParameterTypes();
-		if (parameters.length != 1) return false;
-		if (Event.class.equals(parameters[0])) return false;
-		return Event.class.isAssignableFrom(parameters[0]);
+		return ListenerIndex.isListener(method);
+	}
+
+	/**
+	 * Gets the class of the event a method of a listener is built for, from the
+	 * index of the listener's class if the method is in it.
+	 *
+	 * @return the class of the event, or null if the method isn't a valid listener
+	 */
+	private Class<? extends Event> eventOf(Method method, Listener listener) {
+		ListenerIndex index = ListenerIndex.of(listener.getClass());
+		int slot = index.indexOf(method);
+		return slot >= 0 ? index.events[slot] : getEventOfMethod(method);
+	}
+
+	/**
+	 * Checks whether a Listener class has a {@link ListenerDispatcher} generated
+	 * by {@link com.apsis.event.processing.ListenerProcessor}, so that its methods
+	 * are found and called without reflection.
+	 *
+	 * @param type the class to check
+	 * @return whether the class has a dispatcher
+	 */
+	public static boolean hasDispatcher(Class<? extends Listener> type) {
+		return ListenerIndex.of(type).dispatcher != null;
 	}
 
 	/**
@@ -214,6 +382,12 @@ public class EventHandler {
 	 * @param others the other listeners
 	 */
 	private synchronized void invoke(Method method, Listener listener, Event event, ArrayList<Listener> others) {
+		ListenerIndex index = ListenerIndex.of(listener.getClass());
+		int slot = index.indexOf(method);
+		if (slot >= 0) {
+			index.invoke(slot, listener, event);
+			return;
+		}
 		try {
 			method.invoke(listener, event);
 		} catch (IllegalAccessException | InvocationTargetException ex) {
@@ -225,7 +399,7 @@ public class EventHandler {
 				throw new IllegalArgumentException("Method (" + method + ") is not a valid listener. "
 						+ "How was it in the listeners HashMap...?");
 			}
-			throw new IllegalArgumentException("There was a problem calling the method " + method);
+			throw new IllegalArgumentException("There was a problem calling the method " + method, ex);
 		}
 	}
 
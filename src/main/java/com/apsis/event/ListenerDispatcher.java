@@ -0,0 +1,53 @@
+package com.apsis.event;
+
+/**
+ * Calls the listener methods of one class directly, without reflection.<br>
+ * <br>
+ * Dispatchers are generated at build time by
+ * {@link com.apsis.event.processing.ListenerProcessor} for every Listener class
+ * it compiles, named after the class's binary name followed by
+ * <code>$$Dispatcher</code>. The {@link EventHandler} finds the dispatcher of a
+ * class the first time an object of that class is subscribed, and scans
+ * classes without one for their listener methods as before.
+ *
+ * @author Cal Stephens
+ */
+public interface ListenerDispatcher {
+
+	/**
+	 * The suffix added to the binary name of a Listener class to name its dispatcher
+	 */
+	public final static String SUFFIX = "$$Dispatcher";
+
+	/**
+	 * @return the class whose listener methods are dispatched
+	 */
+	public Class<?> getListenerType();
+
+	/**
+	 * @return the number of listener methods the class has, including inherited ones
+	 */
+	public int getMethodCount();
+
+	/**
+	 * @param index the index of a listener method
+	 * @return the name of the method
+	 */
+	public String getMethodName(int index);
+
+	/**
+	 * @param index the index of a listener method
+	 * @return the class of the event the method takes
+	 */
+	public Class<? extends Event> getEventType(int index);
+
+	/**
+	 * Calls a listener method.
+	 *
+	 * @param index the index of the method
+	 * @param listener an instance of the class
+	 * @param event the event to pass to the method
+	 */
+	public void dispatch(int index, Listener listener, Event event);
+
+}
@@ -0,0 +1,184 @@
+package com.apsis.event;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+
+/**
+ * The listener methods of one class, found once and shared by every
+ * {@link EventHandler}. Built from the class's generated
+ * {@link ListenerDispatcher} if it has one, which then calls the methods
+ * directly, and otherwise by scanning the class's public methods, in which
+ * case the methods are called through method handles, or through reflection
+ * if the class can't be looked up publicly.
+ *
+ * @author Cal Stephens
+ */
+final class ListenerIndex {
+
+	private final static ClassValue<ListenerIndex> INDEXES = new ClassValue<ListenerIndex>() {
+		@Override
+		protected ListenerIndex computeValue(Class<?> type) {
+			ListenerIndex index = fromDispatcher(type);
+			return index != null ? index : scan(type);
+		}
+	};
+
+	final Method[] methods;
+	final Class<? extends Event>[] events;
+	//null if the class wasn't processed, so its methods are invoked through handles
+	final ListenerDispatcher dispatcher;
+	//null where a method couldn't be looked up, so it is invoked reflectively
+	private final MethodHandle[] handles;
+
+	private ListenerIndex(Method[] methods, Class<? extends Event>[] events, ListenerDispatcher dispatcher, MethodHandle[] handles) {
+		this.methods = methods;
+		this.events = events;
+		this.dispatcher = dispatcher;
+		this.handles = handles;
+	}
+
+	/**
+	 * @param type a Listener class
+	 * @return the index of the class's listener methods
+	 */
+	static ListenerIndex of(Class<?> type) {
+		return INDEXES.get(type);
+	}
+
+	/**
+	 * @param method a method
+	 * @return the index of the method among the class's listener methods, -1 if it isn't one
+	 */
+	int indexOf(Method method) {
+		//the methods subscribed are usually the ones handed out by the index
+		for (int i = 0; i < methods.length; i++) {
+			if (methods[i] == method) return i;
+		}
+		for (int i = 0; i < methods.length; i++) {
+			if (methods[i].equals(method)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Calls a listener method.
+	 *
+	 * @param index the index of the method
+	 * @param listener the listener to call it on
+	 * @param event the event to pass to it
+	 * @throws IllegalArgumentException if the method threw
+	 */
+	void invoke(int index, Listener listener, Event event) {
+		if (dispatcher != null) {
+			try {
+				dispatcher.dispatch(index, listener, event);
+			} catch (RuntimeException e) {
+				throw new IllegalArgumentException("There was a problem calling the method " + methods[index], e);
+			}
+			return;
+		}
+		MethodHandle handle = handles[index];
+		if (handle != null) {
+			//unlike Method.invoke, an exact invocation doesn't allocate an array for the argument
+			try {
+				handle.invokeExact(listener, event);
+			} catch (Throwable e) {
+				throw new IllegalArgumentException("There was a problem calling the method " + methods[index], e);
+			}
+			return;
+		}
+		try {
+			methods[index].invoke(listener, event);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalArgumentException("There was a problem calling the method " + methods[index], e);
+		}
+	}
+
+	/**
+	 * @return whether the method has an {@link EventListener} annotation and takes a
+	 * single event more specific than {@link Event}
+	 */
+	static boolean isListener(Method method) {
+		if (method == null) return false;
+		if (method.getAnnotation(EventListener.class) == null) return false;
+		Class[] parameters = method.getParameterTypes();
+		if (parameters.length != 1) return false;
+		if (Event.class.equals(parameters[0])) return false;
+		return Event.class.isAssignableFrom(parameters[0]);
+	}
+
+	/**
+	 * Builds the index of a class from its generated dispatcher.
+	 *
+	 * @return the index, or null if the class has no dispatcher or it doesn't match the class
+	 */
+	private static ListenerIndex fromDispatcher(Class<?> type) {
+		ListenerDispatcher dispatcher;
+		try {
+			Class<?> generated = Class.forName(type.getName() + ListenerDispatcher.SUFFIX, true, type.getClassLoader());
+			if (!ListenerDispatcher.class.isAssignableFrom(generated)) return null;
+			dispatcher = (ListenerDispatcher) generated.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+		if (dispatcher.getListenerType() != type) return null;
+		int count = dispatcher.getMethodCount();
+		Method[] methods = new Method[count];
+		Class<? extends Event>[] events = newEventArray(count);
+		try {
+			for (int i = 0; i < count; i++) {
+				events[i] = dispatcher.getEventType(i);
+				//a lookup by name, so nothing else in the class is read
+				methods[i] = type.getMethod(dispatcher.getMethodName(i), events[i]);
+			}
+		} catch (NoSuchMethodException e) {
+			//the class changed since the dispatcher was generated
+			return null;
+		}
+		return new ListenerIndex(methods, events, dispatcher, null);
+	}
+
+	/**
+	 * Builds the index of a class by scanning its public methods.
+	 */
+	@SuppressWarnings("unchecked")
+	private static ListenerIndex scan(Class<?> type) {
+		ArrayList<Method> found = new ArrayList<>();
+		for (Method method : type.getMethods()) {
+			if (isListener(method)) found.add(method);
+		}
+		Method[] methods = found.toArray(new Method[found.size()]);
+		Class<? extends Event>[] events = newEventArray(methods.length);
+		MethodHandle[] handles = new MethodHandle[methods.length];
+		for (int i = 0; i < methods.length; i++) {
+			events[i] = (Class<? extends Event>) methods[i].getParameterTypes()[0];
+			handles[i] = handle(methods[i]);
+		}
+		return new ListenerIndex(methods, events, null, handles);
+	}
+
+	/**
+	 * @return a handle taking a listener and an event, or null if the method can't be looked up publicly
+	 */
+	private static MethodHandle handle(Method method) {
+		MethodHandle handle;
+		try {
+			handle = MethodHandles.publicLookup().unreflect(method);
+		} catch (IllegalAccessException e) {
+			return null;
+		}
+		if (Modifier.isStatic(method.getModifiers())) handle = MethodHandles.dropArguments(handle, 0, Listener.class);
+		return handle.asType(MethodType.methodType(void.class, Listener.class, Event.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Class<? extends Event>[] newEventArray(int length) {
+		return (Class<? extends Event>[]) new Class<?>[length];
+	}
+
+}
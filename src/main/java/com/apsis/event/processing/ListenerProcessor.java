@@ -0,0 +1,229 @@
+package com.apsis.event.processing;
+
+import com.apsis.event.ListenerDispatcher;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a {@link ListenerDispatcher} for every Listener class compiled with
+ * it, so the {@link com.apsis.event.EventHandler} can subscribe and call the
+ * class's listener methods without scanning it or invoking them through
+ * reflection.<br>
+ * <br>
+ * The processor is registered as a service in the engine's jar, so javac runs
+ * it for any project with the engine on its classpath (or on its processor
+ * path, if the project sets one). It generates nothing for classes it can't
+ * call into from their own package, such as private nested classes, which are
+ * scanned at runtime as before. Methods marked with {@link com.apsis.event.EventListener}
+ * that aren't valid listeners are reported as warnings, since they would never
+ * be subscribed.
+ *
+ * @author Cal Stephens
+ */
+public class ListenerProcessor extends AbstractProcessor {
+
+	private final static String LISTENER = "com.apsis.event.Listener";
+	private final static String EVENT = "com.apsis.event.Event";
+	private final static String EVENT_LISTENER = "com.apsis.event.EventListener";
+
+	private final Set<String> generated = new HashSet<>();
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		//every class, since a Listener can inherit all of its listener methods
+		return Collections.singleton("*");
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+		TypeElement listener = processingEnv.getElementUtils().getTypeElement(LISTENER);
+		TypeElement event = processingEnv.getElementUtils().getTypeElement(EVENT);
+		//the engine isn't on the classpath, so there is nothing to do
+		if (listener == null || event == null) return false;
+		for (TypeElement type : ElementFilter.typesIn(round.getRootElements())) {
+			process(type, listener.asType(), event.asType());
+		}
+		return false;
+	}
+
+	private void process(TypeElement type, TypeMirror listener, TypeMirror event) {
+		for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+			process(nested, listener, event);
+		}
+		if (type.getKind() != ElementKind.CLASS && type.getKind() != ElementKind.ENUM) return;
+		if (!processingEnv.getTypeUtils().isAssignable(erasure(type.asType()), listener)) return;
+		warnInvalid(type, event);
+		//only objects of exactly the class use its dispatcher, so abstract classes don't need one
+		if (type.getModifiers().contains(Modifier.ABSTRACT) || !reachable(type)) return;
+		String name = processingEnv.getElementUtils().getBinaryName(type) + ListenerDispatcher.SUFFIX;
+		if (!generated.add(name)) return;
+		List<ExecutableElement> methods = new ArrayList<>();
+		for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+			if (!isListener(method, event) || overridden(method, methods, type)) continue;
+			TypeElement parameter = parameterType(method);
+			if (!parameter.getModifiers().contains(Modifier.PUBLIC) && !samePackage(parameter, type)) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, type + " isn't given a dispatcher, since "
+						+ parameter + " can't be used from its package", type);
+				return;
+			}
+			methods.add(method);
+		}
+		try {
+			write(type, name, methods);
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Couldn't write the dispatcher of " + type + ": " + e, type);
+		}
+	}
+
+	/**
+	 * Writes the source of a dispatcher, which picks the method to call with a switch.
+	 */
+	private void write(TypeElement type, String name, List<ExecutableElement> methods) throws IOException {
+		String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		String simpleName = packageName.isEmpty() ? name : name.substring(packageName.length() + 1);
+		String typeName = type.getQualifiedName().toString();
+		StringBuilder source = new StringBuilder();
+		if (!packageName.isEmpty()) source.append("package ").append(packageName).append(";\n\n");
+		source.append("/**\n * Calls the listener methods of {@link ").append(typeName).append("} without reflection.\n")
+				.append(" * Generated by ").append(getClass().getName()).append(".\n */\n");
+		source.append("public final class ").append(simpleName).append(" implements com.apsis.event.ListenerDispatcher {\n\n");
+		source.append("\t@Override\n\tpublic Class<?> getListenerType() {\n\t\treturn ").append(typeName).append(".class;\n\t}\n\n");
+		source.append("\t@Override\n\tpublic int getMethodCount() {\n\t\treturn ").append(methods.size()).append(";\n\t}\n\n");
+		source.append("\t@Override\n\tpublic String getMethodName(int index) {\n\t\tswitch (index) {\n");
+		for (int i = 0; i < methods.size(); i++) {
+			source.append("\t\t\tcase ").append(i).append(": return \"").append(methods.get(i).getSimpleName()).append("\";\n");
+		}
+		source.append("\t\t\tdefault: throw new IndexOutOfBoundsException(\"Listener method \" + index);\n\t\t}\n\t}\n\n");
+		source.append("\t@Override\n\tpublic Class<? extends com.apsis.event.Event> getEventType(int index) {\n\t\tswitch (index) {\n");
+		for (int i = 0; i < methods.size(); i++) {
+			source.append("\t\t\tcase ").append(i).append(": return ").append(parameterType(methods.get(i)).getQualifiedName()).append(".class;\n");
+		}
+		source.append("\t\t\tdefault: throw new IndexOutOfBoundsException(\"Listener method \" + index);\n\t\t}\n\t}\n\n");
+		source.append("\t@Override\n\t@SuppressWarnings(\"rawtypes\")\n")
+				.append("\tpublic void dispatch(int index, com.apsis.event.Listener listener, com.apsis.event.Event event) {\n")
+				.append("\t\tswitch (index) {\n");
+		for (int i = 0; i < methods.size(); i++) {
+			ExecutableElement method = methods.get(i);
+			//checked exceptions can't be thrown from dispatch, so they're wrapped the way a Proxy would
+			boolean checked = !method.getThrownTypes().isEmpty();
+			source.append("\t\t\tcase ").append(i).append(": ");
+			if (checked) source.append("try {\n\t\t\t\t");
+			if (method.getModifiers().contains(Modifier.STATIC)) source.append(typeName);
+			else source.append("((").append(typeName).append(") listener)");
+			source.append(".").append(method.getSimpleName()).append("((").append(parameterType(method).getQualifiedName())
+					.append(") event);");
+			if (checked) {
+				source.append("\n\t\t\t} catch (RuntimeException | Error e) {\n\t\t\t\tthrow e;\n")
+						.append("\t\t\t} catch (Throwable t) {\n\t\t\t\tthrow new java.lang.reflect.UndeclaredThrowableException(t);\n")
+						.append("\t\t\t}\n\t\t\t");
+			} else {
+				source.append(" ");
+			}
+			source.append("return;\n");
+		}
+		source.append("\t\t\tdefault: throw new IndexOutOfBoundsException(\"Listener method \" + index);\n\t\t}\n\t}\n\n}\n");
+		try (Writer writer = processingEnv.getFiler().createSourceFile(name, type).openWriter()) {
+			writer.write(source.toString());
+		}
+	}
+
+	/**
+	 * Matches {@link com.apsis.event.EventHandler#methodIsListener(java.lang.reflect.Method)},
+	 * for the public methods the EventHandler would find.
+	 */
+	private boolean isListener(ExecutableElement method, TypeMirror event) {
+		Set<Modifier> modifiers = method.getModifiers();
+		if (!modifiers.contains(Modifier.PUBLIC)) return false;
+		return hasListenerAnnotation(method) && takesEvent(method, event);
+	}
+
+	private boolean takesEvent(ExecutableElement method, TypeMirror event) {
+		if (method.getParameters().size() != 1) return false;
+		TypeMirror parameter = erasure(method.getParameters().get(0).asType());
+		if (parameter.getKind() != TypeKind.DECLARED) return false;
+		if (processingEnv.getTypeUtils().isSameType(parameter, event)) return false;
+		return processingEnv.getTypeUtils().isAssignable(parameter, event);
+	}
+
+	private boolean hasListenerAnnotation(Element element) {
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(EVENT_LISTENER)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Warns about the methods a class declares with an EventListener annotation
+	 * that would never be subscribed.
+	 */
+	private void warnInvalid(TypeElement type, TypeMirror event) {
+		for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+			if (!hasListenerAnnotation(method) || isListener(method, event)) continue;
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, method + " is marked as an EventListener, "
+					+ "but only public methods taking one kind of Event are subscribed", method);
+		}
+	}
+
+	/**
+	 * @return whether a method with the same signature was already found, lower in the
+	 * hierarchy, which the inherited one would be overridden by
+	 */
+	private boolean overridden(ExecutableElement method, List<ExecutableElement> found, TypeElement type) {
+		for (ExecutableElement other : found) {
+			if (other.getSimpleName().equals(method.getSimpleName())
+					&& processingEnv.getElementUtils().overrides(other, method, type)) return true;
+		}
+		return false;
+	}
+
+	private TypeElement parameterType(ExecutableElement method) {
+		return (TypeElement) ((DeclaredType) erasure(method.getParameters().get(0).asType())).asElement();
+	}
+
+	/**
+	 * @return whether the generated dispatcher can name the class from its package
+	 */
+	private boolean reachable(TypeElement type) {
+		for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+			TypeElement enclosing = (TypeElement) element;
+			if (enclosing.getModifiers().contains(Modifier.PRIVATE)) return false;
+			NestingKind nesting = enclosing.getNestingKind();
+			if (nesting == NestingKind.LOCAL || nesting == NestingKind.ANONYMOUS) return false;
+		}
+		return true;
+	}
+
+	private boolean samePackage(TypeElement a, TypeElement b) {
+		return processingEnv.getElementUtils().getPackageOf(a).equals(processingEnv.getElementUtils().getPackageOf(b));
+	}
+
+	private TypeMirror erasure(TypeMirror type) {
+		return processingEnv.getTypeUtils().erasure(type);
+	}
+
+}
@@ -0,0 +1,23 @@
+package com.apsis.event.world;
+
+import com.apsis.event.Event;
+import com.apsis.world.TimeSlicedGroup;
+
+/**
+ * Triggered when a {@link TimeSlicedGroup} spends longer than its budget on a tick.
+ *
+ * @author Cal Stephens
+ */
+public class BudgetOverrunEvent extends Event {
+
+	public final TimeSlicedGroup<?> group;
+	public final long budgetNanos;
+	public final long elapsedNanos;
+
+	public BudgetOverrunEvent(TimeSlicedGroup<?> group, long budgetNanos, long elapsedNanos) {
+		this.group = group;
+		this.budgetNanos = budgetNanos;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+}
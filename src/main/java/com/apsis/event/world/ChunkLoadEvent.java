@@ -0,0 +1,22 @@
+package com.apsis.event.world;
+
+import com.apsis.event.Event;
+import com.apsis.stream.Chunk;
+
+/**
+ * Triggered when the objects of a {@link Chunk} have been loaded and
+ * added to the World, after each of them got its {@link AddToWorldEvent}.
+ *
+ * @author Cal Stephens
+ */
+public class ChunkLoadEvent extends Event {
+
+	public final Chunk chunk;
+	public final int objects;
+
+	public ChunkLoadEvent(Chunk chunk, int objects) {
+		this.chunk = chunk;
+		this.objects = objects;
+	}
+
+}
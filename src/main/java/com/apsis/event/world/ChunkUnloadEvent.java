@@ -0,0 +1,22 @@
+package com.apsis.event.world;
+
+import com.apsis.event.Event;
+import com.apsis.stream.Chunk;
+
+/**
+ * Triggered when a {@link Chunk} is about to be unloaded, while its objects
+ * are still in the World and before each of them gets its {@link RemoveFromWorldEvent}.
+ *
+ * @author Cal Stephens
+ */
+public class ChunkUnloadEvent extends Event {
+
+	public final Chunk chunk;
+	public final int objects;
+
+	public ChunkUnloadEvent(Chunk chunk, int objects) {
+		this.chunk = chunk;
+		this.objects = objects;
+	}
+
+}
@@ -1,23 +1,142 @@
-
 package com.apsis.event.world;
 
 import com.apsis.event.Event;
+import com.apsis.world.TickStats;
+import com.apsis.world.World;
 
 /**
+ * Triggered every time a {@link World} ticks.<br>
+ * <br>
+ * Times ending in <code>Time</code> are from {@link System#currentTimeMillis()};
+ * times ending in <code>Nanos</code> are from {@link System#nanoTime()} and are
+ * the ones to use for measuring.<br>
+ * A World triggers the same TickEvent every tick, updating it in place,
+ * so listeners should copy what they need rather than keep the event.
+ * Every listener of a tick sees the same event, which is why it can only
+ * be read.
+ *
  * @author Cal Stephens
  */
 public class TickEvent extends Event{
 
-	public final long lastTickStartTime;
-	public final long lastTickEndTime;
-	public final long lastTickDuration;
-	public final long tickStartTime;
-	
+	private long lastTickStartTime;
+	private long lastTickEndTime;
+	private long lastTickDuration;
+	private long tickStartTime;
+	private long lastTickDurationNanos;
+	private long tickStartNanos;
+	private long tickNumber;
+
+	private final World world;
+	private final TickStats stats = new TickStats();
+	private boolean statsCurrent = false;
+
 	public TickEvent(long lastTickStartTime, long lastTickEndTime, long lastTickDuration, long tickStartTime){
+		this.world = null;
 		this.lastTickDuration = lastTickDuration;
 		this.lastTickEndTime = lastTickEndTime;
 		this.lastTickStartTime = lastTickStartTime;
 		this.tickStartTime = tickStartTime;
+		this.lastTickDurationNanos = lastTickDuration * 1000000;
+	}
+
+	/**
+	 * Creates the TickEvent a World reuses for every tick.
+	 *
+	 * @param world the World that ticks
+	 */
+	public TickEvent(World world){
+		if (world == null) throw new IllegalArgumentException("World cannot be null.");
+		this.world = world;
+	}
+
+	/**
+	 * Updates the event for a new tick.
+	 * Only meant to be called by the World the event belongs to, right before it triggers the event.
+	 *
+	 * @param lastTickStartTime the time the last tick started at, in milliseconds
+	 * @param lastTickEndTime the time the last tick ended at, in milliseconds
+	 * @param lastTickDurationNanos how long the last tick took, in nanoseconds
+	 * @param tickStartTime the time this tick started at, in milliseconds
+	 * @param tickStartNanos the {@link System#nanoTime()} this tick started at
+	 * @param tickNumber the number of this tick
+	 * @throws IllegalStateException if the event doesn't belong to a World
+	 */
+	public void update(long lastTickStartTime, long lastTickEndTime, long lastTickDurationNanos,
+			long tickStartTime, long tickStartNanos, long tickNumber){
+		if (world == null) throw new IllegalStateException("Only the TickEvent of a World can be updated.");
+		this.lastTickStartTime = lastTickStartTime;
+		this.lastTickEndTime = lastTickEndTime;
+		this.lastTickDuration = lastTickDurationNanos / 1000000;
+		this.lastTickDurationNanos = lastTickDurationNanos;
+		this.tickStartTime = tickStartTime;
+		this.tickStartNanos = tickStartNanos;
+		this.tickNumber = tickNumber;
+		this.statsCurrent = false;
+	}
+
+	/**
+	 * @return the time the last tick started at, in milliseconds
+	 */
+	public long getLastTickStartTime(){
+		return lastTickStartTime;
+	}
+
+	/**
+	 * @return the time the last tick ended at, in milliseconds
+	 */
+	public long getLastTickEndTime(){
+		return lastTickEndTime;
 	}
-	
+
+	/**
+	 * @return how long the last tick took, in milliseconds
+	 */
+	public long getLastTickDuration(){
+		return lastTickDuration;
+	}
+
+	/**
+	 * @return the time this tick started at, in milliseconds
+	 */
+	public long getTickStartTime(){
+		return tickStartTime;
+	}
+
+	/**
+	 * @return how long the last tick took, in nanoseconds
+	 */
+	public long getLastTickDurationNanos(){
+		return lastTickDurationNanos;
+	}
+
+	/**
+	 * @return the {@link System#nanoTime()} this tick started at
+	 */
+	public long getTickStartNanos(){
+		return tickStartNanos;
+	}
+
+	/**
+	 * @return the number of this tick
+	 */
+	public long getTickNumber(){
+		return tickNumber;
+	}
+
+	/**
+	 * Gets the rolling performance statistics of the World up to the last tick.
+	 * They are only worked out the first time they are asked for in a tick.
+	 *
+	 * @return the statistics, or null if the event wasn't triggered by a World
+	 */
+	public TickStats getStats(){
+		if (world == null) return null;
+		if (!statsCurrent) {
+			world.getTickStats(stats);
+			statsCurrent = true;
+		}
+		return stats;
+	}
+
 }
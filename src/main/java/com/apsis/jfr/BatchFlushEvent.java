@@ -0,0 +1,31 @@
+package com.apsis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded by JDK Flight Recorder when a {@link com.apsis.render.Graphics} sends a batch
+ * of vertices to its backend. There are many of these a frame, so they are off
+ * unless turned on by the recording's settings.
+ *
+ * @author Cal Stephens
+ */
+@Name("apsis.BatchFlush")
+@Label("Batch Flush")
+@Category({"Apsis", "Render"})
+@Description("A batch of vertices sent to a render backend")
+@StackTrace(false)
+@Enabled(false)
+@Threshold("0 ms")
+public final class BatchFlushEvent extends Event {
+
+	@Label("Vertices")
+	public int vertices;
+
+}
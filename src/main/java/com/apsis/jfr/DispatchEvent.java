@@ -0,0 +1,36 @@
+package com.apsis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded by JDK Flight Recorder when an {@link com.apsis.event.EventHandler}
+ * triggers an event and calling its listeners takes longer than the threshold.
+ *
+ * @author Cal Stephens
+ */
+@Name("apsis.EventDispatch")
+@Label("Event Dispatch")
+@Category({"Apsis", "Events"})
+@Description("An event triggered through an EventHandler")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class DispatchEvent extends Event {
+
+	@Label("Event Class")
+	public Class<?> eventClass;
+
+	@Label("Listeners")
+	@Description("The number of listener methods called")
+	public int listeners;
+
+	@Label("Targeted")
+	@Description("Whether the event was only triggered on given listeners")
+	public boolean targeted;
+
+}
@@ -0,0 +1,39 @@
+package com.apsis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded by JDK Flight Recorder when objects are added to or removed from a
+ * {@link com.apsis.util.Group} (including a World) and it takes longer than the threshold,
+ * such as during a bulk load of a World.
+ *
+ * @author Cal Stephens
+ */
+@Name("apsis.GroupChange")
+@Label("Group Change")
+@Category({"Apsis", "World"})
+@Description("Objects added to or removed from a Group")
+@Threshold("1 ms")
+public final class GroupChangeEvent extends Event {
+
+	@Label("Group Class")
+	public Class<?> groupClass;
+
+	@Label("Operation")
+	@Description("add, remove or clear")
+	public String operation;
+
+	@Label("Objects")
+	@Description("The number of objects passed in")
+	public int objects;
+
+	@Label("Size")
+	@Description("The size of the group afterwards")
+	public int size;
+
+}
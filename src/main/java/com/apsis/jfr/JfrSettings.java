@@ -0,0 +1,51 @@
+package com.apsis.jfr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import jdk.jfr.Configuration;
+
+/**
+ * Loads the JFR settings that record every Apsis event.<br>
+ * <br>
+ * The events are registered with Flight Recorder the first time they are used,
+ * and cost next to nothing when no recording is running or they are turned off.
+ * Without these settings each event uses the enabled state and threshold in its
+ * annotations, which keep the number of events low. The settings can be used to
+ * start a recording from code:
+ * <pre>
+ * Recording recording = new Recording(JfrSettings.getConfiguration());
+ * recording.start();
+ * </pre>
+ * or copied out of the jar (<code>com/apsis/jfr/apsis.jfc</code>) and passed to
+ * <code>-XX:StartFlightRecording</code> or <code>jcmd JFR.start</code> along with the JDK's own settings.
+ *
+ * @author Cal Stephens
+ */
+public class JfrSettings {
+
+	/**
+	 * The path of the settings in the jar
+	 */
+	public final static String RESOURCE = "/com/apsis/jfr/apsis.jfc";
+
+	private JfrSettings() {
+	}
+
+	/**
+	 * @return the settings that record every Apsis event
+	 * @throws IOException if the settings can't be read
+	 * @throws ParseException if the settings aren't valid
+	 */
+	public static Configuration getConfiguration() throws IOException, ParseException {
+		InputStream stream = JfrSettings.class.getResourceAsStream(RESOURCE);
+		if (stream == null) throw new IOException("Missing " + RESOURCE);
+		try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+			return Configuration.create(reader);
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.apsis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded by JDK Flight Recorder for every frame of a {@link com.apsis.render.Graphics},
+ * from {@link com.apsis.render.Graphics#beginFrame()} to {@link com.apsis.render.Graphics#endFrame()},
+ * that takes longer than the threshold.
+ *
+ * @author Cal Stephens
+ */
+@Name("apsis.RenderFrame")
+@Label("Render Frame")
+@Category({"Apsis", "Render"})
+@Description("A frame drawn with a Graphics")
+@StackTrace(false)
+@Threshold("0 ms")
+public final class RenderFrameEvent extends Event {
+
+	@Label("Draw Calls")
+	public int drawCalls;
+
+	@Label("Primitives")
+	public int primitives;
+
+	@Label("State Changes")
+	public int stateChanges;
+
+}
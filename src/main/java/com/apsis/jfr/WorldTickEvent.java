@@ -0,0 +1,40 @@
+package com.apsis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded by JDK Flight Recorder for every {@link com.apsis.world.World#tick()}
+ * that takes longer than the threshold.
+ *
+ * @author Cal Stephens
+ */
+@Name("apsis.WorldTick")
+@Label("World Tick")
+@Category({"Apsis", "World"})
+@Description("A tick of a World, from triggering scheduled events to updating time-sliced groups")
+@StackTrace(false)
+@Threshold("0 ms")
+public final class WorldTickEvent extends Event {
+
+	@Label("Tick")
+	public long tick;
+
+	@Label("Objects")
+	@Description("The number of objects in the World at the end of the tick")
+	public int objects;
+
+	@Label("Scheduled Events")
+	@Description("The number of scheduled events triggered by the tick")
+	public int scheduled;
+
+	@Label("Dirty Objects")
+	@Description("The number of entries in the dirty list at the end of the tick")
+	public int dirty;
+
+}
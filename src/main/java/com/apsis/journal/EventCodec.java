@@ -0,0 +1,54 @@
+package com.apsis.journal;
+
+import com.apsis.event.Event;
+import java.nio.ByteBuffer;
+
+/**
+ * Saves and restores one type of input {@link Event} so a {@link Journal}
+ * can record it and a {@link Replay} can trigger it again.<br>
+ * <br>
+ * Like a {@link com.apsis.snapshot.SnapshotCodec}, a codec is found by the
+ * name it is registered under in {@link EventCodecs}, and its version is
+ * recorded with every event it writes.
+ *
+ * @author Cal Stephens
+ * @param <E> the type of event the codec handles
+ * @see EventCodecs#register(java.lang.String, com.apsis.journal.EventCodec)
+ */
+public interface EventCodec<E extends Event> {
+
+	/**
+	 * @return the class of the events the codec handles; events are matched by exact class
+	 */
+	public Class<E> getType();
+
+	/**
+	 * @return the version of the format the codec writes
+	 */
+	public int getVersion();
+
+	/**
+	 * @param event the event being recorded
+	 * @return the number of bytes {@link EventCodec#write(com.apsis.event.Event, java.nio.ByteBuffer)} will write
+	 */
+	public int getSize(E event);
+
+	/**
+	 * Writes the state of an event.
+	 *
+	 * @param event the event being recorded
+	 * @param out the buffer to write exactly {@link EventCodec#getSize(com.apsis.event.Event)} bytes to
+	 */
+	public void write(E event, ByteBuffer out);
+
+	/**
+	 * Creates an event from a journal.
+	 *
+	 * @param in the bytes written by {@link EventCodec#write(com.apsis.event.Event, java.nio.ByteBuffer)},
+	 * from position 0 to the limit
+	 * @param version the version of the codec that wrote the event
+	 * @return the new event
+	 */
+	public E read(ByteBuffer in, int version);
+
+}
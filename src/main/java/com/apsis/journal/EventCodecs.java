@@ -0,0 +1,60 @@
+package com.apsis.journal;
+
+import com.apsis.event.Event;
+import java.util.HashMap;
+
+/**
+ * The {@link EventCodec}s used to record and replay input events, by name and by type.
+ *
+ * @author Cal Stephens
+ * @see com.apsis.snapshot.SnapshotCodecs
+ */
+public class EventCodecs {
+
+	private final HashMap<String, EventCodec<?>> byName = new HashMap<>();
+	private final HashMap<Class<?>, EventCodec<?>> byType = new HashMap<>();
+	private final HashMap<Class<?>, String> names = new HashMap<>();
+
+	/**
+	 * Registers a codec.
+	 *
+	 * @param name the name recorded in journals for events written by the codec
+	 * @param codec the codec
+	 * @return <code>return this;</code> for chaining
+	 */
+	public synchronized EventCodecs register(String name, EventCodec<?> codec) {
+		if (name == null || name.isEmpty()) throw new IllegalArgumentException("Name cannot be empty.");
+		if (codec == null) throw new IllegalArgumentException("EventCodec cannot be null.");
+		if (byName.containsKey(name)) throw new IllegalArgumentException("A codec is already registered as " + name);
+		if (byType.containsKey(codec.getType())) throw new IllegalArgumentException("A codec is already registered for " + codec.getType());
+		byName.put(name, codec);
+		byType.put(codec.getType(), codec);
+		names.put(codec.getType(), name);
+		return this;
+	}
+
+	/**
+	 * @param name the name of a codec
+	 * @return the codec registered under the name, or null if there is none
+	 */
+	public synchronized EventCodec<?> get(String name) {
+		return byName.get(name);
+	}
+
+	/**
+	 * @param event an event to record
+	 * @return the codec for the exact class of the event, or null if there is none
+	 */
+	public synchronized EventCodec<?> get(Event event) {
+		return byType.get(event.getClass());
+	}
+
+	/**
+	 * @param codec a registered codec
+	 * @return the name the codec is registered under
+	 */
+	public synchronized String getName(EventCodec<?> codec) {
+		return names.get(codec.getType());
+	}
+
+}
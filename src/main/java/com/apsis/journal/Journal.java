@@ -0,0 +1,420 @@
+package com.apsis.journal;
+
+import com.apsis.event.Event;
+import com.apsis.snapshot.SnapshotCodec;
+import com.apsis.snapshot.SnapshotCodecs;
+import com.apsis.world.PointObject;
+import com.apsis.world.TickObserver;
+import com.apsis.world.World;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An append-only record of a {@link World}, one entry per tick, that a
+ * {@link Replay} can seek through and re-simulate to track down desyncs.<br>
+ * <br>
+ * At the end of every tick the Journal records:
+ * <ul>
+ * <li>the input events passed to {@link Journal#input(com.apsis.event.Event)} since the last tick</li>
+ * <li>objects added to and removed from the World, with the state a
+ * {@link SnapshotCodec} needs to create them again</li>
+ * <li>the position, rotation, layer, static flag, parent and codec payload of
+ * every object that changed, as a diff against the last tick (see {@link RecordBuffer})</li>
+ * </ul>
+ * Every <code>keyframeInterval</code> ticks a keyframe records every object in
+ * full instead, so a Replay can start from it without the records before it.<br>
+ * <br>
+ * Objects are matched between ticks by {@link PointObject#getId() ID}. Since
+ * the content of a World is in order of ID, the diff is a single merge of the
+ * World with the last tick's state and doesn't hash or allocate per object,
+ * though every object's codec writes its payload every tick to be compared.
+ * Records are encoded on the ticking thread, under the World's lock, and
+ * written to a memory-mapped {@link RingFile} by a background thread. If the
+ * writer falls {@value #QUEUE_LENGTH} records behind, ticks wait for it.
+ * Once the file is full the oldest records are overwritten.
+ *
+ * @author Cal Stephens
+ * @see Replay
+ */
+public class Journal implements TickObserver, Closeable {
+
+	static final int OP_END = 0;
+	static final int OP_NAME = 1;
+	static final int OP_INPUT = 2;
+	static final int OP_ADD = 3;
+	static final int OP_CHANGE = 4;
+	static final int OP_REMOVE = 5;
+
+	static final int CHANGED_X = 1;
+	static final int CHANGED_Y = 1 << 1;
+	static final int CHANGED_ROT = 1 << 2;
+	static final int CHANGED_LAYER = 1 << 3;
+	static final int CHANGED_FLAGS = 1 << 4;
+	static final int CHANGED_PARENT = 1 << 5;
+	static final int CHANGED_PAYLOAD = 1 << 6;
+
+	/**
+	 * The number of encoded records that can wait for the writer thread
+	 */
+	public static final int QUEUE_LENGTH = 32;
+
+	//queued to stop the writer thread
+	private static final RecordBuffer CLOSE = new RecordBuffer(1);
+
+	private final World world;
+	private final SnapshotCodecs objectCodecs;
+	private final EventCodecs eventCodecs;
+	private final int keyframeInterval;
+	private final RingFile ring;
+	private final Thread writer;
+	private final BlockingQueue<RecordBuffer> queue = new ArrayBlockingQueue<>(QUEUE_LENGTH);
+	private final BlockingQueue<RecordBuffer> free = new ArrayBlockingQueue<>(QUEUE_LENGTH + 1);
+	private final RecordBuffer inputs = new RecordBuffer(256);
+	private final HashMap<String, Integer> nameIndexes = new HashMap<>();
+	private final ArrayList<byte[]> names = new ArrayList<>();
+	private JournalState state = new JournalState();
+	private JournalState next = new JournalState();
+	private long lastKeyframe = -1;
+	private long recordedTicks = 0;
+	private long keyframes = 0;
+	private long bytesRecorded = 0;
+	private volatile Throwable failure = null;
+	private boolean closed = false;
+
+	/**
+	 * Starts recording a World. The first record is a keyframe of the World
+	 * as the next tick leaves it.
+	 *
+	 * @param world the World to record
+	 * @param file the ring file to write, replaced if it exists
+	 * @param capacity the size of the ring file in bytes, not counting its header
+	 * @param objectCodecs the codecs of the objects in the World
+	 * @param eventCodecs the codecs of the input events
+	 * @param keyframeInterval the number of ticks between keyframes
+	 * @throws IOException if the file can't be created
+	 */
+	public Journal(World world, Path file, long capacity, SnapshotCodecs objectCodecs, EventCodecs eventCodecs,
+			int keyframeInterval) throws IOException {
+		if (world == null) throw new IllegalArgumentException("World cannot be null.");
+		if (objectCodecs == null || eventCodecs == null) throw new IllegalArgumentException("Codecs cannot be null.");
+		if (keyframeInterval <= 0) throw new IllegalArgumentException("Keyframe interval must be positive.");
+		this.world = world;
+		this.objectCodecs = objectCodecs;
+		this.eventCodecs = eventCodecs;
+		this.keyframeInterval = keyframeInterval;
+		this.ring = RingFile.create(file, capacity);
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "Journal writer " + file.getFileName());
+		writer.setDaemon(true);
+		writer.start();
+		world.addTickObserver(this);
+	}
+
+	/**
+	 * Records an input event and triggers it through the World's EventHandler.
+	 *
+	 * @param event the event
+	 */
+	public void input(Event event) {
+		record(event);
+		world.getEventHandler().triggerEvent(event);
+	}
+
+	/**
+	 * Records an input event without triggering it, for events triggered
+	 * some other way. A Replay triggers recorded events through the
+	 * EventHandler of its World before the tick they were recorded in, so
+	 * inputs should be recorded between ticks rather than by listeners.
+	 *
+	 * @param event the event
+	 */
+	public synchronized void record(Event event) {
+		if (event == null) throw new IllegalArgumentException("Event cannot be null.");
+		if (closed) throw new IllegalStateException("The journal is closed.");
+		EventCodec<?> codec = eventCodecs.get(event);
+		if (codec == null) throw new IllegalArgumentException("No EventCodec is registered for " + event.getClass());
+		EventCodec<Event> events = cast(codec);
+		int name = nameIndex(inputs, eventCodecs.getName(codec));
+		int size = events.getSize(event);
+		if (size < 0) throw new IllegalStateException(codec + " returned a negative size.");
+		inputs.putByte(OP_INPUT);
+		inputs.putVarint(name);
+		inputs.putVarint(codec.getVersion());
+		inputs.putVarint(size);
+		ByteBuffer slice = slice(inputs, size);
+		events.write(event, slice);
+		advance(inputs, slice, size, codec);
+	}
+
+	@Override
+	public void tickEnded(World world, long tick) {
+		RecordBuffer record = take();
+		synchronized (this) {
+			if (closed) {
+				free.offer(record);
+				return;
+			}
+			synchronized (world) {
+				encode(record, tick);
+			}
+			inputs.clear();
+			recordedTicks++;
+			bytesRecorded += record.size();
+		}
+		try {
+			queue.put(record);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the journal writer.", e);
+		}
+	}
+
+	private void encode(RecordBuffer out, long tick) {
+		boolean keyframe = lastKeyframe < 0 || tick - lastKeyframe >= keyframeInterval;
+		out.kind = keyframe ? RingFile.KIND_KEYFRAME : RingFile.KIND_TICK;
+		out.tick = tick;
+		out.putVarint(world.getNextObjectId());
+		if (keyframe) {
+			//a replay can start here, so every name is given again
+			for (int i = 0; i < names.size(); i++) {
+				putName(out, i, names.get(i));
+			}
+			state.clear();
+			lastKeyframe = tick;
+			keyframes++;
+		}
+		out.put(inputs);
+		List<PointObject> content = world.getOrderedContent();
+		JournalState last = state;
+		next.clear();
+		next.ensure(content.size());
+		int p = 0;
+		//IDs are written as the difference from the last one written
+		long lastId = 0;
+		long lastSeen = 0;
+		for (int i = 0; i < content.size(); i++) {
+			PointObject object = content.get(i);
+			long id = object.getId();
+			if (id <= lastSeen) throw new IllegalStateException("The content of " + world + " isn't in order of ID.");
+			while (p < last.count && last.ids[p] < id) {
+				out.putByte(OP_REMOVE);
+				out.putVarint(last.ids[p] - lastId);
+				lastId = last.ids[p++];
+			}
+			lastSeen = id;
+			SnapshotCodec<?> codec = objectCodecs.get(object);
+			if (codec == null) throw new IllegalArgumentException("No SnapshotCodec is registered for " + object.getClass());
+			SnapshotCodec<PointObject> objects = cast(codec);
+			int size = objects.getPayloadSize(object);
+			if (size < 0) throw new IllegalStateException(codec + " returned a negative payload size.");
+			ByteBuffer payload = next.payloadBuffer(size);
+			objects.writePayload(object, payload);
+			if (payload.position() != size) throw new IllegalStateException(codec + " wrote " + payload.position() + " bytes instead of " + size + ".");
+			next.append(object, world, size);
+			int n = next.count - 1;
+			if (p < last.count && last.ids[p] == id) {
+				if (putChange(out, last, p++, next, n, id - lastId)) lastId = id;
+			} else {
+				putAdd(out, codec, next, n, id - lastId);
+				lastId = id;
+			}
+		}
+		while (p < last.count) {
+			out.putByte(OP_REMOVE);
+			out.putVarint(last.ids[p] - lastId);
+			lastId = last.ids[p++];
+		}
+		out.putByte(OP_END);
+		state = next;
+		next = last;
+	}
+
+	/**
+	 * @return true if the object changed and an entry was written
+	 */
+	private boolean putChange(RecordBuffer out, JournalState last, int p, JournalState now, int n, long idDelta) {
+		int mask = 0;
+		if (last.xs[p] != now.xs[n]) mask |= CHANGED_X;
+		if (last.ys[p] != now.ys[n]) mask |= CHANGED_Y;
+		if (last.rots[p] != now.rots[n]) mask |= CHANGED_ROT;
+		if (last.layers[p] != now.layers[n]) mask |= CHANGED_LAYER;
+		if (last.flags[p] != now.flags[n]) mask |= CHANGED_FLAGS;
+		if (last.parents[p] != now.parents[n]) mask |= CHANGED_PARENT;
+		if (!last.payloadEquals(p, now, n)) mask |= CHANGED_PAYLOAD;
+		if (mask == 0) return false;
+		out.putByte(OP_CHANGE);
+		out.putVarint(idDelta);
+		out.putByte(mask);
+		if ((mask & CHANGED_X) != 0) out.putXor(last.xs[p], now.xs[n]);
+		if ((mask & CHANGED_Y) != 0) out.putXor(last.ys[p], now.ys[n]);
+		if ((mask & CHANGED_ROT) != 0) out.putXor(last.rots[p], now.rots[n]);
+		if ((mask & CHANGED_LAYER) != 0) out.putZigzag(now.layers[n]);
+		if ((mask & CHANGED_FLAGS) != 0) out.putByte(now.flags[n]);
+		if ((mask & CHANGED_PARENT) != 0) out.putVarint(now.parents[n]);
+		if ((mask & CHANGED_PAYLOAD) != 0) putPayload(out, now, n);
+		return true;
+	}
+
+	private void putAdd(RecordBuffer out, SnapshotCodec<?> codec, JournalState now, int n, long idDelta) {
+		int name = nameIndex(out, objectCodecs.getName(codec));
+		out.putByte(OP_ADD);
+		out.putVarint(idDelta);
+		out.putVarint(name);
+		out.putVarint(codec.getVersion());
+		out.putLong(now.xs[n]);
+		out.putLong(now.ys[n]);
+		out.putLong(now.rots[n]);
+		out.putZigzag(now.layers[n]);
+		out.putByte(now.flags[n]);
+		out.putVarint(now.parents[n]);
+		putPayload(out, now, n);
+	}
+
+	private static void putPayload(RecordBuffer out, JournalState state, int index) {
+		int length = state.payloadLength(index);
+		out.putVarint(length);
+		out.ensure(length).put(state.payloads, state.payloadStart(index), length);
+	}
+
+	/**
+	 * Finds the index of a codec name, recording it first if it's new.
+	 */
+	private int nameIndex(RecordBuffer out, String name) {
+		Integer index = nameIndexes.get(name);
+		if (index == null) {
+			index = names.size();
+			byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+			names.add(bytes);
+			nameIndexes.put(name, index);
+			putName(out, index, bytes);
+		}
+		return index;
+	}
+
+	private static void putName(RecordBuffer out, int index, byte[] name) {
+		out.putByte(OP_NAME);
+		out.putVarint(index);
+		out.putVarint(name.length);
+		out.putBytes(name);
+	}
+
+	/**
+	 * @return exactly <code>size</code> bytes at the end of a record for a codec to write to
+	 */
+	private static ByteBuffer slice(RecordBuffer out, int size) {
+		ByteBuffer slice = out.ensure(size).slice().order(ByteOrder.LITTLE_ENDIAN);
+		slice.limit(size);
+		return slice;
+	}
+
+	/**
+	 * Moves the end of a record past the bytes a codec wrote, checking that it wrote all of them.
+	 */
+	private static void advance(RecordBuffer out, ByteBuffer slice, int size, Object codec) {
+		if (slice.position() != size) throw new IllegalStateException(codec + " wrote " + slice.position() + " bytes instead of " + size + ".");
+		ByteBuffer buffer = out.ensure(0);
+		buffer.position(buffer.position() + size);
+	}
+
+	private RecordBuffer take() {
+		Throwable failed = failure;
+		if (failed != null) throw new IllegalStateException("The journal writer failed.", failed);
+		RecordBuffer record = free.poll();
+		if (record == null) record = new RecordBuffer(4096);
+		record.clear();
+		return record;
+	}
+
+	private void write() {
+		while (true) {
+			RecordBuffer record;
+			try {
+				record = queue.take();
+			} catch (InterruptedException e) {
+				failure = e;
+				return;
+			}
+			if (record == CLOSE) return;
+			//after a failure, records are still taken so ticks don't wait forever
+			if (failure == null) {
+				try {
+					ring.append(record.kind, record.tick, record.written());
+				} catch (RuntimeException e) {
+					failure = e;
+				}
+			}
+			free.offer(record);
+		}
+	}
+
+	/**
+	 * Stops recording, waits for the writer thread to write every record and closes the file.
+	 *
+	 * @throws IOException if the file couldn't be written
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) return;
+			closed = true;
+		}
+		world.removeTickObserver(this);
+		try {
+			queue.put(CLOSE);
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while closing the journal.", e);
+		} finally {
+			ring.close();
+		}
+		if (failure != null) throw new IOException("The journal writer failed.", failure);
+	}
+
+	/**
+	 * @return the number of ticks recorded, including keyframes
+	 */
+	public synchronized long getRecordedTicks() {
+		return recordedTicks;
+	}
+
+	/**
+	 * @return the number of keyframes recorded
+	 */
+	public synchronized long getKeyframeCount() {
+		return keyframes;
+	}
+
+	/**
+	 * @return the number of bytes of records encoded, which may be more than the file holds
+	 */
+	public synchronized long getBytesRecorded() {
+		return bytesRecorded;
+	}
+
+	/**
+	 * @return the number of ticks between keyframes
+	 */
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T cast(Object codec) {
+		return (T) codec;
+	}
+
+}
@@ -0,0 +1,157 @@
+package com.apsis.journal;
+
+import com.apsis.world.PointObject;
+import com.apsis.world.World;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * The recorded state of every object in a World at the end of a tick,
+ * as columns in ascending order of ID, with the payloads written by the
+ * objects' codecs packed end to end. A {@link Journal} diffs the World
+ * against the state of the previous tick; a {@link Replay} rebuilds it
+ * from records to check a simulated World against.<br>
+ * <br>
+ * Doubles are kept as their raw bits, so equal means bit-for-bit equal.
+ *
+ * @author Cal Stephens
+ */
+final class JournalState {
+
+	static final int FLAG_STATIC = 1;
+
+	long[] ids = new long[64];
+	long[] xs = new long[64];
+	long[] ys = new long[64];
+	long[] rots = new long[64];
+	int[] layers = new int[64];
+	byte[] flags = new byte[64];
+	long[] parents = new long[64];
+	int[] payloadEnds = new int[64];
+	byte[] payloads = new byte[1024];
+	int payloadSize = 0;
+	int count = 0;
+
+	void clear() {
+		count = 0;
+		payloadSize = 0;
+	}
+
+	void ensure(int capacity) {
+		if (capacity <= ids.length) return;
+		capacity = Math.max(capacity, ids.length * 2);
+		ids = Arrays.copyOf(ids, capacity);
+		xs = Arrays.copyOf(xs, capacity);
+		ys = Arrays.copyOf(ys, capacity);
+		rots = Arrays.copyOf(rots, capacity);
+		layers = Arrays.copyOf(layers, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+		parents = Arrays.copyOf(parents, capacity);
+		payloadEnds = Arrays.copyOf(payloadEnds, capacity);
+	}
+
+	/**
+	 * @return a buffer over the next <code>size</code> bytes of the payloads, for the
+	 * payload of the next entry to be written to before it is appended
+	 */
+	ByteBuffer payloadBuffer(int size) {
+		if (payloadSize + size > payloads.length) {
+			payloads = Arrays.copyOf(payloads, Math.max(payloadSize + size, payloads.length * 2));
+		}
+		return ByteBuffer.wrap(payloads, payloadSize, size).slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	int payloadStart(int index) {
+		return index == 0 ? 0 : payloadEnds[index - 1];
+	}
+
+	int payloadLength(int index) {
+		return payloadEnds[index] - payloadStart(index);
+	}
+
+	/**
+	 * @return true if the payload at an index has the same bytes as the payload at an index of another state
+	 */
+	boolean payloadEquals(int index, JournalState other, int otherIndex) {
+		return Arrays.equals(payloads, payloadStart(index), payloadEnds[index],
+				other.payloads, other.payloadStart(otherIndex), other.payloadEnds[otherIndex]);
+	}
+
+	/**
+	 * @return true if the payload at an index has the same bytes as a buffer, from its position to its limit
+	 */
+	boolean payloadEquals(int index, ByteBuffer payload) {
+		return ByteBuffer.wrap(payloads, payloadStart(index), payloadLength(index)).equals(payload);
+	}
+
+	/**
+	 * Appends an entry whose payload was written to {@link JournalState#payloadBuffer(int)}.
+	 */
+	void append(long id, long x, long y, long rot, int layer, byte flag, long parent, int payloadLength) {
+		ensure(count + 1);
+		ids[count] = id;
+		xs[count] = x;
+		ys[count] = y;
+		rots[count] = rot;
+		layers[count] = layer;
+		flags[count] = flag;
+		parents[count] = parent;
+		payloadSize += payloadLength;
+		payloadEnds[count] = payloadSize;
+		count++;
+	}
+
+	/**
+	 * Appends an entry, copying its payload from a buffer.
+	 */
+	void append(long id, long x, long y, long rot, int layer, byte flag, long parent, ByteBuffer payload) {
+		int length = payload.remaining();
+		payloadBuffer(length).put(payload);
+		append(id, x, y, rot, layer, flag, parent, length);
+	}
+
+	/**
+	 * Appends the entry at an index of another state.
+	 */
+	void append(JournalState other, int index) {
+		int length = other.payloadLength(index);
+		payloadBuffer(length).put(other.payloads, other.payloadStart(index), length);
+		append(other.ids[index], other.xs[index], other.ys[index], other.rots[index],
+				other.layers[index], other.flags[index], other.parents[index], length);
+	}
+
+	/**
+	 * Appends the current state of an object whose payload was written to {@link JournalState#payloadBuffer(int)}.
+	 */
+	void append(PointObject object, World world, int payloadLength) {
+		append(object.getId(), Double.doubleToLongBits(object.x()), Double.doubleToLongBits(object.y()),
+				Double.doubleToLongBits(object.getRot()), object.getLayer(), flagsOf(object), parentOf(object, world), payloadLength);
+	}
+
+	/**
+	 * @return true if the columns of the entry at an index are the recorded state of the object
+	 */
+	boolean matches(int index, PointObject object, World world) {
+		return ids[index] == object.getId()
+				&& xs[index] == Double.doubleToLongBits(object.x())
+				&& ys[index] == Double.doubleToLongBits(object.y())
+				&& rots[index] == Double.doubleToLongBits(object.getRot())
+				&& layers[index] == object.getLayer()
+				&& flags[index] == flagsOf(object)
+				&& parents[index] == parentOf(object, world);
+	}
+
+	static byte flagsOf(PointObject object) {
+		return object.isStatic() ? (byte) FLAG_STATIC : 0;
+	}
+
+	/**
+	 * @return the ID of the object's parent, 0 if it doesn't have one in the World
+	 */
+	static long parentOf(PointObject object, World world) {
+		PointObject parent = object.getParent();
+		return parent != null && parent.getOwningGroup() == world ? parent.getId() : 0;
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.apsis.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A growable little-endian buffer that one journal record is encoded into
+ * before it is handed to the writer thread, along with the varint
+ * and XOR encodings records use.<br>
+ * <br>
+ * Varints store 7 bits per byte, low bits first, with the high bit set on
+ * every byte but the last. Doubles that changed are stored as the XOR of
+ * their old and new bits: a byte holding the number of trailing zero bits
+ * of the XOR, then the rest of it as a varint, which is short when only
+ * the low bits of the mantissa changed.
+ *
+ * @author Cal Stephens
+ */
+final class RecordBuffer {
+
+	private ByteBuffer buffer;
+	int kind;
+	long tick;
+
+	RecordBuffer(int capacity) {
+		buffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Makes room for more bytes, keeping the ones already written.
+	 *
+	 * @param bytes the number of bytes about to be written
+	 * @return the underlying buffer, which may have been replaced
+	 */
+	ByteBuffer ensure(int bytes) {
+		if (buffer.remaining() < bytes) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes)).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.flip();
+			larger.put(buffer);
+			buffer = larger;
+		}
+		return buffer;
+	}
+
+	void clear() {
+		buffer.clear();
+	}
+
+	int size() {
+		return buffer.position();
+	}
+
+	/**
+	 * @return a view of the bytes written so far
+	 */
+	ByteBuffer written() {
+		ByteBuffer view = buffer.duplicate();
+		view.flip();
+		return view.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	void put(RecordBuffer other) {
+		ensure(other.size()).put(other.written());
+	}
+
+	void putByte(int value) {
+		ensure(1).put((byte) value);
+	}
+
+	void putLong(long value) {
+		ensure(8).putLong(value);
+	}
+
+	void putBytes(byte[] bytes) {
+		ensure(bytes.length).put(bytes);
+	}
+
+	void putVarint(long value) {
+		ByteBuffer out = ensure(10);
+		while ((value & ~0x7FL) != 0) {
+			out.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	void putZigzag(long value) {
+		putVarint((value << 1) ^ (value >> 63));
+	}
+
+	void putXor(long previous, long current) {
+		long xor = previous ^ current;
+		int zeros = Long.numberOfTrailingZeros(xor);
+		putByte(zeros);
+		putVarint(xor >>> zeros);
+	}
+
+	static long getVarint(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) return value;
+		}
+		throw new IllegalStateException("Malformed varint at " + (in.position() - 1));
+	}
+
+	static long getZigzag(ByteBuffer in) {
+		long value = getVarint(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static long getXor(ByteBuffer in, long previous) {
+		int zeros = in.get();
+		return previous ^ (getVarint(in) << zeros);
+	}
+
+}
@@ -0,0 +1,464 @@
+package com.apsis.journal;
+
+import com.apsis.event.Event;
+import com.apsis.snapshot.SnapshotCodec;
+import com.apsis.snapshot.SnapshotCodecs;
+import com.apsis.util.Point;
+import com.apsis.world.PointObject;
+import com.apsis.world.World;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Plays back a file written by a {@link Journal}.<br>
+ * <br>
+ * {@link Replay#simulate()} runs the World forward one recorded tick: the
+ * recorded input events are triggered, the World ticks, and the result is
+ * checked object by object, payloads included, against the recording. The
+ * first tick that doesn't match is where a desync started.
+ * {@link Replay#seek(long)} gets to any recorded tick by loading the keyframe
+ * before it and simulating the ticks in between. Neither waits between
+ * ticks, so both run as fast as the World can be updated.<br>
+ * <br>
+ * Objects are created by the same {@link SnapshotCodec}s that recorded them,
+ * so listeners and other behaviour come back with them. Things the Journal
+ * doesn't record, such as events waiting in the World's Scheduler and
+ * the number of the World's tick, start over from the tick that was sought.
+ *
+ * @author Cal Stephens
+ * @see Journal
+ */
+public class Replay implements Closeable {
+
+	private final FileChannel channel;
+	private final ByteBuffer data;
+	private final SnapshotCodecs objectCodecs;
+	private final EventCodecs eventCodecs;
+	private final long[] ticks;
+	private final int[] offsets;
+	private final int[] lengths;
+	private final boolean[] keyframes;
+	private final int count;
+	private final HashMap<Long, PointObject> objects = new HashMap<>();
+	private final ArrayList<PointObject> orphans = new ArrayList<>();
+	private final ArrayList<Long> orphanParents = new ArrayList<>();
+	private String[] names = new String[16];
+	private JournalState expected = new JournalState();
+	private JournalState scratch = new JournalState();
+	private World world = null;
+	private int record = -1;
+	private long expectedNextId = 0;
+	private long mismatches = 0;
+	private long firstMismatchId = 0;
+	private long firstMismatchTick = -1;
+	private final RecordBuffer probe = new RecordBuffer(256);
+
+	private Replay(FileChannel channel, ByteBuffer data, SnapshotCodecs objectCodecs, EventCodecs eventCodecs,
+			long[] ticks, int[] offsets, int[] lengths, boolean[] keyframes, int count) {
+		this.channel = channel;
+		this.data = data;
+		this.objectCodecs = objectCodecs;
+		this.eventCodecs = eventCodecs;
+		this.ticks = ticks;
+		this.offsets = offsets;
+		this.lengths = lengths;
+		this.keyframes = keyframes;
+		this.count = count;
+	}
+
+	/**
+	 * Maps a journal file and indexes its records. Records before the first
+	 * keyframe in the file are skipped, since their keyframe was overwritten.
+	 *
+	 * @param file the file written by a Journal
+	 * @param objectCodecs the codecs of the recorded objects
+	 * @param eventCodecs the codecs of the recorded input events
+	 * @return the replay
+	 * @throws IOException if the file can't be read or isn't a journal
+	 */
+	public static Replay open(Path file, SnapshotCodecs objectCodecs, EventCodecs eventCodecs) throws IOException {
+		if (objectCodecs == null || eventCodecs == null) throw new IllegalArgumentException("Codecs cannot be null.");
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			if (channel.size() < RingFile.HEADER_SIZE) throw new IOException(file + " is too short to be a journal.");
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			if (map.getInt(0) != RingFile.MAGIC) throw new IOException(file + " isn't a journal.");
+			if (map.getInt(4) != RingFile.VERSION) throw new IOException(file + " is version " + map.getInt(4) + ", expected " + RingFile.VERSION);
+			long capacity = map.getLong(8);
+			long tail = map.getLong(24);
+			long records = map.getLong(32);
+			if (capacity + RingFile.HEADER_SIZE > channel.size() || records < 0 || tail < 0 || tail > capacity) {
+				throw new IOException(file + " has a corrupt header.");
+			}
+			ByteBuffer data = map.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			long[] ticks = new long[(int) records];
+			int[] offsets = new int[(int) records];
+			int[] lengths = new int[(int) records];
+			boolean[] keyframes = new boolean[(int) records];
+			int count = 0;
+			long at = tail;
+			for (long i = 0; i < records; i++) {
+				if (capacity - at < RingFile.RECORD_HEADER_SIZE || data.getInt(RingFile.HEADER_SIZE + (int) at) == RingFile.WRAP) at = 0;
+				int offset = RingFile.HEADER_SIZE + (int) at;
+				int length = data.getInt(offset);
+				int kind = data.getInt(offset + 4);
+				long tick = data.getLong(offset + 8);
+				if (length < 0 || at + RingFile.RECORD_HEADER_SIZE + length > capacity) throw new IOException(file + " has a corrupt record at " + at);
+				if (count > 0 && tick <= ticks[count - 1]) throw new IOException(file + " has records out of order at " + at);
+				if (count > 0 || kind == RingFile.KIND_KEYFRAME) {
+					ticks[count] = tick;
+					offsets[count] = offset + RingFile.RECORD_HEADER_SIZE;
+					lengths[count] = length;
+					keyframes[count] = kind == RingFile.KIND_KEYFRAME;
+					count++;
+				}
+				at = RingFile.align(at + RingFile.RECORD_HEADER_SIZE + length);
+			}
+			return new Replay(channel, data, objectCodecs, eventCodecs, ticks, offsets, lengths, keyframes, count);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the number of records that can be replayed
+	 */
+	public int getRecordCount() {
+		return count;
+	}
+
+	/**
+	 * @return the first tick that can be sought to, -1 if there are none
+	 */
+	public long getFirstTick() {
+		return count == 0 ? -1 : ticks[0];
+	}
+
+	/**
+	 * @return the last recorded tick, -1 if there are none
+	 */
+	public long getLastTick() {
+		return count == 0 ? -1 : ticks[count - 1];
+	}
+
+	/**
+	 * @return the recorded tick the World is at, -1 before the first seek
+	 */
+	public long getTick() {
+		return record < 0 ? -1 : ticks[record];
+	}
+
+	/**
+	 * @return the World being replayed, null before the first seek
+	 */
+	public World getWorld() {
+		return world;
+	}
+
+	/**
+	 * Brings a new World to the end of a tick.
+	 *
+	 * @param tick a recorded tick
+	 * @return the new World
+	 * @see Replay#seek(long, com.apsis.world.World)
+	 */
+	public World seek(long tick) {
+		return seek(tick, new World());
+	}
+
+	/**
+	 * Brings an empty World to the end of a tick by loading the keyframe at or
+	 * before it and simulating the ticks after the keyframe. If the simulation
+	 * desyncs on the way, {@link Replay#getFirstMismatchTick()} says where.
+	 * Things that aren't objects, such as time-sliced groups, aren't recorded,
+	 * so they should be set up on the World first.
+	 *
+	 * @param tick a recorded tick
+	 * @param world the empty World to rebuild into, which the replay uses from then on
+	 * @return <code>return world;</code> for chaining
+	 */
+	public World seek(long tick, World world) {
+		if (world == null) throw new IllegalArgumentException("World cannot be null.");
+		if (world.size() > 0) throw new IllegalArgumentException("The World to seek into must be empty.");
+		int target = Arrays.binarySearch(ticks, 0, count, tick);
+		if (target < 0) throw new IllegalArgumentException("Tick " + tick + " isn't in the journal.");
+		int start = target;
+		while (!keyframes[start]) start--;
+		this.world = world;
+		apply(start, true);
+		world.setNextObjectId(expectedNextId);
+		record = start;
+		firstMismatchTick = -1;
+		while (record < target) {
+			simulate();
+		}
+		return world;
+	}
+
+	/**
+	 * Runs the World forward one tick: triggers the input events recorded for
+	 * the next tick, ticks the World and checks the result against the recording.
+	 *
+	 * @return true if every object matched the recording
+	 * @see Replay#getMismatchCount()
+	 */
+	public boolean simulate() {
+		if (world == null) throw new IllegalStateException("Seek to a tick before simulating.");
+		int next = record + 1;
+		if (next >= count) throw new IllegalStateException("There are no more recorded ticks.");
+		if (ticks[next] != ticks[record] + 1) throw new IllegalStateException("Tick " + (ticks[record] + 1) + " wasn't recorded.");
+		triggerInputs(next);
+		world.tick();
+		apply(next, false);
+		record = next;
+		boolean matched = verify();
+		if (!matched && firstMismatchTick < 0) firstMismatchTick = ticks[next];
+		return matched;
+	}
+
+	/**
+	 * Simulates ticks until the World reaches a tick.
+	 *
+	 * @param tick the tick to stop after
+	 * @return the first tick since the last seek that didn't match the recording, -1 if they all did
+	 */
+	public long simulateTo(long tick) {
+		if (tick > getLastTick()) throw new IllegalArgumentException("Tick " + tick + " is after the last recorded tick.");
+		while (getTick() < tick) {
+			simulate();
+		}
+		return firstMismatchTick;
+	}
+
+	/**
+	 * @return the first tick since the last seek that didn't match the recording, -1 if they all did
+	 */
+	public long getFirstMismatchTick() {
+		return firstMismatchTick;
+	}
+
+	/**
+	 * @return the number of objects that didn't match the recording after the last simulated tick,
+	 * counting objects that were missing or shouldn't have been there
+	 */
+	public long getMismatchCount() {
+		return mismatches;
+	}
+
+	/**
+	 * @return the lowest ID of an object that didn't match the recording after the last simulated tick,
+	 * 0 if they all matched
+	 */
+	public long getFirstMismatchId() {
+		return firstMismatchId;
+	}
+
+	private boolean verify() {
+		mismatches = 0;
+		firstMismatchId = 0;
+		synchronized (world) {
+			List<PointObject> content = world.getOrderedContent();
+			int i = 0, e = 0;
+			while (i < content.size() || e < expected.count) {
+				PointObject object = i < content.size() ? content.get(i) : null;
+				long id = object == null ? Long.MAX_VALUE : object.getId();
+				long expectedId = e < expected.count ? expected.ids[e] : Long.MAX_VALUE;
+				if (id == expectedId) {
+					if (!expected.matches(e, object, world) || !payloadMatches(e, object)) mismatch(id);
+					i++;
+					e++;
+				} else if (id < expectedId) {
+					mismatch(id);
+					i++;
+				} else {
+					mismatch(expectedId);
+					e++;
+				}
+			}
+			if (mismatches == 0 && world.getNextObjectId() != expectedNextId) mismatches = 1;
+		}
+		return mismatches == 0;
+	}
+
+	private boolean payloadMatches(int index, PointObject object) {
+		SnapshotCodec<?> codec = objectCodecs.get(object);
+		if (codec == null) return false;
+		SnapshotCodec<PointObject> objects = cast(codec);
+		int size = objects.getPayloadSize(object);
+		probe.clear();
+		ByteBuffer payload = probe.ensure(size).slice().order(ByteOrder.LITTLE_ENDIAN);
+		payload.limit(size);
+		objects.writePayload(object, payload);
+		payload.flip();
+		return expected.payloadEquals(index, payload);
+	}
+
+	private void mismatch(long id) {
+		if (mismatches++ == 0) firstMismatchId = id;
+	}
+
+	private void triggerInputs(int index) {
+		ByteBuffer in = body(index);
+		RecordBuffer.getVarint(in);
+		while (true) {
+			int op = in.get();
+			if (op == Journal.OP_NAME) {
+				readName(in);
+			} else if (op == Journal.OP_INPUT) {
+				String name = names[(int) RecordBuffer.getVarint(in)];
+				int version = (int) RecordBuffer.getVarint(in);
+				ByteBuffer payload = payload(in);
+				EventCodec<?> codec = eventCodecs.get(name);
+				if (codec == null) throw new IllegalStateException("No EventCodec is registered as " + name);
+				Event event = codec.read(payload, version);
+				world.getEventHandler().triggerEvent(event);
+			} else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Applies a record to the expected state and, for a keyframe being
+	 * loaded, creates its objects in the World.
+	 */
+	private void apply(int index, boolean toWorld) {
+		ByteBuffer in = body(index);
+		expectedNextId = RecordBuffer.getVarint(in);
+		if (keyframes[index]) expected.clear();
+		JournalState last = expected;
+		scratch.clear();
+		scratch.ensure(last.count);
+		int p = 0;
+		long id = 0;
+		while (true) {
+			int op = in.get();
+			if (op == Journal.OP_NAME) {
+				readName(in);
+				continue;
+			} else if (op == Journal.OP_INPUT) {
+				RecordBuffer.getVarint(in);
+				RecordBuffer.getVarint(in);
+				payload(in);
+				continue;
+			} else if (op == Journal.OP_END) {
+				while (p < last.count) scratch.append(last, p++);
+				break;
+			}
+			id += RecordBuffer.getVarint(in);
+			while (p < last.count && last.ids[p] < id) scratch.append(last, p++);
+			if (op == Journal.OP_ADD) {
+				add(in, id, toWorld);
+			} else {
+				if (p >= last.count || last.ids[p] != id) throw new IllegalStateException("Tick " + ticks[index] + " changes object " + id + ", which doesn't exist.");
+				if (op == Journal.OP_CHANGE) {
+					change(in, last, p);
+				} else if (op != Journal.OP_REMOVE) {
+					throw new IllegalStateException("Unknown entry " + op + " in tick " + ticks[index]);
+				}
+				p++;
+			}
+		}
+		if (toWorld) {
+			//parents are set once every object in the keyframe exists
+			for (int i = 0; i < orphans.size(); i++) {
+				orphans.get(i).setParent(objects.get(orphanParents.get(i)));
+			}
+			orphans.clear();
+			orphanParents.clear();
+			objects.clear();
+		}
+		expected = scratch;
+		scratch = last;
+	}
+
+	private void add(ByteBuffer in, long id, boolean toWorld) {
+		String name = names[(int) RecordBuffer.getVarint(in)];
+		int version = (int) RecordBuffer.getVarint(in);
+		long x = in.getLong();
+		long y = in.getLong();
+		long rot = in.getLong();
+		int layer = (int) RecordBuffer.getZigzag(in);
+		byte flags = in.get();
+		long parent = RecordBuffer.getVarint(in);
+		ByteBuffer payload = payload(in);
+		scratch.append(id, x, y, rot, layer, flags, parent, payload.duplicate());
+		if (!toWorld) return;
+		SnapshotCodec<?> codec = objectCodecs.get(name);
+		if (codec == null) throw new IllegalStateException("No SnapshotCodec is registered as " + name);
+		PointObject object = codec.create(Point.make(Double.longBitsToDouble(x), Double.longBitsToDouble(y)),
+				Double.longBitsToDouble(rot), payload, version);
+		object.setLayer(layer);
+		if ((flags & JournalState.FLAG_STATIC) != 0) object.setStatic(true);
+		world.restore(object, id);
+		objects.put(id, object);
+		if (parent != 0) {
+			orphans.add(object);
+			orphanParents.add(parent);
+		}
+	}
+
+	private void change(ByteBuffer in, JournalState last, int p) {
+		int mask = in.get();
+		long x = (mask & Journal.CHANGED_X) != 0 ? RecordBuffer.getXor(in, last.xs[p]) : last.xs[p];
+		long y = (mask & Journal.CHANGED_Y) != 0 ? RecordBuffer.getXor(in, last.ys[p]) : last.ys[p];
+		long rot = (mask & Journal.CHANGED_ROT) != 0 ? RecordBuffer.getXor(in, last.rots[p]) : last.rots[p];
+		int layer = (mask & Journal.CHANGED_LAYER) != 0 ? (int) RecordBuffer.getZigzag(in) : last.layers[p];
+		byte flags = (mask & Journal.CHANGED_FLAGS) != 0 ? in.get() : last.flags[p];
+		long parent = (mask & Journal.CHANGED_PARENT) != 0 ? RecordBuffer.getVarint(in) : last.parents[p];
+		ByteBuffer payload = (mask & Journal.CHANGED_PAYLOAD) != 0 ? payload(in)
+				: ByteBuffer.wrap(last.payloads, last.payloadStart(p), last.payloadLength(p));
+		scratch.append(last.ids[p], x, y, rot, layer, flags, parent, payload);
+	}
+
+	private void readName(ByteBuffer in) {
+		int index = (int) RecordBuffer.getVarint(in);
+		int length = (int) RecordBuffer.getVarint(in);
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		if (index >= names.length) names = Arrays.copyOf(names, Math.max(index + 1, names.length * 2));
+		names[index] = new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads a length and returns that many bytes as a little-endian buffer, skipping past them.
+	 */
+	private static ByteBuffer payload(ByteBuffer in) {
+		int size = (int) RecordBuffer.getVarint(in);
+		ByteBuffer payload = in.slice();
+		payload.limit(size);
+		in.position(in.position() + size);
+		return payload.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private ByteBuffer body(int index) {
+		ByteBuffer body = data.duplicate();
+		body.limit(offsets[index] + lengths[index]);
+		body.position(offsets[index]);
+		return body.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T cast(Object codec) {
+		return (T) codec;
+	}
+
+}
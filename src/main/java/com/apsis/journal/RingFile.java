@@ -0,0 +1,152 @@
+package com.apsis.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+/**
+ * A fixed-size, memory-mapped file that journal records are appended to,
+ * overwriting the oldest records once it is full.<br>
+ * <br>
+ * Layout, little-endian:
+ * <pre>
+ * header  (64 bytes)  magic "APSJ", version, capacity, head, tail, record count, last tick
+ * records             int length, int kind, long tick, body, padded to 8 bytes
+ * </pre>
+ * Offsets are relative to the end of the header. A record never wraps: if
+ * one doesn't fit before the end of the file, a length of {@link RingFile#WRAP}
+ * is written (when there is room for it) and the record goes at the start.
+ * The header is updated after each record is written, so a reader sees
+ * every record from <code>tail</code> up to <code>head</code> in full.
+ *
+ * @author Cal Stephens
+ */
+final class RingFile implements Closeable {
+
+	static final int MAGIC = 0x4A535041;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 64;
+	static final int RECORD_HEADER_SIZE = 16;
+	static final int WRAP = -1;
+
+	static final int KIND_TICK = 1;
+	static final int KIND_KEYFRAME = 2;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer map;
+	private final long capacity;
+	//offsets of the records in the file, oldest first
+	private final ArrayDeque<Long> records = new ArrayDeque<>();
+	private long head = 0;
+	private long tail = 0;
+	private long lastTick = -1;
+
+	private RingFile(FileChannel channel, MappedByteBuffer map, long capacity) {
+		this.channel = channel;
+		this.map = map;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Creates a ring file, replacing any file at the path.
+	 *
+	 * @param file the path of the file
+	 * @param capacity the number of bytes records can take up, rounded up to a multiple of 8
+	 * @return the ring file
+	 * @throws IOException if the file can't be created or mapped
+	 */
+	static RingFile create(Path file, long capacity) throws IOException {
+		capacity = align(capacity);
+		if (capacity < RECORD_HEADER_SIZE || capacity > Integer.MAX_VALUE - HEADER_SIZE) {
+			throw new IllegalArgumentException("Capacity must be between " + RECORD_HEADER_SIZE + " and " + (Integer.MAX_VALUE - HEADER_SIZE) + " bytes.");
+		}
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			RingFile ring = new RingFile(channel, map, capacity);
+			map.putInt(0, MAGIC);
+			map.putInt(4, VERSION);
+			map.putLong(8, capacity);
+			ring.writeHeader();
+			return ring;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Appends a record, dropping as many of the oldest records as it takes to make room.
+	 *
+	 * @param kind the kind of record
+	 * @param tick the tick the record is for
+	 * @param body the body of the record, from its position to its limit
+	 */
+	void append(int kind, long tick, ByteBuffer body) {
+		int length = body.remaining();
+		long size = align(RECORD_HEADER_SIZE + (long) length);
+		if (size > capacity) throw new IllegalStateException("A record of " + size + " bytes doesn't fit in a journal of " + capacity + " bytes.");
+		long start = head;
+		if (start + size > capacity) {
+			//the records between the head and the end are the oldest, so they go first
+			while (!records.isEmpty() && records.peekFirst() >= start) records.pollFirst();
+			if (capacity - start >= 4) map.putInt(HEADER_SIZE + (int) start, WRAP);
+			start = 0;
+		}
+		while (!records.isEmpty() && records.peekFirst() >= start && records.peekFirst() < start + size) {
+			records.pollFirst();
+		}
+		int at = HEADER_SIZE + (int) start;
+		map.putInt(at, length);
+		map.putInt(at + 4, kind);
+		map.putLong(at + 8, tick);
+		ByteBuffer out = map.duplicate();
+		out.position(at + RECORD_HEADER_SIZE);
+		out.put(body.duplicate());
+		records.addLast(start);
+		head = start + size;
+		tail = records.peekFirst();
+		lastTick = tick;
+		writeHeader();
+	}
+
+	private void writeHeader() {
+		map.putLong(16, head);
+		map.putLong(24, tail);
+		map.putLong(32, records.size());
+		map.putLong(40, lastTick);
+	}
+
+	/**
+	 * @return the number of records in the file
+	 */
+	int getRecordCount() {
+		return records.size();
+	}
+
+	/**
+	 * Writes the mapped pages to the disk.
+	 */
+	void flush() {
+		map.force();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		channel.close();
+	}
+
+	static long align(long value) {
+		return (value + 7) & ~7L;
+	}
+
+}
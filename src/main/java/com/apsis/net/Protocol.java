@@ -0,0 +1,111 @@
+package com.apsis.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The messages exchanged by a {@link ReplicationServer} and its
+ * {@link ReplicationClient}s, and the encodings they use.<br>
+ * <br>
+ * Every message is framed as a little-endian <code>int</code> length, counting
+ * the type byte and the body, followed by a type byte and the body:
+ * <pre>
+ * VIEW   client to server  double x, double y, double radius
+ * ACK    client to server  int seq
+ * HELLO  server to client  double scale                    (once per connection)
+ * STATE  server to client  int seq, int baseline seq (-1 for none), entries, END
+ * </pre>
+ * The entries of a STATE are the difference between the objects the client can
+ * see and the baseline state it acknowledged, in ascending order of ID, with
+ * IDs written as the difference from the previous entry's:
+ * <pre>
+ * NAME    varint index, varint length, UTF-8 codec name    (once per connection)
+ * ADD     varint id, varint name, varint version, zigzag x, y, rot, zigzag layer, varint size, payload
+ * CHANGE  varint id, byte mask, zigzag delta of each changed x, y, rot, layer
+ * REMOVE  varint id
+ * </pre>
+ * Positions are quantized to <code>1 / scale</code> units and rotations to
+ * 1/65536 of a turn, with changes in rotation taken the short way round.
+ *
+ * @author Cal Stephens
+ */
+final class Protocol {
+
+	static final int MSG_VIEW = 1;
+	static final int MSG_ACK = 2;
+	static final int MSG_STATE = 3;
+	static final int MSG_HELLO = 4;
+
+	static final int OP_END = 0;
+	static final int OP_NAME = 1;
+	static final int OP_ADD = 2;
+	static final int OP_CHANGE = 3;
+	static final int OP_REMOVE = 4;
+
+	static final int CHANGED_X = 1;
+	static final int CHANGED_Y = 1 << 1;
+	static final int CHANGED_ROT = 1 << 2;
+	static final int CHANGED_LAYER = 1 << 3;
+
+	/**
+	 * The number of states a server remembers sending and a client remembers
+	 * receiving; a baseline older than this is dropped and a full state sent
+	 */
+	static final int HISTORY = 16;
+
+	private Protocol() {
+	}
+
+	/**
+	 * Writes an unsigned varint to a little-endian buffer.
+	 */
+	static void putVarint(ByteBuffer out, long value) {
+		//most ID and position deltas take one or two bytes, written at once
+		if ((value & ~0x7FL) == 0) {
+			out.put((byte) value);
+			return;
+		}
+		if ((value & ~0x3FFFL) == 0) {
+			out.putShort((short) ((value & 0x7F) | 0x80 | (value >>> 7) << 8));
+			return;
+		}
+		while ((value & ~0x7FL) != 0) {
+			out.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	static void putZigzag(ByteBuffer out, long value) {
+		putVarint(out, (value << 1) ^ (value >> 63));
+	}
+
+	static long getVarint(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) return value;
+		}
+		throw new IllegalStateException("Malformed varint at " + (in.position() - 1));
+	}
+
+	static long getZigzag(ByteBuffer in) {
+		long value = getVarint(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static int quantize(double value, double scale) {
+		long q = Math.round(value * scale);
+		if (q > Integer.MAX_VALUE || q < Integer.MIN_VALUE) throw new IllegalStateException(value + " is too far out to replicate at a scale of " + scale);
+		return (int) q;
+	}
+
+	static int quantizeRotation(double degrees) {
+		return (int) Math.round(degrees / 360 * 65536) & 0xFFFF;
+	}
+
+	static double rotation(int quantized) {
+		return quantized * 360.0 / 65536;
+	}
+
+}
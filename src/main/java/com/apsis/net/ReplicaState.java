@@ -0,0 +1,113 @@
+package com.apsis.net;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The quantized state of the objects one client can see at one tick, in
+ * ascending order of ID. A server keeps the states it sent to diff against once
+ * they are acknowledged; a client keeps the states it received to decode
+ * against. Clients also keep each object's codec name and spawn payload, so an
+ * object that comes back into view can be created again.
+ *
+ * @author Cal Stephens
+ */
+final class ReplicaState {
+
+	int seq = -1;
+	int count = 0;
+	long[] ids = new long[64];
+	int[] xs = new int[64];
+	int[] ys = new int[64];
+	int[] rots = new int[64];
+	int[] names = new int[64];
+	int[] versions = new int[64];
+	int[] layers = new int[64];
+	int[] payloadEnds = new int[64];
+	byte[] payloads = new byte[0];
+	int payloadSize = 0;
+
+	void clear(int seq) {
+		this.seq = seq;
+		count = 0;
+		payloadSize = 0;
+	}
+
+	void ensure(int capacity) {
+		if (capacity <= ids.length) return;
+		capacity = Math.max(capacity, ids.length * 2);
+		ids = Arrays.copyOf(ids, capacity);
+		xs = Arrays.copyOf(xs, capacity);
+		ys = Arrays.copyOf(ys, capacity);
+		rots = Arrays.copyOf(rots, capacity);
+		names = Arrays.copyOf(names, capacity);
+		versions = Arrays.copyOf(versions, capacity);
+		layers = Arrays.copyOf(layers, capacity);
+		payloadEnds = Arrays.copyOf(payloadEnds, capacity);
+	}
+
+	/**
+	 * Appends an entry without a payload, as a server records it.
+	 */
+	void append(long id, int x, int y, int rot, int layer) {
+		ensure(count + 1);
+		ids[count] = id;
+		xs[count] = x;
+		ys[count] = y;
+		rots[count] = rot;
+		layers[count] = layer;
+		payloadEnds[count] = payloadSize;
+		count++;
+	}
+
+	/**
+	 * Appends an entry with the codec name and version it was spawned with,
+	 * reading its payload from <code>in</code>.
+	 */
+	void append(long id, int x, int y, int rot, int layer, int name, int version, ByteBuffer in, int length) {
+		reserve(length);
+		in.get(payloads, payloadSize, length);
+		payloadSize += length;
+		append(id, x, y, rot, layer);
+		names[count - 1] = name;
+		versions[count - 1] = version;
+	}
+
+	/**
+	 * Appends an entry of another state with a new position, rotation and layer.
+	 */
+	void append(ReplicaState other, int index, int x, int y, int rot, int layer) {
+		int start = other.payloadStart(index);
+		int length = other.payloadEnds[index] - start;
+		reserve(length);
+		System.arraycopy(other.payloads, start, payloads, payloadSize, length);
+		payloadSize += length;
+		append(other.ids[index], x, y, rot, layer);
+		names[count - 1] = other.names[index];
+		versions[count - 1] = other.versions[index];
+	}
+
+	private void reserve(int length) {
+		if (payloadSize + length > payloads.length) payloads = Arrays.copyOf(payloads, Math.max(payloadSize + length, payloads.length * 2));
+	}
+
+	/**
+	 * Copies another state, without payloads.
+	 */
+	void copyFrom(ReplicaState other) {
+		clear(other.seq);
+		ensure(other.count);
+		System.arraycopy(other.ids, 0, ids, 0, other.count);
+		System.arraycopy(other.xs, 0, xs, 0, other.count);
+		System.arraycopy(other.ys, 0, ys, 0, other.count);
+		System.arraycopy(other.rots, 0, rots, 0, other.count);
+		System.arraycopy(other.layers, 0, layers, 0, other.count);
+		Arrays.fill(payloadEnds, 0, other.count, 0);
+		count = other.count;
+	}
+
+	int payloadStart(int index) {
+		return index == 0 ? 0 : payloadEnds[index - 1];
+	}
+
+}
@@ -0,0 +1,307 @@
+package com.apsis.net;
+
+import com.apsis.snapshot.SnapshotCodec;
+import com.apsis.snapshot.SnapshotCodecs;
+import com.apsis.util.Point;
+import com.apsis.world.PointObject;
+import com.apsis.world.World;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Mirrors what a {@link ReplicationServer} sends into a local {@link World}.<br>
+ * <br>
+ * Each {@link #poll()} reads the states the server has sent, decodes each
+ * against the earlier state it was diffed with, acknowledges it, and then adds,
+ * moves and removes objects in the mirror World to match. Objects are created
+ * by the same {@link SnapshotCodec}s the server uses, registered under the same
+ * names, and put at their world position on the server, without parents.
+ * Positions and rotations are quantized, so they match the server's to within
+ * half a step.
+ *
+ * @author Cal Stephens
+ * @see ReplicationServer
+ */
+public class ReplicationClient implements Closeable {
+
+	private static final int READ_BUFFER_SIZE = 64 << 10;
+
+	private final World world;
+	private final SnapshotCodecs codecs;
+	private final SocketChannel channel;
+	private ByteBuffer in = ByteBuffer.allocateDirect(READ_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	//kept flipped, with what is left to write
+	private final ByteBuffer out = ByteBuffer.allocateDirect(256).order(ByteOrder.LITTLE_ENDIAN);
+	private final ReplicaState[] history = new ReplicaState[Protocol.HISTORY];
+	private final ReplicaState empty = new ReplicaState();
+	private ReplicaState current = empty;
+	private final ArrayList<SnapshotCodec<?>> names = new ArrayList<>();
+	//the mirrored objects, in the order of the current state, and the next
+	private PointObject[] mirrors = new PointObject[64];
+	private PointObject[] nextMirrors = new PointObject[64];
+	private double scale = 0;
+	private long statesReceived = 0;
+	private long bytesReceived = 0;
+
+	/**
+	 * Connects to a server.
+	 *
+	 * @param world the World to mirror the server's objects into
+	 * @param codecs the codecs to create objects with
+	 * @param address the address of the server
+	 * @throws IOException if the connection failed
+	 */
+	public ReplicationClient(World world, SnapshotCodecs codecs, InetSocketAddress address) throws IOException {
+		this.world = world;
+		this.codecs = codecs;
+		for (int i = 0; i < history.length; i++) {
+			history[i] = new ReplicaState();
+		}
+		out.flip();
+		channel = SocketChannel.open(address);
+		try {
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			channel.configureBlocking(false);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Asks the server for the objects in a circle, from the next state it sends.
+	 *
+	 * @param x the X of the center of the view
+	 * @param y the Y of the center of the view
+	 * @param radius the radius of the view, or 0 to receive nothing
+	 */
+	public void setView(double x, double y, double radius) throws IOException {
+		if (radius < 0) throw new IllegalArgumentException("The radius can't be negative");
+		out.compact();
+		out.putInt(1 + 24).put((byte) Protocol.MSG_VIEW).putDouble(x).putDouble(y).putDouble(radius);
+		out.flip();
+		channel.write(out);
+	}
+
+	/**
+	 * Reads and applies every state the server has sent so far, without waiting.
+	 *
+	 * @return the number of states applied
+	 * @throws EOFException if the server disconnected
+	 * @throws IOException if the connection failed
+	 */
+	public int poll() throws IOException {
+		if (out.hasRemaining()) channel.write(out);
+		int applied = 0;
+		while (true) {
+			int read = channel.read(in);
+			if (read < 0) throw new EOFException("The server disconnected");
+			bytesReceived += read;
+			in.flip();
+			while (in.remaining() >= 4) {
+				int length = in.getInt(in.position());
+				if (length < 1) throw new IllegalStateException("Malformed frame of " + length + " bytes");
+				if (in.remaining() < 4 + length) {
+					//a frame larger than the buffer can't be read until it grows
+					if (4 + length > in.capacity()) grow(4 + length);
+					break;
+				}
+				int end = in.position() + 4 + length;
+				in.getInt();
+				int type = in.get();
+				if (type == Protocol.MSG_STATE) {
+					int seq = decode(in);
+					acknowledge(seq);
+					applied++;
+				} else if (type == Protocol.MSG_HELLO) {
+					scale = in.getDouble();
+				} else {
+					throw new IllegalStateException("Unknown message type " + type);
+				}
+				if (in.position() != end) throw new IllegalStateException("Malformed message of type " + type);
+			}
+			in.compact();
+			if (read == 0) break;
+		}
+		if (out.hasRemaining()) channel.write(out);
+		return applied;
+	}
+
+	private void grow(int capacity) {
+		ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(capacity, in.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+		grown.put(in);
+		grown.flip();
+		in = grown;
+	}
+
+	private void acknowledge(int seq) {
+		out.compact();
+		out.putInt(1 + 4).put((byte) Protocol.MSG_ACK).putInt(seq);
+		out.flip();
+	}
+
+	/**
+	 * Decodes a state against its baseline, then applies it to the World.
+	 *
+	 * @return the sequence number of the state
+	 */
+	private int decode(ByteBuffer in) {
+		if (scale == 0) throw new IllegalStateException("A state arrived before the server's hello");
+		int seq = in.getInt();
+		int baselineSeq = in.getInt();
+		ReplicaState baseline = baselineSeq < 0 ? empty : history[baselineSeq % Protocol.HISTORY];
+		if (baseline.seq != baselineSeq) throw new IllegalStateException("State " + seq + " is based on unknown state " + baselineSeq);
+		ReplicaState next = history[seq % Protocol.HISTORY];
+		if (next == baseline || next == current) throw new IllegalStateException("State " + seq + " arrived out of order");
+		next.clear(seq);
+		long id = 0;
+		int b = 0;
+		for (int op = in.get(); op != Protocol.OP_END; op = in.get()) {
+			if (op == Protocol.OP_NAME) {
+				int index = (int) Protocol.getVarint(in);
+				byte[] bytes = new byte[(int) Protocol.getVarint(in)];
+				in.get(bytes);
+				String name = new String(bytes, StandardCharsets.UTF_8);
+				SnapshotCodec<?> codec = codecs.get(name);
+				if (codec == null) throw new IllegalStateException("No codec is registered for " + name);
+				while (names.size() <= index) {
+					names.add(null);
+				}
+				names.set(index, codec);
+				continue;
+			}
+			id += Protocol.getVarint(in);
+			for (; b < baseline.count && baseline.ids[b] < id; b++) {
+				next.append(baseline, b, baseline.xs[b], baseline.ys[b], baseline.rots[b], baseline.layers[b]);
+			}
+			if (op == Protocol.OP_ADD) {
+				int name = (int) Protocol.getVarint(in);
+				int version = (int) Protocol.getVarint(in);
+				int x = (int) Protocol.getZigzag(in), y = (int) Protocol.getZigzag(in);
+				int rot = (int) Protocol.getZigzag(in), layer = (int) Protocol.getZigzag(in);
+				int size = (int) Protocol.getVarint(in);
+				next.append(id, x, y, rot, layer, name, version, in, size);
+				continue;
+			}
+			if (b == baseline.count || baseline.ids[b] != id) throw new IllegalStateException("State " + seq + " changes unknown object " + id);
+			if (op == Protocol.OP_CHANGE) {
+				int mask = in.get();
+				int x = baseline.xs[b], y = baseline.ys[b], rot = baseline.rots[b], layer = baseline.layers[b];
+				if ((mask & Protocol.CHANGED_X) != 0) x += (int) Protocol.getZigzag(in);
+				if ((mask & Protocol.CHANGED_Y) != 0) y += (int) Protocol.getZigzag(in);
+				if ((mask & Protocol.CHANGED_ROT) != 0) rot = (rot + (int) Protocol.getZigzag(in)) & 0xFFFF;
+				if ((mask & Protocol.CHANGED_LAYER) != 0) layer += (int) Protocol.getZigzag(in);
+				next.append(baseline, b, x, y, rot, layer);
+			} else if (op != Protocol.OP_REMOVE) {
+				throw new IllegalStateException("Unknown entry " + op + " in state " + seq);
+			}
+			b++;
+		}
+		for (; b < baseline.count; b++) {
+			next.append(baseline, b, baseline.xs[b], baseline.ys[b], baseline.rots[b], baseline.layers[b]);
+		}
+		apply(next);
+		statesReceived++;
+		return seq;
+	}
+
+	/**
+	 * Changes the World from the current state to the next.
+	 */
+	private void apply(ReplicaState next) {
+		if (nextMirrors.length < next.count) nextMirrors = new PointObject[Math.max(next.count, nextMirrors.length * 2)];
+		int c = 0;
+		for (int n = 0; n < next.count; n++) {
+			long id = next.ids[n];
+			for (; c < current.count && current.ids[c] < id; c++) {
+				world.remove(mirrors[c]);
+			}
+			if (c < current.count && current.ids[c] == id) {
+				PointObject object = nextMirrors[n] = mirrors[c];
+				if (next.xs[n] != current.xs[c] || next.ys[n] != current.ys[c]) {
+					object.moveTo(Point.make(next.xs[n] / scale, next.ys[n] / scale));
+				}
+				if (next.rots[n] != current.rots[c]) object.setRot(Protocol.rotation(next.rots[n]));
+				if (next.layers[n] != current.layers[c]) object.setLayer(next.layers[n]);
+				c++;
+			} else {
+				PointObject object = nextMirrors[n] = create(next, n);
+				world.add(object);
+			}
+		}
+		for (; c < current.count; c++) {
+			world.remove(mirrors[c]);
+		}
+		Arrays.fill(mirrors, 0, current.count, null);
+		PointObject[] swap = mirrors;
+		mirrors = nextMirrors;
+		nextMirrors = swap;
+		current = next;
+	}
+
+	private PointObject create(ReplicaState state, int index) {
+		SnapshotCodec<?> codec = state.names[index] < names.size() ? names.get(state.names[index]) : null;
+		if (codec == null) throw new IllegalStateException("Object " + state.ids[index] + " has an unknown codec name");
+		int start = state.payloadStart(index);
+		ByteBuffer payload = ByteBuffer.wrap(state.payloads, start, state.payloadEnds[index] - start).slice().order(ByteOrder.LITTLE_ENDIAN);
+		PointObject object = codec.create(Point.make(state.xs[index] / scale, state.ys[index] / scale),
+				Protocol.rotation(state.rots[index]), payload, state.versions[index]);
+		object.setLayer(state.layers[index]);
+		return object;
+	}
+
+	/**
+	 * @param id the ID of an object on the server
+	 * @return the mirror of the object, or null if it isn't in view
+	 */
+	public PointObject getObject(long id) {
+		int index = Arrays.binarySearch(current.ids, 0, current.count, id);
+		return index < 0 ? null : mirrors[index];
+	}
+
+	/**
+	 * @return the number of objects in view
+	 */
+	public int getObjectCount() {
+		return current.count;
+	}
+
+	/**
+	 * @return the step positions are quantized to, in world units
+	 */
+	public double getPrecision() {
+		return scale == 0 ? 0 : 1 / scale;
+	}
+
+	/**
+	 * @return the number of states applied
+	 */
+	public long getStatesReceived() {
+		return statesReceived;
+	}
+
+	/**
+	 * @return the number of bytes read from the server
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	/**
+	 * Disconnects, leaving the mirrored objects in the World.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
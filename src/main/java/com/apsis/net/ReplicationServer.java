@@ -0,0 +1,636 @@
+package com.apsis.net;
+
+import com.apsis.snapshot.SnapshotCodec;
+import com.apsis.snapshot.SnapshotCodecs;
+import com.apsis.world.PointObject;
+import com.apsis.world.TickObserver;
+import com.apsis.world.World;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Replicates a {@link World} to {@link ReplicationClient}s over non-blocking
+ * sockets.<br>
+ * <br>
+ * Each client sets a view, a circle in world coordinates, and at the end of
+ * every tick is sent the objects in it: their world position, rotation and
+ * layer, quantized (see {@link Protocol}) and written as a diff against the
+ * last state the client acknowledged, so objects that don't move cost nothing
+ * and objects that do cost a few bytes. Objects that come into view are sent
+ * with the payload of their {@link SnapshotCodec}, so the client can create
+ * them; later changes to the payload aren't replicated. Objects without a codec
+ * aren't replicated at all.<br>
+ * <br>
+ * Each tick the World is quantized once, under its lock, and put in a uniform
+ * grid to find what each view contains. States are packed into a buffer per
+ * client that is kept between ticks, so once the buffers have grown to fit, a
+ * tick allocates nothing. A client that hasn't read its last state is skipped
+ * until it has, and one that hasn't acknowledged a state in
+ * {@value Protocol#HISTORY} sends is sent everything again. Everything runs on
+ * the ticking thread.
+ *
+ * @author Cal Stephens
+ * @see ReplicationClient
+ */
+public class ReplicationServer implements TickObserver, Closeable {
+
+	private static final int READ_BUFFER_SIZE = 256;
+	private static final int WRITE_BUFFER_SIZE = 16 << 10;
+	private static final int MAX_ENTRY_SIZE = 64;
+	private static final int MAX_CELLS = 1 << 20;
+
+	private final World world;
+	private final SnapshotCodecs codecs;
+	private final ServerSocketChannel server;
+	//only watches for clients connecting, since accepting allocates even when there are none
+	private final Selector acceptor;
+	private final ArrayList<Session> sessions = new ArrayList<>();
+	private final HashMap<SnapshotCodec<?>, Integer> nameIndices = new HashMap<>();
+	private final ArrayList<byte[]> names = new ArrayList<>();
+	private double scale = 16;
+	private double cellSize = 128;
+
+	//the replicated objects this tick, in order of ID
+	private int count = 0;
+	private PointObject[] objects = new PointObject[256];
+	private SnapshotCodec<?>[] objectCodecs = new SnapshotCodec<?>[256];
+	private int[] objectNames = new int[256];
+	private double[] worldXs = new double[256];
+	private double[] worldYs = new double[256];
+	private final ReplicaState state = new ReplicaState();
+
+	//a uniform grid of the objects, as indices sorted by cell
+	private double gridX;
+	private double gridY;
+	private double gridCell;
+	private int gridWidth;
+	private int gridHeight;
+	private int[] cellStarts = new int[2];
+	private int[] cellItems = new int[256];
+
+	private long ticks = 0;
+	private long statesSent = 0;
+	private long statesSkipped = 0;
+	private long bytesSent = 0;
+	private long lastTickNanos = 0;
+	private long totalTickNanos = 0;
+
+	/**
+	 * Starts listening. Clients are accepted and sent states once the server
+	 * is added to the World as a {@link TickObserver}.
+	 *
+	 * @param world the World to replicate
+	 * @param codecs the codecs of the objects to replicate
+	 * @param address the address to listen on, with port 0 for any free port
+	 * @throws IOException if the socket couldn't be bound
+	 */
+	public ReplicationServer(World world, SnapshotCodecs codecs, InetSocketAddress address) throws IOException {
+		this.world = world;
+		this.codecs = codecs;
+		acceptor = Selector.open();
+		server = ServerSocketChannel.open();
+		try {
+			server.bind(address, 1024);
+			server.configureBlocking(false);
+			server.register(acceptor, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			server.close();
+			acceptor.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the address the server is listening on
+	 */
+	public InetSocketAddress getAddress() throws IOException {
+		return (InetSocketAddress) server.getLocalAddress();
+	}
+
+	/**
+	 * @param scale the quantization steps per world unit of positions, 16 by
+	 * default; set before any client connects
+	 */
+	public void setScale(double scale) {
+		if (!(scale > 0)) throw new IllegalArgumentException("The scale must be positive");
+		if (!sessions.isEmpty()) throw new IllegalStateException("The scale can't change once clients have connected");
+		this.scale = scale;
+	}
+
+	/**
+	 * @param cellSize the size of the grid cells used to find what is in
+	 * each view, which works best at about the radius of a view; 128 by default
+	 */
+	public void setCellSize(double cellSize) {
+		if (!(cellSize > 0)) throw new IllegalArgumentException("The cell size must be positive");
+		this.cellSize = cellSize;
+	}
+
+	@Override
+	public void tickEnded(World world, long tick) {
+		update();
+	}
+
+	/**
+	 * Accepts clients, reads their views and acknowledgements, and sends each
+	 * client with a view the objects in it. Called at the end of every tick.
+	 */
+	public void update() {
+		long start = System.nanoTime();
+		acceptClients();
+		//every client acknowledges every state, so each is read rather than selected,
+		//which also saves the Selector boxing the descriptor of every ready key
+		for (int i = 0; i < sessions.size(); i++) {
+			read(sessions.get(i));
+		}
+		capture();
+		for (int i = 0; i < sessions.size(); i++) {
+			Session session = sessions.get(i);
+			if (session.out.hasRemaining()) flush(session);
+			if (session.closed) continue;
+			if (!session.hasView) continue;
+			if (session.out.hasRemaining()) {
+				statesSkipped++;
+				continue;
+			}
+			pack(session);
+			flush(session);
+		}
+		for (int i = sessions.size() - 1; i >= 0; i--) {
+			if (sessions.get(i).closed) sessions.remove(i);
+		}
+		lastTickNanos = System.nanoTime() - start;
+		totalTickNanos += lastTickNanos;
+		ticks++;
+	}
+
+	/**
+	 * Quantizes every object with a codec, then sorts them into the grid.
+	 */
+	private void capture() {
+		state.clear(0);
+		count = 0;
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		synchronized (world) {
+			List<PointObject> content = world.getOrderedContent();
+			ensure(content.size());
+			for (int i = 0; i < content.size(); i++) {
+				PointObject object = content.get(i);
+				SnapshotCodec<?> codec = codecs.get(object);
+				if (codec == null) continue;
+				double x = object.getWorldX(), y = object.getWorldY();
+				objects[count] = object;
+				objectCodecs[count] = codec;
+				objectNames[count] = nameIndex(codec);
+				worldXs[count] = x;
+				worldYs[count] = y;
+				state.append(object.getId(), Protocol.quantize(x, scale), Protocol.quantize(y, scale),
+						Protocol.quantizeRotation(object.getWorldRot()), object.getLayer());
+				minX = Math.min(minX, x);
+				minY = Math.min(minY, y);
+				maxX = Math.max(maxX, x);
+				maxY = Math.max(maxY, y);
+				count++;
+			}
+		}
+		if (count == 0) {
+			gridWidth = gridHeight = 0;
+			return;
+		}
+		gridX = minX;
+		gridY = minY;
+		gridCell = cellSize;
+		while ((Math.floor((maxX - minX) / gridCell) + 1) * (Math.floor((maxY - minY) / gridCell) + 1) > MAX_CELLS) {
+			gridCell *= 2;
+		}
+		gridWidth = (int) ((maxX - minX) / gridCell) + 1;
+		gridHeight = (int) ((maxY - minY) / gridCell) + 1;
+		int cells = gridWidth * gridHeight;
+		if (cellStarts.length < cells + 1) cellStarts = new int[Math.max(cells + 1, cellStarts.length * 2)];
+		Arrays.fill(cellStarts, 0, cells + 1, 0);
+		for (int i = 0; i < count; i++) {
+			cellStarts[cell(i) + 1]++;
+		}
+		for (int c = 0; c < cells; c++) {
+			cellStarts[c + 1] += cellStarts[c];
+		}
+		//filled from the back, so each cell's items stay in order
+		for (int i = count - 1; i >= 0; i--) {
+			cellItems[--cellStarts[cell(i) + 1]] = i;
+		}
+		//each cell's end was moved back to its start, one slot along; shift them into place
+		System.arraycopy(cellStarts, 1, cellStarts, 0, cells);
+		cellStarts[cells] = count;
+	}
+
+	private int cell(int i) {
+		int cx = (int) ((worldXs[i] - gridX) / gridCell);
+		int cy = (int) ((worldYs[i] - gridY) / gridCell);
+		return cy * gridWidth + cx;
+	}
+
+	private void ensure(int capacity) {
+		if (capacity <= objects.length) return;
+		capacity = Math.max(capacity, objects.length * 2);
+		objects = new PointObject[capacity];
+		objectCodecs = new SnapshotCodec<?>[capacity];
+		objectNames = new int[capacity];
+		worldXs = new double[capacity];
+		worldYs = new double[capacity];
+		cellItems = new int[capacity];
+	}
+
+	private int nameIndex(SnapshotCodec<?> codec) {
+		Integer index = nameIndices.get(codec);
+		if (index != null) return index;
+		names.add(codecs.getName(codec).getBytes(StandardCharsets.UTF_8));
+		nameIndices.put(codec, names.size() - 1);
+		return names.size() - 1;
+	}
+
+	/**
+	 * Collects the indices of the objects in a session's view, in order of ID.
+	 *
+	 * @return the number of objects in view
+	 */
+	private int query(Session session) {
+		if (gridWidth == 0) return 0;
+		double r = session.viewRadius, r2 = r * r;
+		int x0 = (int) Math.max(0, Math.floor((session.viewX - r - gridX) / gridCell));
+		int y0 = (int) Math.max(0, Math.floor((session.viewY - r - gridY) / gridCell));
+		int x1 = (int) Math.min(gridWidth - 1, Math.floor((session.viewX + r - gridX) / gridCell));
+		int y1 = (int) Math.min(gridHeight - 1, Math.floor((session.viewY + r - gridY) / gridCell));
+		int found = 0, runCount = 0;
+		int[] visible = session.visible;
+		for (int cy = y0; cy <= y1; cy++) {
+			for (int cx = x0; cx <= x1; cx++) {
+				int c = cy * gridWidth + cx;
+				int runStart = found;
+				for (int k = cellStarts[c]; k < cellStarts[c + 1]; k++) {
+					int i = cellItems[k];
+					double dx = worldXs[i] - session.viewX, dy = worldYs[i] - session.viewY;
+					if (dx * dx + dy * dy > r2) continue;
+					if (found == visible.length) {
+						visible = session.visible = Arrays.copyOf(visible, visible.length * 2);
+						session.merged = new int[visible.length];
+					}
+					visible[found++] = i;
+				}
+				if (found == runStart) continue;
+				if (runCount + 2 > session.runs.length) session.runs = Arrays.copyOf(session.runs, session.runs.length * 2);
+				session.runs[runCount++] = runStart;
+			}
+		}
+		session.runs[runCount] = found;
+		mergeRuns(session, runCount);
+		return found;
+	}
+
+	/**
+	 * Sorts a session's visible objects, collected as one ascending run per
+	 * cell, by merging the runs in pairs until one is left. Arrays.sort finds
+	 * the runs too, but allocates to merge them.
+	 */
+	private static void mergeRuns(Session session, int runCount) {
+		int[] runs = session.runs;
+		int[] from = session.visible, to = session.merged;
+		while (runCount > 1) {
+			int merged = 0;
+			for (int r = 0; r < runCount; r += 2) {
+				int a = runs[r], aEnd = runs[r + 1];
+				int b = aEnd, bEnd = r + 2 <= runCount ? runs[r + 2] : aEnd;
+				int o = a;
+				while (a < aEnd && b < bEnd) {
+					to[o++] = from[a] < from[b] ? from[a++] : from[b++];
+				}
+				System.arraycopy(from, a, to, o, aEnd - a);
+				o += aEnd - a;
+				System.arraycopy(from, b, to, o, bEnd - b);
+				runs[merged++] = runs[r];
+			}
+			runs[merged] = runs[runCount];
+			runCount = merged;
+			int[] swap = from;
+			from = to;
+			to = swap;
+		}
+		session.visible = from;
+		session.merged = to;
+	}
+
+	/**
+	 * Packs the next state of a session, as a diff of what it can see against
+	 * the last state it acknowledged.
+	 */
+	private void pack(Session session) {
+		int visible = query(session);
+		int seq = session.nextSeq++;
+		ReplicaState baseline = session.baseline;
+		if (baseline.seq < 0 || seq - baseline.seq >= Protocol.HISTORY) baseline.clear(-1);
+		ReplicaState sent = session.history[seq % Protocol.HISTORY];
+		sent.clear(seq);
+		ByteBuffer out = session.out;
+		out.clear();
+		out.putInt(0).put((byte) Protocol.MSG_STATE).putInt(seq).putInt(baseline.seq);
+		long lastId = 0;
+		int b = 0;
+		for (int v = 0; v < visible; v++) {
+			int i = session.visible[v];
+			long id = state.ids[i];
+			while (b < baseline.count && baseline.ids[b] < id) {
+				out = reserve(session, 0);
+				out.put((byte) Protocol.OP_REMOVE);
+				Protocol.putVarint(out, baseline.ids[b] - lastId);
+				lastId = baseline.ids[b++];
+			}
+			int x = state.xs[i], y = state.ys[i], rot = state.rots[i], layer = state.layers[i];
+			if (b < baseline.count && baseline.ids[b] == id) {
+				int mask = 0;
+				if (x != baseline.xs[b]) mask |= Protocol.CHANGED_X;
+				if (y != baseline.ys[b]) mask |= Protocol.CHANGED_Y;
+				if (rot != baseline.rots[b]) mask |= Protocol.CHANGED_ROT;
+				if (layer != baseline.layers[b]) mask |= Protocol.CHANGED_LAYER;
+				if (mask != 0) {
+					out = reserve(session, 0);
+					out.put((byte) Protocol.OP_CHANGE);
+					Protocol.putVarint(out, id - lastId);
+					out.put((byte) mask);
+					if ((mask & Protocol.CHANGED_X) != 0) Protocol.putZigzag(out, x - baseline.xs[b]);
+					if ((mask & Protocol.CHANGED_Y) != 0) Protocol.putZigzag(out, y - baseline.ys[b]);
+					if ((mask & Protocol.CHANGED_ROT) != 0) Protocol.putZigzag(out, (short) (rot - baseline.rots[b]));
+					if ((mask & Protocol.CHANGED_LAYER) != 0) Protocol.putZigzag(out, layer - baseline.layers[b]);
+					lastId = id;
+				}
+				b++;
+			} else {
+				SnapshotCodec<PointObject> codec = cast(objectCodecs[i]);
+				int name = objectNames[i];
+				int size = codec.getPayloadSize(objects[i]);
+				if (!session.sentName(name)) {
+					byte[] bytes = names.get(name);
+					out = reserve(session, bytes.length);
+					out.put((byte) Protocol.OP_NAME);
+					Protocol.putVarint(out, name);
+					Protocol.putVarint(out, bytes.length);
+					out.put(bytes);
+				}
+				out = reserve(session, size);
+				out.put((byte) Protocol.OP_ADD);
+				Protocol.putVarint(out, id - lastId);
+				Protocol.putVarint(out, name);
+				Protocol.putVarint(out, codec.getVersion());
+				Protocol.putZigzag(out, x);
+				Protocol.putZigzag(out, y);
+				Protocol.putZigzag(out, rot);
+				Protocol.putZigzag(out, layer);
+				Protocol.putVarint(out, size);
+				int payloadStart = out.position();
+				codec.writePayload(objects[i], out);
+				if (out.position() - payloadStart != size) {
+					throw new IllegalStateException("The codec for " + objects[i] + " wrote " + (out.position() - payloadStart)
+							+ " bytes instead of the " + size + " it reported");
+				}
+				lastId = id;
+			}
+			sent.append(id, x, y, rot, layer);
+		}
+		while (b < baseline.count) {
+			out = reserve(session, 0);
+			out.put((byte) Protocol.OP_REMOVE);
+			Protocol.putVarint(out, baseline.ids[b] - lastId);
+			lastId = baseline.ids[b++];
+		}
+		out.put((byte) Protocol.OP_END);
+		out.putInt(0, out.position() - 4);
+		out.flip();
+		statesSent++;
+	}
+
+	/**
+	 * Makes room in a session's buffer for an entry with <code>extra</code>
+	 * bytes of payload or name, growing it if necessary.
+	 *
+	 * @return the session's buffer
+	 */
+	private ByteBuffer reserve(Session session, int extra) {
+		ByteBuffer out = session.out;
+		//one byte is always left for the end
+		if (out.remaining() > MAX_ENTRY_SIZE + extra) return out;
+		ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(out.capacity() * 2, out.position() + MAX_ENTRY_SIZE * 2 + extra))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		out.flip();
+		grown.put(out);
+		return session.out = grown;
+	}
+
+	private void acceptClients() {
+		try {
+			if (acceptor.selectNow() == 0) return;
+			acceptor.selectedKeys().clear();
+			SocketChannel channel;
+			while ((channel = server.accept()) != null) {
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				Session session = new Session(channel);
+				session.out.putInt(1 + 8).put((byte) Protocol.MSG_HELLO).putDouble(scale);
+				session.out.flip();
+				sessions.add(session);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Couldn't accept a client", e);
+		}
+	}
+
+	/**
+	 * Reads the views and acknowledgements a client has sent.
+	 */
+	private void read(Session session) {
+		if (session.closed) return;
+		ByteBuffer in = session.in;
+		try {
+			if (session.channel.read(in) < 0) {
+				close(session);
+				return;
+			}
+		} catch (IOException e) {
+			close(session);
+			return;
+		}
+		in.flip();
+		while (in.remaining() >= 4) {
+			int length = in.getInt(in.position());
+			if (length < 1 || length > in.capacity() - 4) {
+				close(session);
+				return;
+			}
+			if (in.remaining() < 4 + length) break;
+			int end = in.position() + 4 + length;
+			in.getInt();
+			int type = in.get();
+			if (type == Protocol.MSG_VIEW && length == 25) {
+				session.viewX = in.getDouble();
+				session.viewY = in.getDouble();
+				session.viewRadius = in.getDouble();
+				session.hasView = session.viewRadius > 0;
+			} else if (type == Protocol.MSG_ACK && length == 5) {
+				acknowledge(session, in.getInt());
+			} else {
+				close(session);
+				return;
+			}
+			in.position(end);
+		}
+		in.compact();
+	}
+
+	/**
+	 * Makes an acknowledged state the baseline of the next, if it is still
+	 * remembered and newer than the current baseline.
+	 */
+	private void acknowledge(Session session, int seq) {
+		if (seq <= session.baseline.seq || seq >= session.nextSeq) return;
+		ReplicaState sent = session.history[seq % Protocol.HISTORY];
+		if (sent.seq == seq) session.baseline.copyFrom(sent);
+	}
+
+	private void flush(Session session) {
+		try {
+			bytesSent += session.channel.write(session.out);
+		} catch (IOException e) {
+			close(session);
+		}
+	}
+
+	private void close(Session session) {
+		session.closed = true;
+		session.out.clear().flip();
+		try {
+			session.channel.close();
+		} catch (IOException e) {
+			//already closed
+		}
+	}
+
+	/**
+	 * Disconnects every client and stops listening.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (Session session : sessions) {
+			close(session);
+		}
+		sessions.clear();
+		server.close();
+		acceptor.close();
+	}
+
+	/**
+	 * @return the number of connected clients
+	 */
+	public int getClientCount() {
+		return sessions.size();
+	}
+
+	/**
+	 * @return the number of objects replicated on the last tick
+	 */
+	public int getObjectCount() {
+		return count;
+	}
+
+	/**
+	 * @return the number of states sent to clients
+	 */
+	public long getStatesSent() {
+		return statesSent;
+	}
+
+	/**
+	 * @return the number of states not sent because a client hadn't read the last one
+	 */
+	public long getStatesSkipped() {
+		return statesSkipped;
+	}
+
+	/**
+	 * @return the number of bytes written to clients
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	/**
+	 * @return the time the last tick's {@link #update()} took, in nanoseconds
+	 */
+	public long getLastTickNanos() {
+		return lastTickNanos;
+	}
+
+	/**
+	 * @return the average time an {@link #update()} took, in nanoseconds
+	 */
+	public long getAverageTickNanos() {
+		return ticks == 0 ? 0 : totalTickNanos / ticks;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T cast(Object codec) {
+		return (T) codec;
+	}
+
+	/**
+	 * A connected client: its view, the states it was sent, and its buffers.
+	 */
+	private static class Session {
+
+		private final SocketChannel channel;
+		private final ByteBuffer in = ByteBuffer.allocateDirect(READ_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		//kept flipped, with what is left to write
+		private ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		private final ReplicaState[] history = new ReplicaState[Protocol.HISTORY];
+		private final ReplicaState baseline = new ReplicaState();
+		private int[] visible = new int[256];
+		private int[] merged = new int[256];
+		private int[] runs = new int[16];
+		private boolean[] namesSent = new boolean[8];
+		private int nextSeq = 0;
+		private boolean hasView = false;
+		private double viewX;
+		private double viewY;
+		private double viewRadius;
+		private boolean closed = false;
+
+		private Session(SocketChannel channel) {
+			this.channel = channel;
+			for (int i = 0; i < history.length; i++) {
+				history[i] = new ReplicaState();
+			}
+		}
+
+		/**
+		 * @return whether the name was sent before, marking it as sent
+		 */
+		private boolean sentName(int name) {
+			if (name >= namesSent.length) namesSent = Arrays.copyOf(namesSent, Math.max(name + 1, namesSent.length * 2));
+			boolean sent = namesSent[name];
+			namesSent[name] = true;
+			return sent;
+		}
+
+	}
+
+}
@@ -0,0 +1,207 @@
+package com.apsis.particle;
+
+import com.apsis.world.PointObject;
+
+/**
+ * Spawns particles into a {@link ParticleSystem} at a steady rate, or in
+ * bursts. Each particle leaves the emitter in a random direction within the
+ * emitter's spread, at a random speed and with a random lifetime within the
+ * emitter's ranges.<br>
+ * <br>
+ * An emitter can follow a {@link PointObject}, in which case it emits from
+ * the object's world position, offset by the emitter's own position.
+ *
+ * @author Cal Stephens
+ * @see ParticleSystem#addEmitter(com.apsis.particle.ParticleEmitter)
+ */
+public class ParticleEmitter {
+
+	private double x;
+	private double y;
+	private PointObject following = null;
+	private float rate = 0;
+	private float owed = 0;
+	private int burst = 0;
+	private float direction = 0;
+	private float spread = 360;
+	private float minSpeed = 0;
+	private float maxSpeed = 0;
+	private float minLife = 1;
+	private float maxLife = 1;
+	private int color = 0xFFFFFFFF;
+	private boolean enabled = true;
+
+	/**
+	 * @param x the X to emit from
+	 * @param y the Y to emit from
+	 */
+	public ParticleEmitter(double x, double y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Spawns the particles owed since the last update.
+	 *
+	 * @param system the system to spawn into
+	 * @param timeStep the seconds since the last update
+	 */
+	void emit(ParticleSystem system, float timeStep) {
+		if (!enabled) {
+			burst = 0;
+			return;
+		}
+		owed += rate * timeStep;
+		int count = (int) owed + burst;
+		owed -= (int) owed;
+		burst = 0;
+		if (count == 0) return;
+		float originX = (float) x, originY = (float) y;
+		if (following != null) {
+			originX += (float) following.getWorldX();
+			originY += (float) following.getWorldY();
+		}
+		for (int i = 0; i < count; i++) {
+			double angle = Math.toRadians(direction + (system.nextFloat() - 0.5f) * spread);
+			float speed = minSpeed + system.nextFloat() * (maxSpeed - minSpeed);
+			float life = minLife + system.nextFloat() * (maxLife - minLife);
+			system.emit(originX, originY, (float) Math.cos(angle) * speed, (float) Math.sin(angle) * speed, life, color);
+		}
+	}
+
+	/**
+	 * Spawns a number of particles on the next update, on top of the steady rate.
+	 *
+	 * @param count the number of particles
+	 */
+	public void burst(int count) {
+		if (count < 0) throw new IllegalArgumentException("Count can't be negative");
+		burst += count;
+	}
+
+	/**
+	 * @param x the X to emit from, relative to the followed object if there is one
+	 * @param y the Y to emit from, relative to the followed object if there is one
+	 */
+	public void setPosition(double x, double y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * @param object the object to emit from, or null to emit from the emitter's own position
+	 */
+	public void follow(PointObject object) {
+		this.following = object;
+	}
+
+	/**
+	 * @return the object the emitter emits from, or null if it isn't following one
+	 */
+	public PointObject getFollowing() {
+		return following;
+	}
+
+	/**
+	 * @param rate the number of particles emitted per second
+	 */
+	public void setRate(float rate) {
+		if (!(rate >= 0)) throw new IllegalArgumentException("Rate can't be negative");
+		this.rate = rate;
+	}
+
+	/**
+	 * @return the number of particles emitted per second
+	 */
+	public float getRate() {
+		return rate;
+	}
+
+	/**
+	 * @param direction the direction particles leave in, in degrees counterclockwise from the X axis
+	 * @param spread the width of the arc around the direction particles leave in, in degrees
+	 */
+	public void setDirection(float direction, float spread) {
+		if (spread < 0) throw new IllegalArgumentException("Spread can't be negative");
+		this.direction = direction;
+		this.spread = spread;
+	}
+
+	public float getDirection() {
+		return direction;
+	}
+
+	public float getSpread() {
+		return spread;
+	}
+
+	/**
+	 * @param min the lowest speed particles leave at, in units per second
+	 * @param max the highest speed particles leave at, in units per second
+	 */
+	public void setSpeed(float min, float max) {
+		if (min < 0 || max < min) throw new IllegalArgumentException("Speeds must be positive, from lowest to highest");
+		this.minSpeed = min;
+		this.maxSpeed = max;
+	}
+
+	public float getMinSpeed() {
+		return minSpeed;
+	}
+
+	public float getMaxSpeed() {
+		return maxSpeed;
+	}
+
+	/**
+	 * @param min the shortest a particle lives, in seconds
+	 * @param max the longest a particle lives, in seconds
+	 */
+	public void setLife(float min, float max) {
+		if (!(min > 0) || max < min) throw new IllegalArgumentException("Lifetimes must be positive, from shortest to longest");
+		this.minLife = min;
+		this.maxLife = max;
+	}
+
+	public float getMinLife() {
+		return minLife;
+	}
+
+	public float getMaxLife() {
+		return maxLife;
+	}
+
+	/**
+	 * @param argb the packed color of the particles
+	 * @see com.apsis.util.PackedColor
+	 */
+	public void setColor(int argb) {
+		this.color = argb;
+	}
+
+	public int getColor() {
+		return color;
+	}
+
+	/**
+	 * @param enabled whether the emitter emits, true by default. A disabled
+	 * emitter forgets its bursts and doesn't catch up when it is enabled again.
+	 */
+	public void setEnabled(boolean enabled) {
+		if (enabled && !this.enabled) owed = 0;
+		this.enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+}
@@ -0,0 +1,452 @@
+package com.apsis.particle;
+
+import com.apsis.render.Graphics;
+import com.apsis.render.Renderable;
+import com.apsis.world.TickObserver;
+import com.apsis.world.World;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Simulates a large number of particles without making an object of each one.<br>
+ * <br>
+ * The state of every particle is kept in parallel primitive arrays (position,
+ * velocity, remaining life and packed color), allocated once for the
+ * capacity of the system. Each {@link #update()} spawns what the
+ * {@link ParticleEmitter}s owe, then moves every particle in chunks spread
+ * over the system's threads, with loops over the arrays simple enough for
+ * the JIT compiler to vectorize, and finally removes the particles that died
+ * by moving the last live particle into each one's place. Nothing is
+ * allocated by an update on one thread.<br>
+ * <br>
+ * Added to a World as a {@link TickObserver}, the system updates at the end
+ * of every tick, by a fixed {@link #setTimeStep(float) time step}.
+ * {@link #render(com.apsis.render.Graphics)} draws every particle as a small
+ * square through {@link Graphics#drawSquares(float[], float[], int[], int, int, float)}.
+ * The system isn't thread safe; updates and renders should happen on the same
+ * thread, or be kept apart.
+ *
+ * @author Cal Stephens
+ * @see World#addTickObserver(com.apsis.world.TickObserver)
+ */
+public class ParticleSystem implements TickObserver, Renderable, Closeable {
+
+	//chunks smaller than this aren't worth handing to another thread
+	private final static int MIN_CHUNK = 16 * 1024;
+
+	private final int capacity;
+	private final float[] xs;
+	private final float[] ys;
+	private final float[] vxs;
+	private final float[] vys;
+	private final float[] lives;
+	private final int[] colors;
+	private int count = 0;
+	private final ArrayList<ParticleEmitter> emitters = new ArrayList<>();
+	private final Chunk[] chunks;
+	private final ExecutorService executor;
+	private CountDownLatch barrier;
+	private volatile Throwable failure;
+	private float timeStep = 1 / 60f;
+	private float gravityX = 0;
+	private float gravityY = 0;
+	private float size = 2;
+	private long random = 0x9E3779B97F4A7C15L;
+	private long emitted = 0;
+	private long expired = 0;
+	private long dropped = 0;
+	private long lastUpdateNanos = 0;
+
+	/**
+	 * @param capacity the most particles alive at once
+	 * @param threads the number of threads to update on, including the one calling update()
+	 */
+	public ParticleSystem(int capacity, int threads) {
+		if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive.");
+		if (threads < 1) throw new IllegalArgumentException("There must be at least one thread");
+		this.capacity = capacity;
+		xs = new float[capacity];
+		ys = new float[capacity];
+		vxs = new float[capacity];
+		vys = new float[capacity];
+		lives = new float[capacity];
+		colors = new int[capacity];
+		chunks = new Chunk[threads];
+		for (int i = 0; i < threads; i++) {
+			chunks[i] = new Chunk();
+		}
+		executor = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, new ThreadFactory() {
+			private int count = 0;
+
+			@Override
+			public synchronized Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Particles " + count++);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Updates the system by one time step at the end of a tick.
+	 */
+	@Override
+	public void tickEnded(World world, long tick) {
+		update();
+	}
+
+	/**
+	 * Spawns the particles the emitters owe, moves every particle by one
+	 * time step and removes the ones whose lives ran out.
+	 *
+	 * @throws IllegalStateException if a chunk failed to update
+	 */
+	public void update() {
+		long start = System.nanoTime();
+		for (int i = 0; i < emitters.size(); i++) {
+			emitters.get(i).emit(this, timeStep);
+		}
+		int used = Math.max(1, Math.min(chunks.length, count / MIN_CHUNK));
+		for (int i = 0; i < used; i++) {
+			chunks[i].set((int) ((long) count * i / used), (int) ((long) count * (i + 1) / used));
+		}
+		if (used == 1) {
+			chunks[0].integrate();
+		} else {
+			barrier = new CountDownLatch(used - 1);
+			for (int i = 1; i < used; i++) {
+				executor.execute(chunks[i]);
+			}
+			try {
+				//the calling thread takes the first chunk
+				chunks[0].integrate();
+			} finally {
+				boolean interrupted = false;
+				while (true) {
+					try {
+						barrier.await();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				if (interrupted) Thread.currentThread().interrupt();
+			}
+			Throwable failed = failure;
+			if (failed != null) {
+				failure = null;
+				throw new IllegalStateException("A chunk of particles failed to update", failed);
+			}
+		}
+		compact(used);
+		lastUpdateNanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * Removes the dead particles, from the last to the first, by moving the last
+	 * particle into each one's place. Going backwards means the last particle
+	 * is always alive, since any dead particle after this one is already gone.
+	 */
+	private void compact(int used) {
+		for (int c = used - 1; c >= 0; c--) {
+			Chunk chunk = chunks[c];
+			for (int d = chunk.deadCount - 1; d >= 0; d--) {
+				int dead = chunk.dead[d], last = --count;
+				if (dead != last) {
+					xs[dead] = xs[last];
+					ys[dead] = ys[last];
+					vxs[dead] = vxs[last];
+					vys[dead] = vys[last];
+					lives[dead] = lives[last];
+					colors[dead] = colors[last];
+				}
+			}
+			expired += chunk.deadCount;
+		}
+	}
+
+	/**
+	 * Spawns a particle, unless the system is full.
+	 *
+	 * @param x the X of the particle
+	 * @param y the Y of the particle
+	 * @param vx the X velocity of the particle, in units per second
+	 * @param vy the Y velocity of the particle, in units per second
+	 * @param life how long the particle lives, in seconds
+	 * @param argb the packed color of the particle
+	 * @return whether the particle was spawned
+	 */
+	public boolean emit(float x, float y, float vx, float vy, float life, int argb) {
+		if (count == capacity) {
+			dropped++;
+			return false;
+		}
+		xs[count] = x;
+		ys[count] = y;
+		vxs[count] = vx;
+		vys[count] = vy;
+		lives[count] = life;
+		colors[count] = argb;
+		count++;
+		emitted++;
+		return true;
+	}
+
+	/**
+	 * @return a random number between 0 and 1 from the system's generator, so
+	 * that emitting doesn't depend on anything but the seed
+	 */
+	float nextFloat() {
+		//xorshift64*
+		random ^= random >>> 12;
+		random ^= random << 25;
+		random ^= random >>> 27;
+		return ((random * 0x2545F4914F6CDD1DL) >>> 40) / (float) (1 << 24);
+	}
+
+	/**
+	 * @param seed the seed of the generator emitters pick directions, speeds and lifetimes with
+	 */
+	public void setSeed(long seed) {
+		random = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+	}
+
+	/**
+	 * Draws every particle as a square of the system's particle size.
+	 *
+	 * @param g the Graphics implementation to render with
+	 */
+	@Override
+	public void render(Graphics g) {
+		g.drawSquares(xs, ys, colors, 0, count, size);
+	}
+
+	/**
+	 * @param emitter an emitter to spawn particles from on every update
+	 */
+	public void addEmitter(ParticleEmitter emitter) {
+		if (emitter == null) throw new IllegalArgumentException("ParticleEmitter cannot be null.");
+		if (!emitters.contains(emitter)) emitters.add(emitter);
+	}
+
+	/**
+	 * Stops spawning particles from an emitter. Its particles live on.
+	 *
+	 * @param emitter the emitter to remove
+	 */
+	public void removeEmitter(ParticleEmitter emitter) {
+		emitters.remove(emitter);
+	}
+
+	/**
+	 * @return the number of emitters
+	 */
+	public int getEmitterCount() {
+		return emitters.size();
+	}
+
+	/**
+	 * Kills every particle.
+	 */
+	public void clear() {
+		expired += count;
+		count = 0;
+	}
+
+	/**
+	 * @param seconds the time each update moves the particles by, 1/60 by default
+	 */
+	public void setTimeStep(float seconds) {
+		if (!(seconds > 0)) throw new IllegalArgumentException("Time step must be positive.");
+		this.timeStep = seconds;
+	}
+
+	public float getTimeStep() {
+		return timeStep;
+	}
+
+	/**
+	 * @param x the X acceleration of every particle, in units per second per second
+	 * @param y the Y acceleration of every particle, in units per second per second
+	 */
+	public void setGravity(float x, float y) {
+		this.gravityX = x;
+		this.gravityY = y;
+	}
+
+	public float getGravityX() {
+		return gravityX;
+	}
+
+	public float getGravityY() {
+		return gravityY;
+	}
+
+	/**
+	 * @param size the width and height particles are drawn with, 2 by default
+	 */
+	public void setParticleSize(float size) {
+		if (!(size > 0)) throw new IllegalArgumentException("Size must be positive.");
+		this.size = size;
+	}
+
+	public float getParticleSize() {
+		return size;
+	}
+
+	/**
+	 * @return the number of live particles
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the most particles alive at once
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of threads the system updates on
+	 */
+	public int getThreads() {
+		return chunks.length;
+	}
+
+	/**
+	 * @param index the index of a live particle, which changes as others die
+	 * @return the X of the particle
+	 */
+	public float getX(int index) {
+		checkIndex(index);
+		return xs[index];
+	}
+
+	/**
+	 * @param index the index of a live particle, which changes as others die
+	 * @return the Y of the particle
+	 */
+	public float getY(int index) {
+		checkIndex(index);
+		return ys[index];
+	}
+
+	/**
+	 * @param index the index of a live particle, which changes as others die
+	 * @return the seconds the particle has left
+	 */
+	public float getLife(int index) {
+		checkIndex(index);
+		return lives[index];
+	}
+
+	/**
+	 * @param index the index of a live particle, which changes as others die
+	 * @return the packed color of the particle
+	 */
+	public int getColor(int index) {
+		checkIndex(index);
+		return colors[index];
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= count) throw new IndexOutOfBoundsException("Particle " + index + " of " + count);
+	}
+
+	/**
+	 * @return the number of particles spawned
+	 */
+	public long getEmitted() {
+		return emitted;
+	}
+
+	/**
+	 * @return the number of particles that died
+	 */
+	public long getExpired() {
+		return expired;
+	}
+
+	/**
+	 * @return the number of particles not spawned because the system was full
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return the time the last update took, in nanoseconds
+	 */
+	public long getLastUpdateNanos() {
+		return lastUpdateNanos;
+	}
+
+	/**
+	 * Stops the threads. The system can still be rendered, but not updated
+	 * on more than one thread.
+	 */
+	@Override
+	public void close() {
+		if (executor != null) executor.shutdown();
+	}
+
+	/**
+	 * A range of the particles, moved by one thread, that remembers which of
+	 * its particles died.
+	 */
+	private class Chunk implements Runnable {
+
+		private int start;
+		private int end;
+		private int[] dead = new int[64];
+		private int deadCount;
+
+		void set(int start, int end) {
+			this.start = start;
+			this.end = end;
+			if (dead.length < end - start) dead = new int[Math.max(end - start, dead.length * 2)];
+		}
+
+		@Override
+		public void run() {
+			try {
+				integrate();
+			} catch (Throwable t) {
+				if (failure == null) failure = t;
+			} finally {
+				barrier.countDown();
+			}
+		}
+
+		private void integrate() {
+			float dt = timeStep, gx = gravityX * dt, gy = gravityY * dt;
+			float[] xs = ParticleSystem.this.xs, ys = ParticleSystem.this.ys;
+			float[] vxs = ParticleSystem.this.vxs, vys = ParticleSystem.this.vys;
+			float[] lives = ParticleSystem.this.lives;
+			int start = this.start, end = this.end;
+			//no branches or calls, so the JIT compiler can vectorize it
+			for (int i = start; i < end; i++) {
+				float vx = vxs[i] + gx, vy = vys[i] + gy;
+				vxs[i] = vx;
+				vys[i] = vy;
+				xs[i] += vx * dt;
+				ys[i] += vy * dt;
+				lives[i] -= dt;
+			}
+			int deaths = 0;
+			int[] dead = this.dead;
+			for (int i = start; i < end; i++) {
+				if (lives[i] <= 0) dead[deaths++] = i;
+			}
+			deadCount = deaths;
+		}
+
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.apsis.render;
+
+/**
+ * How drawn pixels are combined with what is already on screen.
+ *
+ * @author Cal Stephens
+ * @see Graphics#setBlendMode(com.apsis.render.BlendMode)
+ */
+public enum BlendMode {
+
+	/**
+	 * Pixels are mixed with the screen based on their alpha (source-over).
+	 * The default.
+	 */
+	ALPHA,
+	/**
+	 * Pixels, scaled by their alpha, are added to the screen. Used for glows and particles.
+	 */
+	ADDITIVE,
+	/**
+	 * Pixels replace the screen, ignoring alpha
+	 */
+	OPAQUE
+
+}
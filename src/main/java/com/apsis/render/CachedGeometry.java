@@ -0,0 +1,74 @@
+package com.apsis.render;
+
+/**
+ * Triangles captured from a {@link Graphics} so they can be drawn again
+ * without re-running the code that produced them.<br>
+ * <br>
+ * Everything drawn between {@link Graphics#beginCapture(com.apsis.render.CachedGeometry)}
+ * and {@link Graphics#endCapture()} is stored in world space along with its
+ * layer, texture, blend mode and depth. {@link Graphics#drawCached(com.apsis.render.CachedGeometry)}
+ * then replays it, which only copies vertices. Used for objects that don't move.
+ *
+ * @author Cal Stephens
+ * @see Graphics#drawCached(com.apsis.render.CachedGeometry)
+ */
+public class CachedGeometry {
+
+	final RenderQueue commands = new RenderQueue();
+	int primitives = 0;
+	boolean complete = true;
+
+	/**
+	 * Empties the geometry so it can be captured again.
+	 */
+	public void clear() {
+		commands.clear();
+		primitives = 0;
+		complete = true;
+	}
+
+	/**
+	 * @return whether or not nothing has been captured
+	 */
+	public boolean isEmpty() {
+		return commands.getVertexCount() == 0;
+	}
+
+	/**
+	 * Captured geometry is incomplete if something was skipped while capturing,
+	 * such as an image that had not finished loading. Incomplete geometry
+	 * should be captured again later.
+	 *
+	 * @return whether or not everything drawn was captured
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return the number of primitives captured
+	 */
+	public int getPrimitives() {
+		return primitives;
+	}
+
+	/**
+	 * @return the number of vertices captured
+	 */
+	public int getVertexCount() {
+		return commands.getVertexCount();
+	}
+
+	/**
+	 * @return the number of runs of vertices that share the same render state
+	 */
+	public int getCommandCount() {
+		return commands.getCommandCount();
+	}
+
+	@Override
+	public String toString() {
+		return "CachedGeometry{primitives=" + primitives + ", vertices=" + getVertexCount() + ", commands=" + getCommandCount() + "}";
+	}
+
+}
@@ -0,0 +1,202 @@
+package com.apsis.render;
+
+import com.apsis.util.Bounds;
+import com.apsis.util.Point;
+
+/**
+ * The view into a World.<br>
+ * The camera's position is the world point shown at the center of the
+ * viewport. Zoom is the number of pixels one world unit covers, and
+ * rotation turns the view counterclockwise (in degrees).
+ *
+ * @author Cal Stephens
+ * @see Window#getCamera()
+ */
+public class Camera {
+
+	private double x;
+	private double y;
+	private double zoom = 1;
+	private double rot = 0;
+	private int viewportWidth;
+	private int viewportHeight;
+	private final Bounds visible = new Bounds();
+	private boolean visibleDirty = true;
+
+	/**
+	 * Creates a camera centered on its viewport,
+	 * so that world coordinates match pixel coordinates.
+	 *
+	 * @param viewportWidth the width of the viewport in pixels
+	 * @param viewportHeight the height of the viewport in pixels
+	 */
+	public Camera(int viewportWidth, int viewportHeight) {
+		setViewport(viewportWidth, viewportHeight);
+		this.x = viewportWidth / 2.0;
+		this.y = viewportHeight / 2.0;
+	}
+
+	/**
+	 * @return the X of the world point at the center of the view
+	 */
+	public double x() {
+		return x;
+	}
+
+	/**
+	 * @return the Y of the world point at the center of the view
+	 */
+	public double y() {
+		return y;
+	}
+
+	/**
+	 * @return a new Point of the world point at the center of the view
+	 */
+	public Point getPos() {
+		return Point.make(x, y);
+	}
+
+	/**
+	 * Centers the view on the given world point.
+	 *
+	 * @param pos the new center of the view
+	 */
+	public void moveTo(Point pos) {
+		moveTo(pos.x(), pos.y());
+	}
+
+	/**
+	 * Centers the view on the given world point.
+	 *
+	 * @param x the X of the new center
+	 * @param y the Y of the new center
+	 */
+	public void moveTo(double x, double y) {
+		this.x = x;
+		this.y = y;
+		visibleDirty = true;
+	}
+
+	/**
+	 * Moves the view by the given amount of world units.
+	 *
+	 * @param x the X to add
+	 * @param y the Y to add
+	 */
+	public void move(double x, double y) {
+		moveTo(this.x + x, this.y + y);
+	}
+
+	/**
+	 * @return the number of pixels one world unit covers
+	 */
+	public double getZoom() {
+		return zoom;
+	}
+
+	/**
+	 * @param zoom the number of pixels one world unit covers
+	 */
+	public void setZoom(double zoom) {
+		if (zoom <= 0) throw new IllegalArgumentException("Zoom must be positive.");
+		this.zoom = zoom;
+		visibleDirty = true;
+	}
+
+	/**
+	 * @return the rotation of the view in degrees
+	 */
+	public double getRot() {
+		return rot;
+	}
+
+	/**
+	 * @param rot the new rotation of the view in degrees, counterclockwise
+	 */
+	public void setRot(double rot) {
+		this.rot = rot;
+		visibleDirty = true;
+	}
+
+	/**
+	 * @param width the width of the viewport in pixels
+	 * @param height the height of the viewport in pixels
+	 */
+	public final void setViewport(int width, int height) {
+		if (width <= 0 || height <= 0) throw new IllegalArgumentException("Viewport dimensions must be positive.");
+		this.viewportWidth = width;
+		this.viewportHeight = height;
+		visibleDirty = true;
+	}
+
+	/**
+	 * @return the width of the viewport in pixels
+	 */
+	public int getViewportWidth() {
+		return viewportWidth;
+	}
+
+	/**
+	 * @return the height of the viewport in pixels
+	 */
+	public int getViewportHeight() {
+		return viewportHeight;
+	}
+
+	/**
+	 * Gets the world-space box that contains everything the camera can see.
+	 * If the view is rotated, this is the box around the rotated view.<br>
+	 * The returned instance is reused and must not be modified.
+	 *
+	 * @return the visible bounds
+	 */
+	public Bounds getVisibleBounds() {
+		if (visibleDirty) {
+			double halfW = viewportWidth / 2.0 / zoom, halfH = viewportHeight / 2.0 / zoom;
+			if (rot != 0) {
+				double rad = Math.toRadians(rot);
+				double cos = Math.abs(Math.cos(rad)), sin = Math.abs(Math.sin(rad));
+				double w = halfW * cos + halfH * sin, h = halfW * sin + halfH * cos;
+				halfW = w;
+				halfH = h;
+			}
+			visible.set(x - halfW, y - halfH, x + halfW, y + halfH);
+			visibleDirty = false;
+		}
+		return visible;
+	}
+
+	/**
+	 * Writes the world-to-screen transform of the camera into the given array as
+	 * <code>{m00, m01, m10, m11, tx, ty}</code>, so that
+	 * <code>screenX = m00 * x + m01 * y + tx</code> and
+	 * <code>screenY = m10 * x + m11 * y + ty</code>.
+	 *
+	 * @param out an array of at least 6 doubles
+	 * @return <code>out</code>, for chaining
+	 */
+	public double[] getTransform(double[] out) {
+		double cos = 1, sin = 0;
+		if (rot != 0) {
+			//the world turns the opposite way of the camera
+			double rad = Math.toRadians(-rot);
+			cos = Math.cos(rad);
+			sin = Math.sin(rad);
+		}
+		out[0] = zoom * cos;
+		out[1] = -zoom * sin;
+		out[2] = zoom * sin;
+		out[3] = zoom * cos;
+		out[4] = viewportWidth / 2.0 - (out[0] * x + out[1] * y);
+		out[5] = viewportHeight / 2.0 - (out[2] * x + out[3] * y);
+		return out;
+	}
+
+	@Override
+	public String toString() {
+		return "Camera{x=" + x + ", y=" + y + ", zoom=" + zoom + ", rot=" + rot
+				+ ", viewport=" + viewportWidth + "x" + viewportHeight + "}";
+	}
+
+}
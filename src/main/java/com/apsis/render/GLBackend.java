@@ -0,0 +1,167 @@
+package com.apsis.render;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * An OpenGL implementation of {@link RenderBackend}.<br>
+ * Each batch is copied into direct buffers and drawn
+ * with a single <code>glDrawArrays</code> call.<br>
+ * Must only be used on the thread that owns the OpenGL context.
+ *
+ * @author Cal Stephens
+ */
+public class GLBackend implements RenderBackend {
+
+	private FloatBuffer positions = null;
+	private FloatBuffer texCoords = null;
+	private ByteBuffer colors = null;
+	private ByteBuffer upload = null;
+	private boolean initialized = false;
+	private TextureAtlas texture = null;
+	private final ArrayList<TextureAtlas> uploaded = new ArrayList<>();
+
+	@Override
+	public void beginFrame(Camera camera) {
+		if (!initialized) {
+			GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+			GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
+			initialized = true;
+		}
+		GL11.glClear(GL11.GL_COLOR_BUFFER_BIT);
+		deleteDisposedTextures();
+		GL11.glMatrixMode(GL11.GL_MODELVIEW);
+		GL11.glLoadIdentity();
+		if (camera != null) {
+			GL11.glTranslated(camera.getViewportWidth() / 2.0, camera.getViewportHeight() / 2.0, 0);
+			GL11.glRotated(-camera.getRot(), 0, 0, 1);
+			GL11.glScaled(camera.getZoom(), camera.getZoom(), 1);
+			GL11.glTranslated(-camera.x(), -camera.y(), 0);
+		}
+	}
+
+	@Override
+	public void setBlendMode(BlendMode mode) {
+		switch (mode) {
+			case OPAQUE:
+				GL11.glDisable(GL11.GL_BLEND);
+				break;
+			case ADDITIVE:
+				GL11.glEnable(GL11.GL_BLEND);
+				GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE);
+				break;
+			default:
+				GL11.glEnable(GL11.GL_BLEND);
+				GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+				break;
+		}
+	}
+
+	@Override
+	public void bindTexture(TextureAtlas atlas) {
+		this.texture = atlas;
+		if (atlas == null) {
+			GL11.glDisable(GL11.GL_TEXTURE_2D);
+			GL11.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+			return;
+		}
+		GL11.glEnable(GL11.GL_TEXTURE_2D);
+		GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		if (atlas.glTexture == 0) {
+			atlas.glTexture = GL11.glGenTextures();
+			uploaded.add(atlas);
+			GL11.glBindTexture(GL11.GL_TEXTURE_2D, atlas.glTexture);
+			GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+			GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+		} else GL11.glBindTexture(GL11.GL_TEXTURE_2D, atlas.glTexture);
+		if (atlas.uploadedVersion != atlas.getVersion()) upload(atlas);
+	}
+
+	@Override
+	public void draw(VertexBuffer buffer) {
+		int count = buffer.getVertexCount();
+		if (count == 0) return;
+		ensureCapacity(buffer.getCapacity());
+		positions.clear();
+		positions.put(buffer.getPositions(), 0, count * 2);
+		positions.flip();
+		colors.clear();
+		int[] argb = buffer.getColors();
+		for (int i = 0; i < count; i++) {
+			int c = argb[i];
+			colors.put((byte) (c >> 16)).put((byte) (c >> 8)).put((byte) c).put((byte) (c >>> 24));
+		}
+		colors.flip();
+		if (texture != null) {
+			texCoords.clear();
+			texCoords.put(buffer.getTexCoords(), 0, count * 2);
+			texCoords.flip();
+			GL11.glTexCoordPointer(2, 0, texCoords);
+		}
+		GL11.glVertexPointer(2, 0, positions);
+		GL11.glColorPointer(4, true, 0, colors);
+		GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, count);
+	}
+
+	@Override
+	public void endFrame() {
+	}
+
+	/**
+	 * Copies the pixels of an atlas into its OpenGL texture.
+	 */
+	private void upload(TextureAtlas atlas) {
+		int size = atlas.getWidth() * atlas.getHeight();
+		if (upload == null || upload.capacity() < size * 4) upload = BufferUtils.createByteBuffer(size * 4);
+		upload.clear();
+		IntBuffer pixels = upload.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+		synchronized (atlas) {
+			int[] argb = atlas.getPixels();
+			for (int i = 0; i < size; i++) {
+				int c = argb[i];
+				//RGBA byte order
+				pixels.put((c << 8) | (c >>> 24));
+			}
+			atlas.uploadedVersion = atlas.getVersion();
+		}
+		upload.limit(size * 4);
+		GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
+		GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, atlas.getWidth(), atlas.getHeight(), 0,
+				GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, upload);
+	}
+
+	/**
+	 * Frees the OpenGL textures of atlases that are no longer used.
+	 */
+	private void deleteDisposedTextures() {
+		Iterator<TextureAtlas> i = uploaded.iterator();
+		while (i.hasNext()) {
+			TextureAtlas atlas = i.next();
+			if (atlas.isDisposed()) {
+				GL11.glDeleteTextures(atlas.glTexture);
+				atlas.glTexture = 0;
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Makes sure the direct buffers can hold the given number of vertices.
+	 *
+	 * @param vertices the number of vertices
+	 */
+	private void ensureCapacity(int vertices) {
+		if (positions == null || positions.capacity() < vertices * 2) {
+			positions = BufferUtils.createFloatBuffer(vertices * 2);
+			texCoords = BufferUtils.createFloatBuffer(vertices * 2);
+			colors = BufferUtils.createByteBuffer(vertices * 4);
+		}
+	}
+
+}
@@ -1,9 +1,231 @@
 package com.apsis.render;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 /**
- * OpenGL Image Manager and Wrapper
+ * A handle to an image managed by an {@link ImageCache}.<br>
+ * <br>
+ * Images are decoded in the background, so a GLImage may not be
+ * {@link GLImage#isLoaded() loaded} yet when it is first returned.
+ * Once loaded, the image lives in a region of a shared
+ * {@link TextureAtlas}, and its texture coordinates locate that
+ * region within the atlas. Drawing an image that isn't loaded
+ * draws nothing.<br>
+ * <br>
+ * Sub-images (such as frames of a sprite sheet) share their parent's
+ * pixels and only differ in their texture coordinates.
+ *
  * @author Cal Stephens
+ * @see ImageCache#load(java.io.File)
+ * @see Graphics#drawImage(com.apsis.render.GLImage, com.apsis.util.Point, com.apsis.util.Point)
  */
 public class GLImage {
 
+	/**
+	 * The stages in the life of an image
+	 */
+	public enum State {
+
+		/**
+		 * The image is being decoded
+		 */
+		LOADING,
+		/**
+		 * The image can be drawn
+		 */
+		LOADED,
+		/**
+		 * The image could not be decoded
+		 */
+		FAILED,
+		/**
+		 * The image was removed from its cache to make room
+		 */
+		EVICTED
+
+	}
+
+	private final String name;
+	private final GLImage parent;
+	private final CountDownLatch loaded;
+	private volatile State state = State.LOADING;
+	private volatile TextureAtlas atlas = null;
+	private volatile int x;
+	private volatile int y;
+	private volatile int width;
+	private volatile int height;
+	//guarded by the owning ImageCache
+	int references = 0;
+
+	/**
+	 * @param name the name of the image, usually its path
+	 */
+	GLImage(String name) {
+		this.name = name;
+		this.parent = null;
+		this.loaded = new CountDownLatch(1);
+	}
+
+	private GLImage(GLImage parent, int x, int y, int width, int height) {
+		this.name = parent.name + "[" + x + "," + y + "," + width + "x" + height + "]";
+		this.parent = parent;
+		this.loaded = parent.loaded;
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Called by the ImageCache once the image has been packed into an atlas.
+	 */
+	void loaded(TextureAtlas atlas, int x, int y, int width, int height) {
+		this.atlas = atlas;
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		this.state = State.LOADED;
+		loaded.countDown();
+	}
+
+	/**
+	 * Called by the ImageCache if the image could not be decoded or was evicted.
+	 */
+	void unload(State state) {
+		this.state = state;
+		this.atlas = null;
+		loaded.countDown();
+	}
+
+	/**
+	 * Creates an image showing part of this one.
+	 * The sub-image shares this image's pixels and is loaded when this image is.
+	 * If this image is still loading, its size isn't known yet, so a region outside
+	 * of it is only found once it loads, at which point the sub-image {@link State#FAILED fails}.
+	 *
+	 * @param x the X of the region, 0 being the left edge of the image
+	 * @param y the Y of the region, 0 being the top edge of the image
+	 * @param width the width of the region
+	 * @param height the height of the region
+	 * @return the sub-image
+	 * @throws IllegalArgumentException if the region is empty or outside of this image
+	 */
+	public GLImage getSubImage(int x, int y, int width, int height) {
+		if (x < 0 || y < 0 || width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid sub-image region.");
+		if (getState() != State.LOADING && !contains(x, y, width, height)) {
+			throw new IllegalArgumentException("The region " + x + "," + y + " " + width + "x" + height + " is outside of " + this + ".");
+		}
+		return new GLImage(this, x, y, width, height);
+	}
+
+	private boolean contains(int x, int y, int width, int height) {
+		//compared as longs so that huge regions can't overflow into range
+		return (long) x + width <= this.width && (long) y + height <= this.height;
+	}
+
+	/**
+	 * @return whether or not the region of a sub-image, and of its parents, lies within its parent
+	 */
+	private boolean inBounds() {
+		return parent == null || parent.inBounds() && parent.contains(x, y, width, height);
+	}
+
+	/**
+	 * @return the name of the image
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the stage the image is in
+	 */
+	public State getState() {
+		if (parent == null) return state;
+		State parentState = parent.getState();
+		return parentState == State.LOADED && !inBounds() ? State.FAILED : parentState;
+	}
+
+	/**
+	 * @return whether or not the image is ready to be drawn
+	 */
+	public boolean isLoaded() {
+		return getState() == State.LOADED;
+	}
+
+	/**
+	 * Waits for the image to finish loading.
+	 *
+	 * @param timeout the longest time to wait
+	 * @param unit the unit of the timeout
+	 * @return whether or not the image was loaded successfully
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		loaded.await(timeout, unit);
+		return isLoaded();
+	}
+
+	/**
+	 * @return the atlas the image is stored in, null if it isn't loaded
+	 */
+	public TextureAtlas getAtlas() {
+		if (parent == null) return atlas;
+		return inBounds() ? parent.getAtlas() : null;
+	}
+
+	/**
+	 * @return the width of the image in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the height of the image in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the X of the image's left edge in its atlas
+	 */
+	public int getAtlasX() {
+		return parent == null ? x : parent.getAtlasX() + x;
+	}
+
+	/**
+	 * @return the Y of the image's top edge in its atlas
+	 */
+	public int getAtlasY() {
+		return parent == null ? y : parent.getAtlasY() + y;
+	}
+
+	/**
+	 * Writes the texture coordinates of the image within its atlas into the given array as
+	 * <code>{left, top, right, bottom}</code>.
+	 *
+	 * @param out an array of at least 4 floats
+	 * @return false if the image isn't loaded, in which case nothing is written
+	 */
+	public boolean getTexCoords(float[] out) {
+		TextureAtlas page = getAtlas();
+		if (page == null) return false;
+		float atlasW = page.getWidth(), atlasH = page.getHeight();
+		int left = getAtlasX(), top = getAtlasY();
+		out[0] = left / atlasW;
+		out[1] = top / atlasH;
+		out[2] = (left + width) / atlasW;
+		out[3] = (top + height) / atlasH;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "GLImage{name=" + name + ", state=" + getState() + ", " + width + "x" + height + "}";
+	}
+
 }
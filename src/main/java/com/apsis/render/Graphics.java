@@ -1,53 +1,827 @@
 package com.apsis.render;
 
+import com.apsis.jfr.BatchFlushEvent;
+import com.apsis.jfr.RenderFrameEvent;
 import com.apsis.util.Color;
 import com.apsis.util.Point;
-import org.lwjgl.opengl.GL11;
+import com.apsis.world.PointObject;
+import com.apsis.world.TransformTable;
 
 /**
- * An OpenGL implementation of the Apsis Graphics system
+ * The front end of the Apsis Graphics system.<br>
+ * Draw calls are turned into triangles and appended to a reusable
+ * {@link VertexBuffer}. The buffer is only handed to the
+ * {@link RenderBackend} when it fills up, the render state changes
+ * or the frame ends, so many primitives are drawn with a single backend call.<br>
+ * <br>
+ * With {@link Graphics#setSorting(boolean) sorting} turned on, primitives
+ * are collected for the whole frame and sorted by layer, texture, blend mode
+ * and depth before being sent, so primitives that share state end up in the
+ * same batch no matter what order they were drawn in.
  *
  * @author Cal Stephens
+ * @see RenderBackend
  */
 public class Graphics {
 
+	/**
+	 * The default number of vertices batched before a flush
+	 */
+	public final static int DEFAULT_BATCH_SIZE = 6 * 1024;
+
+	private final RenderBackend backend;
+	private final VertexBuffer buffer;
+	private final Tessellator tessellator = new Tessellator();
+	private double projectionScale = 1;
+	private Camera camera = null;
+	private int color = 0xFFFFFFFF;
+	private double rotCos = 1, rotSin = 0, rotX = 0, rotY = 0;
+	private boolean inFrame = false;
+	private int drawCalls = 0;
+	private int primitives = 0;
+	private int stateChanges = 0;
+	private RenderQueue queue = null;
+	private int layer = 0;
+	private int depth = 0;
+	private BlendMode blendMode = BlendMode.ALPHA;
+	private BlendMode backendBlendMode = null;
+	private TextureAtlas texture = null;
+	private TextureAtlas backendTexture = null;
+	private boolean backendStateKnown = false;
+	private float u = 0, v = 0;
+	private final float[] texCoords = new float[4];
+	private CachedGeometry capture = null;
+	private RenderQueue capturedQueue = null;
+	private int capturedPrimitives = 0;
+	private int capturedLayer = 0;
+	private int capturedDepth = 0;
+	private BlendMode capturedBlendMode = null;
+	//reused every frame, so recording frames doesn't allocate
+	private final RenderFrameEvent frameEvent = new RenderFrameEvent();
+
+	/**
+	 * @param backend the backend to draw with
+	 */
+	public Graphics(RenderBackend backend) {
+		this(backend, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * @param backend the backend to draw with
+	 * @param batchSize the number of vertices batched before a flush
+	 */
+	public Graphics(RenderBackend backend, int batchSize) {
+		if (backend == null) throw new IllegalArgumentException("RenderBackend cannot be null.");
+		if (batchSize < 6) throw new IllegalArgumentException("Batch size must be able to hold at least one quad (6 vertices).");
+		this.backend = backend;
+		this.buffer = new VertexBuffer(batchSize);
+	}
+
+	/**
+	 * @return the backend this Graphics draws with
+	 */
+	public RenderBackend getBackend() {
+		return backend;
+	}
+
+	/**
+	 * @return the camera frames are viewed through, null if there is none
+	 */
+	public Camera getCamera() {
+		return camera;
+	}
+
+	/**
+	 * Sets the camera frames are viewed through.
+	 * Takes effect at the start of the next frame.
+	 *
+	 * @param camera the new camera, or null to use world coordinates as pixel coordinates
+	 */
+	public void setCamera(Camera camera) {
+		this.camera = camera;
+	}
+
+	/**
+	 * Starts a new frame.
+	 *
+	 * @see Graphics#endFrame()
+	 */
+	public void beginFrame() {
+		if (inFrame) throw new IllegalStateException("beginFrame() called twice without endFrame()");
+		inFrame = true;
+		drawCalls = 0;
+		primitives = 0;
+		stateChanges = 0;
+		layer = 0;
+		depth = 0;
+		blendMode = BlendMode.ALPHA;
+		backendBlendMode = null;
+		backendTexture = null;
+		backendStateKnown = false;
+		buffer.clear();
+		if (queue != null) queue.clear();
+		if (camera != null) projectionScale = camera.getZoom();
+		frameEvent.begin();
+		backend.beginFrame(camera);
+	}
+
+	/**
+	 * Flushes anything left in the batch and ends the frame.
+	 * If sorting is on, this is when the frame's primitives are
+	 * sorted and sent to the backend.
+	 *
+	 * @see Graphics#beginFrame()
+	 */
+	public void endFrame() {
+		if (!inFrame) throw new IllegalStateException("endFrame() called without beginFrame()");
+		if (capture != null) throw new IllegalStateException("endFrame() called without endCapture()");
+		if (queue != null) submitQueue();
+		flush();
+		backend.endFrame();
+		inFrame = false;
+		frameEvent.end();
+		if (frameEvent.shouldCommit()) {
+			frameEvent.drawCalls = drawCalls;
+			frameEvent.primitives = primitives;
+			frameEvent.stateChanges = stateChanges;
+			frameEvent.commit();
+		}
+	}
+
+	/**
+	 * Sends the current batch to the backend, if it contains anything.
+	 */
+	public void flush() {
+		if (buffer.isEmpty()) return;
+		BatchFlushEvent event = new BatchFlushEvent();
+		event.begin();
+		backend.draw(buffer);
+		event.end();
+		if (event.shouldCommit()) {
+			event.vertices = buffer.getVertexCount();
+			event.commit();
+		}
+		buffer.clear();
+		drawCalls++;
+	}
+
+	/**
+	 * @return the number of batches sent to the backend in the current (or last) frame
+	 */
+	public int getDrawCalls() {
+		return drawCalls;
+	}
+
+	/**
+	 * @return the number of render state changes (such as blend mode changes and texture binds)
+	 * sent to the backend in the current (or last) frame
+	 */
+	public int getStateChanges() {
+		return stateChanges;
+	}
+
+	/**
+	 * @return the number of primitives drawn in the current (or last) frame
+	 */
+	public int getPrimitives() {
+		return primitives;
+	}
+
+	/**
+	 * Turns sorting of the frame's primitives by render state on or off.
+	 * Takes effect at the start of the next frame.
+	 *
+	 * @param sorting whether or not to sort primitives before sending them to the backend
+	 * @see Graphics#setLayer(int)
+	 * @see Graphics#setDepth(int)
+	 * @see Graphics#setBlendMode(com.apsis.render.BlendMode)
+	 */
+	public void setSorting(boolean sorting) {
+		if (inFrame) throw new IllegalStateException("Sorting cannot be changed in the middle of a frame.");
+		if (capture != null) throw new IllegalStateException("Sorting cannot be changed while capturing.");
+		if (sorting && queue == null) queue = new RenderQueue();
+		else if (!sorting) queue = null;
+	}
+
+	/**
+	 * @return whether or not primitives are sorted by render state before being sent to the backend
+	 */
+	public boolean isSorting() {
+		return queue != null;
+	}
+
+	/**
+	 * Sets the layer of following primitives.
+	 * When sorting, lower layers are drawn before higher layers.
+	 * Reset to 0 at the start of each frame.
+	 *
+	 * @param layer the new layer (-32768 to 32767)
+	 */
+	public void setLayer(int layer) {
+		if (layer < Short.MIN_VALUE || layer > Short.MAX_VALUE) throw new IllegalArgumentException("Layer must be between -32768 and 32767.");
+		this.layer = layer;
+	}
+
+	/**
+	 * @return the layer of following primitives
+	 */
+	public int getLayer() {
+		return layer;
+	}
+
+	/**
+	 * Sets the depth of following primitives within their layer.
+	 * When sorting, lower depths are drawn first; primitives with the same
+	 * layer, state and depth keep the order they were drawn in.
+	 * Reset to 0 at the start of each frame.
+	 *
+	 * @param depth the new depth (0 to 65535)
+	 */
+	public void setDepth(int depth) {
+		if (depth < 0 || depth > 0xFFFF) throw new IllegalArgumentException("Depth must be between 0 and 65535.");
+		this.depth = depth;
+	}
+
+	/**
+	 * @return the depth of following primitives
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Sets how following primitives are blended with the screen.
+	 * Reset to {@link BlendMode#ALPHA} at the start of each frame.
+	 *
+	 * @param mode the new blend mode
+	 */
+	public void setBlendMode(BlendMode mode) {
+		if (mode == null) throw new IllegalArgumentException("BlendMode cannot be null.");
+		this.blendMode = mode;
+	}
+
+	/**
+	 * @return how following primitives are blended with the screen
+	 */
+	public BlendMode getBlendMode() {
+		return blendMode;
+	}
+
+	/**
+	 * @return the number of vertices a batch can hold before it is flushed
+	 */
+	public int getBatchSize() {
+		return buffer.getCapacity();
+	}
+
 	public void drawRectangle(Color color, Point origin, Point dim) {
 		drawRectangle(color, origin, dim, 0, origin);
 	}
 
 	public void drawRectangle(Color color, Point origin, Point dim, double rot, Point centerOfRot) {
-		GL11.glPushMatrix();
-			GL11.glMatrixMode(GL11.GL_MODELVIEW);
-			//GL11.glTranslated(origin.x(), origin.y(), 0);
-			GL11.glRotated(rot, 0, 0, 1);
-			GL11.glBegin(GL11.GL_QUADS);
-				if (color != null) GL11.glColor4d(color.getRed() / 255.0, color.getGreen() / 255.0, color.getBlue() / 255.0, color.getAlpha() / 255.0);
-				GL11.glVertex2d(origin.x(), origin.y());
-				GL11.glVertex2d(origin.x() + dim.x(), origin.y());
-				GL11.glVertex2d(origin.x(), origin.y() + dim.y());
-				GL11.glVertex2d(origin.x() + dim.x(), origin.y() + dim.y());
-			GL11.glEnd();
-		GL11.glPopMatrix();
+		begin(color, rot, centerOfRot);
+		double x0 = origin.x(), y0 = origin.y();
+		double x1 = x0 + dim.x(), y1 = y0 + dim.y();
+		reserve(6);
+		vertex(x0, y0);
+		vertex(x1, y0);
+		vertex(x1, y1);
+		vertex(x0, y0);
+		vertex(x1, y1);
+		vertex(x0, y1);
+	}
+
+	/**
+	 * Draws an image stretched over the given rectangle.
+	 * Images that have not finished loading are skipped.
+	 *
+	 * @param image the image to draw
+	 * @param origin the bottom left corner of the image
+	 * @param dim the size of the image
+	 * @see ImageCache
+	 */
+	public void drawImage(GLImage image, Point origin, Point dim) {
+		drawImage(image, null, origin, dim, 0, origin);
+	}
+
+	/**
+	 * Draws an image stretched over the given rectangle, with every pixel
+	 * multiplied by the tint color.
+	 * Images that have not finished loading are skipped.
+	 *
+	 * @param image the image to draw
+	 * @param tint the color to multiply the image by, or null for white
+	 * @param origin the bottom left corner of the image
+	 * @param dim the size of the image
+	 * @param rot the rotation of the image in degrees
+	 * @param centerOfRot the point to rotate around
+	 * @see ImageCache
+	 */
+	public void drawImage(GLImage image, Color tint, Point origin, Point dim, double rot, Point centerOfRot) {
+		if (!image.getTexCoords(texCoords)) {
+			if (capture != null) capture.complete = false;
+			return;
+		}
+		begin(tint == null ? Color.WHITE : tint, rot, centerOfRot, image.getAtlas());
+		float left = texCoords[0], top = texCoords[1], right = texCoords[2], bottom = texCoords[3];
+		double x0 = origin.x(), y0 = origin.y();
+		double x1 = x0 + dim.x(), y1 = y0 + dim.y();
+		reserve(6);
+		vertex(x0, y0, left, bottom);
+		vertex(x1, y0, right, bottom);
+		vertex(x1, y1, right, top);
+		vertex(x0, y0, left, bottom);
+		vertex(x1, y1, right, top);
+		vertex(x0, y1, left, top);
 	}
 
 	public void drawOval(Color color, Point origin, Point dim) {
-		throw new UnsupportedOperationException("Not supported yet.");
+		drawOval(color, origin, dim, 0, origin);
 	}
 
 	public void drawOval(Color color, Point origin, Point dim, double rot, Point centerOfRot) {
-		throw new UnsupportedOperationException("Not supported yet.");
+		double rx = dim.x() / 2, ry = dim.y() / 2;
+		Mesh circle = tessellator.getCircle(tessellator.segmentsFor(Math.max(Math.abs(rx), Math.abs(ry)) * projectionScale));
+		begin(color, rot, centerOfRot);
+		appendMesh(circle, rx, 0, 0, ry, origin.x() + rx, origin.y() + ry);
 	}
 
+	/**
+	 * Draws a filled polygon.<br>
+	 * The triangulation is cached by the identity of the <code>points</code> array,
+	 * so reusing the same array avoids triangulating it again.
+	 *
+	 * @param color the color of the polygon
+	 * @param origin the point all of the polygon's points are relative to
+	 * @param points the corners of the polygon, in order
+	 * @see Tessellator#getPolygon(com.apsis.util.Point[])
+	 */
 	public void drawPolygon(Color color, Point origin, Point[] points) {
-		throw new UnsupportedOperationException("Not supported yet.");
+		drawPolygon(color, origin, points, 0, origin);
 	}
 
+	/**
+	 * Draws a filled polygon.<br>
+	 * The triangulation is cached by the identity of the <code>points</code> array,
+	 * so reusing the same array avoids triangulating it again.
+	 *
+	 * @param color the color of the polygon
+	 * @param origin the point all of the polygon's points are relative to
+	 * @param points the corners of the polygon, in order
+	 * @param rot the rotation of the polygon in degrees
+	 * @param centerOfRot the point to rotate around
+	 * @see Tessellator#getPolygon(com.apsis.util.Point[])
+	 */
 	public void drawPolygon(Color color, Point origin, Point[] points, double rot, Point centerOfRot) {
-		throw new UnsupportedOperationException("Not supported yet.");
+		Mesh polygon = tessellator.getPolygon(points);
+		begin(color, rot, centerOfRot);
+		appendMesh(polygon, 1, 0, 0, 1, origin.x(), origin.y());
 	}
 
 	public void drawLine(Color color, Point start, Point end, double width) {
-		throw new UnsupportedOperationException("Not supported yet.");
+		drawLine(color, start, end, width, LineCap.BUTT);
+	}
+
+	/**
+	 * Draws a line of the given width.
+	 *
+	 * @param color the color of the line
+	 * @param start the start of the line
+	 * @param end the end of the line
+	 * @param width the width of the line
+	 * @param cap how the ends of the line are finished
+	 */
+	public void drawLine(Color color, Point start, Point end, double width, LineCap cap) {
+		double dx = end.x() - start.x(), dy = end.y() - start.y();
+		double length = Math.sqrt(dx * dx + dy * dy);
+		if (length == 0) return;
+		begin(color, 0, null);
+		//unit vector along the line
+		double ux = dx / length, uy = dy / length;
+		double sx = start.x(), sy = start.y();
+		if (cap == LineCap.SQUARE) {
+			sx -= ux * width / 2;
+			sy -= uy * width / 2;
+			length += width;
+		}
+		appendMesh(tessellator.getQuad(), ux * length, -uy * width, uy * length, ux * width, sx, sy);
+		if (cap == LineCap.ROUND) {
+			double r = width / 2;
+			Mesh half = tessellator.getHalfCircle(tessellator.segmentsFor(r * projectionScale));
+			appendMesh(half, ux * r, -uy * r, uy * r, ux * r, end.x(), end.y());
+			appendMesh(half, -ux * r, uy * r, -uy * r, -ux * r, start.x(), start.y());
+		}
+	}
+
+	/**
+	 * Draws a mesh with the given transform, which maps
+	 * a local point <code>(x, y)</code> of the mesh to
+	 * <code>(m00 * x + m01 * y + tx, m10 * x + m11 * y + ty)</code>.
+	 *
+	 * @param color the color of the mesh
+	 * @param mesh the mesh to draw
+	 * @param m00 the X scale component of the transform
+	 * @param m01 the X shear component of the transform
+	 * @param m10 the Y shear component of the transform
+	 * @param m11 the Y scale component of the transform
+	 * @param tx the X translation of the transform
+	 * @param ty the Y translation of the transform
+	 * @see Tessellator
+	 */
+	public void drawMesh(Color color, Mesh mesh, double m00, double m01, double m10, double m11, double tx, double ty) {
+		begin(color, 0, null);
+		appendMesh(mesh, m00, m01, m10, m11, tx, ty);
+	}
+
+	/**
+	 * Draws a mesh in the local space of an object, so that the mesh follows the
+	 * object and all of its parents. The object's world transform is computed
+	 * if it has changed and then read from its {@link TransformTable}.
+	 *
+	 * @param color the color of the mesh
+	 * @param mesh the mesh to draw
+	 * @param object the object whose world transform places the mesh
+	 */
+	public void drawMesh(Color color, Mesh mesh, PointObject object) {
+		object.updateWorldTransform();
+		double[] data = object.getTransformTable().getData();
+		int o = object.getTransformSlot() * TransformTable.STRIDE;
+		begin(color, 0, null);
+		appendMesh(mesh, data[o], data[o + 1], data[o + 2], data[o + 3], data[o + 4], data[o + 5]);
+	}
+
+	/**
+	 * Draws a mesh once for each of the given slots of a {@link TransformTable}, as one
+	 * primitive, with each copy placed by the world transform in its slot. The transforms
+	 * are read straight from the table's array, so many objects sharing a mesh can be
+	 * drawn without going through each object. The slots must be up to date, such as
+	 * after {@link PointObject#updateWorldTransform()} has been called on their objects.
+	 *
+	 * @param color the color of the meshes
+	 * @param mesh the mesh to draw
+	 * @param table the table holding the transforms
+	 * @param slots the slots of the transforms to draw the mesh with
+	 * @param first the index of the first slot to draw
+	 * @param count the number of slots to draw
+	 * @see PointObject#getTransformSlot()
+	 */
+	public void drawMeshes(Color color, Mesh mesh, TransformTable table, int[] slots, int first, int count) {
+		if (first < 0 || count < 0 || first + count > slots.length) {
+			throw new IllegalArgumentException("Slots " + first + " to " + (first + count) + " are outside of the array");
+		}
+		if (count == 0) return;
+		begin(color, 0, null);
+		double[] data = table.getData();
+		for (int i = first, end = first + count; i < end; i++) {
+			int o = slots[i] * TransformTable.STRIDE;
+			if (slots[i] < 0 || o + TransformTable.STRIDE > data.length) {
+				throw new IllegalArgumentException("Slot " + slots[i] + " is outside of " + table);
+			}
+			appendMesh(mesh, data[o], data[o + 1], data[o + 2], data[o + 3], data[o + 4], data[o + 5]);
+		}
+	}
+
+	/**
+	 * Draws a run of untextured squares, each centered on a point and with its
+	 * own packed color, as one primitive. The points are read straight from the
+	 * arrays, so thousands of small things such as particles can be drawn
+	 * without creating a Point or Color for each one.
+	 *
+	 * @param xs the X of the center of each square
+	 * @param ys the Y of the center of each square
+	 * @param colors the packed ARGB color of each square
+	 * @param first the index of the first square to draw
+	 * @param count the number of squares to draw
+	 * @param size the width and height of every square
+	 * @see com.apsis.util.PackedColor
+	 */
+	public void drawSquares(float[] xs, float[] ys, int[] colors, int first, int count, float size) {
+		if (first < 0 || count < 0 || first + count > Math.min(colors.length, Math.min(xs.length, ys.length))) {
+			throw new IllegalArgumentException("Squares " + first + " to " + (first + count) + " are outside of the arrays");
+		}
+		if (count == 0) return;
+		begin(null, 0, null);
+		float half = size / 2;
+		int end = first + count;
+		if (queue != null) {
+			for (int i = first; i < end; i++) {
+				float x0 = xs[i] - half, y0 = ys[i] - half, x1 = xs[i] + half, y1 = ys[i] + half;
+				int argb = colors[i];
+				queue.add(x0, y0, 0, 0, argb);
+				queue.add(x1, y0, 0, 0, argb);
+				queue.add(x1, y1, 0, 0, argb);
+				queue.add(x0, y0, 0, 0, argb);
+				queue.add(x1, y1, 0, 0, argb);
+				queue.add(x0, y1, 0, 0, argb);
+			}
+			return;
+		}
+		int done = first;
+		while (done < end) {
+			if (buffer.remaining() < 6) flush();
+			int chunk = Math.min(end - done, buffer.remaining() / 6);
+			for (int i = done; i < done + chunk; i++) {
+				float x0 = xs[i] - half, y0 = ys[i] - half, x1 = xs[i] + half, y1 = ys[i] + half;
+				int argb = colors[i];
+				buffer.add(x0, y0, argb);
+				buffer.add(x1, y0, argb);
+				buffer.add(x1, y1, argb);
+				buffer.add(x0, y0, argb);
+				buffer.add(x1, y1, argb);
+				buffer.add(x0, y1, argb);
+			}
+			done += chunk;
+		}
+	}
+
+	/**
+	 * Starts capturing into the given geometry instead of drawing.
+	 * Everything drawn until {@link Graphics#endCapture()} is stored in the
+	 * geometry (replacing what it held before) and can be drawn any number
+	 * of times with {@link Graphics#drawCached(com.apsis.render.CachedGeometry)}.<br>
+	 * Capturing may happen inside or outside of a frame. The layer, depth and
+	 * blend mode are restored when the capture ends.<br>
+	 * Curved shapes are captured with the level of detail of the current
+	 * projection scale, and images must stay loaded for as long as the
+	 * geometry is drawn.
+	 *
+	 * @param geometry the geometry to capture into
+	 * @see Graphics#endCapture()
+	 */
+	public void beginCapture(CachedGeometry geometry) {
+		if (geometry == null) throw new IllegalArgumentException("CachedGeometry cannot be null.");
+		if (capture != null) throw new IllegalStateException("beginCapture() called twice without endCapture()");
+		geometry.clear();
+		capture = geometry;
+		capturedQueue = queue;
+		capturedPrimitives = primitives;
+		capturedLayer = layer;
+		capturedDepth = depth;
+		capturedBlendMode = blendMode;
+		queue = geometry.commands;
+	}
+
+	/**
+	 * Stops capturing and goes back to drawing.
+	 *
+	 * @return the geometry that was captured into
+	 * @see Graphics#beginCapture(com.apsis.render.CachedGeometry)
+	 */
+	public CachedGeometry endCapture() {
+		if (capture == null) throw new IllegalStateException("endCapture() called without beginCapture()");
+		CachedGeometry geometry = capture;
+		geometry.primitives = primitives - capturedPrimitives;
+		primitives = capturedPrimitives;
+		queue = capturedQueue;
+		layer = capturedLayer;
+		depth = capturedDepth;
+		blendMode = capturedBlendMode;
+		capture = null;
+		capturedQueue = null;
+		return geometry;
+	}
+
+	/**
+	 * @return whether or not drawing is currently being captured
+	 */
+	public boolean isCapturing() {
+		return capture != null;
+	}
+
+	/**
+	 * Draws previously captured geometry. Only vertices are copied;
+	 * none of the code that originally drew the geometry is run again.
+	 * When sorting, the geometry is sorted along with everything else
+	 * using the layer and depth it was captured with.
+	 *
+	 * @param geometry the geometry to draw
+	 * @see Graphics#beginCapture(com.apsis.render.CachedGeometry)
+	 */
+	public void drawCached(CachedGeometry geometry) {
+		if (!inFrame && capture == null) throw new IllegalStateException("Drawing must happen between beginFrame() and endFrame()");
+		if (geometry == capture) throw new IllegalArgumentException("CachedGeometry cannot be drawn into itself.");
+		primitives += geometry.primitives;
+		RenderQueue commands = geometry.commands;
+		if (queue != null) {
+			queue.append(commands);
+			return;
+		}
+		for (int command = 0, count = commands.getCommandCount(); command < count; command++) {
+			submit(commands, command);
+		}
+	}
+
+	/**
+	 * @return the tessellator used to build and cache meshes
+	 */
+	public Tessellator getTessellator() {
+		return tessellator;
+	}
+
+	/**
+	 * Sets how many pixels one world unit covers on screen.
+	 * Used to pick the level of detail of curved shapes.
+	 *
+	 * @param scale the number of pixels per world unit
+	 */
+	public void setProjectionScale(double scale) {
+		if (scale <= 0) throw new IllegalArgumentException("Projection scale must be positive.");
+		this.projectionScale = scale;
+	}
+
+	/**
+	 * @return the number of pixels one world unit covers on screen
+	 */
+	public double getProjectionScale() {
+		return projectionScale;
+	}
+
+	/**
+	 * Starts a primitive, setting the color and rotation of its vertices.
+	 * A null color keeps the previous one.
+	 *
+	 * @param color the color of the primitive
+	 * @param rot the rotation in degrees, counterclockwise
+	 * @param centerOfRot the point to rotate around
+	 */
+	private void begin(Color color, double rot, Point centerOfRot) {
+		begin(color, rot, centerOfRot, null);
+	}
+
+	/**
+	 * Starts a primitive, setting the color, rotation and texture of its vertices.
+	 * A null color keeps the previous one.
+	 *
+	 * @param color the color of the primitive
+	 * @param rot the rotation in degrees, counterclockwise
+	 * @param centerOfRot the point to rotate around
+	 * @param texture the texture of the primitive, null for none
+	 */
+	private void begin(Color color, double rot, Point centerOfRot, TextureAtlas texture) {
+		if (!inFrame && capture == null) throw new IllegalStateException("Drawing must happen between beginFrame() and endFrame()");
+		if (color != null) this.color = color.getPackedARGB();
+		setRotation(rot, centerOfRot);
+		this.texture = texture;
+		u = v = 0;
+		primitives++;
+		if (queue != null) queue.begin(RenderQueue.key(layer, texture == null ? 0 : texture.getId(), blendMode, depth), texture);
+		else applyState(blendMode, texture);
+	}
+
+	/**
+	 * Sends state changes to the backend if they differ from the current state,
+	 * flushing the batch first since a batch can only have one state.
+	 *
+	 * @param mode the blend mode
+	 * @param texture the texture, null for none
+	 */
+	private void applyState(BlendMode mode, TextureAtlas texture) {
+		boolean blendChanged = mode != backendBlendMode;
+		boolean textureChanged = !backendStateKnown || texture != backendTexture;
+		if (!blendChanged && !textureChanged) return;
+		flush();
+		if (blendChanged) {
+			backend.setBlendMode(mode);
+			backendBlendMode = mode;
+			stateChanges++;
+		}
+		if (textureChanged) {
+			backend.bindTexture(texture);
+			backendTexture = texture;
+			backendStateKnown = true;
+			stateChanges++;
+		}
+	}
+
+	/**
+	 * Sorts the queued commands and sends them to the backend,
+	 * merging consecutive commands with the same state into batches.
+	 */
+	private void submitQueue() {
+		int[] order = queue.sort();
+		for (int i = 0, count = queue.getCommandCount(); i < count; i++) {
+			submit(queue, order[i]);
+		}
+		queue.clear();
+	}
+
+	/**
+	 * Applies the state of one command and copies its vertices into the batch.
+	 *
+	 * @param source the queue holding the command
+	 * @param command the index of the command
+	 */
+	private void submit(RenderQueue source, int command) {
+		int start = source.getStart(command), end = source.getEnd(command);
+		if (start == end) return;
+		applyState(RenderQueue.blendOf(source.getKey(command)), source.getTexture(command));
+		while (start < end) {
+			if (buffer.remaining() < 3) flush();
+			int chunk = Math.min(end - start, buffer.remaining() / 3 * 3);
+			//untextured vertices are queued with zeroed texture coordinates
+			buffer.add(source.getPositions(), source.getTexCoords(), source.getColors(), start, chunk);
+			start += chunk;
+		}
+	}
+
+	/**
+	 * Flushes the batch if it can't fit the given number of vertices.
+	 * Does nothing when sorting, since vertices go to the queue.
+	 *
+	 * @param vertices the number of vertices about to be added
+	 */
+	private void reserve(int vertices) {
+		if (queue == null && buffer.remaining() < vertices) flush();
+	}
+
+	/**
+	 * Sets the rotation applied to following vertices.
+	 *
+	 * @param rot the rotation in degrees, counterclockwise
+	 * @param center the point to rotate around, unused if there is no rotation
+	 */
+	private void setRotation(double rot, Point center) {
+		if (rot == 0) {
+			rotCos = 1;
+			rotSin = 0;
+			return;
+		}
+		double rad = Math.toRadians(rot);
+		rotCos = Math.cos(rad);
+		rotSin = Math.sin(rad);
+		rotX = center.x();
+		rotY = center.y();
+	}
+
+	/**
+	 * Appends a textured vertex using the current color and rotation.
+	 *
+	 * @param x the X of the vertex
+	 * @param y the Y of the vertex
+	 * @param u the horizontal texture coordinate of the vertex
+	 * @param v the vertical texture coordinate of the vertex
+	 */
+	private void vertex(double x, double y, float u, float v) {
+		this.u = u;
+		this.v = v;
+		vertex(x, y);
+	}
+
+	/**
+	 * Appends a vertex using the current color, rotation and texture coordinates.
+	 *
+	 * @param x the X of the vertex
+	 * @param y the Y of the vertex
+	 */
+	private void vertex(double x, double y) {
+		if (rotSin != 0 || rotCos != 1) {
+			double dx = x - rotX, dy = y - rotY;
+			x = rotX + dx * rotCos - dy * rotSin;
+			y = rotY + dx * rotSin + dy * rotCos;
+		}
+		if (queue != null) queue.add((float) x, (float) y, u, v, color);
+		else if (texture != null) buffer.add((float) x, (float) y, u, v, color);
+		else buffer.add((float) x, (float) y, color);
+	}
+
+	/**
+	 * Appends every triangle of a mesh, transformed by the given affine transform
+	 * and then by the current rotation.
+	 * Meshes larger than the batch are split into several batches.
+	 */
+	private void appendMesh(Mesh mesh, double m00, double m01, double m10, double m11, double tx, double ty) {
+		//fold the current rotation into the transform
+		if (rotSin != 0 || rotCos != 1) {
+			double r00 = rotCos * m00 - rotSin * m10, r01 = rotCos * m01 - rotSin * m11;
+			double r10 = rotSin * m00 + rotCos * m10, r11 = rotSin * m01 + rotCos * m11;
+			double dx = tx - rotX, dy = ty - rotY;
+			tx = rotX + rotCos * dx - rotSin * dy;
+			ty = rotY + rotSin * dx + rotCos * dy;
+			m00 = r00;
+			m01 = r01;
+			m10 = r10;
+			m11 = r11;
+		}
+		float a = (float) m00, b = (float) m01, c = (float) m10, d = (float) m11, e = (float) tx, f = (float) ty;
+		float[] positions = mesh.getPositions();
+		int vertices = mesh.getVertexCount();
+		if (queue != null) {
+			for (int i = 0, end = vertices * 2; i < end; i += 2) {
+				float x = positions[i], y = positions[i + 1];
+				queue.add(a * x + b * y + e, c * x + d * y + f, 0, 0, color);
+			}
+			return;
+		}
+		int done = 0;
+		while (done < vertices) {
+			if (buffer.remaining() < 3) flush();
+			int chunk = Math.min(vertices - done, buffer.remaining() / 3 * 3);
+			for (int i = done * 2, end = (done + chunk) * 2; i < end; i += 2) {
+				float x = positions[i], y = positions[i + 1];
+				buffer.add(a * x + b * y + e, c * x + d * y + f, color);
+			}
+			done += chunk;
+		}
 	}
 
 }
@@ -0,0 +1,361 @@
+package com.apsis.render;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+/**
+ * Loads, packs and caches images.<br>
+ * <br>
+ * Images (such as PNG files) are decoded on a pool of worker threads and
+ * packed into shared {@link TextureAtlas} pages. Every call to
+ * {@link ImageCache#load(java.io.File)} adds a reference to the image, and
+ * every call to {@link ImageCache#release(com.apsis.render.GLImage)} removes one.
+ * The budget counts the bytes of the atlas pages rather than of the images in
+ * them, since a page holds its whole size until it is dropped. When the pages
+ * take more bytes than the budget, whole pages are evicted, starting with the
+ * page whose most recently loaded image is the oldest. Pages holding an image
+ * that still has references are kept.
+ *
+ * @author Cal Stephens
+ * @see GLImage
+ */
+public class ImageCache {
+
+	/**
+	 * The default width and height of an atlas page
+	 */
+	public final static int DEFAULT_PAGE_SIZE = 2048;
+
+	private final long byteBudget;
+	private final int pageSize;
+	private final int padding = 1;
+	private final ExecutorService decoder;
+	//access-ordered, so iteration starts at the least recently used image
+	private final LinkedHashMap<String, GLImage> images = new LinkedHashMap<>(64, 0.75f, true);
+	private final ArrayList<TextureAtlas> pages = new ArrayList<>();
+	private long bytesUsed = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private final AtomicLong decodedImages = new AtomicLong();
+	private final AtomicLong decodedPixels = new AtomicLong();
+	private final AtomicLong decodeNanos = new AtomicLong();
+
+	/**
+	 * Creates a cache decoding on one thread per available processor.
+	 *
+	 * @param byteBudget the number of bytes of atlas pages to keep before evicting
+	 */
+	public ImageCache(long byteBudget) {
+		this(byteBudget, DEFAULT_PAGE_SIZE, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param byteBudget the number of bytes of atlas pages to keep before evicting
+	 * @param pageSize the width and height of an atlas page
+	 * @param decodeThreads the number of threads to decode images on
+	 */
+	public ImageCache(long byteBudget, int pageSize, int decodeThreads) {
+		if (byteBudget <= 0) throw new IllegalArgumentException("Byte budget must be positive.");
+		if (pageSize <= 0) throw new IllegalArgumentException("Page size must be positive.");
+		this.byteBudget = byteBudget;
+		this.pageSize = pageSize;
+		this.decoder = Executors.newFixedThreadPool(Math.max(1, decodeThreads), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Apsis-ImageDecoder-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Gets the image stored in the given file, starting to decode it
+	 * in the background if it isn't already cached.
+	 * Adds a reference to the image, which must be given back with
+	 * {@link ImageCache#release(com.apsis.render.GLImage)}.
+	 *
+	 * @param file the image file
+	 * @return the image, which may still be loading
+	 */
+	public synchronized GLImage load(final File file) {
+		String key = file.getPath();
+		GLImage image = images.get(key);
+		if (image != null && image.getState() != GLImage.State.FAILED) {
+			hits++;
+			image.references++;
+			return image;
+		}
+		misses++;
+		final GLImage loading = new GLImage(key);
+		loading.references = 1;
+		images.put(key, loading);
+		decoder.execute(new Runnable() {
+			@Override
+			public void run() {
+				decode(file, loading);
+			}
+		});
+		return loading;
+	}
+
+	/**
+	 * Adds an already decoded image to the cache.
+	 * Adds a reference to the image, which must be given back with
+	 * {@link ImageCache#release(com.apsis.render.GLImage)}.
+	 *
+	 * @param name the name to cache the image under
+	 * @param image the decoded image
+	 * @return the loaded image
+	 */
+	public GLImage load(String name, BufferedImage image) {
+		GLImage loaded;
+		synchronized (this) {
+			loaded = images.get(name);
+			if (loaded != null && loaded.getState() != GLImage.State.FAILED) {
+				hits++;
+				loaded.references++;
+				return loaded;
+			}
+			misses++;
+			loaded = new GLImage(name);
+			loaded.references = 1;
+			images.put(name, loaded);
+		}
+		int w = image.getWidth(), h = image.getHeight();
+		store(loaded, image.getRGB(0, 0, w, h, null, 0, w), w, h);
+		return loaded;
+	}
+
+	/**
+	 * Gives back a reference to an image.
+	 * Images with no references may be evicted when the cache is over budget.
+	 *
+	 * @param image the image to release
+	 */
+	public synchronized void release(GLImage image) {
+		if (image.references <= 0) throw new IllegalStateException(image + " has already been released.");
+		image.references--;
+		if (image.references == 0) evict();
+	}
+
+	/**
+	 * Stops the decoding threads. Images that are still loading will never finish.
+	 */
+	public void shutdown() {
+		decoder.shutdownNow();
+	}
+
+	private void decode(File file, GLImage image) {
+		long start = System.nanoTime();
+		BufferedImage decoded;
+		try {
+			decoded = ImageIO.read(file);
+		} catch (IOException ex) {
+			decoded = null;
+		}
+		if (decoded == null) {
+			synchronized (this) {
+				image.unload(GLImage.State.FAILED);
+			}
+			return;
+		}
+		int w = decoded.getWidth(), h = decoded.getHeight();
+		int[] argb = decoded.getRGB(0, 0, w, h, null, 0, w);
+		decodeNanos.addAndGet(System.nanoTime() - start);
+		decodedImages.incrementAndGet();
+		decodedPixels.addAndGet((long) w * h);
+		store(image, argb, w, h);
+	}
+
+	/**
+	 * Packs decoded pixels into an atlas page and marks the image as loaded.
+	 */
+	private synchronized void store(GLImage image, int[] argb, int w, int h) {
+		if (images.get(image.getName()) != image) {
+			//evicted or replaced while decoding
+			image.unload(GLImage.State.EVICTED);
+			return;
+		}
+		TextureAtlas page = null;
+		for (TextureAtlas candidate : pages) {
+			if (candidate.insert(argb, w, h)) {
+				page = candidate;
+				break;
+			}
+		}
+		if (page == null) {
+			//images bigger than a page get a page of their own
+			page = new TextureAtlas(Math.max(pageSize, w), Math.max(pageSize, h), padding);
+			page.insert(argb, w, h);
+			pages.add(page);
+			bytesUsed += bytes(page);
+		}
+		image.loaded(page, page.getPackedX(), page.getPackedY(), w, h);
+		evict();
+	}
+
+	private static long bytes(TextureAtlas page) {
+		return (long) page.getWidth() * page.getHeight() * 4;
+	}
+
+	/**
+	 * Evicts whole atlas pages until the cache is within budget. Evicting single images
+	 * would leave holes that still take up their page, so the page whose images were
+	 * least recently loaded goes first, as long as none of its images have references.
+	 */
+	private void evict() {
+		while (bytesUsed > byteBudget) {
+			//the position in LRU order of each page's most recently loaded image
+			IdentityHashMap<TextureAtlas, Integer> lastUsed = new IdentityHashMap<>();
+			IdentityHashMap<TextureAtlas, Boolean> referenced = new IdentityHashMap<>();
+			int position = 0;
+			for (Iterator<GLImage> i = images.values().iterator(); i.hasNext(); position++) {
+				GLImage image = i.next();
+				GLImage.State state = image.getState();
+				if (state == GLImage.State.LOADING) continue;
+				if (state != GLImage.State.LOADED) {
+					if (image.references == 0) i.remove();
+					continue;
+				}
+				TextureAtlas page = image.getAtlas();
+				lastUsed.put(page, position);
+				if (image.references > 0) referenced.put(page, Boolean.TRUE);
+			}
+			TextureAtlas victim = null;
+			int oldest = Integer.MAX_VALUE;
+			for (TextureAtlas page : pages) {
+				Integer used = lastUsed.get(page);
+				//pages only hold loaded images, so a page with none is empty
+				int at = used == null ? -1 : used;
+				if (!referenced.containsKey(page) && at < oldest) {
+					victim = page;
+					oldest = at;
+				}
+			}
+			if (victim == null) return;
+			Iterator<GLImage> i = images.values().iterator();
+			while (i.hasNext()) {
+				GLImage image = i.next();
+				if (image.getState() != GLImage.State.LOADED || image.getAtlas() != victim) continue;
+				i.remove();
+				image.unload(GLImage.State.EVICTED);
+				victim.releaseImage();
+				evictions++;
+			}
+			pages.remove(victim);
+			victim.dispose();
+			bytesUsed -= bytes(victim);
+		}
+	}
+
+	/**
+	 * @return the number of bytes of atlas pages in the cache
+	 */
+	public synchronized long getBytesUsed() {
+		return bytesUsed;
+	}
+
+	/**
+	 * @return the number of bytes of atlas pages kept before evicting
+	 */
+	public long getByteBudget() {
+		return byteBudget;
+	}
+
+	/**
+	 * @return the number of images in the cache, loaded or not
+	 */
+	public synchronized int size() {
+		return images.size();
+	}
+
+	/**
+	 * @return the number of atlas pages in use
+	 */
+	public synchronized int getPageCount() {
+		return pages.size();
+	}
+
+	/**
+	 * @return a copy of the list of atlas pages in use
+	 */
+	public synchronized ArrayList<TextureAtlas> getPages() {
+		return new ArrayList<>(pages);
+	}
+
+	/**
+	 * @return the average packing efficiency of all atlas pages
+	 * @see TextureAtlas#getPackingEfficiency()
+	 */
+	public synchronized double getPackingEfficiency() {
+		if (pages.isEmpty()) return 1;
+		double total = 0;
+		for (TextureAtlas page : pages) {
+			total += page.getPackingEfficiency();
+		}
+		return total / pages.size();
+	}
+
+	/**
+	 * @return the number of loads that found the image already cached
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of loads that had to decode the image
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of images evicted to stay within the budget
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the number of images decoded from files
+	 */
+	public long getDecodedImages() {
+		return decodedImages.get();
+	}
+
+	/**
+	 * @return the number of pixels decoded from files
+	 */
+	public long getDecodedPixels() {
+		return decodedPixels.get();
+	}
+
+	/**
+	 * @return the total time spent decoding files, summed across threads, in nanoseconds
+	 */
+	public long getDecodeNanos() {
+		return decodeNanos.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ImageCache{images=" + size() + ", pages=" + getPageCount() + ", bytes=" + getBytesUsed() + "/" + byteBudget + "}";
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.apsis.render;
+
+/**
+ * How the ends of a line drawn with
+ * {@link Graphics#drawLine(com.apsis.util.Color, com.apsis.util.Point, com.apsis.util.Point, double, com.apsis.render.LineCap)}
+ * are finished.
+ *
+ * @author Cal Stephens
+ */
+public enum LineCap {
+
+	/**
+	 * The line stops exactly at its end points
+	 */
+	BUTT,
+	/**
+	 * The line is extended past its end points by half of its width
+	 */
+	SQUARE,
+	/**
+	 * The line ends in a half circle with a diameter of its width
+	 */
+	ROUND
+
+}
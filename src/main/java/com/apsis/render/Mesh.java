@@ -0,0 +1,71 @@
+package com.apsis.render;
+
+/**
+ * An immutable list of triangles in their own local space.<br>
+ * Meshes are built and cached by the {@link Tessellator} and drawn
+ * any number of times with a per-instance transform through
+ * {@link Graphics#drawMesh(com.apsis.util.Color, com.apsis.render.Mesh, double, double, double, double, double, double)}.
+ *
+ * @author Cal Stephens
+ * @see Tessellator
+ */
+public final class Mesh {
+
+	private final float[] positions;
+	private final int vertexCount;
+
+	/**
+	 * @param positions the triangle vertices, laid out as <code>x0, y0, x1, y1, ...</code>.
+	 * Every three vertices make up one triangle. The array is not copied.
+	 */
+	Mesh(float[] positions) {
+		if (positions.length % 6 != 0) throw new IllegalArgumentException("A Mesh must be made of whole triangles.");
+		this.positions = positions;
+		this.vertexCount = positions.length / 2;
+	}
+
+	/**
+	 * @return the number of vertices in the mesh (three per triangle)
+	 */
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	/**
+	 * @return the number of triangles in the mesh
+	 */
+	public int getTriangleCount() {
+		return vertexCount / 3;
+	}
+
+	/**
+	 * @param vertex the index of the vertex
+	 * @return the local X of the vertex
+	 */
+	public float getX(int vertex) {
+		return positions[vertex * 2];
+	}
+
+	/**
+	 * @param vertex the index of the vertex
+	 * @return the local Y of the vertex
+	 */
+	public float getY(int vertex) {
+		return positions[vertex * 2 + 1];
+	}
+
+	/**
+	 * Must not be modified.
+	 *
+	 * @return the internal position array
+	 */
+	float[] getPositions() {
+		return positions;
+	}
+
+	@Override
+	public String toString() {
+		return "Mesh{triangles=" + getTriangleCount() + "}";
+	}
+
+}
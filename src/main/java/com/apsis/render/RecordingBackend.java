@@ -0,0 +1,172 @@
+package com.apsis.render;
+
+import java.util.Arrays;
+
+/**
+ * A headless {@link RenderBackend} that draws nothing and instead
+ * records what it was asked to draw.<br>
+ * Allows batching, flush thresholds and draw call counts to be
+ * checked without a GPU or an OpenGL context.
+ *
+ * @author Cal Stephens
+ */
+public class RecordingBackend implements RenderBackend {
+
+	private int[] drawCallVertices = new int[16];
+	private BlendMode[] drawCallBlendModes = new BlendMode[16];
+	private int drawCalls = 0;
+	private int stateChanges = 0;
+	private long totalStateChanges = 0;
+	private BlendMode blendMode = BlendMode.ALPHA;
+	private TextureAtlas[] drawCallTextures = new TextureAtlas[16];
+	private TextureAtlas texture = null;
+	private int frames = 0;
+	private long totalDrawCalls = 0;
+	private long totalVertices = 0;
+	private boolean inFrame = false;
+	private Camera camera = null;
+
+	@Override
+	public void beginFrame(Camera camera) {
+		if (inFrame) throw new IllegalStateException("beginFrame() called twice without endFrame()");
+		inFrame = true;
+		drawCalls = 0;
+		stateChanges = 0;
+		blendMode = BlendMode.ALPHA;
+		texture = null;
+		this.camera = camera;
+	}
+
+	@Override
+	public void setBlendMode(BlendMode mode) {
+		this.blendMode = mode;
+		stateChanges++;
+		totalStateChanges++;
+	}
+
+	@Override
+	public void bindTexture(TextureAtlas atlas) {
+		this.texture = atlas;
+		stateChanges++;
+		totalStateChanges++;
+	}
+
+	@Override
+	public void draw(VertexBuffer buffer) {
+		if (drawCalls == drawCallVertices.length) {
+			drawCallVertices = Arrays.copyOf(drawCallVertices, drawCalls * 2);
+			drawCallBlendModes = Arrays.copyOf(drawCallBlendModes, drawCalls * 2);
+			drawCallTextures = Arrays.copyOf(drawCallTextures, drawCalls * 2);
+		}
+		drawCallTextures[drawCalls] = texture;
+		drawCallBlendModes[drawCalls] = blendMode;
+		drawCallVertices[drawCalls++] = buffer.getVertexCount();
+		totalDrawCalls++;
+		totalVertices += buffer.getVertexCount();
+	}
+
+	@Override
+	public void endFrame() {
+		if (!inFrame) throw new IllegalStateException("endFrame() called without beginFrame()");
+		inFrame = false;
+		frames++;
+	}
+
+	/**
+	 * @return the number of draw calls made in the current (or last) frame
+	 */
+	public int getDrawCalls() {
+		return drawCalls;
+	}
+
+	/**
+	 * @param drawCall the index of the draw call in the current (or last) frame
+	 * @return the number of vertices drawn by the given draw call
+	 */
+	public int getVertexCount(int drawCall) {
+		if (drawCall < 0 || drawCall >= drawCalls) {
+			throw new IndexOutOfBoundsException("Draw call " + drawCall + " (drawCalls=" + drawCalls + ")");
+		}
+		return drawCallVertices[drawCall];
+	}
+
+	/**
+	 * @param drawCall the index of the draw call in the current (or last) frame
+	 * @return the blend mode the given draw call was made with
+	 */
+	public BlendMode getBlendMode(int drawCall) {
+		getVertexCount(drawCall);
+		return drawCallBlendModes[drawCall];
+	}
+
+	/**
+	 * @param drawCall the index of the draw call in the current (or last) frame
+	 * @return the texture the given draw call was made with, null if there was none
+	 */
+	public TextureAtlas getTexture(int drawCall) {
+		getVertexCount(drawCall);
+		return drawCallTextures[drawCall];
+	}
+
+	/**
+	 * @return the number of state changes (blend mode changes and texture binds) in the current (or last) frame
+	 */
+	public int getStateChanges() {
+		return stateChanges;
+	}
+
+	/**
+	 * @return the number of state changes since creation or the last reset
+	 */
+	public long getTotalStateChanges() {
+		return totalStateChanges;
+	}
+
+	/**
+	 * @return the camera the current (or last) frame was viewed through, null if there was none
+	 */
+	public Camera getCamera() {
+		return camera;
+	}
+
+	/**
+	 * @return the number of completed frames
+	 */
+	public int getFrames() {
+		return frames;
+	}
+
+	/**
+	 * @return the number of draw calls made since creation or the last reset
+	 */
+	public long getTotalDrawCalls() {
+		return totalDrawCalls;
+	}
+
+	/**
+	 * @return the number of vertices drawn since creation or the last reset
+	 */
+	public long getTotalVertices() {
+		return totalVertices;
+	}
+
+	/**
+	 * Resets all recorded statistics.
+	 */
+	public void reset() {
+		drawCalls = 0;
+		frames = 0;
+		totalDrawCalls = 0;
+		totalVertices = 0;
+		stateChanges = 0;
+		totalStateChanges = 0;
+		inFrame = false;
+	}
+
+	@Override
+	public String toString() {
+		return "RecordingBackend{frames=" + frames + ", drawCalls=" + totalDrawCalls + ", vertices=" + totalVertices
+				+ ", stateChanges=" + totalStateChanges + "}";
+	}
+
+}
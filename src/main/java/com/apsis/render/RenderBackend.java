@@ -0,0 +1,57 @@
+package com.apsis.render;
+
+/**
+ * The device-specific half of the Apsis Graphics system.<br>
+ * {@link Graphics} turns draw calls into batches of triangles,
+ * and a RenderBackend puts those batches on a screen (or somewhere else).
+ *
+ * @author Cal Stephens
+ * @see GLBackend
+ * @see RecordingBackend
+ */
+public interface RenderBackend {
+
+	/**
+	 * Called once before anything is drawn in a frame.<br>
+	 * Vertices are given in world coordinates; the backend maps them
+	 * to the screen with the camera's transform.
+	 *
+	 * @param camera the camera to view the frame through,
+	 * or null to use world coordinates as pixel coordinates
+	 * @see Camera#getTransform(double[])
+	 */
+	public void beginFrame(Camera camera);
+
+	/**
+	 * Changes how following batches are blended with the screen.
+	 * Only called when the mode actually changes.
+	 *
+	 * @param mode the new blend mode
+	 */
+	public void setBlendMode(BlendMode mode);
+
+	/**
+	 * Changes the texture following batches are drawn with.
+	 * Vertex colors are multiplied with the texture.
+	 * Only called when the texture actually changes.
+	 *
+	 * @param atlas the new texture, or null to draw without a texture
+	 */
+	public void bindTexture(TextureAtlas atlas);
+
+	/**
+	 * Draws every triangle in the given buffer.
+	 * Implementations should do this in as few device calls as possible.<br>
+	 * The buffer is cleared and reused as soon as this method returns,
+	 * so its arrays must not be retained.
+	 *
+	 * @param buffer the vertices to draw
+	 */
+	public void draw(VertexBuffer buffer);
+
+	/**
+	 * Called once after everything in a frame has been drawn.
+	 */
+	public void endFrame();
+
+}
@@ -0,0 +1,244 @@
+package com.apsis.render;
+
+import java.util.Arrays;
+
+/**
+ * Collects the draw commands of a frame so they can be sorted by render state
+ * before being sent to the backend.<br>
+ * <br>
+ * Each command is a run of vertices with a 64-bit sort key built from
+ * (most significant first) its layer, texture, blend mode and depth.
+ * Commands are put in order with a stable LSD radix sort, so commands
+ * with equal keys keep the order they were drawn in.
+ *
+ * @author Cal Stephens
+ * @see Graphics#setSorting(boolean)
+ */
+class RenderQueue {
+
+	private final static int DEPTH_BITS = 16;
+	private final static int BLEND_BITS = 4;
+	private final static int TEXTURE_BITS = 24;
+	private final static int BLEND_SHIFT = DEPTH_BITS;
+	private final static int TEXTURE_SHIFT = BLEND_SHIFT + BLEND_BITS;
+	private final static int LAYER_SHIFT = TEXTURE_SHIFT + TEXTURE_BITS;
+	private final static BlendMode[] BLEND_MODES = BlendMode.values();
+
+	private float[] positions = new float[2 * 4096];
+	private float[] texCoords = new float[2 * 4096];
+	private int[] colors = new int[4096];
+	private int vertexCount = 0;
+
+	private long[] keys = new long[256];
+	private int[] starts = new int[256];
+	private TextureAtlas[] textures = new TextureAtlas[256];
+	private int commandCount = 0;
+	private int[] order = new int[256];
+	private int[] scratch = new int[256];
+	private final int[] histogram = new int[256 * 8];
+
+	/**
+	 * Builds a sort key.
+	 *
+	 * @param layer the layer, lower layers are drawn first (-32768 to 32767)
+	 * @param texture the texture id, 0 for none (0 to 2^24 - 1)
+	 * @param blend the blend mode
+	 * @param depth the depth within the layer, lower depths are drawn first (0 to 65535)
+	 * @return the key
+	 */
+	static long key(int layer, int texture, BlendMode blend, int depth) {
+		return ((long) ((layer + 32768) & 0xFFFF) << LAYER_SHIFT)
+				| ((long) (texture & ((1 << TEXTURE_BITS) - 1)) << TEXTURE_SHIFT)
+				| ((long) blend.ordinal() << BLEND_SHIFT)
+				| (depth & ((1 << DEPTH_BITS) - 1));
+	}
+
+	/**
+	 * @param key a sort key
+	 * @return the blend mode stored in the key
+	 */
+	static BlendMode blendOf(long key) {
+		return BLEND_MODES[(int) (key >>> BLEND_SHIFT) & ((1 << BLEND_BITS) - 1)];
+	}
+
+	/**
+	 * @param key a sort key
+	 * @return the texture id stored in the key
+	 */
+	static int textureOf(long key) {
+		return (int) (key >>> TEXTURE_SHIFT) & ((1 << TEXTURE_BITS) - 1);
+	}
+
+	/**
+	 * Empties the queue so it can be reused.
+	 */
+	void clear() {
+		vertexCount = 0;
+		commandCount = 0;
+		Arrays.fill(textures, null);
+	}
+
+	/**
+	 * Starts a new command. Vertices added until the next command belong to it.
+	 * If the last command has the same key and texture, it is continued instead.
+	 *
+	 * @param key the sort key of the command
+	 * @param texture the texture of the command, null for none
+	 */
+	void begin(long key, TextureAtlas texture) {
+		if (commandCount > 0 && keys[commandCount - 1] == key && textures[commandCount - 1] == texture) return;
+		if (commandCount == keys.length) {
+			int capacity = commandCount * 2;
+			keys = Arrays.copyOf(keys, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			textures = Arrays.copyOf(textures, capacity);
+			order = new int[capacity];
+			scratch = new int[capacity];
+		}
+		keys[commandCount] = key;
+		starts[commandCount] = vertexCount;
+		textures[commandCount] = texture;
+		commandCount++;
+	}
+
+	/**
+	 * Adds a vertex to the current command.
+	 */
+	void add(float x, float y, float u, float v, int argb) {
+		if (vertexCount == colors.length) grow(vertexCount + 1);
+		positions[vertexCount * 2] = x;
+		positions[vertexCount * 2 + 1] = y;
+		texCoords[vertexCount * 2] = u;
+		texCoords[vertexCount * 2 + 1] = v;
+		colors[vertexCount] = argb;
+		vertexCount++;
+	}
+
+	/**
+	 * Adds every command of another queue, in the order they were added to it.
+	 *
+	 * @param source the queue to copy from
+	 */
+	void append(RenderQueue source) {
+		int base = vertexCount;
+		if (base + source.vertexCount > colors.length) grow(base + source.vertexCount);
+		System.arraycopy(source.positions, 0, positions, base * 2, source.vertexCount * 2);
+		System.arraycopy(source.texCoords, 0, texCoords, base * 2, source.vertexCount * 2);
+		System.arraycopy(source.colors, 0, colors, base, source.vertexCount);
+		for (int i = 0; i < source.commandCount; i++) {
+			vertexCount = base + source.starts[i];
+			begin(source.keys[i], source.textures[i]);
+		}
+		vertexCount = base + source.vertexCount;
+	}
+
+	private void grow(int needed) {
+		int capacity = Math.max(needed, colors.length * 2);
+		colors = Arrays.copyOf(colors, capacity);
+		positions = Arrays.copyOf(positions, capacity * 2);
+		texCoords = Arrays.copyOf(texCoords, capacity * 2);
+	}
+
+	/**
+	 * Sorts the commands by key.
+	 *
+	 * @return the command indices in sorted order;
+	 * only the first {@link RenderQueue#getCommandCount()} entries are valid
+	 */
+	int[] sort() {
+		int n = commandCount;
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		if (n == 0) return order;
+		//one histogram per byte of the key, built in a single pass
+		Arrays.fill(histogram, 0);
+		for (int i = 0; i < n; i++) {
+			long key = keys[i];
+			for (int b = 0; b < 8; b++) {
+				histogram[b * 256 + (int) ((key >>> (b * 8)) & 0xFF)]++;
+			}
+		}
+		int[] from = order, to = scratch;
+		for (int b = 0; b < 8; b++) {
+			int base = b * 256;
+			//skip bytes that are the same for every key
+			if (histogram[base + (int) ((keys[from[0]] >>> (b * 8)) & 0xFF)] == n) continue;
+			int sum = 0;
+			for (int i = 0; i < 256; i++) {
+				int count = histogram[base + i];
+				histogram[base + i] = sum;
+				sum += count;
+			}
+			for (int i = 0; i < n; i++) {
+				int command = from[i];
+				to[histogram[base + (int) ((keys[command] >>> (b * 8)) & 0xFF)]++] = command;
+			}
+			int[] swap = from;
+			from = to;
+			to = swap;
+		}
+		order = from;
+		scratch = to;
+		return order;
+	}
+
+	/**
+	 * @return the number of commands in the queue
+	 */
+	int getCommandCount() {
+		return commandCount;
+	}
+
+	/**
+	 * @return the number of vertices in the queue
+	 */
+	int getVertexCount() {
+		return vertexCount;
+	}
+
+	/**
+	 * @param command the index of the command
+	 * @return the sort key of the command
+	 */
+	long getKey(int command) {
+		return keys[command];
+	}
+
+	/**
+	 * @param command the index of the command
+	 * @return the index of the first vertex of the command
+	 */
+	int getStart(int command) {
+		return starts[command];
+	}
+
+	/**
+	 * @param command the index of the command
+	 * @return the index after the last vertex of the command
+	 */
+	int getEnd(int command) {
+		return command + 1 < commandCount ? starts[command + 1] : vertexCount;
+	}
+
+	/**
+	 * @param command the index of the command
+	 * @return the texture of the command, null if it has none
+	 */
+	TextureAtlas getTexture(int command) {
+		return textures[command];
+	}
+
+	float[] getTexCoords() {
+		return texCoords;
+	}
+
+	float[] getPositions() {
+		return positions;
+	}
+
+	int[] getColors() {
+		return colors;
+	}
+
+}
@@ -0,0 +1,203 @@
+package com.apsis.render;
+
+import java.util.Arrays;
+
+/**
+ * Packs rectangles into a fixed-size area using the bottom-left skyline algorithm.<br>
+ * The packer keeps track of the "skyline" formed by the tops of everything
+ * packed so far and places each new rectangle where it rests lowest.
+ *
+ * @author Cal Stephens
+ * @see TextureAtlas
+ */
+public class SkylinePacker {
+
+	private final int width;
+	private final int height;
+	private int[] segX = new int[16];
+	private int[] segY = new int[16];
+	private int[] segW = new int[16];
+	private int count;
+	private long usedArea;
+	private int packedX;
+	private int packedY;
+	private int top;
+
+	/**
+	 * @param width the width of the area to pack into
+	 * @param height the height of the area to pack into
+	 */
+	public SkylinePacker(int width, int height) {
+		if (width <= 0 || height <= 0) throw new IllegalArgumentException("Packing area must have positive dimensions.");
+		this.width = width;
+		this.height = height;
+		reset();
+	}
+
+	/**
+	 * Forgets everything that was packed.
+	 */
+	public final void reset() {
+		count = 1;
+		segX[0] = 0;
+		segY[0] = 0;
+		segW[0] = width;
+		usedArea = 0;
+		top = 0;
+	}
+
+	/**
+	 * Finds a place for a rectangle and reserves it.
+	 * If it succeeds, the position is available from
+	 * {@link SkylinePacker#getPackedX()} and {@link SkylinePacker#getPackedY()}.
+	 *
+	 * @param w the width of the rectangle
+	 * @param h the height of the rectangle
+	 * @return false if the rectangle does not fit anywhere
+	 */
+	public boolean pack(int w, int h) {
+		if (w <= 0 || h <= 0) throw new IllegalArgumentException("Rectangle must have positive dimensions.");
+		int bestIndex = -1, bestY = Integer.MAX_VALUE, bestWidth = Integer.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			int y = fit(i, w, h);
+			if (y < 0) continue;
+			if (y < bestY || (y == bestY && segW[i] < bestWidth)) {
+				bestIndex = i;
+				bestY = y;
+				bestWidth = segW[i];
+			}
+		}
+		if (bestIndex < 0) return false;
+		packedX = segX[bestIndex];
+		packedY = bestY;
+		addSegment(bestIndex, packedX, bestY + h, w);
+		usedArea += (long) w * h;
+		top = Math.max(top, bestY + h);
+		return true;
+	}
+
+	/**
+	 * @return the X of the last packed rectangle
+	 */
+	public int getPackedX() {
+		return packedX;
+	}
+
+	/**
+	 * @return the Y of the last packed rectangle
+	 */
+	public int getPackedY() {
+		return packedY;
+	}
+
+	/**
+	 * @return the total area of every packed rectangle
+	 */
+	public long getUsedArea() {
+		return usedArea;
+	}
+
+	/**
+	 * @return the height of the tallest packed rectangle's top edge
+	 */
+	public int getUsedHeight() {
+		return top;
+	}
+
+	/**
+	 * Gets the fraction of the area below the skyline's highest point
+	 * that is covered by packed rectangles. 1 means no space was wasted.
+	 *
+	 * @return the packing efficiency, between 0 and 1
+	 */
+	public double getEfficiency() {
+		if (top == 0) return 1;
+		return usedArea / ((double) width * top);
+	}
+
+	/**
+	 * @return the fraction of the whole area covered by packed rectangles
+	 */
+	public double getOccupancy() {
+		return usedArea / ((double) width * height);
+	}
+
+	/**
+	 * @return the width of the packing area
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the height of the packing area
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the Y a rectangle would rest at if placed at the start of the given segment, or -1 if it doesn't fit
+	 */
+	private int fit(int index, int w, int h) {
+		int x = segX[index];
+		if (x + w > width) return -1;
+		int remaining = w;
+		int y = 0;
+		for (int i = index; remaining > 0; i++) {
+			y = Math.max(y, segY[i]);
+			if (y + h > height) return -1;
+			remaining -= segW[i];
+		}
+		return y;
+	}
+
+	private void addSegment(int index, int x, int y, int w) {
+		if (count == segX.length) {
+			segX = Arrays.copyOf(segX, count * 2);
+			segY = Arrays.copyOf(segY, count * 2);
+			segW = Arrays.copyOf(segW, count * 2);
+		}
+		System.arraycopy(segX, index, segX, index + 1, count - index);
+		System.arraycopy(segY, index, segY, index + 1, count - index);
+		System.arraycopy(segW, index, segW, index + 1, count - index);
+		segX[index] = x;
+		segY[index] = y;
+		segW[index] = w;
+		count++;
+		//shrink or remove the segments now covered by the new one
+		for (int i = index + 1; i < count; i++) {
+			int end = segX[i - 1] + segW[i - 1];
+			if (segX[i] >= end) break;
+			int shrink = end - segX[i];
+			if (segW[i] <= shrink) {
+				remove(i--);
+				continue;
+			}
+			segX[i] += shrink;
+			segW[i] -= shrink;
+			break;
+		}
+		//merge neighbours at the same height
+		for (int i = 0; i < count - 1; i++) {
+			if (segY[i] == segY[i + 1]) {
+				segW[i] += segW[i + 1];
+				remove(i + 1);
+				i--;
+			}
+		}
+	}
+
+	private void remove(int index) {
+		System.arraycopy(segX, index + 1, segX, index, count - index - 1);
+		System.arraycopy(segY, index + 1, segY, index, count - index - 1);
+		System.arraycopy(segW, index + 1, segW, index, count - index - 1);
+		count--;
+	}
+
+	@Override
+	public String toString() {
+		return "SkylinePacker{" + width + "x" + height + ", efficiency=" + getEfficiency() + "}";
+	}
+
+}
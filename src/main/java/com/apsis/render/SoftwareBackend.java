@@ -0,0 +1,508 @@
+package com.apsis.render;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pure-Java {@link RenderBackend} that rasterizes into an
+ * <code>int[]</code> ARGB framebuffer, for machines without a GPU.<br>
+ * <br>
+ * Triangles are collected and binned into square tiles as they are drawn.
+ * When the frame ends, the tiles are rasterized in parallel by a pool of
+ * worker threads. Each tile draws its triangles in submission order,
+ * so alpha blending (source-over) matches what OpenGL would produce.<br>
+ * <br>
+ * The framebuffer uses the same coordinates as {@link Window}:
+ * <code>(0, 0)</code> is the bottom-left pixel.
+ *
+ * @author Cal Stephens
+ */
+public class SoftwareBackend implements RenderBackend {
+
+	/**
+	 * The default width and height of a tile, in pixels
+	 */
+	public final static int DEFAULT_TILE_SIZE = 64;
+	private final static int ALPHA = BlendMode.ALPHA.ordinal();
+	private final static int ADDITIVE = BlendMode.ADDITIVE.ordinal();
+
+	private final int width;
+	private final int height;
+	private final int[] pixels;
+	private final int tileSize;
+	private final int tilesX;
+	private final int tilesY;
+	private final ExecutorService executor;
+	private final boolean ownsExecutor;
+	private final int workers;
+	private int clearColor = 0xFF000000;
+
+	//triangles of the current frame, 6 floats and 3 colors per triangle
+	private float[] positions = new float[6 * 1024];
+	private int[] colors = new int[3 * 1024];
+	private float[] texCoords = new float[6 * 1024];
+	private byte[] blendModes = new byte[1024];
+	private TextureAtlas[] textures = new TextureAtlas[1024];
+	private TextureAtlas texture = null;
+	private int triangles = 0;
+	private byte blendMode = (byte) BlendMode.ALPHA.ordinal();
+	//per-tile lists of triangle indices
+	private final int[][] bins;
+	private final int[] binSizes;
+
+	private long lastFramePixels = 0;
+	private long lastFrameNanos = 0;
+	private boolean inFrame = false;
+	private final double[] view = new double[6];
+	private boolean hasView = false;
+
+	/**
+	 * Creates a software backend using one worker thread per available processor.
+	 *
+	 * @param width the width of the framebuffer
+	 * @param height the height of the framebuffer
+	 */
+	public SoftwareBackend(int width, int height) {
+		this(width, height, DEFAULT_TILE_SIZE, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param width the width of the framebuffer
+	 * @param height the height of the framebuffer
+	 * @param tileSize the width and height of a tile, in pixels
+	 * @param threads the number of worker threads to rasterize with
+	 */
+	public SoftwareBackend(int width, int height, int tileSize, int threads) {
+		this(width, height, tileSize, threads, threads <= 1 ? null : Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Apsis-Raster-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		}), true);
+	}
+
+	/**
+	 * @param width the width of the framebuffer
+	 * @param height the height of the framebuffer
+	 * @param tileSize the width and height of a tile, in pixels
+	 * @param workers the number of tiles to rasterize at once
+	 * @param executor the executor to rasterize on, or null to rasterize on the calling thread
+	 */
+	public SoftwareBackend(int width, int height, int tileSize, int workers, ExecutorService executor) {
+		this(width, height, tileSize, workers, executor, false);
+	}
+
+	private SoftwareBackend(int width, int height, int tileSize, int workers, ExecutorService executor, boolean ownsExecutor) {
+		if (width <= 0 || height <= 0) throw new IllegalArgumentException("Framebuffer dimensions must be positive.");
+		if (tileSize <= 0) throw new IllegalArgumentException("Tile size must be positive.");
+		this.width = width;
+		this.height = height;
+		this.pixels = new int[width * height];
+		this.tileSize = tileSize;
+		this.tilesX = (width + tileSize - 1) / tileSize;
+		this.tilesY = (height + tileSize - 1) / tileSize;
+		this.bins = new int[tilesX * tilesY][16];
+		this.binSizes = new int[tilesX * tilesY];
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		this.workers = executor == null ? 1 : Math.max(1, workers);
+	}
+
+	@Override
+	public void beginFrame(Camera camera) {
+		if (inFrame) throw new IllegalStateException("beginFrame() called twice without endFrame()");
+		inFrame = true;
+		hasView = camera != null;
+		blendMode = (byte) BlendMode.ALPHA.ordinal();
+		texture = null;
+		if (hasView) camera.getTransform(view);
+		triangles = 0;
+		Arrays.fill(binSizes, 0);
+	}
+
+	@Override
+	public void setBlendMode(BlendMode mode) {
+		this.blendMode = (byte) mode.ordinal();
+	}
+
+	@Override
+	public void bindTexture(TextureAtlas atlas) {
+		this.texture = atlas;
+	}
+
+	@Override
+	public void draw(VertexBuffer buffer) {
+		int count = buffer.getVertexCount() / 3;
+		ensureCapacity(triangles + count);
+		if (hasView) {
+			float a = (float) view[0], b = (float) view[1], c = (float) view[2], d = (float) view[3];
+			float e = (float) view[4], f = (float) view[5];
+			float[] source = buffer.getPositions();
+			for (int i = 0, o = triangles * 6, end = count * 6; i < end; i += 2, o += 2) {
+				float x = source[i], y = source[i + 1];
+				positions[o] = a * x + b * y + e;
+				positions[o + 1] = c * x + d * y + f;
+			}
+		} else System.arraycopy(buffer.getPositions(), 0, positions, triangles * 6, count * 6);
+		System.arraycopy(buffer.getColors(), 0, colors, triangles * 3, count * 3);
+		Arrays.fill(blendModes, triangles, triangles + count, blendMode);
+		Arrays.fill(textures, triangles, triangles + count, texture);
+		if (texture != null) System.arraycopy(buffer.getTexCoords(), 0, texCoords, triangles * 6, count * 6);
+		for (int i = 0; i < count; i++) {
+			bin(triangles++);
+		}
+	}
+
+	@Override
+	public void endFrame() {
+		if (!inFrame) throw new IllegalStateException("endFrame() called without beginFrame()");
+		long start = System.nanoTime();
+		final AtomicInteger nextTile = new AtomicInteger();
+		final int tileCount = tilesX * tilesY;
+		if (executor == null) {
+			lastFramePixels = rasterizeTiles(nextTile, tileCount);
+		} else {
+			List<Callable<Long>> jobs = new ArrayList<>(workers);
+			for (int i = 0; i < workers; i++) {
+				jobs.add(new Callable<Long>() {
+					@Override
+					public Long call() {
+						return rasterizeTiles(nextTile, tileCount);
+					}
+				});
+			}
+			long filled = 0;
+			try {
+				for (Future<Long> result : executor.invokeAll(jobs)) {
+					filled += result.get();
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while rasterizing.");
+			} catch (ExecutionException ex) {
+				throw new IllegalStateException("There was a problem rasterizing the frame (Exception=" + ex.getCause() + ")");
+			}
+			lastFramePixels = filled;
+		}
+		lastFrameNanos = System.nanoTime() - start;
+		inFrame = false;
+	}
+
+	/**
+	 * Stops the worker threads if this backend created them.
+	 */
+	public void shutdown() {
+		if (ownsExecutor && executor != null) executor.shutdown();
+	}
+
+	/**
+	 * @param color the packed ARGB color the framebuffer is cleared to at the start of each frame
+	 */
+	public void setClearColor(int color) {
+		this.clearColor = color;
+	}
+
+	/**
+	 * @return the packed ARGB color the framebuffer is cleared to
+	 */
+	public int getClearColor() {
+		return clearColor;
+	}
+
+	/**
+	 * Returns the framebuffer. Row 0 is the bottom of the screen.
+	 * Only valid after {@link SoftwareBackend#endFrame()}.
+	 *
+	 * @return the internal ARGB framebuffer
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	/**
+	 * @param x the X of the pixel
+	 * @param y the Y of the pixel, 0 being the bottom of the screen
+	 * @return the packed ARGB color of the pixel
+	 */
+	public int getPixel(int x, int y) {
+		return pixels[y * width + x];
+	}
+
+	/**
+	 * @return the width of the framebuffer
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the height of the framebuffer
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the number of pixels written (including the clear) during the last frame
+	 */
+	public long getLastFramePixels() {
+		return lastFramePixels;
+	}
+
+	/**
+	 * @return the time spent rasterizing the last frame, in nanoseconds
+	 */
+	public long getLastFrameNanos() {
+		return lastFrameNanos;
+	}
+
+	/**
+	 * @return the fill rate of the last frame, in megapixels per second
+	 */
+	public double getLastFrameFillRate() {
+		if (lastFrameNanos == 0) return 0;
+		return lastFramePixels * 1000.0 / lastFrameNanos;
+	}
+
+	/**
+	 * Copies the framebuffer into a new image, flipped
+	 * so that the top of the screen is the top of the image.
+	 *
+	 * @return the rendered image
+	 */
+	public BufferedImage toImage() {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < height; y++) {
+			image.setRGB(0, height - 1 - y, width, 1, pixels, y * width, width);
+		}
+		return image;
+	}
+
+	/**
+	 * Rasterizes tiles until there are none left.
+	 *
+	 * @param nextTile the shared tile counter
+	 * @param tileCount the number of tiles
+	 * @return the number of pixels written
+	 */
+	private long rasterizeTiles(AtomicInteger nextTile, int tileCount) {
+		long filled = 0;
+		int tile;
+		while ((tile = nextTile.getAndIncrement()) < tileCount) {
+			filled += rasterizeTile(tile);
+		}
+		return filled;
+	}
+
+	/**
+	 * Clears the given tile and draws every triangle binned into it.
+	 *
+	 * @param tile the index of the tile
+	 * @return the number of pixels written
+	 */
+	private long rasterizeTile(int tile) {
+		int minX = (tile % tilesX) * tileSize, minY = (tile / tilesX) * tileSize;
+		int maxX = Math.min(minX + tileSize, width) - 1, maxY = Math.min(minY + tileSize, height) - 1;
+		for (int y = minY; y <= maxY; y++) {
+			Arrays.fill(pixels, y * width + minX, y * width + maxX + 1, clearColor);
+		}
+		long filled = (maxX - minX + 1) * (maxY - minY + 1);
+		int[] bin = bins[tile];
+		for (int i = 0, size = binSizes[tile]; i < size; i++) {
+			filled += rasterizeTriangle(bin[i], minX, minY, maxX, maxY);
+		}
+		return filled;
+	}
+
+	/**
+	 * Draws one triangle, clipped to the given pixel bounds.
+	 * Pixels are sampled at their centers using edge functions,
+	 * with a top-left fill rule so shared edges aren't drawn twice.
+	 *
+	 * @return the number of pixels written
+	 */
+	private int rasterizeTriangle(int triangle, int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+		int p = triangle * 6;
+		float x0 = positions[p], y0 = positions[p + 1];
+		float x1 = positions[p + 2], y1 = positions[p + 3];
+		float x2 = positions[p + 4], y2 = positions[p + 5];
+		float area = (x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0);
+		if (area == 0) return 0;
+		int c0 = colors[triangle * 3], c1 = colors[triangle * 3 + 1], c2 = colors[triangle * 3 + 2];
+		//make the winding counterclockwise
+		TextureAtlas atlas = textures[triangle];
+		float u0 = 0, v0 = 0, u1 = 0, v1 = 0, u2 = 0, v2 = 0;
+		if (atlas != null) {
+			u0 = texCoords[p];
+			v0 = texCoords[p + 1];
+			u1 = texCoords[p + 2];
+			v1 = texCoords[p + 3];
+			u2 = texCoords[p + 4];
+			v2 = texCoords[p + 5];
+		}
+		if (area < 0) {
+			float tx = x1, ty = y1;
+			x1 = x2;
+			y1 = y2;
+			x2 = tx;
+			y2 = ty;
+			int tc = c1;
+			c1 = c2;
+			c2 = tc;
+			float tu = u1, tv = v1;
+			u1 = u2;
+			v1 = v2;
+			u2 = tu;
+			v2 = tv;
+			area = -area;
+		}
+		int minX = Math.max(clipMinX, (int) Math.floor(Math.min(x0, Math.min(x1, x2))));
+		int maxX = Math.min(clipMaxX, (int) Math.ceil(Math.max(x0, Math.max(x1, x2))));
+		int minY = Math.max(clipMinY, (int) Math.floor(Math.min(y0, Math.min(y1, y2))));
+		int maxY = Math.min(clipMaxY, (int) Math.ceil(Math.max(y0, Math.max(y1, y2))));
+		if (minX > maxX || minY > maxY) return 0;
+
+		//edge function steps
+		float a0 = y1 - y2, b0 = x2 - x1;
+		float a1 = y2 - y0, b1 = x0 - x2;
+		float a2 = y0 - y1, b2 = x1 - x0;
+		//top-left rule, pixels exactly on any other edge are left out
+		float bias0 = isTopLeft(a0, b0) ? 0 : Float.MIN_VALUE;
+		float bias1 = isTopLeft(a1, b1) ? 0 : Float.MIN_VALUE;
+		float bias2 = isTopLeft(a2, b2) ? 0 : Float.MIN_VALUE;
+		boolean flat = c0 == c1 && c1 == c2;
+		int mode = blendModes[triangle];
+		int[] texels = atlas == null ? null : atlas.getPixels();
+		int texW = atlas == null ? 0 : atlas.getWidth(), texH = atlas == null ? 0 : atlas.getHeight();
+		float invArea = 1 / area;
+		int written = 0;
+
+		float px = minX + 0.5f;
+		for (int y = minY; y <= maxY; y++) {
+			float py = y + 0.5f;
+			float w0 = a0 * (px - x1) + b0 * (py - y1);
+			float w1 = a1 * (px - x2) + b1 * (py - y2);
+			float w2 = a2 * (px - x0) + b2 * (py - y0);
+			int row = y * width;
+			for (int x = minX; x <= maxX; x++) {
+				if (w0 >= bias0 && w1 >= bias1 && w2 >= bias2) {
+					int src = flat ? c0 : interpolate(c0, c1, c2, w0 * invArea, w1 * invArea, w2 * invArea);
+					if (texels != null) {
+						float l0 = w0 * invArea, l1 = w1 * invArea, l2 = w2 * invArea;
+						int tx = Math.min(texW - 1, Math.max(0, (int) ((u0 * l0 + u1 * l1 + u2 * l2) * texW)));
+						int ty = Math.min(texH - 1, Math.max(0, (int) ((v0 * l0 + v1 * l1 + v2 * l2) * texH)));
+						src = modulate(texels[ty * texW + tx], src);
+					}
+					pixels[row + x] = mode == ALPHA ? blend(src, pixels[row + x])
+							: mode == ADDITIVE ? add(src, pixels[row + x]) : src | 0xFF000000;
+					written++;
+				}
+				w0 += a0;
+				w1 += a1;
+				w2 += a2;
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * @return whether or not the edge is a top or left edge of a counterclockwise triangle
+	 */
+	private static boolean isTopLeft(float a, float b) {
+		return a > 0 || (a == 0 && b < 0);
+	}
+
+	/**
+	 * Interpolates three packed colors using barycentric weights.
+	 */
+	private static int interpolate(int c0, int c1, int c2, float w0, float w1, float w2) {
+		int a = (int) ((c0 >>> 24) * w0 + (c1 >>> 24) * w1 + (c2 >>> 24) * w2 + 0.5f);
+		int r = (int) (((c0 >> 16) & 0xFF) * w0 + ((c1 >> 16) & 0xFF) * w1 + ((c2 >> 16) & 0xFF) * w2 + 0.5f);
+		int g = (int) (((c0 >> 8) & 0xFF) * w0 + ((c1 >> 8) & 0xFF) * w1 + ((c2 >> 8) & 0xFF) * w2 + 0.5f);
+		int b = (int) ((c0 & 0xFF) * w0 + (c1 & 0xFF) * w1 + (c2 & 0xFF) * w2 + 0.5f);
+		return (Math.min(a, 255) << 24) | (Math.min(r, 255) << 16) | (Math.min(g, 255) << 8) | Math.min(b, 255);
+	}
+
+	/**
+	 * Blends a source color over a destination color (source-over).
+	 */
+	static int blend(int src, int dst) {
+		int sa = src >>> 24;
+		if (sa == 255) return src;
+		if (sa == 0) return dst;
+		int ia = 255 - sa;
+		int rb = (((src & 0x00FF00FF) * sa + (dst & 0x00FF00FF) * ia) >>> 8) & 0x00FF00FF;
+		int g = (((src & 0x0000FF00) * sa + (dst & 0x0000FF00) * ia) >>> 8) & 0x0000FF00;
+		int a = sa + (dst >>> 24) * ia / 255;
+		return (a << 24) | rb | g;
+	}
+
+	/**
+	 * Multiplies every channel of two colors.
+	 */
+	private static int modulate(int texel, int color) {
+		if (color == 0xFFFFFFFF) return texel;
+		int a = ((texel >>> 24) * (color >>> 24) + 127) / 255;
+		int r = (((texel >> 16) & 0xFF) * ((color >> 16) & 0xFF) + 127) / 255;
+		int g = (((texel >> 8) & 0xFF) * ((color >> 8) & 0xFF) + 127) / 255;
+		int b = ((texel & 0xFF) * (color & 0xFF) + 127) / 255;
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+
+	/**
+	 * Adds a source color, scaled by its alpha, to a destination color.
+	 */
+	static int add(int src, int dst) {
+		int sa = src >>> 24;
+		int r = Math.min(255, ((dst >> 16) & 0xFF) + (((src >> 16) & 0xFF) * sa) / 255);
+		int g = Math.min(255, ((dst >> 8) & 0xFF) + (((src >> 8) & 0xFF) * sa) / 255);
+		int b = Math.min(255, (dst & 0xFF) + ((src & 0xFF) * sa) / 255);
+		return (dst & 0xFF000000) | (r << 16) | (g << 8) | b;
+	}
+
+	/**
+	 * Adds a triangle to the bin of every tile its bounds overlap.
+	 */
+	private void bin(int triangle) {
+		int p = triangle * 6;
+		float minX = Math.min(positions[p], Math.min(positions[p + 2], positions[p + 4]));
+		float maxX = Math.max(positions[p], Math.max(positions[p + 2], positions[p + 4]));
+		float minY = Math.min(positions[p + 1], Math.min(positions[p + 3], positions[p + 5]));
+		float maxY = Math.max(positions[p + 1], Math.max(positions[p + 3], positions[p + 5]));
+		if (maxX < 0 || maxY < 0 || minX >= width || minY >= height) return;
+		int tx0 = Math.max(0, (int) minX / tileSize), tx1 = Math.min(tilesX - 1, (int) maxX / tileSize);
+		int ty0 = Math.max(0, (int) minY / tileSize), ty1 = Math.min(tilesY - 1, (int) maxY / tileSize);
+		for (int ty = ty0; ty <= ty1; ty++) {
+			for (int tx = tx0; tx <= tx1; tx++) {
+				int tile = ty * tilesX + tx;
+				if (binSizes[tile] == bins[tile].length) bins[tile] = Arrays.copyOf(bins[tile], binSizes[tile] * 2);
+				bins[tile][binSizes[tile]++] = triangle;
+			}
+		}
+	}
+
+	private void ensureCapacity(int triangleCount) {
+		if (triangleCount * 3 > colors.length) {
+			int capacity = Math.max(triangleCount * 3, colors.length * 2);
+			colors = Arrays.copyOf(colors, capacity);
+			positions = Arrays.copyOf(positions, capacity * 2);
+			texCoords = Arrays.copyOf(texCoords, capacity * 2);
+			blendModes = Arrays.copyOf(blendModes, capacity / 3);
+			textures = Arrays.copyOf(textures, capacity / 3);
+		}
+	}
+
+}
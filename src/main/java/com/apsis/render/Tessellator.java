@@ -0,0 +1,291 @@
+package com.apsis.render;
+
+import com.apsis.util.Point;
+import java.util.WeakHashMap;
+
+/**
+ * Turns ovals, polygons and line caps into triangle {@link Mesh}es and
+ * caches them, so that drawing the same shape many times only
+ * transforms cached vertices instead of triangulating again.<br>
+ * <br>
+ * Circles are cached in unit space by segment count, and the segment
+ * count is picked from the projected size of the shape, so small
+ * shapes use cheaper meshes. Polygons are cached by the identity of
+ * their point array and re-triangulated only if the points change.
+ *
+ * @author Cal Stephens
+ * @see Graphics
+ */
+public class Tessellator {
+
+	/**
+	 * The fewest segments a circle is drawn with
+	 */
+	public final static int MIN_SEGMENTS = 8;
+	/**
+	 * The most segments a circle is drawn with
+	 */
+	public final static int MAX_SEGMENTS = 256;
+
+	private final Mesh[] circles = new Mesh[MAX_SEGMENTS + 1];
+	private final Mesh[] halfCircles = new Mesh[MAX_SEGMENTS + 1];
+	private final Mesh quad = new Mesh(new float[]{0, -0.5f, 1, -0.5f, 1, 0.5f, 0, -0.5f, 1, 0.5f, 0, 0.5f});
+	private final WeakHashMap<Point[], PolygonEntry> polygons = new WeakHashMap<>();
+	private double tolerance = 0.25;
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 * Gets a circle with a radius of 1 centered on <code>(0, 0)</code>.
+	 *
+	 * @param segments the number of triangles around the circle
+	 * @return the cached circle mesh
+	 */
+	public Mesh getCircle(int segments) {
+		segments = clampSegments(segments);
+		Mesh circle = circles[segments];
+		if (circle == null) {
+			misses++;
+			circle = circles[segments] = arc(segments, segments);
+		} else hits++;
+		return circle;
+	}
+
+	/**
+	 * Gets a half circle with a radius of 1 centered on <code>(0, 0)</code>,
+	 * covering the side where X is positive. Used for round line caps.
+	 *
+	 * @param segments the number of triangles the full circle would have
+	 * @return the cached half circle mesh
+	 */
+	public Mesh getHalfCircle(int segments) {
+		segments = clampSegments(segments);
+		Mesh half = halfCircles[segments];
+		if (half == null) {
+			misses++;
+			half = halfCircles[segments] = arc(segments, segments / 2);
+		} else hits++;
+		return half;
+	}
+
+	/**
+	 * @return a unit quad spanning <code>(0, -0.5)</code> to <code>(1, 0.5)</code>,
+	 * used for the body of lines
+	 */
+	public Mesh getQuad() {
+		return quad;
+	}
+
+	/**
+	 * Gets the triangulation of the given polygon.<br>
+	 * The result is cached by the identity of the array, so reusing the same
+	 * array every frame avoids triangulating again. If the points have
+	 * changed since the last call, the polygon is triangulated again.
+	 *
+	 * @param points the corners of the polygon, in order
+	 * @return the cached polygon mesh
+	 * @see Tessellator#triangulate(com.apsis.util.Point[])
+	 */
+	public Mesh getPolygon(Point[] points) {
+		PolygonEntry entry = polygons.get(points);
+		if (entry != null && entry.matches(points)) {
+			hits++;
+			return entry.mesh;
+		}
+		misses++;
+		entry = new PolygonEntry(points, triangulate(points));
+		polygons.put(points, entry);
+		return entry.mesh;
+	}
+
+	/**
+	 * Picks the number of circle segments needed so that a circle with the given
+	 * projected radius is never off by more than the tolerance.
+	 * Rounded up to a multiple of 4 to keep the number of cached meshes small.
+	 *
+	 * @param projectedRadius the radius of the circle on screen, in pixels
+	 * @return the number of segments to draw the circle with
+	 * @see Tessellator#setTolerance(double)
+	 */
+	public int segmentsFor(double projectedRadius) {
+		if (projectedRadius <= tolerance) return MIN_SEGMENTS;
+		double segments = Math.PI / Math.acos(1 - tolerance / projectedRadius);
+		return clampSegments(((int) Math.ceil(segments) + 3) & ~3);
+	}
+
+	/**
+	 * @param tolerance the largest distance in pixels a circle's edge may
+	 * stray from a true circle
+	 */
+	public void setTolerance(double tolerance) {
+		if (tolerance <= 0) throw new IllegalArgumentException("Tolerance must be positive.");
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * @return the largest distance in pixels a circle's edge may stray from a true circle
+	 */
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * @return the number of meshes served from the cache
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of meshes that had to be built
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Empties the polygon cache. Circle meshes are kept.
+	 */
+	public void clearPolygons() {
+		polygons.clear();
+	}
+
+	/**
+	 * Triangulates a simple (not self-intersecting) polygon by ear clipping.
+	 * Works for both concave and convex polygons in either winding.
+	 *
+	 * @param points the corners of the polygon, in order
+	 * @return the triangulated polygon
+	 */
+	public static Mesh triangulate(Point[] points) {
+		int n = points.length;
+		if (n < 3) throw new IllegalArgumentException("A polygon must have at least 3 points.");
+		double[] x = new double[n], y = new double[n];
+		double area = 0;
+		for (int i = 0; i < n; i++) {
+			x[i] = points[i].x();
+			y[i] = points[i].y();
+		}
+		for (int i = 0, j = n - 1; i < n; j = i++) {
+			area += x[j] * y[i] - x[i] * y[j];
+		}
+		double winding = area < 0 ? -1 : 1;
+		int[] remaining = new int[n];
+		for (int i = 0; i < n; i++) {
+			remaining[i] = i;
+		}
+		float[] positions = new float[(n - 2) * 6];
+		int out = 0;
+		int count = n;
+		int guard = count;
+		int i = 0;
+		while (count > 3) {
+			int prev = remaining[(i + count - 1) % count], cur = remaining[i % count], next = remaining[(i + 1) % count];
+			if (isEar(x, y, remaining, count, prev, cur, next, winding)) {
+				out = putTriangle(positions, out, x, y, prev, cur, next);
+				System.arraycopy(remaining, i % count + 1, remaining, i % count, count - i % count - 1);
+				count--;
+				guard = count;
+			} else if (--guard <= 0) {
+				//no ear left, the polygon is degenerate or self-intersecting
+				break;
+			} else i++;
+			i %= count;
+		}
+		//whatever is left is drawn as a fan
+		for (int j = 1; j < count - 1; j++) {
+			out = putTriangle(positions, out, x, y, remaining[0], remaining[j], remaining[j + 1]);
+		}
+		return new Mesh(positions);
+	}
+
+	private static boolean isEar(double[] x, double[] y, int[] remaining, int count, int a, int b, int c, double winding) {
+		double cross = (x[b] - x[a]) * (y[c] - y[a]) - (y[b] - y[a]) * (x[c] - x[a]);
+		if (cross * winding <= 0) return false;
+		for (int i = 0; i < count; i++) {
+			int p = remaining[i];
+			if (p == a || p == b || p == c) continue;
+			if (inTriangle(x[p], y[p], x[a], y[a], x[b], y[b], x[c], y[c])) return false;
+		}
+		return true;
+	}
+
+	private static boolean inTriangle(double px, double py, double ax, double ay, double bx, double by, double cx, double cy) {
+		double d1 = (px - bx) * (ay - by) - (ax - bx) * (py - by);
+		double d2 = (px - cx) * (by - cy) - (bx - cx) * (py - cy);
+		double d3 = (px - ax) * (cy - ay) - (cx - ax) * (py - ay);
+		boolean negative = d1 < 0 || d2 < 0 || d3 < 0;
+		boolean positive = d1 > 0 || d2 > 0 || d3 > 0;
+		return !(negative && positive);
+	}
+
+	private static int putTriangle(float[] positions, int out, double[] x, double[] y, int a, int b, int c) {
+		positions[out++] = (float) x[a];
+		positions[out++] = (float) y[a];
+		positions[out++] = (float) x[b];
+		positions[out++] = (float) y[b];
+		positions[out++] = (float) x[c];
+		positions[out++] = (float) y[c];
+		return out;
+	}
+
+	/**
+	 * Builds a fan of triangles around <code>(0, 0)</code> with a radius of 1,
+	 * starting at angle <code>-PI / 2</code> for partial arcs and 0 for full circles.
+	 *
+	 * @param segments the number of segments in a full circle
+	 * @param used the number of segments to build
+	 * @return the mesh
+	 */
+	private static Mesh arc(int segments, int used) {
+		float[] positions = new float[used * 6];
+		double step = Math.PI * 2 / segments;
+		double start = used == segments ? 0 : -Math.PI / 2;
+		float lastX = (float) Math.cos(start), lastY = (float) Math.sin(start);
+		for (int i = 1, p = 0; i <= used; i++) {
+			float x = (float) Math.cos(start + step * i), y = (float) Math.sin(start + step * i);
+			positions[p++] = 0;
+			positions[p++] = 0;
+			positions[p++] = lastX;
+			positions[p++] = lastY;
+			positions[p++] = x;
+			positions[p++] = y;
+			lastX = x;
+			lastY = y;
+		}
+		return new Mesh(positions);
+	}
+
+	private static int clampSegments(int segments) {
+		return Math.max(MIN_SEGMENTS, Math.min(MAX_SEGMENTS, segments));
+	}
+
+	/**
+	 * A cached polygon triangulation, along with a copy of
+	 * the points it was built from.
+	 */
+	private static class PolygonEntry {
+
+		private final double[] coords;
+		private final Mesh mesh;
+
+		private PolygonEntry(Point[] points, Mesh mesh) {
+			this.coords = new double[points.length * 2];
+			for (int i = 0; i < points.length; i++) {
+				coords[i * 2] = points[i].x();
+				coords[i * 2 + 1] = points[i].y();
+			}
+			this.mesh = mesh;
+		}
+
+		private boolean matches(Point[] points) {
+			if (points.length * 2 != coords.length) return false;
+			for (int i = 0; i < points.length; i++) {
+				if (coords[i * 2] != points[i].x() || coords[i * 2 + 1] != points[i].y()) return false;
+			}
+			return true;
+		}
+
+	}
+
+}
@@ -0,0 +1,175 @@
+package com.apsis.render;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One page of packed images, stored as <code>int[]</code> ARGB pixels.<br>
+ * Many small images share an atlas, so sprites drawn from the same
+ * atlas can be drawn in a single batch.
+ * Row 0 of the pixels is the top of the page.
+ *
+ * @author Cal Stephens
+ * @see ImageCache
+ * @see GLImage
+ */
+public class TextureAtlas {
+
+	private final static AtomicInteger ids = new AtomicInteger();
+
+	private final int id = ids.incrementAndGet();
+	private final int width;
+	private final int height;
+	private final int padding;
+	private final int[] pixels;
+	private final SkylinePacker packer;
+	private volatile int version = 0;
+	private volatile boolean disposed = false;
+	private int residentImages = 0;
+	private int packedX;
+	private int packedY;
+	//used by GLBackend
+	int glTexture = 0;
+	int uploadedVersion = -1;
+
+	/**
+	 * @param width the width of the page in pixels
+	 * @param height the height of the page in pixels
+	 * @param padding the number of empty pixels kept between images, to avoid bleeding
+	 */
+	public TextureAtlas(int width, int height, int padding) {
+		this.width = width;
+		this.height = height;
+		this.padding = padding;
+		this.pixels = new int[width * height];
+		this.packer = new SkylinePacker(width, height);
+	}
+
+	/**
+	 * Packs an image into the atlas and copies its pixels in.
+	 * If it succeeds, the position of the image is available from
+	 * {@link TextureAtlas#getPackedX()} and {@link TextureAtlas#getPackedY()}.
+	 *
+	 * @param argb the pixels of the image, row 0 being the top
+	 * @param w the width of the image
+	 * @param h the height of the image
+	 * @return false if there is no room for the image
+	 */
+	public synchronized boolean insert(int[] argb, int w, int h) {
+		if (disposed) throw new IllegalStateException("TextureAtlas has been disposed.");
+		int paddedW = Math.min(w + padding, width), paddedH = Math.min(h + padding, height);
+		if (w > width || h > height || !packer.pack(paddedW, paddedH)) return false;
+		packedX = packer.getPackedX();
+		packedY = packer.getPackedY();
+		for (int row = 0; row < h; row++) {
+			System.arraycopy(argb, row * w, pixels, (packedY + row) * width + packedX, w);
+		}
+		residentImages++;
+		version++;
+		return true;
+	}
+
+	/**
+	 * @return the X of the last inserted image
+	 */
+	public synchronized int getPackedX() {
+		return packedX;
+	}
+
+	/**
+	 * @return the Y of the last inserted image, 0 being the top of the page
+	 */
+	public synchronized int getPackedY() {
+		return packedY;
+	}
+
+	/**
+	 * Called when an image in the atlas is no longer needed.
+	 *
+	 * @return the number of images still in the atlas
+	 */
+	synchronized int releaseImage() {
+		return --residentImages;
+	}
+
+	/**
+	 * @return the number of images in the atlas
+	 */
+	public synchronized int getResidentImages() {
+		return residentImages;
+	}
+
+	/**
+	 * Marks the atlas as no longer used.
+	 * Backends free anything they created for it.
+	 */
+	void dispose() {
+		disposed = true;
+	}
+
+	/**
+	 * @return whether or not the atlas has been disposed
+	 */
+	public boolean isDisposed() {
+		return disposed;
+	}
+
+	/**
+	 * @return the unique id of the atlas, used to sort draw calls by texture
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return the width of the page in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the height of the page in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the internal pixel array. Row 0 is the top of the page.
+	 * Reading it while images are being inserted should be
+	 * synchronized on the atlas.
+	 *
+	 * @return the internal ARGB pixel array
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	/**
+	 * @return a counter that changes every time pixels are added to the atlas
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the fraction of the used height of the page covered by images
+	 * @see SkylinePacker#getEfficiency()
+	 */
+	public synchronized double getPackingEfficiency() {
+		return packer.getEfficiency();
+	}
+
+	/**
+	 * @return the fraction of the page covered by images
+	 */
+	public synchronized double getOccupancy() {
+		return packer.getOccupancy();
+	}
+
+	@Override
+	public String toString() {
+		return "TextureAtlas{id=" + id + ", " + width + "x" + height + ", images=" + residentImages + "}";
+	}
+
+}
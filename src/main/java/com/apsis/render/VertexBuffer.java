@@ -0,0 +1,153 @@
+package com.apsis.render;
+
+/**
+ * A reusable, fixed-capacity store of colored, optionally textured 2D vertices.<br>
+ * Every three vertices make up one triangle.
+ * {@link Graphics} appends primitives into a VertexBuffer and hands
+ * the whole buffer to its {@link RenderBackend} when it fills up,
+ * so nothing is allocated while drawing.
+ *
+ * @author Cal Stephens
+ * @see Graphics
+ * @see RenderBackend#draw(com.apsis.render.VertexBuffer)
+ */
+public class VertexBuffer {
+
+	private final float[] positions;
+	private final float[] texCoords;
+	private final int[] colors;
+	private int count = 0;
+
+	/**
+	 * @param capacity the maximum number of vertices the buffer can hold
+	 */
+	public VertexBuffer(int capacity) {
+		if (capacity < 3) throw new IllegalArgumentException("A VertexBuffer must hold at least one triangle.");
+		this.positions = new float[capacity * 2];
+		this.texCoords = new float[capacity * 2];
+		this.colors = new int[capacity];
+	}
+
+	/**
+	 * Appends a vertex to the buffer.
+	 *
+	 * @param x the X of the vertex
+	 * @param y the Y of the vertex
+	 * @param argb the packed color of the vertex
+	 * @see com.apsis.util.PackedColor
+	 */
+	public void add(float x, float y, int argb) {
+		add(x, y, 0, 0, argb);
+	}
+
+	/**
+	 * Appends a textured vertex to the buffer.
+	 *
+	 * @param x the X of the vertex
+	 * @param y the Y of the vertex
+	 * @param u the horizontal texture coordinate of the vertex (0 - 1)
+	 * @param v the vertical texture coordinate of the vertex (0 - 1, 0 being the top row)
+	 * @param argb the packed color of the vertex, multiplied with the texture
+	 * @see com.apsis.util.PackedColor
+	 */
+	public void add(float x, float y, float u, float v, int argb) {
+		if (count == colors.length) throw new IllegalStateException("VertexBuffer is full (capacity=" + colors.length + ")");
+		positions[count * 2] = x;
+		positions[count * 2 + 1] = y;
+		texCoords[count * 2] = u;
+		texCoords[count * 2 + 1] = v;
+		colors[count] = argb;
+		count++;
+	}
+
+	/**
+	 * Appends a run of vertices stored in separate arrays, laid out the same
+	 * way as the arrays returned by this buffer's getters.
+	 *
+	 * @param positions the source positions
+	 * @param texCoords the source texture coordinates
+	 * @param colors the source packed colors
+	 * @param first the index of the first vertex to copy
+	 * @param vertices the number of vertices to copy
+	 */
+	public void add(float[] positions, float[] texCoords, int[] colors, int first, int vertices) {
+		if (vertices > remaining()) throw new IllegalStateException("VertexBuffer cannot fit " + vertices + " more vertices (remaining=" + remaining() + ")");
+		System.arraycopy(positions, first * 2, this.positions, count * 2, vertices * 2);
+		System.arraycopy(texCoords, first * 2, this.texCoords, count * 2, vertices * 2);
+		System.arraycopy(colors, first, this.colors, count, vertices);
+		count += vertices;
+	}
+
+	/**
+	 * Empties the buffer so it can be reused.
+	 */
+	public void clear() {
+		count = 0;
+	}
+
+	/**
+	 * @return the number of vertices currently in the buffer
+	 */
+	public int getVertexCount() {
+		return count;
+	}
+
+	/**
+	 * @return the maximum number of vertices the buffer can hold
+	 */
+	public int getCapacity() {
+		return colors.length;
+	}
+
+	/**
+	 * @return the number of vertices that can still be added
+	 */
+	public int remaining() {
+		return colors.length - count;
+	}
+
+	/**
+	 * @return whether or not the buffer contains no vertices
+	 */
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * Returns the internal position array, laid out as
+	 * <code>x0, y0, x1, y1, ...</code>.<br>
+	 * Only the first {@link VertexBuffer#getVertexCount()} vertices are valid.
+	 *
+	 * @return the internal position array
+	 */
+	public float[] getPositions() {
+		return positions;
+	}
+
+	/**
+	 * Returns the internal texture coordinate array, laid out as
+	 * <code>u0, v0, u1, v1, ...</code>.<br>
+	 * Only the first {@link VertexBuffer#getVertexCount()} vertices are valid.
+	 *
+	 * @return the internal texture coordinate array
+	 */
+	public float[] getTexCoords() {
+		return texCoords;
+	}
+
+	/**
+	 * Returns the internal array of packed ARGB vertex colors.<br>
+	 * Only the first {@link VertexBuffer#getVertexCount()} colors are valid.
+	 *
+	 * @return the internal color array
+	 */
+	public int[] getColors() {
+		return colors;
+	}
+
+	@Override
+	public String toString() {
+		return "VertexBuffer{count=" + count + ", capacity=" + colors.length + "}";
+	}
+
+}
@@ -15,7 +15,8 @@ import org.lwjgl.opengl.PixelFormat;
 public class Window {
 
 	private World renderingWorld = null;
-	private Graphics graphics = new Graphics();
+	private Graphics graphics = new Graphics(new GLBackend());
+	private final Camera camera;
 	
 	public Window(Point windowDim) {
 		System.setProperty("org.lwjgl.librarypath", new File("natives").getAbsolutePath());
@@ -27,6 +28,8 @@ public class Window {
 			e.printStackTrace(System.out);
 			System.exit(0);
 		}
+		camera = new Camera((int) windowDim.x(), (int) windowDim.y());
+		graphics.setCamera(camera);
 	}
 
 	public final void initGL(int x, int y) {
@@ -38,6 +41,16 @@ public class Window {
 		GL11.glDisable(GL11.GL_DEPTH_TEST);
 	}
 
+	/**
+	 * Gets the camera the window views its World through.
+	 * By default it shows world coordinates as pixel coordinates.
+	 *
+	 * @return the window's camera
+	 */
+	public Camera getCamera() {
+		return camera;
+	}
+
 	public void setRenderingWorld(World world){
 		this.renderingWorld = world;
 	}
@@ -45,7 +58,10 @@ public class Window {
 	public void startRendering(){
 		if(renderingWorld == null) throw new IllegalArgumentException("Rendering World must be set before rendering can start.");
 		while (!Display.isCloseRequested()) {
+			graphics.beginFrame();
 			renderingWorld.render(graphics);
+			graphics.endFrame();
+			Display.update();
 		}
 		Display.destroy();
 		System.exit(0);
@@ -0,0 +1,23 @@
+package com.apsis.shard;
+
+import com.apsis.world.PointObject;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+
+/**
+ * An object detached from one {@link Shard}'s World on its way to another,
+ * with the methods it was subscribed with.
+ *
+ * @author Cal Stephens
+ */
+final class Handoff {
+
+	final PointObject object;
+	final ArrayList<Method> subscriptions;
+
+	Handoff(PointObject object, ArrayList<Method> subscriptions) {
+		this.object = object;
+		this.subscriptions = subscriptions;
+	}
+
+}
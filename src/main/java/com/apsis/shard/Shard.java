@@ -0,0 +1,218 @@
+package com.apsis.shard;
+
+import com.apsis.event.Event;
+import com.apsis.world.PointObject;
+import com.apsis.world.World;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * One region of a {@link ShardManager}, simulated by its own {@link World}.<br>
+ * <br>
+ * Each tick, a Shard first attaches the objects other shards handed off to it
+ * on the last tick and triggers the events posted to it, then ticks its World,
+ * then hands off every top level object that has left its region, along with
+ * its children. Only the Shard's own thread touches its World during a tick,
+ * so objects shouldn't reach into other shards; they can {@link #post(Event)}
+ * to them instead.
+ *
+ * @author Cal Stephens
+ */
+public class Shard {
+
+	private final ShardManager manager;
+	private final World world = new World();
+	private final int index;
+	private final int column;
+	private final int row;
+	//edge shards reach to infinity, so every position has a shard
+	private final double minX;
+	private final double minY;
+	private final double maxX;
+	private final double maxY;
+	//handoffs to each shard, double buffered by the parity of the tick they were made on
+	private final ArrayList<ArrayList<Handoff>> outboxes = new ArrayList<>();
+	private final ArrayList<ConcurrentLinkedQueue<Event>> mailboxes = new ArrayList<>();
+	private final ArrayList<PointObject> leaving = new ArrayList<>();
+	private final ArrayList<PointObject> subtree = new ArrayList<>();
+	private long lastTickNanos = 0;
+	private long migratedIn = 0;
+	private long migratedOut = 0;
+	private long eventsDelivered = 0;
+
+	Shard(ShardManager manager, int index, int column, int row, int shardCount) {
+		this.manager = manager;
+		this.index = index;
+		this.column = column;
+		this.row = row;
+		double width = manager.getRegionWidth(), height = manager.getRegionHeight();
+		minX = column == 0 ? Double.NEGATIVE_INFINITY : column * width;
+		minY = row == 0 ? Double.NEGATIVE_INFINITY : row * height;
+		maxX = column == manager.getColumns() - 1 ? Double.POSITIVE_INFINITY : (column + 1) * width;
+		maxY = row == manager.getRows() - 1 ? Double.POSITIVE_INFINITY : (row + 1) * height;
+		for (int i = 0; i < shardCount * 2; i++) {
+			outboxes.add(new ArrayList<Handoff>());
+		}
+		mailboxes.add(new ConcurrentLinkedQueue<Event>());
+		mailboxes.add(new ConcurrentLinkedQueue<Event>());
+	}
+
+	/**
+	 * Runs one tick of the Shard on a thread of its manager.
+	 *
+	 * @param parity the parity of the tick
+	 */
+	void step(int parity) {
+		long start = System.nanoTime();
+		List<Shard> shards = manager.getShards();
+		int inboxIndex = parity * shards.size() + index;
+		for (int i = 0; i < shards.size(); i++) {
+			ArrayList<Handoff> inbox = shards.get(i).outboxes.get(inboxIndex);
+			for (int h = 0; h < inbox.size(); h++) {
+				world.attach(inbox.get(h).object, inbox.get(h).subscriptions);
+			}
+			migratedIn += inbox.size();
+			inbox.clear();
+		}
+		ConcurrentLinkedQueue<Event> mailbox = mailboxes.get(parity);
+		Event event;
+		while ((event = mailbox.poll()) != null) {
+			world.getEventHandler().triggerEvent(event);
+			eventsDelivered++;
+		}
+		world.tick();
+		handOff(1 - parity);
+		lastTickNanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * Detaches every top level object outside the region, and its children,
+	 * into the outboxes of the shards they moved to.
+	 */
+	private void handOff(int parity) {
+		double margin = manager.getHandoffMargin();
+		synchronized (world) {
+			List<PointObject> content = world.getOrderedContent();
+			for (int i = 0; i < content.size(); i++) {
+				PointObject object = content.get(i);
+				if (object.getParent() != null) continue;
+				double x = object.getWorldX(), y = object.getWorldY();
+				if (x >= minX - margin && x < maxX + margin && y >= minY - margin && y < maxY + margin) continue;
+				leaving.add(object);
+			}
+		}
+		int shardCount = manager.getShards().size();
+		for (int i = 0; i < leaving.size(); i++) {
+			PointObject object = leaving.get(i);
+			Shard target = manager.getShardAt(object.getWorldX(), object.getWorldY());
+			ArrayList<Handoff> outbox = outboxes.get(parity * shardCount + target.index);
+			collect(object);
+			for (int s = 0; s < subtree.size(); s++) {
+				PointObject moving = subtree.get(s);
+				if (moving.getOwningGroup() != world) continue;
+				outbox.add(new Handoff(moving, world.detach(moving)));
+				migratedOut++;
+			}
+			subtree.clear();
+		}
+		leaving.clear();
+	}
+
+	/**
+	 * @return the number of objects the Shard has handed off that haven't been attached yet
+	 */
+	int getPendingHandoffs() {
+		int pending = 0;
+		for (int i = 0; i < outboxes.size(); i++) {
+			pending += outboxes.get(i).size();
+		}
+		return pending;
+	}
+
+	/**
+	 * Lists an object and its descendants, parents before children.
+	 */
+	private void collect(PointObject object) {
+		subtree.add(object);
+		for (int i = 0; i < object.getChildCount(); i++) {
+			collect(object.getChild(i));
+		}
+	}
+
+	/**
+	 * Queues an event to be triggered on the Shard's World at the start of its
+	 * next tick. Can be called from any thread, including other shards'; an event
+	 * posted from outside the shards just as a tick starts may wait for the one after.
+	 *
+	 * @param event the event to trigger
+	 */
+	public void post(Event event) {
+		if (event == null) throw new IllegalArgumentException("The event cannot be null");
+		mailboxes.get(manager.getPostingParity()).add(event);
+	}
+
+	/**
+	 * @param x an X coordinate in the world
+	 * @param y a Y coordinate in the world
+	 * @return whether the point is in the Shard's region
+	 */
+	public boolean contains(double x, double y) {
+		return x >= minX && x < maxX && y >= minY && y < maxY;
+	}
+
+	/**
+	 * @return the World that simulates the Shard's region
+	 */
+	public World getWorld() {
+		return world;
+	}
+
+	/**
+	 * @return the column of the Shard's region
+	 */
+	public int getColumn() {
+		return column;
+	}
+
+	/**
+	 * @return the row of the Shard's region
+	 */
+	public int getRow() {
+		return row;
+	}
+
+	/**
+	 * @return the time the Shard's last tick took, including handoffs, in nanoseconds
+	 */
+	public long getLastTickNanos() {
+		return lastTickNanos;
+	}
+
+	/**
+	 * @return the number of objects handed to the Shard by others
+	 */
+	public long getMigratedIn() {
+		return migratedIn;
+	}
+
+	/**
+	 * @return the number of objects the Shard handed to others
+	 */
+	public long getMigratedOut() {
+		return migratedOut;
+	}
+
+	/**
+	 * @return the number of posted events the Shard has triggered
+	 */
+	public long getEventsDelivered() {
+		return eventsDelivered;
+	}
+
+	@Override
+	public String toString() {
+		return "Shard{" + column + ", " + row + ", objects=" + world.size() + "}";
+	}
+
+}
@@ -0,0 +1,300 @@
+package com.apsis.shard;
+
+import com.apsis.event.Event;
+import com.apsis.world.PointObject;
+import com.apsis.world.World;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Splits a map into a grid of regions, each simulated by the {@link World} of
+ * a {@link Shard}, and ticks the shards in parallel on a pool of threads.<br>
+ * <br>
+ * A {@link #tick()} runs every shard's tick and waits for all of them, so the
+ * end of a tick is a barrier between the shards. Objects that leave a shard's
+ * region are detached from its World during the tick and attached to the
+ * World of the region they moved into at the start of the next, keeping
+ * exactly the listener methods they were subscribed with and without
+ * triggering Add or Remove events, though they are given a new ID. Events
+ * {@link Shard#post(Event) posted} to a shard are triggered at the start of
+ * its next tick. Since handoffs are kept apart by the shard that made them
+ * and the tick they were made on, the order objects arrive in doesn't depend
+ * on which thread finished first.<br>
+ * <br>
+ * Regions are <code>regionWidth</code> by <code>regionHeight</code>, starting
+ * at the origin, and the shards on the edges of the grid take everything
+ * beyond it. A handoff margin lets objects wander a little way out of their
+ * region before they move, so that objects on a border don't move back and
+ * forth.
+ *
+ * @author Cal Stephens
+ */
+public class ShardManager implements Closeable {
+
+	private final int columns;
+	private final int rows;
+	private final double regionWidth;
+	private final double regionHeight;
+	private final ArrayList<Shard> shards = new ArrayList<>();
+	private final List<Shard> readOnlyShards = Collections.unmodifiableList(shards);
+	private final ArrayList<Runnable> tasks = new ArrayList<>();
+	private final ExecutorService executor;
+	private double handoffMargin = 0;
+	private volatile boolean ticking = false;
+	private volatile long tick = 0;
+	private int parity;
+	private CountDownLatch barrier;
+	private volatile Throwable failure;
+	private long lastTickNanos = 0;
+
+	/**
+	 * @param columns the number of regions across
+	 * @param rows the number of regions down
+	 * @param regionWidth the width of each region
+	 * @param regionHeight the height of each region
+	 * @param threads the number of threads to tick the shards on
+	 */
+	public ShardManager(int columns, int rows, double regionWidth, double regionHeight, int threads) {
+		if (columns < 1 || rows < 1) throw new IllegalArgumentException("There must be at least one region");
+		if (!(regionWidth > 0) || !(regionHeight > 0)) throw new IllegalArgumentException("Regions must have a positive size");
+		if (threads < 1) throw new IllegalArgumentException("There must be at least one thread");
+		this.columns = columns;
+		this.rows = rows;
+		this.regionWidth = regionWidth;
+		this.regionHeight = regionHeight;
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				final Shard shard = new Shard(this, shards.size(), column, row, columns * rows);
+				shards.add(shard);
+				tasks.add(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							shard.step(parity);
+						} catch (Throwable t) {
+							if (failure == null) failure = new IllegalStateException(shard + " failed to tick", t);
+						} finally {
+							barrier.countDown();
+						}
+					}
+				});
+			}
+		}
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count = 0;
+
+			@Override
+			public synchronized Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Shard " + count++);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Ticks every shard in parallel, returning once all of them have finished.
+	 *
+	 * @throws IllegalStateException if a shard threw, once every shard has
+	 * finished; the tick still counts, but the shard that threw is left part way
+	 * through it
+	 */
+	public void tick() {
+		if (ticking) throw new IllegalStateException("The shards are already ticking");
+		long start = System.nanoTime();
+		parity = (int) (tick & 1);
+		barrier = new CountDownLatch(shards.size());
+		ticking = true;
+		try {
+			for (Runnable task : tasks) {
+				executor.execute(task);
+			}
+			boolean interrupted = false;
+			while (true) {
+				try {
+					barrier.await();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) Thread.currentThread().interrupt();
+		} finally {
+			tick++;
+			ticking = false;
+			lastTickNanos = System.nanoTime() - start;
+		}
+		Throwable failed = failure;
+		if (failed != null) {
+			failure = null;
+			throw (IllegalStateException) failed;
+		}
+	}
+
+	/**
+	 * Adds objects to the shards whose regions they are in. Objects with a
+	 * parent are added to their parent's shard, so parents must be added first.
+	 * Must be called between ticks.
+	 *
+	 * @param objects the objects to add
+	 */
+	public void add(PointObject... objects) {
+		if (ticking) throw new IllegalStateException("Objects can't be added while the shards are ticking");
+		for (PointObject object : objects) {
+			Shard shard;
+			if (object.getParent() != null) {
+				shard = getShardOf(object.getParent());
+				if (shard == null) throw new IllegalArgumentException("The parent of " + object + " isn't in a shard");
+			} else {
+				shard = getShardAt(object.getWorldX(), object.getWorldY());
+			}
+			shard.getWorld().add(object);
+		}
+	}
+
+	/**
+	 * Removes objects from the shards they are in. Must be called between ticks.
+	 *
+	 * @param objects the objects to remove
+	 */
+	public void remove(PointObject... objects) {
+		if (ticking) throw new IllegalStateException("Objects can't be removed while the shards are ticking");
+		for (PointObject object : objects) {
+			Shard shard = getShardOf(object);
+			if (shard != null) shard.getWorld().remove(object);
+		}
+	}
+
+	/**
+	 * Queues an event for the shard whose region a point is in.
+	 *
+	 * @param event the event to trigger
+	 * @param x the X of the point
+	 * @param y the Y of the point
+	 * @see Shard#post(com.apsis.event.Event)
+	 */
+	public void post(Event event, double x, double y) {
+		getShardAt(x, y).post(event);
+	}
+
+	/**
+	 * @param x an X coordinate in the world
+	 * @param y a Y coordinate in the world
+	 * @return the shard whose region the point is in
+	 */
+	public Shard getShardAt(double x, double y) {
+		int column = (int) Math.max(0, Math.min(columns - 1, Math.floor(x / regionWidth)));
+		int row = (int) Math.max(0, Math.min(rows - 1, Math.floor(y / regionHeight)));
+		return shards.get(row * columns + column);
+	}
+
+	/**
+	 * @param object an object
+	 * @return the shard whose World the object is in, or null if it isn't in one
+	 */
+	public Shard getShardOf(PointObject object) {
+		for (Shard shard : shards) {
+			if (object.getOwningGroup() == shard.getWorld()) return shard;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the shards, in rows from the origin
+	 */
+	public List<Shard> getShards() {
+		return readOnlyShards;
+	}
+
+	/**
+	 * @return the number of objects in every shard, including those handed off
+	 * on the last tick that the next will attach
+	 */
+	public int getObjectCount() {
+		int count = 0;
+		for (Shard shard : shards) {
+			count += shard.getWorld().size() + shard.getPendingHandoffs();
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of objects handed from one shard to another
+	 */
+	public long getMigrationCount() {
+		long count = 0;
+		for (Shard shard : shards) {
+			count += shard.getMigratedOut();
+		}
+		return count;
+	}
+
+	/**
+	 * @param margin how far an object can go outside its shard's region before
+	 * it is handed to another, 0 by default
+	 */
+	public void setHandoffMargin(double margin) {
+		if (margin < 0) throw new IllegalArgumentException("The margin can't be negative");
+		handoffMargin = margin;
+	}
+
+	/**
+	 * @return how far an object can go outside its shard's region before it is handed to another
+	 */
+	public double getHandoffMargin() {
+		return handoffMargin;
+	}
+
+	/**
+	 * @return the number of ticks run
+	 */
+	public long getTickCount() {
+		return tick;
+	}
+
+	/**
+	 * @return the time the last tick took, in nanoseconds
+	 */
+	public long getLastTickNanos() {
+		return lastTickNanos;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public double getRegionWidth() {
+		return regionWidth;
+	}
+
+	public double getRegionHeight() {
+		return regionHeight;
+	}
+
+	/**
+	 * @return the parity of the tick an event posted now is triggered on: the
+	 * next tick if none is running, otherwise the one after it
+	 */
+	int getPostingParity() {
+		return (int) ((ticking ? tick + 1 : tick) & 1);
+	}
+
+	/**
+	 * Stops the threads. The shards' Worlds can still be used, but not ticked.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+}
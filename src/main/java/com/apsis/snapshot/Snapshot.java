@@ -0,0 +1,304 @@
+package com.apsis.snapshot;
+
+import com.apsis.util.Point;
+import com.apsis.world.PointObject;
+import com.apsis.world.World;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A snapshot of objects, memory-mapped from a file written by {@link SnapshotWriter}.<br>
+ * <br>
+ * Opening a snapshot only reads its header, so it takes the same time
+ * whatever the number of objects. The columns can be read straight from the
+ * mapped file, and objects are only created when they are asked for with
+ * {@link Snapshot#get(int)}, or all at once with {@link Snapshot#addTo(com.apsis.world.World)}.<br>
+ * <br>
+ * <b>Format (version 1, little endian):</b>
+ * <pre>
+ * header     int magic "APSN", int version, int count, int types,
+ *            long offsets of x, y, rot, payload index, type, layer, parent, flags and payload, long file length
+ * types      per type: int codec version, int name length, UTF-8 codec name padded to 4 bytes
+ * x, y, rot  double[count] each, relative to the parent
+ * payload index  long[count + 1], the start of each payload in the payload section and its end
+ * type       int[count], an index into the types
+ * layer      int[count]
+ * parent     int[count], the index of the parent, -1 if none
+ * flags      byte[count], bit 0 static
+ * payload    the bytes written by each object's {@link SnapshotCodec}
+ * </pre>
+ * Sections start on 8 byte boundaries. Snapshots are limited to 2GB, the most that can be mapped at once.
+ *
+ * @author Cal Stephens
+ * @see SnapshotWriter
+ */
+public class Snapshot {
+
+	final static int MAGIC = 0x4E535041;
+	final static int VERSION = 1;
+	final static int HEADER_SIZE = 96;
+	final static byte FLAG_STATIC = 1;
+
+	private final ByteBuffer data;
+	private final Layout layout;
+	private final SnapshotCodec<?>[] codecs;
+	private final int[] versions;
+	private final String[] names;
+	private PointObject[] objects = null;
+	private int materialized = 0;
+
+	private Snapshot(ByteBuffer data, Layout layout, SnapshotCodec<?>[] codecs, int[] versions, String[] names) {
+		this.data = data;
+		this.layout = layout;
+		this.codecs = codecs;
+		this.versions = versions;
+		this.names = names;
+	}
+
+	/**
+	 * Memory-maps a snapshot and checks its header.
+	 *
+	 * @param file the snapshot file
+	 * @param codecs the codecs for the types of objects in the snapshot
+	 * @return the snapshot
+	 * @throws IOException if the file can't be read, isn't a snapshot, or has objects with no registered codec
+	 */
+	public static Snapshot open(Path file, SnapshotCodecs codecs) throws IOException {
+		ByteBuffer data;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE) throw new IOException(file + " is not a snapshot.");
+			if (size > Integer.MAX_VALUE) throw new IOException(file + " is too large to map.");
+			//the mapping stays valid after the channel is closed
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		if (data.getInt(0) != MAGIC) throw new IOException(file + " is not a snapshot.");
+		int version = data.getInt(4);
+		if (version != VERSION) throw new IOException(file + " is snapshot version " + version + ", only version " + VERSION + " is supported.");
+		int count = data.getInt(8);
+		int types = data.getInt(12);
+		Layout layout = new Layout(data);
+		if (count < 0 || types < 0 || layout.length != data.capacity() || layout.count != count) {
+			throw new IOException(file + " is truncated or corrupt.");
+		}
+		SnapshotCodec<?>[] found = new SnapshotCodec<?>[types];
+		int[] versions = new int[types];
+		String[] names = new String[types];
+		int at = HEADER_SIZE;
+		for (int t = 0; t < types; t++) {
+			versions[t] = data.getInt(at);
+			int length = data.getInt(at + 4);
+			byte[] name = new byte[length];
+			ByteBuffer view = data.duplicate();
+			view.position(at + 8);
+			view.get(name);
+			names[t] = new String(name, StandardCharsets.UTF_8);
+			found[t] = codecs.get(names[t]);
+			if (found[t] == null) throw new IOException(file + " has objects of type " + names[t] + ", which has no registered codec.");
+			at += 8 + (int) SnapshotWriter.align(length, 4);
+		}
+		return new Snapshot(data, layout, found, versions, names);
+	}
+
+	/**
+	 * @return the number of objects in the snapshot
+	 */
+	public int size() {
+		return layout.count;
+	}
+
+	/**
+	 * @param index the index of an object
+	 * @return the X of the object, relative to its parent if it has one
+	 */
+	public double getX(int index) {
+		return data.getDouble((int) layout.x + check(index) * 8);
+	}
+
+	/**
+	 * @param index the index of an object
+	 * @return the Y of the object, relative to its parent if it has one
+	 */
+	public double getY(int index) {
+		return data.getDouble((int) layout.y + check(index) * 8);
+	}
+
+	/**
+	 * @param index the index of an object
+	 * @return the rotation of the object, relative to its parent if it has one
+	 */
+	public double getRot(int index) {
+		return data.getDouble((int) layout.rot + check(index) * 8);
+	}
+
+	/**
+	 * @param index the index of an object
+	 * @return the name of the codec of the object
+	 */
+	public String getTypeName(int index) {
+		return names[type(index)];
+	}
+
+	/**
+	 * @param index the index of an object
+	 * @return the layer of the object
+	 */
+	public int getLayer(int index) {
+		return data.getInt((int) layout.layer + check(index) * 4);
+	}
+
+	/**
+	 * @param index the index of an object
+	 * @return the index of the object's parent, -1 if it has none
+	 */
+	public int getParentIndex(int index) {
+		return data.getInt((int) layout.parent + check(index) * 4);
+	}
+
+	/**
+	 * @param index the index of an object
+	 * @return whether or not the object is static
+	 */
+	public boolean isStatic(int index) {
+		return (data.get((int) layout.flags + check(index)) & FLAG_STATIC) != 0;
+	}
+
+	/**
+	 * @param index the index of an object
+	 * @return a read-only view of the object's payload, from position 0 to the limit
+	 */
+	public ByteBuffer getPayload(int index) {
+		long start = data.getLong((int) layout.payloadIndex + check(index) * 8);
+		long end = data.getLong((int) layout.payloadIndex + (index + 1) * 8);
+		ByteBuffer payload = data.duplicate();
+		payload.limit((int) (layout.payload + end)).position((int) (layout.payload + start));
+		return payload.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Gets an object of the snapshot, creating it (and its parents) the first time it is asked for.
+	 *
+	 * @param index the index of the object
+	 * @return the object
+	 */
+	public synchronized PointObject get(int index) {
+		check(index);
+		if (objects == null) objects = new PointObject[layout.count];
+		PointObject object = objects[index];
+		if (object != null) return object;
+		int type = type(index);
+		object = codecs[type].create(Point.make(getX(index), getY(index)), getRot(index), getPayload(index), versions[type]);
+		if (object == null) throw new IllegalStateException(codecs[type] + " created a null object.");
+		objects[index] = object;
+		materialized++;
+		object.setLayer(getLayer(index));
+		if (isStatic(index)) object.setStatic(true);
+		int parent = getParentIndex(index);
+		if (parent >= 0) object.setParent(get(parent));
+		return object;
+	}
+
+	/**
+	 * @param index the index of an object
+	 * @return whether or not the object has been created
+	 */
+	public synchronized boolean isMaterialized(int index) {
+		return objects != null && objects[check(index)] != null;
+	}
+
+	/**
+	 * @return the number of objects that have been created
+	 */
+	public synchronized int getMaterializedCount() {
+		return materialized;
+	}
+
+	/**
+	 * Creates every object that hasn't been created yet.
+	 *
+	 * @return every object of the snapshot, in order
+	 */
+	public synchronized PointObject[] materializeAll() {
+		for (int i = 0; i < layout.count; i++) {
+			get(i);
+		}
+		return objects == null ? new PointObject[0] : objects.clone();
+	}
+
+	/**
+	 * Creates every object and adds them all to a World at once.
+	 *
+	 * @param world the World to add the objects to
+	 */
+	public void addTo(World world) {
+		world.add(materializeAll());
+	}
+
+	private int type(int index) {
+		return data.getInt((int) layout.type + check(index) * 4);
+	}
+
+	private int check(int index) {
+		if (index < 0 || index >= layout.count) throw new IndexOutOfBoundsException("Index " + index + " of " + layout.count + " objects");
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return "Snapshot{size=" + size() + ", types=" + names.length + ", materialized=" + getMaterializedCount() + ", bytes=" + layout.length + "}";
+	}
+
+	/**
+	 * The offsets of the sections of a snapshot.
+	 */
+	static class Layout {
+
+		final int count;
+		final long x, y, rot, payloadIndex, type, layer, parent, flags, payload, length;
+
+		/**
+		 * Lays out a new snapshot.
+		 *
+		 * @param count the number of objects
+		 * @param headerSize the size of the header and type table
+		 * @param payloadSize the total size of the payloads
+		 */
+		Layout(int count, long headerSize, long payloadSize) {
+			this.count = count;
+			x = SnapshotWriter.align(headerSize, 8);
+			y = x + 8L * count;
+			rot = y + 8L * count;
+			payloadIndex = rot + 8L * count;
+			type = payloadIndex + 8L * (count + 1);
+			layer = type + 4L * count;
+			parent = layer + 4L * count;
+			flags = parent + 4L * count;
+			payload = SnapshotWriter.align(flags + count, 8);
+			length = payload + payloadSize;
+		}
+
+		/**
+		 * Reads the layout from the header of a snapshot.
+		 */
+		Layout(ByteBuffer header) {
+			count = header.getInt(8);
+			x = header.getLong(16);
+			y = header.getLong(24);
+			rot = header.getLong(32);
+			payloadIndex = header.getLong(40);
+			type = header.getLong(48);
+			layer = header.getLong(56);
+			parent = header.getLong(64);
+			flags = header.getLong(72);
+			payload = header.getLong(80);
+			length = header.getLong(88);
+		}
+
+	}
+
+}
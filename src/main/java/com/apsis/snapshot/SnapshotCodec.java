@@ -0,0 +1,59 @@
+package com.apsis.snapshot;
+
+import com.apsis.util.Point;
+import com.apsis.world.PointObject;
+import java.nio.ByteBuffer;
+
+/**
+ * Saves and restores the state of one type of {@link PointObject} that isn't
+ * covered by the columns of a snapshot (position, rotation, layer, static and parent).<br>
+ * <br>
+ * Each object gets a payload of bytes. Types without extra state can write
+ * an empty payload. A codec is found by the name it is registered under in
+ * {@link SnapshotCodecs}, and its version is stored with each snapshot, so a codec can keep
+ * reading payloads written by older versions of itself.
+ *
+ * @author Cal Stephens
+ * @param <T> the type of object the codec handles
+ * @see SnapshotCodecs#register(java.lang.String, com.apsis.snapshot.SnapshotCodec)
+ */
+public interface SnapshotCodec<T extends PointObject> {
+
+	/**
+	 * @return the class of the objects the codec handles; objects are matched by exact class
+	 */
+	public Class<T> getType();
+
+	/**
+	 * @return the version of the payload format the codec writes
+	 */
+	public int getVersion();
+
+	/**
+	 * @param object the object being saved
+	 * @return the number of bytes {@link SnapshotCodec#writePayload(com.apsis.world.PointObject, java.nio.ByteBuffer)} will write
+	 */
+	public int getPayloadSize(T object);
+
+	/**
+	 * Writes the state of an object that isn't in the snapshot's columns.
+	 *
+	 * @param object the object being saved
+	 * @param out the buffer to write exactly {@link SnapshotCodec#getPayloadSize(com.apsis.world.PointObject)} bytes to
+	 */
+	public void writePayload(T object, ByteBuffer out);
+
+	/**
+	 * Creates an object from a snapshot. The layer, static flag and parent
+	 * are set on the object afterwards.
+	 *
+	 * @param pos the position of the object, relative to its parent if it has one
+	 * @param rot the rotation of the object, relative to its parent if it has one
+	 * @param payload the bytes written by {@link SnapshotCodec#writePayload(com.apsis.world.PointObject, java.nio.ByteBuffer)},
+	 * from position 0 to the limit
+	 * @param version the version of the codec that wrote the payload
+	 * @return the new object
+	 */
+	public T create(Point pos, double rot, ByteBuffer payload, int version);
+
+}
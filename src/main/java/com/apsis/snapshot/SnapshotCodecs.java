@@ -0,0 +1,63 @@
+package com.apsis.snapshot;
+
+import com.apsis.world.PointObject;
+import java.util.HashMap;
+
+/**
+ * The {@link SnapshotCodec}s used to write and read snapshots, by name and by type.<br>
+ * <br>
+ * Snapshots store the name of each codec rather than a class name or a
+ * numeric ID, so classes can be renamed and codecs registered in any order
+ * as long as the names stay the same.
+ *
+ * @author Cal Stephens
+ */
+public class SnapshotCodecs {
+
+	private final HashMap<String, SnapshotCodec<?>> byName = new HashMap<>();
+	private final HashMap<Class<?>, SnapshotCodec<?>> byType = new HashMap<>();
+	private final HashMap<Class<?>, String> names = new HashMap<>();
+
+	/**
+	 * Registers a codec.
+	 *
+	 * @param name the name stored in snapshots for objects written by the codec
+	 * @param codec the codec
+	 * @return <code>return this;</code> for chaining
+	 */
+	public synchronized SnapshotCodecs register(String name, SnapshotCodec<?> codec) {
+		if (name == null || name.isEmpty()) throw new IllegalArgumentException("Name cannot be empty.");
+		if (codec == null) throw new IllegalArgumentException("SnapshotCodec cannot be null.");
+		if (byName.containsKey(name)) throw new IllegalArgumentException("A codec is already registered as " + name);
+		if (byType.containsKey(codec.getType())) throw new IllegalArgumentException("A codec is already registered for " + codec.getType());
+		byName.put(name, codec);
+		byType.put(codec.getType(), codec);
+		names.put(codec.getType(), name);
+		return this;
+	}
+
+	/**
+	 * @param name the name of a codec
+	 * @return the codec registered under the name, or null if there is none
+	 */
+	public synchronized SnapshotCodec<?> get(String name) {
+		return byName.get(name);
+	}
+
+	/**
+	 * @param object an object to save
+	 * @return the codec for the exact class of the object, or null if there is none
+	 */
+	public synchronized SnapshotCodec<?> get(PointObject object) {
+		return byType.get(object.getClass());
+	}
+
+	/**
+	 * @param codec a registered codec
+	 * @return the name the codec is registered under
+	 */
+	public synchronized String getName(SnapshotCodec<?> codec) {
+		return names.get(codec.getType());
+	}
+
+}
@@ -0,0 +1,275 @@
+package com.apsis.snapshot;
+
+import com.apsis.world.PointObject;
+import com.apsis.world.TransformTable;
+import com.apsis.world.World;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Writes objects to a snapshot file that can be opened with
+ * {@link Snapshot#open(java.nio.file.Path, com.apsis.snapshot.SnapshotCodecs)}.<br>
+ * <br>
+ * The columns are streamed through one reusable direct buffer into a
+ * FileChannel, and the file is written next to its destination and then moved
+ * over it, so a crash while saving never leaves a half-written snapshot behind.
+ * The format is described in {@link Snapshot}.
+ *
+ * @author Cal Stephens
+ * @see Snapshot
+ */
+public class SnapshotWriter {
+
+	private final static int BUFFER_SIZE = 1 << 20;
+
+	private final SnapshotCodecs codecs;
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private FileChannel channel = null;
+
+	/**
+	 * @param codecs the codecs for the types of objects that will be written
+	 */
+	public SnapshotWriter(SnapshotCodecs codecs) {
+		if (codecs == null) throw new IllegalArgumentException("SnapshotCodecs cannot be null.");
+		this.codecs = codecs;
+	}
+
+	/**
+	 * Writes every object in a World to a snapshot.
+	 *
+	 * @param world the World to save
+	 * @param file the file to write, replaced if it exists
+	 * @throws IOException if the file can't be written
+	 */
+	public void write(World world, Path file) throws IOException {
+		write(world.getContent(), file);
+	}
+
+	/**
+	 * Writes objects to a snapshot. Parents that aren't in the list are not saved,
+	 * and their children are saved without a parent.
+	 *
+	 * @param objects the objects to save
+	 * @param file the file to write, replaced if it exists
+	 * @throws IOException if the file can't be written
+	 */
+	public synchronized void write(List<? extends PointObject> objects, Path file) throws IOException {
+		int count = objects.size();
+		//work out the type table and the size of every payload first, since the header needs them
+		ArrayList<SnapshotCodec<?>> types = new ArrayList<>();
+		IdentityHashMap<SnapshotCodec<?>, Integer> typeIndexes = new IdentityHashMap<>();
+		int[] typeOf = new int[count];
+		long[] payloadEnds = new long[count];
+		long payloadSize = 0;
+		boolean parents = false;
+		TransformTable table = count == 0 ? null : objects.get(0).getTransformTable();
+		boolean sameTable = true;
+		//the columns are gathered in one pass, so each object is only visited once
+		double[] xs = new double[count], ys = new double[count], rots = new double[count];
+		int[] layers = new int[count];
+		int[] parentIndexes = new int[count];
+		byte[] flags = new byte[count];
+		for (int i = 0; i < count; i++) {
+			PointObject object = objects.get(i);
+			xs[i] = object.x();
+			ys[i] = object.y();
+			rots[i] = object.getRot();
+			layers[i] = object.getLayer();
+			flags[i] = object.isStatic() ? Snapshot.FLAG_STATIC : 0;
+			SnapshotCodec<?> codec = codecs.get(object);
+			if (codec == null) throw new IllegalArgumentException("No SnapshotCodec is registered for " + object.getClass());
+			Integer index = typeIndexes.get(codec);
+			if (index == null) {
+				index = types.size();
+				types.add(codec);
+				typeIndexes.put(codec, index);
+			}
+			typeOf[i] = index;
+			int size = SnapshotWriter.<PointObject>cast(codec).getPayloadSize(object);
+			if (size < 0) throw new IllegalStateException(codec + " returned a negative payload size.");
+			payloadSize += size;
+			payloadEnds[i] = payloadSize;
+			parents |= object.getParent() != null;
+			sameTable &= object.getTransformTable() == table;
+		}
+		Arrays.fill(parentIndexes, -1);
+		if (parents && sameTable) {
+			//the objects of a World share its TransformTable, so their slots can index them without hashing
+			int[] bySlot = new int[table.getHighestSlot()];
+			Arrays.fill(bySlot, -1);
+			for (int i = 0; i < count; i++) {
+				bySlot[objects.get(i).getTransformSlot()] = i;
+			}
+			for (int i = 0; i < count; i++) {
+				PointObject parent = objects.get(i).getParent();
+				if (parent != null && parent.getTransformTable() == table) parentIndexes[i] = bySlot[parent.getTransformSlot()];
+			}
+		} else if (parents) {
+			IdentityHashMap<PointObject, Integer> indexes = new IdentityHashMap<>(count);
+			for (int i = 0; i < count; i++) {
+				indexes.put(objects.get(i), i);
+			}
+			for (int i = 0; i < count; i++) {
+				PointObject parent = objects.get(i).getParent();
+				Integer index = parent == null ? null : indexes.get(parent);
+				if (index != null) parentIndexes[i] = index;
+			}
+		}
+		byte[][] names = new byte[types.size()][];
+		long tableSize = 0;
+		for (int t = 0; t < names.length; t++) {
+			names[t] = codecs.getName(types.get(t)).getBytes(StandardCharsets.UTF_8);
+			tableSize += 8 + align(names[t].length, 4);
+		}
+		Snapshot.Layout layout = new Snapshot.Layout(count, Snapshot.HEADER_SIZE + tableSize, payloadSize);
+
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel = out;
+			buffer.clear();
+			ensure(Snapshot.HEADER_SIZE);
+			buffer.putInt(Snapshot.MAGIC);
+			buffer.putInt(Snapshot.VERSION);
+			buffer.putInt(count);
+			buffer.putInt(names.length);
+			buffer.putLong(layout.x);
+			buffer.putLong(layout.y);
+			buffer.putLong(layout.rot);
+			buffer.putLong(layout.payloadIndex);
+			buffer.putLong(layout.type);
+			buffer.putLong(layout.layer);
+			buffer.putLong(layout.parent);
+			buffer.putLong(layout.flags);
+			buffer.putLong(layout.payload);
+			buffer.putLong(layout.length);
+			for (int t = 0; t < names.length; t++) {
+				ensure(8 + (int) align(names[t].length, 4));
+				buffer.putInt(types.get(t).getVersion());
+				buffer.putInt(names[t].length);
+				buffer.put(names[t]);
+				pad(4);
+			}
+			pad(8);
+			put(xs);
+			put(ys);
+			put(rots);
+			ensure(8);
+			buffer.putLong(0);
+			put(payloadEnds);
+			put(typeOf);
+			put(layers);
+			put(parentIndexes);
+			for (int i = 0; i < count;) {
+				ensure(1);
+				int length = Math.min(count - i, buffer.remaining());
+				buffer.put(flags, i, length);
+				i += length;
+			}
+			pad(8);
+			for (int i = 0; i < count; i++) {
+				int size = (int) (payloadEnds[i] - (i == 0 ? 0 : payloadEnds[i - 1]));
+				if (size == 0) continue;
+				ensure(size);
+				int start = buffer.position();
+				SnapshotWriter.<PointObject>cast(types.get(typeOf[i])).writePayload(objects.get(i), buffer);
+				if (buffer.position() - start != size) {
+					throw new IllegalStateException(types.get(typeOf[i]) + " wrote " + (buffer.position() - start)
+							+ " bytes after promising " + size);
+				}
+			}
+			flush();
+			if (out.position() != layout.length) throw new IllegalStateException("Wrote " + out.position() + " bytes, expected " + layout.length);
+			out.force(false);
+		} catch (IOException | RuntimeException ex) {
+			Files.deleteIfExists(temp);
+			throw ex;
+		} finally {
+			channel = null;
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Makes room for the given number of bytes in the buffer, writing it out if needed.
+	 */
+	private void ensure(int bytes) throws IOException {
+		if (buffer.remaining() >= bytes) return;
+		flush();
+		if (buffer.capacity() < bytes) {
+			//a payload bigger than the buffer
+			buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+
+	private void put(double[] values) throws IOException {
+		for (int i = 0; i < values.length;) {
+			ensure(8);
+			int length = Math.min(values.length - i, buffer.remaining() / 8);
+			buffer.asDoubleBuffer().put(values, i, length);
+			buffer.position(buffer.position() + length * 8);
+			i += length;
+		}
+	}
+
+	private void put(long[] values) throws IOException {
+		for (int i = 0; i < values.length;) {
+			ensure(8);
+			int length = Math.min(values.length - i, buffer.remaining() / 8);
+			buffer.asLongBuffer().put(values, i, length);
+			buffer.position(buffer.position() + length * 8);
+			i += length;
+		}
+	}
+
+	private void put(int[] values) throws IOException {
+		for (int i = 0; i < values.length;) {
+			ensure(4);
+			int length = Math.min(values.length - i, buffer.remaining() / 4);
+			buffer.asIntBuffer().put(values, i, length);
+			buffer.position(buffer.position() + length * 4);
+			i += length;
+		}
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Writes zeros until the file position is a multiple of the alignment.
+	 */
+	private void pad(int alignment) throws IOException {
+		long position = channel.position() + buffer.position();
+		int padding = (int) (align(position, alignment) - position);
+		ensure(padding);
+		for (int i = 0; i < padding; i++) {
+			buffer.put((byte) 0);
+		}
+	}
+
+	static long align(long value, int alignment) {
+		return (value + alignment - 1) / alignment * alignment;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends PointObject> SnapshotCodec<T> cast(SnapshotCodec<?> codec) {
+		return (SnapshotCodec<T>) codec;
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.apsis.stream;
+
+import com.apsis.world.PointObject;
+import java.nio.file.Path;
+
+/**
+ * One square of the world streamed in and out by a {@link ChunkStreamer}.
+ *
+ * @author Cal Stephens
+ */
+public class Chunk {
+
+	/**
+	 * The states a chunk moves through
+	 */
+	public enum State {
+		/**
+		 * The chunk's objects are on disk, or it has none
+		 */
+		UNLOADED,
+		/**
+		 * The chunk's objects are being read on the background executor
+		 */
+		LOADING,
+		/**
+		 * The chunk's objects are in the World
+		 */
+		RESIDENT,
+		/**
+		 * The chunk's objects have been removed from the World and are being written
+		 */
+		SAVING,
+		/**
+		 * The chunk couldn't be read, and won't be tried again
+		 */
+		FAILED
+	}
+
+	private final int x;
+	private final int y;
+	final Path file;
+	volatile State state = State.UNLOADED;
+	volatile int objectCount = 0;
+	//handed between the executor and the ticking thread through the streamer's queue
+	PointObject[] loaded = null;
+	Throwable failure = null;
+	//true while objects that wandered in are added to the chunk's file
+	boolean merging = false;
+
+	Chunk(int x, int y, Path file) {
+		this.x = x;
+		this.y = y;
+		this.file = file;
+	}
+
+	/**
+	 * @return the X index of the chunk; the chunk covers world X from <code>x * chunkSize</code> up to the next chunk
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * @return the Y index of the chunk
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * @return the state of the chunk
+	 */
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the number of objects in the chunk when it was last loaded, saved or counted
+	 */
+	public int getObjectCount() {
+		return objectCount;
+	}
+
+	/**
+	 * @return the file the chunk's objects are saved to
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	static long key(int x, int y) {
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	@Override
+	public String toString() {
+		return "Chunk{" + x + ", " + y + ", " + state + ", objects=" + objectCount + "}";
+	}
+
+}
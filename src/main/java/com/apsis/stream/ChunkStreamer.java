@@ -0,0 +1,624 @@
+package com.apsis.stream;
+
+import com.apsis.event.world.ChunkLoadEvent;
+import com.apsis.event.world.ChunkUnloadEvent;
+import com.apsis.render.Camera;
+import com.apsis.snapshot.Snapshot;
+import com.apsis.snapshot.SnapshotCodecs;
+import com.apsis.snapshot.SnapshotWriter;
+import com.apsis.world.PointObject;
+import com.apsis.world.TickObserver;
+import com.apsis.world.World;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Streams the objects of a {@link World} in and out of memory by square chunks,
+ * so a map can be larger than the heap and only the part of it near the
+ * camera or the players is ticked.<br>
+ * <br>
+ * After every tick, chunks within <code>loadRadius</code> chunks of a
+ * {@link ChunkStreamer#addFocus(com.apsis.world.PointObject) focus} are read
+ * from their {@link Snapshot} files on a background executor, and chunks further
+ * than <code>unloadRadius</code> from every focus are removed from the World
+ * and written back. The gap between the two radii keeps a focus moving back and
+ * forth over a chunk border from loading and unloading the same chunks.
+ * If the World holds more than the resident object budget, chunks outside the
+ * load radius are unloaded early, furthest first.<br>
+ * <br>
+ * Objects are only added to and removed from the World on the ticking thread,
+ * through {@link World#add(com.apsis.world.PointObject...)} and
+ * {@link World#removeRetained(com.apsis.world.PointObject...)}, so listeners are
+ * subscribed, unsubscribed and sent their Add and Remove events exactly as if
+ * the game had done it. Pooled objects are only returned to their pools once
+ * they have been written. A {@link ChunkLoadEvent} or {@link ChunkUnloadEvent}
+ * is triggered for each chunk as well. Only objects are streamed - reading
+ * and writing happen off the ticking thread, but creating the objects and
+ * adding them doesn't.<br>
+ * <br>
+ * An object belongs to the chunk its top-level parent is in, and is saved with
+ * its parent. Every <code>sweepInterval</code> ticks, objects that wandered into
+ * a chunk that isn't loaded are removed and added to that chunk's file, without
+ * loading the rest of the chunk. Foci, objects without a registered
+ * codec and {@link ChunkStreamer#pin(com.apsis.world.PointObject) pinned}
+ * objects are never unloaded.
+ *
+ * @author Cal Stephens
+ */
+public class ChunkStreamer implements TickObserver {
+
+	private final World world;
+	private final double chunkSize;
+	private final Path directory;
+	private final SnapshotCodecs codecs;
+	private final SnapshotWriter writer;
+	private final Executor executor;
+	private final HashMap<Long, Chunk> chunks = new HashMap<>();
+	private final ArrayList<PointObject> focusObjects = new ArrayList<>();
+	private final ArrayList<Camera> focusCameras = new ArrayList<>();
+	private final Set<PointObject> pinned = Collections.newSetFromMap(new IdentityHashMap<PointObject, Boolean>());
+	//chunks whose reading or writing finished on the executor
+	private final ConcurrentLinkedQueue<Chunk> finished = new ConcurrentLinkedQueue<>();
+	private int loadRadius = 1;
+	private int unloadRadius = 2;
+	private int maxResidentObjects = Integer.MAX_VALUE;
+	private int sweepInterval = 30;
+	private long updates = 0;
+	private int pending = 0;
+	private int residentObjects = 0;
+	private long loads = 0;
+	private long unloads = 0;
+	private long merged = 0;
+	private Throwable lastError = null;
+
+	/**
+	 * Starts streaming a World. Chunks with files in the directory start unloaded;
+	 * objects already in the World are saved with their chunks when those unload.
+	 *
+	 * @param world the World to stream
+	 * @param chunkSize the width and height of a chunk in world units
+	 * @param directory the directory chunk files are read from and written to
+	 * @param codecs the codecs of the objects that are streamed
+	 * @param executor runs the reading and writing of chunk files
+	 * @throws IOException if the directory can't be created
+	 */
+	public ChunkStreamer(World world, double chunkSize, Path directory, SnapshotCodecs codecs, Executor executor) throws IOException {
+		if (world == null) throw new IllegalArgumentException("World cannot be null.");
+		if (!(chunkSize > 0)) throw new IllegalArgumentException("Chunk size must be positive.");
+		if (codecs == null) throw new IllegalArgumentException("SnapshotCodecs cannot be null.");
+		if (executor == null) throw new IllegalArgumentException("Executor cannot be null.");
+		this.world = world;
+		this.chunkSize = chunkSize;
+		this.directory = Files.createDirectories(directory);
+		this.codecs = codecs;
+		this.writer = new SnapshotWriter(codecs);
+		this.executor = executor;
+		world.addTickObserver(this);
+	}
+
+	/**
+	 * Sets how near a focus chunks are loaded and how far they have to be to unload.
+	 * Distances are in chunks, counting diagonals as one.
+	 *
+	 * @param loadRadius chunks this close to a focus are loaded
+	 * @param unloadRadius chunks further than this from every focus are unloaded; must be more than <code>loadRadius</code>
+	 */
+	public synchronized void setRadii(int loadRadius, int unloadRadius) {
+		if (loadRadius < 0) throw new IllegalArgumentException("Load radius cannot be negative.");
+		if (unloadRadius <= loadRadius) throw new IllegalArgumentException("Unload radius must be more than the load radius.");
+		this.loadRadius = loadRadius;
+		this.unloadRadius = unloadRadius;
+	}
+
+	/**
+	 * Sets the number of objects above which chunks outside the load radius are unloaded early.
+	 *
+	 * @param objects the budget, or {@link Integer#MAX_VALUE} for none
+	 */
+	public synchronized void setMaxResidentObjects(int objects) {
+		if (objects < 0) throw new IllegalArgumentException("Budget cannot be negative.");
+		this.maxResidentObjects = objects;
+	}
+
+	/**
+	 * Sets how often objects are counted by chunk, which keeps the resident object
+	 * count up to date and saves objects that wandered into unloaded chunks.
+	 *
+	 * @param ticks the number of ticks between counts
+	 */
+	public synchronized void setSweepInterval(int ticks) {
+		if (ticks <= 0) throw new IllegalArgumentException("Sweep interval must be positive.");
+		this.sweepInterval = ticks;
+	}
+
+	/**
+	 * Keeps the chunks around an object loaded. The object itself is never unloaded.
+	 *
+	 * @param focus a player or other object
+	 */
+	public synchronized void addFocus(PointObject focus) {
+		if (focus == null) throw new IllegalArgumentException("Focus cannot be null.");
+		if (indexOf(focus) < 0) focusObjects.add(focus);
+	}
+
+	/**
+	 * Keeps the chunks around the center of a camera loaded.
+	 *
+	 * @param camera the camera
+	 */
+	public synchronized void addFocus(Camera camera) {
+		if (camera == null) throw new IllegalArgumentException("Camera cannot be null.");
+		if (!focusCameras.contains(camera)) focusCameras.add(camera);
+	}
+
+	/**
+	 * @param focus an object that no longer keeps chunks loaded
+	 */
+	public synchronized void removeFocus(PointObject focus) {
+		int index = indexOf(focus);
+		if (index >= 0) focusObjects.remove(index);
+	}
+
+	/**
+	 * @param camera a camera that no longer keeps chunks loaded
+	 */
+	public synchronized void removeFocus(Camera camera) {
+		focusCameras.remove(camera);
+	}
+
+	/**
+	 * Keeps an object in the World when its chunk unloads.
+	 *
+	 * @param object the object
+	 */
+	public synchronized void pin(PointObject object) {
+		pinned.add(object);
+	}
+
+	/**
+	 * Lets an object be unloaded with its chunk again.
+	 *
+	 * @param object the object
+	 */
+	public synchronized void unpin(PointObject object) {
+		pinned.remove(object);
+	}
+
+	@Override
+	public void tickEnded(World world, long tick) {
+		update();
+	}
+
+	/**
+	 * Adds the chunks that finished loading to the World and starts loading and
+	 * unloading chunks for the current foci. Called after every tick of the World,
+	 * and can be called between ticks to stream without ticking.
+	 */
+	public synchronized void update() {
+		finish();
+		updates++;
+		ArrayList<Chunk> unload = new ArrayList<>();
+		for (Chunk chunk : chunks.values()) {
+			if (chunk.state == Chunk.State.RESIDENT && distance(chunk) > unloadRadius) unload.add(chunk);
+		}
+		int remaining = residentObjects;
+		for (Chunk chunk : unload) {
+			remaining -= chunk.objectCount;
+		}
+		if (remaining > maxResidentObjects) {
+			ArrayList<Chunk> spare = new ArrayList<>();
+			for (Chunk chunk : chunks.values()) {
+				if (chunk.state == Chunk.State.RESIDENT && !unload.contains(chunk) && distance(chunk) > loadRadius) spare.add(chunk);
+			}
+			Collections.sort(spare, new Comparator<Chunk>() {
+				@Override
+				public int compare(Chunk a, Chunk b) {
+					return Integer.compare(distance(b), distance(a));
+				}
+			});
+			for (int i = 0; i < spare.size() && remaining > maxResidentObjects; i++) {
+				unload.add(spare.get(i));
+				remaining -= spare.get(i).objectCount;
+			}
+		}
+		if (!unload.isEmpty()) unload(unload);
+		for (int i = 0; i < focusObjects.size(); i++) {
+			PointObject focus = focusObjects.get(i);
+			loadAround(focus.getWorldX(), focus.getWorldY());
+		}
+		for (int i = 0; i < focusCameras.size(); i++) {
+			Camera camera = focusCameras.get(i);
+			loadAround(camera.x(), camera.y());
+		}
+		//after loading, so objects heading into chunks about to load aren't saved first
+		if (updates % sweepInterval == 0) sweep();
+	}
+
+	/**
+	 * Unloads every chunk and waits for them to be written, for saving the whole
+	 * World before exiting. Objects in chunks that were never loaded are saved
+	 * with them, after loading the chunk if it already has a file.
+	 * Pinned objects and foci stay in the World.
+	 *
+	 * @param timeoutMillis the longest time to wait
+	 * @return true if every chunk was written in time
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public synchronized boolean saveAll(long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (true) {
+			if (!awaitIdle(deadline - System.currentTimeMillis())) return false;
+			ArrayList<Chunk> unload = new ArrayList<>();
+			boolean loading = false;
+			for (Chunk chunk : chunks.values()) {
+				if (chunk.state == Chunk.State.RESIDENT) unload.add(chunk);
+			}
+			for (PointObject object : world.getContent()) {
+				if (!streamable(root(object))) continue;
+				Chunk chunk = chunkOf(object);
+				if (chunk.state != Chunk.State.UNLOADED) continue;
+				if (Files.exists(chunk.file)) {
+					//loaded first, so the saved objects aren't overwritten
+					load(chunk);
+					loading = true;
+				} else {
+					chunk.state = Chunk.State.RESIDENT;
+					unload.add(chunk);
+				}
+			}
+			unload(unload);
+			if (!loading) return awaitIdle(deadline - System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Waits until no chunk is being read or written, adding the chunks that finish loading to the World.
+	 *
+	 * @param timeoutMillis the longest time to wait
+	 * @return true if nothing is left to read or write
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public synchronized boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		finish();
+		while (pending > 0) {
+			long left = deadline - System.currentTimeMillis();
+			if (left <= 0) return false;
+			wait(left);
+			finish();
+		}
+		return true;
+	}
+
+	private void loadAround(double x, double y) {
+		int cx = index(x), cy = index(y);
+		for (int dx = -loadRadius; dx <= loadRadius; dx++) {
+			for (int dy = -loadRadius; dy <= loadRadius; dy++) {
+				Chunk chunk = chunk(cx + dx, cy + dy);
+				if (chunk.state == Chunk.State.UNLOADED) load(chunk);
+			}
+		}
+	}
+
+	private void load(final Chunk chunk) {
+		if (!Files.exists(chunk.file)) {
+			chunk.state = Chunk.State.RESIDENT;
+			chunk.objectCount = 0;
+			loads++;
+			world.getEventHandler().triggerEvent(new ChunkLoadEvent(chunk, 0));
+			return;
+		}
+		chunk.state = Chunk.State.LOADING;
+		pending++;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					chunk.loaded = Snapshot.open(chunk.file, codecs).materializeAll();
+				} catch (IOException | RuntimeException e) {
+					chunk.failure = e;
+				}
+				done(chunk);
+			}
+		});
+	}
+
+	private void unload(ArrayList<Chunk> unload) {
+		HashMap<Long, ArrayList<PointObject>> contents = new HashMap<>();
+		for (Chunk chunk : unload) {
+			contents.put(Chunk.key(chunk.getX(), chunk.getY()), new ArrayList<PointObject>());
+		}
+		for (PointObject object : world.getContent()) {
+			if (root(object) != object) continue;
+			ArrayList<PointObject> content = contents.get(key(object));
+			if (content != null && streamable(object)) addWithDescendants(object, content);
+		}
+		for (final Chunk chunk : unload) {
+			final ArrayList<PointObject> content = contents.get(Chunk.key(chunk.getX(), chunk.getY()));
+			world.getEventHandler().triggerEvent(new ChunkUnloadEvent(chunk, content.size()));
+			//pooled objects stay out of their pools until they're written
+			world.removeRetained(content.toArray(new PointObject[content.size()]));
+			residentObjects = Math.max(0, residentObjects - chunk.objectCount);
+			chunk.objectCount = content.size();
+			chunk.state = Chunk.State.SAVING;
+			chunk.loaded = content.toArray(new PointObject[content.size()]);
+			unloads++;
+			pending++;
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (content.isEmpty()) Files.deleteIfExists(chunk.file);
+						else writer.write(content, chunk.file);
+					} catch (IOException | RuntimeException e) {
+						chunk.failure = e;
+					}
+					done(chunk);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Called on the executor once a chunk has been read or written.
+	 */
+	private void done(Chunk chunk) {
+		finished.add(chunk);
+		synchronized (this) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Adds the chunks that finished loading to the World, on the ticking thread.
+	 */
+	private void finish() {
+		Chunk chunk;
+		while ((chunk = finished.poll()) != null) {
+			pending--;
+			PointObject[] objects = chunk.loaded;
+			chunk.loaded = null;
+			Throwable failure = chunk.failure;
+			chunk.failure = null;
+			if (chunk.state == Chunk.State.LOADING) {
+				if (failure != null) {
+					lastError = failure;
+					chunk.state = Chunk.State.FAILED;
+					continue;
+				}
+				world.add(objects);
+				chunk.state = Chunk.State.RESIDENT;
+				chunk.objectCount = objects.length;
+				residentObjects += objects.length;
+				loads++;
+				world.getEventHandler().triggerEvent(new ChunkLoadEvent(chunk, objects.length));
+			} else if (failure != null) {
+				//the objects couldn't be saved, so they go back rather than being lost
+				lastError = failure;
+				world.add(objects);
+				if (chunk.merging) {
+					//the rest of the chunk is still only on disk
+					chunk.state = Chunk.State.UNLOADED;
+				} else {
+					chunk.state = Chunk.State.RESIDENT;
+					residentObjects += objects.length;
+				}
+			} else {
+				chunk.state = Chunk.State.UNLOADED;
+				World.release(objects);
+			}
+			chunk.merging = false;
+		}
+	}
+
+	/**
+	 * Counts the objects in each chunk and saves objects that wandered into unloaded chunks.
+	 */
+	private void sweep() {
+		for (Chunk chunk : chunks.values()) {
+			if (chunk.state == Chunk.State.RESIDENT) chunk.objectCount = 0;
+		}
+		HashMap<Chunk, ArrayList<PointObject>> strays = null;
+		int counted = 0;
+		for (PointObject object : world.getContent()) {
+			PointObject root = root(object);
+			if (!streamable(root)) continue;
+			Chunk chunk = chunkOf(root);
+			if (chunk.state == Chunk.State.RESIDENT) {
+				chunk.objectCount++;
+				counted++;
+			} else if (chunk.state == Chunk.State.UNLOADED && root == object) {
+				if (strays == null) strays = new HashMap<>();
+				ArrayList<PointObject> content = strays.get(chunk);
+				if (content == null) {
+					content = new ArrayList<>();
+					strays.put(chunk, content);
+				}
+				addWithDescendants(object, content);
+			}
+		}
+		residentObjects = counted;
+		if (strays == null) return;
+		for (Entry<Chunk, ArrayList<PointObject>> entry : strays.entrySet()) {
+			merge(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Removes objects that wandered into an unloaded chunk and adds them to the
+	 * chunk's file, without loading the rest of the chunk.
+	 */
+	private void merge(final Chunk chunk, final ArrayList<PointObject> strays) {
+		world.removeRetained(strays.toArray(new PointObject[strays.size()]));
+		chunk.state = Chunk.State.SAVING;
+		chunk.merging = true;
+		chunk.loaded = strays.toArray(new PointObject[strays.size()]);
+		merged += strays.size();
+		pending++;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					ArrayList<PointObject> content = new ArrayList<>();
+					if (Files.exists(chunk.file)) Collections.addAll(content, Snapshot.open(chunk.file, codecs).materializeAll());
+					content.addAll(strays);
+					writer.write(content, chunk.file);
+					chunk.objectCount = content.size();
+				} catch (IOException | RuntimeException e) {
+					chunk.failure = e;
+				}
+				done(chunk);
+			}
+		});
+	}
+
+	private boolean streamable(PointObject object) {
+		return !pinned.contains(object) && indexOf(object) < 0 && codecs.get(object) != null;
+	}
+
+	/**
+	 * @return the index of a focus by identity, since PointObjects with the same position are equal
+	 */
+	private int indexOf(PointObject focus) {
+		for (int i = 0; i < focusObjects.size(); i++) {
+			if (focusObjects.get(i) == focus) return i;
+		}
+		return -1;
+	}
+
+	private void addWithDescendants(PointObject object, ArrayList<PointObject> out) {
+		out.add(object);
+		for (int i = 0; i < object.getChildCount(); i++) {
+			PointObject child = object.getChild(i);
+			if (child.getOwningGroup() == world) addWithDescendants(child, out);
+		}
+	}
+
+	private PointObject root(PointObject object) {
+		while (object.getParent() != null && object.getParent().getOwningGroup() == world) object = object.getParent();
+		return object;
+	}
+
+	private Chunk chunkOf(PointObject object) {
+		PointObject root = root(object);
+		return chunk(index(root.getWorldX()), index(root.getWorldY()));
+	}
+
+	private long key(PointObject root) {
+		return Chunk.key(index(root.getWorldX()), index(root.getWorldY()));
+	}
+
+	private Chunk chunk(int x, int y) {
+		long key = Chunk.key(x, y);
+		Chunk chunk = chunks.get(key);
+		if (chunk == null) {
+			chunk = new Chunk(x, y, directory.resolve("chunk_" + x + "_" + y + ".snap"));
+			chunks.put(key, chunk);
+		}
+		return chunk;
+	}
+
+	private int index(double coordinate) {
+		return (int) Math.floor(coordinate / chunkSize);
+	}
+
+	/**
+	 * @return the distance in chunks from a chunk to the nearest focus, counting diagonals as one
+	 */
+	private int distance(Chunk chunk) {
+		int nearest = Integer.MAX_VALUE;
+		for (int i = 0; i < focusObjects.size(); i++) {
+			PointObject focus = focusObjects.get(i);
+			nearest = Math.min(nearest, distance(chunk, focus.getWorldX(), focus.getWorldY()));
+		}
+		for (int i = 0; i < focusCameras.size(); i++) {
+			Camera camera = focusCameras.get(i);
+			nearest = Math.min(nearest, distance(chunk, camera.x(), camera.y()));
+		}
+		return nearest;
+	}
+
+	private int distance(Chunk chunk, double x, double y) {
+		return Math.max(Math.abs(chunk.getX() - index(x)), Math.abs(chunk.getY() - index(y)));
+	}
+
+	/**
+	 * @param x the X index of a chunk
+	 * @param y the Y index of a chunk
+	 * @return the chunk, which is created unloaded if it hasn't been seen before
+	 */
+	public synchronized Chunk getChunk(int x, int y) {
+		return chunk(x, y);
+	}
+
+	/**
+	 * @return the number of chunks whose objects are in the World
+	 */
+	public synchronized int getResidentChunkCount() {
+		int count = 0;
+		for (Chunk chunk : chunks.values()) {
+			if (chunk.state == Chunk.State.RESIDENT) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of streamed objects in the World, as of the last load, unload or sweep
+	 */
+	public synchronized int getResidentObjectCount() {
+		return residentObjects;
+	}
+
+	/**
+	 * @return the number of chunks being read or written
+	 */
+	public synchronized int getPendingCount() {
+		return pending;
+	}
+
+	/**
+	 * @return the number of chunks loaded so far
+	 */
+	public synchronized long getLoadCount() {
+		return loads;
+	}
+
+	/**
+	 * @return the number of chunks unloaded so far
+	 */
+	public synchronized long getUnloadCount() {
+		return unloads;
+	}
+
+	/**
+	 * @return the number of objects saved into unloaded chunks they wandered into
+	 */
+	public synchronized long getMergedCount() {
+		return merged;
+	}
+
+	/**
+	 * @return the last error reading or writing a chunk, null if there hasn't been one
+	 */
+	public synchronized Throwable getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * @return the width and height of a chunk in world units
+	 */
+	public double getChunkSize() {
+		return chunkSize;
+	}
+
+}
@@ -0,0 +1,156 @@
+package com.apsis.util;
+
+/**
+ * A mutable axis-aligned bounding box.
+ *
+ * @author Cal Stephens
+ */
+public class Bounds {
+
+	private double minX;
+	private double minY;
+	private double maxX;
+	private double maxY;
+
+	/**
+	 * Creates an empty Bounds at <code>(0, 0)</code>
+	 */
+	public Bounds() {
+	}
+
+	/**
+	 * @param minX the left edge of the box
+	 * @param minY the bottom edge of the box
+	 * @param maxX the right edge of the box
+	 * @param maxY the top edge of the box
+	 */
+	public Bounds(double minX, double minY, double maxX, double maxY) {
+		set(minX, minY, maxX, maxY);
+	}
+
+	/**
+	 * Sets the edges of the box.
+	 *
+	 * @param minX the left edge of the box
+	 * @param minY the bottom edge of the box
+	 * @param maxX the right edge of the box
+	 * @param maxY the top edge of the box
+	 * @return <code>return this;</code> for chaining
+	 */
+	public final Bounds set(double minX, double minY, double maxX, double maxY) {
+		this.minX = Math.min(minX, maxX);
+		this.minY = Math.min(minY, maxY);
+		this.maxX = Math.max(minX, maxX);
+		this.maxY = Math.max(minY, maxY);
+		return this;
+	}
+
+	/**
+	 * Sets the box from its origin and dimensions.
+	 *
+	 * @param origin the bottom-left corner of the box
+	 * @param dim the width (x) and height (y) of the box
+	 * @return <code>return this;</code> for chaining
+	 */
+	public Bounds set(Point origin, Point dim) {
+		return set(origin.x(), origin.y(), origin.x() + dim.x(), origin.y() + dim.y());
+	}
+
+	/**
+	 * Sets the box to a square centered on the given point.
+	 *
+	 * @param x the X of the center
+	 * @param y the Y of the center
+	 * @param radius half of the width of the box
+	 * @return <code>return this;</code> for chaining
+	 */
+	public Bounds setAround(double x, double y, double radius) {
+		return set(x - radius, y - radius, x + radius, y + radius);
+	}
+
+	/**
+	 * @return the left edge of the box
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * @return the bottom edge of the box
+	 */
+	public double getMinY() {
+		return minY;
+	}
+
+	/**
+	 * @return the right edge of the box
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * @return the top edge of the box
+	 */
+	public double getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * @return the width of the box
+	 */
+	public double getWidth() {
+		return maxX - minX;
+	}
+
+	/**
+	 * @return the height of the box
+	 */
+	public double getHeight() {
+		return maxY - minY;
+	}
+
+	/**
+	 * @param other the other box
+	 * @return whether or not the two boxes overlap (touching edges count)
+	 */
+	public boolean intersects(Bounds other) {
+		return minX <= other.maxX && maxX >= other.minX && minY <= other.maxY && maxY >= other.minY;
+	}
+
+	/**
+	 * @param x the X of the point
+	 * @param y the Y of the point
+	 * @return whether or not the point is inside the box
+	 */
+	public boolean contains(double x, double y) {
+		return x >= minX && x <= maxX && y >= minY && y <= maxY;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 3;
+		hash = 59 * hash + (int) (Double.doubleToLongBits(this.minX) ^ (Double.doubleToLongBits(this.minX) >>> 32));
+		hash = 59 * hash + (int) (Double.doubleToLongBits(this.minY) ^ (Double.doubleToLongBits(this.minY) >>> 32));
+		hash = 59 * hash + (int) (Double.doubleToLongBits(this.maxX) ^ (Double.doubleToLongBits(this.maxX) >>> 32));
+		hash = 59 * hash + (int) (Double.doubleToLongBits(this.maxY) ^ (Double.doubleToLongBits(this.maxY) >>> 32));
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null) return false;
+		if (getClass() != obj.getClass()) return false;
+		final Bounds other = (Bounds) obj;
+		if (Double.doubleToLongBits(this.minX) != Double.doubleToLongBits(other.minX)) return false;
+		if (Double.doubleToLongBits(this.minY) != Double.doubleToLongBits(other.minY)) return false;
+		if (Double.doubleToLongBits(this.maxX) != Double.doubleToLongBits(other.maxX)) return false;
+		return Double.doubleToLongBits(this.maxY) == Double.doubleToLongBits(other.maxY);
+	}
+
+	@Override
+	public String toString() {
+		return "Bounds{" + "minX=" + minX + ", minY=" + minY + ", maxX=" + maxX + ", maxY=" + maxY + '}';
+	}
+
+}
@@ -75,6 +75,12 @@ public class Color {
 	private double blue;
 	private double alpha;
 	private String name = null;
+	//cached for the renderer, updated whenever a component changes
+	private int argb = 0;
+	private float normalizedRed;
+	private float normalizedGreen;
+	private float normalizedBlue;
+	private float normalizedAlpha;
 
 	/**
 	 * All values must be between <b>0 and 255</b>.
@@ -148,6 +154,9 @@ public class Color {
 		if (red > 255) red = 255;
 		else if (red < 0) red = 0;
 		this.red = red;
+		int channel = (int) (red + 0.5);
+		this.argb = (argb & 0xFF00FFFF) | (channel << 16);
+		this.normalizedRed = PackedColor.normalize(channel);
 	}
 
 	/**
@@ -168,6 +177,9 @@ public class Color {
 		if (green > 255) green = 255;
 		else if (green < 0) green = 0;
 		this.green = green;
+		int channel = (int) (green + 0.5);
+		this.argb = (argb & 0xFFFF00FF) | (channel << 8);
+		this.normalizedGreen = PackedColor.normalize(channel);
 	}
 
 	/**
@@ -188,6 +200,9 @@ public class Color {
 		if (blue > 255) blue = 255;
 		else if (blue < 0) blue = 0;
 		this.blue = blue;
+		int channel = (int) (blue + 0.5);
+		this.argb = (argb & 0xFFFFFF00) | channel;
+		this.normalizedBlue = PackedColor.normalize(channel);
 	}
 
 	/**
@@ -221,6 +236,63 @@ public class Color {
 		if (alpha > 255) alpha = 255;
 		else if (alpha < 0) alpha = 0;
 		this.alpha = alpha;
+		int channel = (int) (alpha + 0.5);
+		this.argb = (argb & 0x00FFFFFF) | (channel << 24);
+		this.normalizedAlpha = PackedColor.normalize(channel);
+	}
+
+	/**
+	 * @return the Red component of the color, between 0 and 1
+	 */
+	public float getNormalizedRed() {
+		return normalizedRed;
+	}
+
+	/**
+	 * @return the Green component of the color, between 0 and 1
+	 */
+	public float getNormalizedGreen() {
+		return normalizedGreen;
+	}
+
+	/**
+	 * @return the Blue component of the color, between 0 and 1
+	 */
+	public float getNormalizedBlue() {
+		return normalizedBlue;
+	}
+
+	/**
+	 * @return the Alpha component of the color, between 0 and 1
+	 */
+	public float getNormalizedAlpha() {
+		return normalizedAlpha;
+	}
+
+	/**
+	 * Gets the color packed into a single ARGB integer.
+	 * The value is cached, so calling this does not allocate
+	 * or recalculate anything.
+	 *
+	 * @return the packed color (<code>0xAARRGGBB</code>)
+	 * @see PackedColor
+	 */
+	public int getPackedARGB() {
+		return argb;
+	}
+
+	/**
+	 * Sets all of the components of the color from
+	 * a packed ARGB integer.
+	 *
+	 * @param argb the packed color (<code>0xAARRGGBB</code>)
+	 * @see PackedColor
+	 */
+	public final void setPackedARGB(int argb) {
+		setRed(PackedColor.red(argb));
+		setGreen(PackedColor.green(argb));
+		setBlue(PackedColor.blue(argb));
+		setAlpha(PackedColor.alpha(argb));
 	}
 
 	/**
@@ -25,30 +25,7 @@ public class ColorHSV {
 	 * @param rgb
 	 */
 	public ColorHSV(Color rgb) {
-		setAlpha(rgb.getAlpha());
-		//convert RGB to values between 0 and 1
-		double red = rgb.getRed() / 255;
-		double green = rgb.getRed() / 255;
-		double blue = rgb.getRed() / 255;
-
-		double min, max, delta;
-		min = Math.min(red, Math.min(green, blue));
-		max = Math.max(red, Math.min(green, blue));
-		setValue(max);
-		delta = max - min;
-
-		if (max != 0) saturation = delta / max;
-		else {
-			setSaturation(0);
-			setHue(-1);
-			return;
-		}
-
-		double hue;
-		if (red == max) hue = (green - blue) / delta;		   // between yellow and magenta
-		else if (green == max) hue = 2 + (blue - red) / delta; // between cyan and yellow
-		else hue = 4 + (red - green) / delta;	               // between magenta and cyan
-		setHue(hue * 60);
+		setFromRGB(rgb.getRed(), rgb.getGreen(), rgb.getBlue(), rgb.getAlpha());
 	}
 
 	/**
@@ -171,6 +148,43 @@ public class ColorHSV {
 		this.alpha = alpha;
 	}
 
+	/**
+	 * Overwrites this color with the HSV representation of the given RGB components.
+	 * Does not allocate, so it can be used by {@link PackedColor} to reuse instances.
+	 *
+	 * @param r the Red component of the color (0 - 255)
+	 * @param g the Green component of the color (0 - 255)
+	 * @param b the Blue component of the color (0 - 255)
+	 * @param a the Alpha component of the color (0 - 255)
+	 */
+	final void setFromRGB(double r, double g, double b, double a) {
+		setAlpha(a);
+		//convert RGB to values between 0 and 1
+		double red = r / 255;
+		double green = g / 255;
+		double blue = b / 255;
+
+		double min, max, delta;
+		min = Math.min(red, Math.min(green, blue));
+		max = Math.max(red, Math.max(green, blue));
+		setValue(max);
+		delta = max - min;
+
+		//achromatic, assigned directly since the setters validate the hue/saturation pair
+		if (max == 0 || delta == 0) {
+			this.saturation = 0;
+			this.hue = -1;
+			return;
+		}
+		this.saturation = delta / max;
+
+		double hue;
+		if (red == max) hue = (green - blue) / delta;		   // between yellow and magenta
+		else if (green == max) hue = 2 + (blue - red) / delta; // between cyan and yellow
+		else hue = 4 + (red - green) / delta;	               // between magenta and cyan
+		setHue(hue * 60);
+	}
+
 	/**
 	 * Converts the color from the HSV model to the RGB model.
 	 * Translated into Java from
@@ -179,54 +193,79 @@ public class ColorHSV {
 	 * @return the color in RGB
 	 */
 	public Color inRGB() {
-		Color rgb = new Color(0, 0, 0);
-		int i;
-		double f, p, q, t;
+		return inRGB(new Color(0, 0, 0));
+	}
 
-		if (saturation == 0) {
-			rgb.setAll(value * 255);
-			return rgb;
+	/**
+	 * Converts the color from the HSV model to the RGB model,
+	 * writing the result into an existing color instead of allocating one.
+	 *
+	 * @param into the color to overwrite
+	 * @return <code>into</code>, for chaining
+	 * @see ColorHSV#inRGB()
+	 */
+	public Color inRGB(Color into) {
+		into.setAlpha(alpha);
+		if (saturation == 0 || hue == -1) {
+			into.setAll(value * 255);
+			return into;
 		}
 
-		i = (int) Math.floor(hue / 60);
-		f = hue - i; // factorial part of h
-		p = value * (1 - saturation);
-		q = value * (1 - saturation * f);
-		t = value * (1 - saturation * (1 - f));
+		double h = (hue >= 360 ? 0 : hue) / 60;
+		int i = (int) Math.floor(h);
+		double f = h - i; // factorial part of h
+		double p = value * (1 - saturation);
+		double q = value * (1 - saturation * f);
+		double t = value * (1 - saturation * (1 - f));
+		double red, green, blue;
 
 		switch (i) {
 			case 0:
-				rgb.setRed(value);
-				rgb.setGreen(t);
-				rgb.setBlue(p);
+				red = value;
+				green = t;
+				blue = p;
 				break;
 			case 1:
-				rgb.setRed(q);
-				rgb.setGreen(value);
-				rgb.setBlue(p);
+				red = q;
+				green = value;
+				blue = p;
 				break;
 			case 2:
-				rgb.setRed(p);
-				rgb.setGreen(value);
-				rgb.setBlue(t);
+				red = p;
+				green = value;
+				blue = t;
 				break;
 			case 3:
-				rgb.setRed(p);
-				rgb.setGreen(q);
-				rgb.setBlue(value);
+				red = p;
+				green = q;
+				blue = value;
 				break;
 			case 4:
-				rgb.setRed(t);
-				rgb.setGreen(p);
-				rgb.setBlue(value);
+				red = t;
+				green = p;
+				blue = value;
 				break;
 			default: // case 5:
-				rgb.setRed(value);
-				rgb.setGreen(p);
-				rgb.setBlue(q);
+				red = value;
+				green = p;
+				blue = q;
 				break;
 		}
-		return new Color(rgb.getRed() * 255, rgb.getGreen() * 255, rgb.getBlue() * 255, this.getAlpha());
+		into.setRed(red * 255);
+		into.setGreen(green * 255);
+		into.setBlue(blue * 255);
+		return into;
+	}
+
+	/**
+	 * Converts the color to a packed ARGB integer without
+	 * creating an intermediate {@link Color}.
+	 *
+	 * @return the packed color (<code>0xAARRGGBB</code>)
+	 * @see PackedColor
+	 */
+	public int toPackedARGB() {
+		return PackedColor.fromHSV(hue, saturation, value, alpha);
 	}
 
 	@Override
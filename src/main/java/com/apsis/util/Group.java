@@ -1,5 +1,6 @@
 package com.apsis.util;
 
+import com.apsis.jfr.GroupChangeEvent;
 import java.util.ArrayList;
 import java.util.Objects;
 
@@ -35,12 +36,12 @@ public class Group<T extends Object> {
 	 * @param objects the objects to add
 	 */
 	public synchronized void add(T... objects) {
+		GroupChangeEvent event = new GroupChangeEvent();
+		event.begin();
 		for (T object : objects) {
-			if (object instanceof Groupable) {
-				if (((Groupable) object).addedTo((Group<Groupable>) this)) content.add(object);
-			} else content.add(object);
-
+			addContent(object);
 		}
+		commit(event, "add", objects.length);
 	}
 
 	/**
@@ -49,12 +50,54 @@ public class Group<T extends Object> {
 	 * @param objects the objects to add
 	 */
 	public synchronized void remove(T... objects) {
+		GroupChangeEvent event = new GroupChangeEvent();
+		event.begin();
 		for (T object : objects) {
-			if (object instanceof Groupable) {
-				((Groupable) object).removedFrom((Group<Groupable>) this);
-			}
-			content.remove(object);
+			removeContent(object);
+		}
+		commit(event, "remove", objects.length);
+	}
+
+	/**
+	 * Adds one object to the internal ArrayList, if it agrees to be added.
+	 * Called by {@link Group#add(java.lang.Object...)} for each object.
+	 *
+	 * @param object the object to add
+	 */
+	protected synchronized void addContent(T object) {
+		if (object instanceof Groupable) {
+			if (((Groupable) object).addedTo((Group<Groupable>) this)) content.add(object);
+		} else content.add(object);
+	}
+
+	/**
+	 * Removes one object from the internal ArrayList.
+	 * Called by {@link Group#remove(java.lang.Object...)} for each object.
+	 *
+	 * @param object the object to remove
+	 */
+	protected synchronized void removeContent(T object) {
+		if (object instanceof Groupable) {
+			((Groupable) object).removedFrom((Group<Groupable>) this);
 		}
+		content.remove(object);
+	}
+
+	/**
+	 * Records a change to the group with Flight Recorder, if it is recording group changes.
+	 *
+	 * @param event the event started before the change
+	 * @param operation the name of the change
+	 * @param objects the number of objects passed in
+	 */
+	protected void commit(GroupChangeEvent event, String operation, int objects) {
+		event.end();
+		if (!event.shouldCommit()) return;
+		event.groupClass = getClass();
+		event.operation = operation;
+		event.objects = objects;
+		event.size = size();
+		event.commit();
 	}
 
 	/**
@@ -75,7 +118,11 @@ public class Group<T extends Object> {
 	 * Removes all objects from the Group
 	 */
 	public synchronized void clear() {
+		GroupChangeEvent event = new GroupChangeEvent();
+		event.begin();
+		int objects = content.size();
 		content.clear();
+		commit(event, "clear", objects);
 	}
 
 	/**
@@ -120,6 +167,17 @@ public class Group<T extends Object> {
 		return content;
 	}
 
+	/**
+	 * Gets the list the Group is wrapped around, for subclasses that keep
+	 * its content in a particular order or need to walk it without copying.
+	 * Must only be used while holding the Group's lock.
+	 *
+	 * @return the Group's internal list
+	 */
+	protected final ArrayList<T> getContentList() {
+		return content;
+	}
+
 	/**
 	 * Calls runOnAll() in the supplied Runner using a
 	 * copy of the internal ArrayList as returned by
@@ -0,0 +1,347 @@
+package com.apsis.util;
+
+/**
+ * Static helpers for colors packed into a single 32-bit
+ * <b>ARGB</b> integer (<code>0xAARRGGBB</code>).<br>
+ * <br>
+ * None of the methods here allocate unless they explicitly return
+ * a new {@link Color} or {@link ColorHSV}, which makes packed colors
+ * suitable for effects that recolor thousands of objects per frame.
+ * The batch methods convert whole arrays between the packed RGB model
+ * and the HSV model without creating any color objects.
+ *
+ * @author Cal Stephens
+ * @see Color
+ * @see ColorHSV
+ */
+public final class PackedColor {
+
+	/**
+	 * Lookup table for converting an 8-bit channel to a float between 0 and 1.
+	 * UNIT[x] == x / 255f
+	 */
+	private final static float[] UNIT = new float[256];
+
+	static {
+		for (int i = 0; i < UNIT.length; i++) {
+			UNIT[i] = i / 255f;
+		}
+	}
+
+	private PackedColor() {
+	}
+
+	/**
+	 * Packs the given channels into an ARGB integer.
+	 * Channels are clamped to between 0 and 255.
+	 *
+	 * @param red the Red component of the color
+	 * @param green the Green component of the color
+	 * @param blue the Blue component of the color
+	 * @param alpha the Alpha component of the color
+	 * @return the packed color
+	 */
+	public static int pack(int red, int green, int blue, int alpha) {
+		return (clamp(alpha) << 24) | (clamp(red) << 16) | (clamp(green) << 8) | clamp(blue);
+	}
+
+	/**
+	 * Packs the given channels into an ARGB integer.
+	 * Channels are rounded and clamped to between 0 and 255.
+	 *
+	 * @param red the Red component of the color
+	 * @param green the Green component of the color
+	 * @param blue the Blue component of the color
+	 * @param alpha the Alpha component of the color
+	 * @return the packed color
+	 */
+	public static int pack(double red, double green, double blue, double alpha) {
+		return pack((int) (red + 0.5), (int) (green + 0.5), (int) (blue + 0.5), (int) (alpha + 0.5));
+	}
+
+	/**
+	 * @param argb the packed color
+	 * @return the Alpha component of the color (0 - 255)
+	 */
+	public static int alpha(int argb) {
+		return argb >>> 24;
+	}
+
+	/**
+	 * @param argb the packed color
+	 * @return the Red component of the color (0 - 255)
+	 */
+	public static int red(int argb) {
+		return (argb >> 16) & 0xFF;
+	}
+
+	/**
+	 * @param argb the packed color
+	 * @return the Green component of the color (0 - 255)
+	 */
+	public static int green(int argb) {
+		return (argb >> 8) & 0xFF;
+	}
+
+	/**
+	 * @param argb the packed color
+	 * @return the Blue component of the color (0 - 255)
+	 */
+	public static int blue(int argb) {
+		return argb & 0xFF;
+	}
+
+	/**
+	 * Converts an 8-bit channel (0 - 255) to a float
+	 * between 0 and 1, as expected by the renderer.
+	 *
+	 * @param channel the channel value, between 0 and 255
+	 * @return the normalized channel
+	 */
+	public static float normalize(int channel) {
+		return UNIT[channel & 0xFF];
+	}
+
+	/**
+	 * Replaces the Alpha component of a packed color.
+	 *
+	 * @param argb the packed color
+	 * @param alpha the new Alpha component (0 - 255)
+	 * @return the packed color with the new alpha
+	 */
+	public static int withAlpha(int argb, int alpha) {
+		return (argb & 0x00FFFFFF) | (clamp(alpha) << 24);
+	}
+
+	/**
+	 * Linearly interpolates every channel of two packed colors.
+	 *
+	 * @param from the color at <code>t = 0</code>
+	 * @param to the color at <code>t = 1</code>
+	 * @param t the interpolation factor, between 0 and 1
+	 * @return the interpolated packed color
+	 */
+	public static int lerp(int from, int to, float t) {
+		if (t <= 0) return from;
+		if (t >= 1) return to;
+		int w = (int) (t * 256);
+		int iw = 256 - w;
+		int rb = ((((from & 0x00FF00FF) * iw) + ((to & 0x00FF00FF) * w)) >>> 8) & 0x00FF00FF;
+		int ag = ((((from >>> 8) & 0x00FF00FF) * iw) + (((to >>> 8) & 0x00FF00FF) * w)) & 0xFF00FF00;
+		return ag | rb;
+	}
+
+	/**
+	 * Packs the given RGB color into an ARGB integer.
+	 *
+	 * @param color the color to pack
+	 * @return the packed color
+	 * @see Color#getPackedARGB()
+	 */
+	public static int fromColor(Color color) {
+		return color.getPackedARGB();
+	}
+
+	/**
+	 * Creates a new RGB color from a packed color.
+	 *
+	 * @param argb the packed color
+	 * @return the new Color
+	 * @see PackedColor#toColor(int, com.apsis.util.Color)
+	 */
+	public static Color toColor(int argb) {
+		return new Color(red(argb), green(argb), blue(argb), alpha(argb));
+	}
+
+	/**
+	 * Writes a packed color into an existing RGB color
+	 * without allocating a new one.
+	 *
+	 * @param argb the packed color
+	 * @param into the color to overwrite
+	 * @return <code>into</code>, for chaining
+	 */
+	public static Color toColor(int argb, Color into) {
+		into.setPackedARGB(argb);
+		return into;
+	}
+
+	/**
+	 * Converts an HSV color into a packed RGB color.
+	 *
+	 * @param color the color to convert
+	 * @return the packed color
+	 * @see ColorHSV#toPackedARGB()
+	 */
+	public static int fromHSV(ColorHSV color) {
+		return fromHSV(color.getHue(), color.getSaturation(), color.getValue(), color.getAlpha());
+	}
+
+	/**
+	 * Converts HSV components into a packed RGB color.
+	 * Translated into Java from
+	 * <a href=http://www.cs.rit.edu/~ncs/color/t_convert.html>these C algorithms</a>.
+	 *
+	 * @param hue the Hue of the color (0 - 360, or -1 if achromatic)
+	 * @param saturation the Saturation of the color (0 - 1)
+	 * @param value the Value of the color (0 - 1)
+	 * @param alpha the Alpha of the color (0 - 255)
+	 * @return the packed color
+	 */
+	public static int fromHSV(double hue, double saturation, double value, double alpha) {
+		int a = clamp((int) (alpha + 0.5)) << 24;
+		if (saturation <= 0 || hue < 0) {
+			int v = clamp((int) (value * 255 + 0.5));
+			return a | (v << 16) | (v << 8) | v;
+		}
+		double h = (hue >= 360 ? 0 : hue) / 60;
+		int i = (int) h;
+		double f = h - i;
+		double p = value * (1 - saturation);
+		double q = value * (1 - saturation * f);
+		double t = value * (1 - saturation * (1 - f));
+		double r, g, b;
+		switch (i) {
+			case 0:
+				r = value;
+				g = t;
+				b = p;
+				break;
+			case 1:
+				r = q;
+				g = value;
+				b = p;
+				break;
+			case 2:
+				r = p;
+				g = value;
+				b = t;
+				break;
+			case 3:
+				r = p;
+				g = q;
+				b = value;
+				break;
+			case 4:
+				r = t;
+				g = p;
+				b = value;
+				break;
+			default: // case 5:
+				r = value;
+				g = p;
+				b = q;
+				break;
+		}
+		return a | (clamp((int) (r * 255 + 0.5)) << 16) | (clamp((int) (g * 255 + 0.5)) << 8) | clamp((int) (b * 255 + 0.5));
+	}
+
+	/**
+	 * Creates a new HSV color from a packed color.
+	 *
+	 * @param argb the packed color
+	 * @return the new ColorHSV
+	 * @see PackedColor#toHSV(int, com.apsis.util.ColorHSV)
+	 */
+	public static ColorHSV toHSV(int argb) {
+		return toHSV(argb, new ColorHSV(0, 0, 0));
+	}
+
+	/**
+	 * Writes a packed color into an existing HSV color
+	 * without allocating a new one.
+	 *
+	 * @param argb the packed color
+	 * @param into the color to overwrite
+	 * @return <code>into</code>, for chaining
+	 */
+	public static ColorHSV toHSV(int argb, ColorHSV into) {
+		into.setFromRGB(red(argb), green(argb), blue(argb), alpha(argb));
+		return into;
+	}
+
+	/**
+	 * Converts <code>count</code> packed RGB colors into HSV.<br>
+	 * Each HSV color takes four consecutive floats in <code>hsva</code>:
+	 * hue (0 - 360, or -1 if achromatic), saturation (0 - 1), value (0 - 1)
+	 * and alpha (0 - 255).
+	 *
+	 * @param argb the packed colors to convert
+	 * @param argbOffset the index of the first packed color
+	 * @param hsva the array to write the HSV colors into
+	 * @param hsvaOffset the index of the first float to write
+	 * @param count the number of colors to convert
+	 */
+	public static void toHSV(int[] argb, int argbOffset, float[] hsva, int hsvaOffset, int count) {
+		checkRange(argb.length, argbOffset, count, 1);
+		checkRange(hsva.length, hsvaOffset, count, 4);
+		for (int i = 0; i < count; i++) {
+			int c = argb[argbOffset + i];
+			int r = red(c), g = green(c), b = blue(c);
+			int max = Math.max(r, Math.max(g, b));
+			int min = Math.min(r, Math.min(g, b));
+			int delta = max - min;
+			float hue;
+			//decided by delta, since -1 is also a hue the formulas can produce
+			if (delta == 0) hue = -1;
+			else {
+				if (r == max) hue = 60f * (g - b) / delta;				// between yellow and magenta
+				else if (g == max) hue = 120f + 60f * (b - r) / delta;	// between cyan and yellow
+				else hue = 240f + 60f * (r - g) / delta;				// between magenta and cyan
+				if (hue < 0) hue += 360;
+			}
+			int o = hsvaOffset + i * 4;
+			hsva[o] = hue;
+			hsva[o + 1] = max == 0 ? 0 : (float) delta / max;
+			hsva[o + 2] = UNIT[max];
+			hsva[o + 3] = alpha(c);
+		}
+	}
+
+	/**
+	 * Converts <code>count</code> HSV colors into packed RGB colors.<br>
+	 * The HSV colors are laid out as described in
+	 * {@link PackedColor#toHSV(int[], int, float[], int, int)}.
+	 *
+	 * @param hsva the HSV colors to convert
+	 * @param hsvaOffset the index of the first float to read
+	 * @param argb the array to write the packed colors into
+	 * @param argbOffset the index of the first packed color to write
+	 * @param count the number of colors to convert
+	 */
+	public static void fromHSV(float[] hsva, int hsvaOffset, int[] argb, int argbOffset, int count) {
+		checkRange(hsva.length, hsvaOffset, count, 4);
+		checkRange(argb.length, argbOffset, count, 1);
+		for (int i = 0; i < count; i++) {
+			int o = hsvaOffset + i * 4;
+			argb[argbOffset + i] = fromHSV(hsva[o], hsva[o + 1], hsva[o + 2], hsva[o + 3]);
+		}
+	}
+
+	/**
+	 * Creates a String representing the packed color in hexadecimal,
+	 * formated as <b>#aarrggbb</b>.
+	 *
+	 * @param argb the packed color
+	 * @return the Hexadecimal representation
+	 */
+	public static String toHexString(int argb) {
+		String hex = Integer.toHexString(argb).toUpperCase();
+		while (hex.length() < 8) hex = "0" + hex;
+		return "#" + hex;
+	}
+
+	private static int clamp(int channel) {
+		if (channel > 255) return 255;
+		if (channel < 0) return 0;
+		return channel;
+	}
+
+	private static void checkRange(int length, int offset, int count, int stride) {
+		if (offset < 0 || count < 0 || offset + count * stride > length) {
+			throw new IllegalArgumentException("Range (offset=" + offset + ", count=" + count
+					+ ") is out of bounds for an array of length " + length);
+		}
+	}
+
+}
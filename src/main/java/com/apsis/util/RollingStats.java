@@ -0,0 +1,221 @@
+package com.apsis.util;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the last <code>window</code> samples of a value (such as a duration
+ * in nanoseconds or a count) and summarizes them.<br>
+ * <br>
+ * Samples are stored in a ring buffer and percentiles are found by sorting a
+ * copy kept for that purpose, so neither adding samples nor summarizing them
+ * allocates. Adding is O(1); summarizing is O(window log window), so it should
+ * be done when the numbers are needed rather than after every sample.
+ * Not thread safe.
+ *
+ * @author Cal Stephens
+ */
+public class RollingStats {
+
+	private final long[] samples;
+	private final long[] sorted;
+	private int next = 0;
+	private int count = 0;
+	private long last = 0;
+
+	/**
+	 * @param window the number of samples to keep
+	 */
+	public RollingStats(int window) {
+		if (window <= 0) throw new IllegalArgumentException("Window must be positive.");
+		this.samples = new long[window];
+		this.sorted = new long[window];
+	}
+
+	/**
+	 * Adds a sample, replacing the oldest one if the window is full.
+	 *
+	 * @param value the sample
+	 */
+	public void add(long value) {
+		samples[next] = value;
+		next = (next + 1) % samples.length;
+		if (count < samples.length) count++;
+		last = value;
+	}
+
+	/**
+	 * Removes every sample.
+	 */
+	public void clear() {
+		next = 0;
+		count = 0;
+		last = 0;
+	}
+
+	/**
+	 * @return the number of samples in the window
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the number of samples the window holds
+	 */
+	public int getWindow() {
+		return samples.length;
+	}
+
+	/**
+	 * @return the most recent sample, 0 if there are none
+	 */
+	public long getLast() {
+		return last;
+	}
+
+	/**
+	 * @return the mean of the samples in the window, 0 if there are none
+	 */
+	public double getMean() {
+		if (count == 0) return 0;
+		long sum = 0;
+		for (int i = 0; i < count; i++) {
+			sum += samples[i];
+		}
+		return (double) sum / count;
+	}
+
+	/**
+	 * @return the largest sample in the window, 0 if there are none
+	 */
+	public long getMax() {
+		if (count == 0) return 0;
+		long max = Long.MIN_VALUE;
+		for (int i = 0; i < count; i++) {
+			max = Math.max(max, samples[i]);
+		}
+		return max;
+	}
+
+	/**
+	 * Gets a percentile of the samples in the window using the nearest-rank method.
+	 *
+	 * @param percentile the percentile, from 0 to 100
+	 * @return the smallest sample that at least <code>percentile</code> percent of the samples are less than or equal to,
+	 * 0 if there are none
+	 */
+	public long getPercentile(double percentile) {
+		if (count == 0) return 0;
+		sort();
+		return rank(percentile);
+	}
+
+	/**
+	 * Fills a Summary with the statistics of the samples in the window.
+	 *
+	 * @param summary the Summary to fill
+	 * @return <code>return summary;</code> for chaining
+	 */
+	public Summary summarize(Summary summary) {
+		summary.count = count;
+		summary.last = last;
+		summary.mean = getMean();
+		if (count == 0) {
+			summary.p50 = summary.p95 = summary.p99 = summary.max = 0;
+			return summary;
+		}
+		sort();
+		summary.p50 = rank(50);
+		summary.p95 = rank(95);
+		summary.p99 = rank(99);
+		summary.max = sorted[count - 1];
+		return summary;
+	}
+
+	private void sort() {
+		System.arraycopy(samples, 0, sorted, 0, count);
+		Arrays.sort(sorted, 0, count);
+	}
+
+	private long rank(double percentile) {
+		int index = (int) Math.ceil(percentile / 100 * count) - 1;
+		return sorted[Math.max(0, Math.min(count - 1, index))];
+	}
+
+	@Override
+	public String toString() {
+		return "RollingStats{count=" + count + ", last=" + last + ", mean=" + getMean() + ", max=" + getMax() + "}";
+	}
+
+	/**
+	 * The statistics of the samples of a {@link RollingStats} at one point in time.
+	 * Meant to be kept and filled again with {@link RollingStats#summarize(com.apsis.util.RollingStats.Summary)}.
+	 */
+	public static class Summary {
+
+		private int count;
+		private long last;
+		private double mean;
+		private long p50;
+		private long p95;
+		private long p99;
+		private long max;
+
+		/**
+		 * @return the number of samples summarized
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the most recent sample
+		 */
+		public long getLast() {
+			return last;
+		}
+
+		/**
+		 * @return the mean of the samples
+		 */
+		public double getMean() {
+			return mean;
+		}
+
+		/**
+		 * @return the median of the samples
+		 */
+		public long getP50() {
+			return p50;
+		}
+
+		/**
+		 * @return the 95th percentile of the samples
+		 */
+		public long getP95() {
+			return p95;
+		}
+
+		/**
+		 * @return the 99th percentile of the samples
+		 */
+		public long getP99() {
+			return p99;
+		}
+
+		/**
+		 * @return the largest sample
+		 */
+		public long getMax() {
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return "{count=" + count + ", last=" + last + ", mean=" + String.format("%.1f", mean) + ", p50=" + p50
+					+ ", p95=" + p95 + ", p99=" + p99 + ", max=" + max + "}";
+		}
+
+	}
+
+}
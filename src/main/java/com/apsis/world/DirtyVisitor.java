@@ -0,0 +1,19 @@
+package com.apsis.world;
+
+/**
+ * Receives the objects in a World that have changed.
+ *
+ * @author Cal Stephens
+ * @see World#drainDirty(com.apsis.world.DirtyVisitor)
+ */
+public interface DirtyVisitor {
+
+	/**
+	 * Called once for every changed object when the dirty list is drained.
+	 *
+	 * @param object the object that changed
+	 * @param dirtyBits the DIRTY_ bits of {@link PointObject} describing what changed
+	 */
+	public void visit(PointObject object, int dirtyBits);
+
+}
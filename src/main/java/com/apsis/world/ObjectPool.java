@@ -0,0 +1,222 @@
+package com.apsis.world;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Keeps objects of one type that have been removed from their World so they
+ * can be {@link #acquire() acquired} again instead of creating new ones.<br>
+ * <br>
+ * An object acquired from a pool goes back to it when it is removed from a
+ * World with {@link World#remove(com.apsis.world.PointObject...)}: after its
+ * RemoveFromWorldEvent, it is {@link Poolable#reset() reset}, taken out of its
+ * parent and children, and kept until it is acquired again. The pool keeps the
+ * listener methods of its type from the first object added to a World, so
+ * later objects, new or reused, are subscribed with those instead of being
+ * scanned again, and each add and remove still triggers its AddToWorldEvent and
+ * RemoveFromWorldEvent, as it would for a new object. An object that is only
+ * {@link World#detach(com.apsis.world.PointObject) detached} stays out of
+ * the pool.<br>
+ * <br>
+ * References to an object kept after it is removed see it reused, so they
+ * should be dropped in a RemoveFromWorldEvent listener. Adding an object
+ * while it waits in its pool is an error.
+ *
+ * @author Cal Stephens
+ * @param <T> the type of object kept
+ * @see ObjectPools
+ */
+public class ObjectPool<T extends PointObject & Poolable> {
+
+	/**
+	 * Creates the objects of a pool when it has none to give out.
+	 *
+	 * @param <T> the type of object created
+	 */
+	public interface Factory<T> {
+
+		/**
+		 * @return a new object, of exactly the type of the pool
+		 */
+		public T create();
+
+	}
+
+	private final Class<T> type;
+	private final Factory<T> factory;
+	private final int maxIdle;
+	private PointObject[] idle = new PointObject[16];
+	private int idleCount = 0;
+	//every listener method of the type, found when the first object was added to a World,
+	//which the objects are subscribed with from then on instead of scanning them again
+	volatile ArrayList<Method> listenerMethods = null;
+	private long acquires = 0;
+	private long hits = 0;
+	private long created = 0;
+	private long releases = 0;
+	private long dropped = 0;
+
+	/**
+	 * @param type the type of object kept
+	 * @param factory the factory to create objects with
+	 * @param maxIdle the most objects to keep, beyond which returned objects are
+	 * left to the garbage collector
+	 */
+	public ObjectPool(Class<T> type, Factory<T> factory, int maxIdle) {
+		if (type == null) throw new IllegalArgumentException("Type cannot be null.");
+		if (factory == null) throw new IllegalArgumentException("Factory cannot be null.");
+		if (maxIdle < 0) throw new IllegalArgumentException("The most objects to keep can't be negative");
+		this.type = type;
+		this.factory = factory;
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * Takes an object out of the pool, or creates one if it is empty. The object
+	 * isn't in a World, and is as its {@link Poolable#reset()} left it.
+	 *
+	 * @return an object to add to a World
+	 */
+	public synchronized T acquire() {
+		acquires++;
+		if (idleCount > 0) {
+			hits++;
+			PointObject object = idle[--idleCount];
+			idle[idleCount] = null;
+			object.idle = false;
+			return type.cast(object);
+		}
+		return create();
+	}
+
+	/**
+	 * Creates objects until the pool holds a number of them, so that the first
+	 * acquires of a busy moment don't have to.
+	 *
+	 * @param count the number of objects to hold, up to the most the pool keeps
+	 */
+	public synchronized void fill(int count) {
+		while (idleCount < Math.min(count, maxIdle)) {
+			T object = create();
+			object.idle = true;
+			push(object);
+		}
+	}
+
+	private T create() {
+		T object = factory.create();
+		if (object == null || object.getClass() != type) {
+			throw new IllegalStateException("The factory of a pool of " + type.getSimpleName() + " created " + object);
+		}
+		if (object.getOwningGroup() != null) throw new IllegalStateException("The factory created " + object + " in a Group");
+		object.pool = this;
+		created++;
+		return object;
+	}
+
+	/**
+	 * Returns an object removed from its World, called by the World.
+	 *
+	 * @param object an object acquired from the pool
+	 */
+	synchronized void release(PointObject object) {
+		if (object.idle) return;
+		releases++;
+		T pooled = type.cast(object);
+		pooled.reset();
+		if (object.getParent() != null) object.setParent(null);
+		while (object.getChildCount() > 0) {
+			object.getChild(object.getChildCount() - 1).setParent(null, true);
+		}
+		if (idleCount == maxIdle) {
+			dropped++;
+			object.pool = null;
+			return;
+		}
+		object.idle = true;
+		push(object);
+	}
+
+	private void push(PointObject object) {
+		if (idleCount == idle.length) idle = Arrays.copyOf(idle, idleCount * 2);
+		idle[idleCount++] = object;
+	}
+
+	/**
+	 * @return the type of object kept
+	 */
+	public Class<T> getType() {
+		return type;
+	}
+
+	/**
+	 * @return the most objects the pool keeps
+	 */
+	public int getMaxIdle() {
+		return maxIdle;
+	}
+
+	/**
+	 * @return the number of objects waiting to be acquired
+	 */
+	public synchronized int getIdleCount() {
+		return idleCount;
+	}
+
+	/**
+	 * @return the number of times an object has been acquired
+	 */
+	public synchronized long getAcquires() {
+		return acquires;
+	}
+
+	/**
+	 * @return the number of acquires that reused an object
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of acquires that had to create an object
+	 */
+	public synchronized long getMisses() {
+		return acquires - hits;
+	}
+
+	/**
+	 * @return the number of objects the factory has created, including those
+	 * created to {@link #fill(int) fill} the pool
+	 */
+	public synchronized long getCreated() {
+		return created;
+	}
+
+	/**
+	 * @return the number of objects returned to the pool
+	 */
+	public synchronized long getReleases() {
+		return releases;
+	}
+
+	/**
+	 * @return the number of returned objects let go because the pool was full
+	 */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return the fraction of acquires that reused an object, 0 if there haven't been any
+	 */
+	public synchronized double getHitRate() {
+		return acquires == 0 ? 0 : (double) hits / acquires;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ObjectPool{" + type.getSimpleName() + ", idle=" + idleCount + ", hits=" + hits + "/" + acquires + "}";
+	}
+
+}
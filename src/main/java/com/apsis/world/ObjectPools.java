@@ -0,0 +1,97 @@
+package com.apsis.world;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The {@link ObjectPool}s of a game, one for each type of pooled object, so
+ * that objects can be acquired by their type.
+ *
+ * @author Cal Stephens
+ */
+public class ObjectPools {
+
+	private final HashMap<Class<?>, ObjectPool<?>> pools = new HashMap<>();
+	private final ArrayList<ObjectPool<?>> order = new ArrayList<>();
+
+	/**
+	 * Creates the pool for a type.
+	 *
+	 * @param <T> the type of object kept
+	 * @param type the type of object kept
+	 * @param factory the factory to create objects with
+	 * @param maxIdle the most objects to keep
+	 * @return the new pool
+	 * @see ObjectPool#ObjectPool(java.lang.Class, com.apsis.world.ObjectPool.Factory, int)
+	 */
+	public synchronized <T extends PointObject & Poolable> ObjectPool<T> register(Class<T> type, ObjectPool.Factory<T> factory, int maxIdle) {
+		if (pools.containsKey(type)) throw new IllegalArgumentException(type.getName() + " already has a pool");
+		ObjectPool<T> pool = new ObjectPool<>(type, factory, maxIdle);
+		pools.put(type, pool);
+		order.add(pool);
+		return pool;
+	}
+
+	/**
+	 * @param <T> the type of object kept
+	 * @param type the type of object kept
+	 * @return the pool for the type, or null if none is registered
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <T extends PointObject & Poolable> ObjectPool<T> getPool(Class<T> type) {
+		return (ObjectPool<T>) pools.get(type);
+	}
+
+	/**
+	 * Acquires an object from the pool for its type.
+	 *
+	 * @param <T> the type of object
+	 * @param type the type of object
+	 * @return an object to add to a World
+	 * @see ObjectPool#acquire()
+	 */
+	public <T extends PointObject & Poolable> T acquire(Class<T> type) {
+		ObjectPool<T> pool = getPool(type);
+		if (pool == null) throw new IllegalArgumentException(type.getName() + " has no pool");
+		return pool.acquire();
+	}
+
+	/**
+	 * @return the pools, in the order they were registered
+	 */
+	public synchronized ArrayList<ObjectPool<?>> getPools() {
+		return new ArrayList<>(order);
+	}
+
+	/**
+	 * @return the number of objects acquired from every pool
+	 */
+	public synchronized long getAcquires() {
+		long acquires = 0;
+		for (ObjectPool<?> pool : order) {
+			acquires += pool.getAcquires();
+		}
+		return acquires;
+	}
+
+	/**
+	 * @return the number of acquires from every pool that reused an object
+	 */
+	public synchronized long getHits() {
+		long hits = 0;
+		for (ObjectPool<?> pool : order) {
+			hits += pool.getHits();
+		}
+		return hits;
+	}
+
+	/**
+	 * @return the fraction of acquires from every pool that reused an object,
+	 * 0 if there haven't been any
+	 */
+	public synchronized double getHitRate() {
+		long acquires = getAcquires();
+		return acquires == 0 ? 0 : (double) getHits() / acquires;
+	}
+
+}
@@ -1,8 +1,10 @@
 package com.apsis.world;
 
+import com.apsis.util.Bounds;
 import com.apsis.util.Group;
 import com.apsis.util.Groupable;
 import com.apsis.util.Point;
+import java.util.ArrayList;
 import java.util.Objects;
 
 /**
@@ -14,9 +16,65 @@ import java.util.Objects;
  */
 public class PointObject implements Groupable{
 
+	/**
+	 * Dirty bit set when the object is moved
+	 */
+	public final static int DIRTY_POSITION = 1;
+	/**
+	 * Dirty bit set when the object is rotated
+	 */
+	public final static int DIRTY_ROTATION = 1 << 1;
+	/**
+	 * Dirty bit set when the render layer of the object changes
+	 */
+	public final static int DIRTY_LAYER = 1 << 2;
+	/**
+	 * Dirty bit set by {@link PointObject#invalidate()} when the way the object looks changes
+	 */
+	public final static int DIRTY_APPEARANCE = 1 << 3;
+	/**
+	 * Dirty bit set when the object is made static or dynamic
+	 */
+	public final static int DIRTY_STATIC = 1 << 4;
+	/**
+	 * Dirty bit set when the object is added to a World
+	 */
+	public final static int DIRTY_ADDED = 1 << 5;
+	/**
+	 * Dirty bit set when the object is removed from a World
+	 */
+	public final static int DIRTY_REMOVED = 1 << 6;
+	/**
+	 * Dirty bit set when the world transform of the object changes because
+	 * its parent changed, moved or rotated
+	 */
+	public final static int DIRTY_TRANSFORM = 1 << 7;
+
 	private Point pos;
 	private double rot = 0;
+	private int layer = 0;
+	private boolean isStatic = false;
 	private Group<PointObject> owningGroup = null;
+	private PointObject parent = null;
+	private ArrayList<PointObject> children = null;
+	//if an object's world transform is dirty, so are the transforms of all of its descendants
+	private boolean worldDirty = true;
+	//the dirty generation of the World in which a change to the world transform was last recorded
+	private int transformReported = 0;
+	private double worldRot = 0;
+	private TransformTable transformTable = null;
+	private int transformSlot = -1;
+	StaticCache.Cell staticCell = null;
+	//the index of the object in its World's dirty list, -1 if it isn't in it
+	int dirtyIndex = -1;
+	//assigned by the World the object is in, 0 if it isn't in one
+	long id = 0;
+	//the table the object's world transform is kept in while it isn't in a World
+	private TransformTable ownTransformTable = null;
+	//the pool the object came from, null if it wasn't acquired from one
+	ObjectPool<?> pool = null;
+	//whether the object is waiting in its pool to be acquired again
+	boolean idle = false;
 	
 	/**
 	 * @param pos The location of the object
@@ -35,14 +93,16 @@ public class PointObject implements Groupable{
 	}
 
 	/**
-	 * @return the X Coordinate of the object's location
+	 * @return the X Coordinate of the object's location, relative to its parent if it has one
+	 * @see PointObject#getWorldX()
 	 */
 	public double x() {
 		return pos.x();
 	}
 	
 	/**
-	 * @return the Y Coordinate of the object's location
+	 * @return the Y Coordinate of the object's location, relative to its parent if it has one
+	 * @see PointObject#getWorldY()
 	 */
 	public double y() {
 		return pos.y();
@@ -70,6 +130,7 @@ public class PointObject implements Groupable{
 	 */
 	public void setPos(Point pos) {
 		this.pos = pos;
+		transformChanged(DIRTY_POSITION);
 	}
 
 	/**
@@ -80,6 +141,19 @@ public class PointObject implements Groupable{
 	 */
 	public void moveTo(Point pos) {
 		this.pos = pos;
+		transformChanged(DIRTY_POSITION);
+	}
+	
+	/**
+	 * Moves the object to the specified coordinates,
+	 * changing its position Point instead of replacing it.
+	 *
+	 * @param x the new X of the object
+	 * @param y the new Y of the object
+	 */
+	public void moveTo(double x, double y) {
+		pos.set(x, y);
+		transformChanged(DIRTY_POSITION);
 	}
 	
 	/**
@@ -91,10 +165,12 @@ public class PointObject implements Groupable{
 	 */
 	public void move(double x, double y) {
 		pos.add(x, y);
+		transformChanged(DIRTY_POSITION);
 	}
 
 	/**
-	 * @return the Rotation of the object
+	 * @return the Rotation of the object, relative to its parent if it has one
+	 * @see PointObject#getWorldRot()
 	 */
 	public double getRot() {
 		return rot;
@@ -108,6 +184,7 @@ public class PointObject implements Groupable{
 	 */
 	public void rotate(double amount) {
 		rot += amount;
+		transformChanged(DIRTY_ROTATION);
 	}
 
 	/**
@@ -115,6 +192,393 @@ public class PointObject implements Groupable{
 	 */
 	public void setRot(double rot) {
 		this.rot = rot;
+		transformChanged(DIRTY_ROTATION);
+	}
+
+	/**
+	 * @return the parent of the object, null if it has none
+	 * @see PointObject#setParent(com.apsis.world.PointObject)
+	 */
+	public PointObject getParent() {
+		return parent;
+	}
+
+	/**
+	 * Attaches the object to a parent, keeping its position and rotation as they
+	 * are so that they are now relative to the parent.
+	 *
+	 * @param parent the new parent, or null to detach the object
+	 * @see PointObject#setParent(com.apsis.world.PointObject, boolean)
+	 */
+	public void setParent(PointObject parent) {
+		setParent(parent, false);
+	}
+
+	/**
+	 * Attaches the object to a parent. From then on, the object's position
+	 * and rotation are relative to the parent, and the object moves and
+	 * rotates along with it.<br>
+	 * Parents and children are added to and removed from Worlds separately.
+	 *
+	 * @param parent the new parent, or null to detach the object
+	 * @param keepWorldTransform if true, the object's position and rotation are
+	 * changed so that it stays where it is in the world
+	 */
+	public void setParent(PointObject parent, boolean keepWorldTransform) {
+		if (parent == this.parent) return;
+		for (PointObject ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+			if (ancestor == this) throw new IllegalArgumentException("An object cannot be its own ancestor.");
+		}
+		double worldX = 0, worldY = 0, oldWorldRot = 0;
+		if (keepWorldTransform) {
+			worldX = getWorldX();
+			worldY = getWorldY();
+			oldWorldRot = getWorldRot();
+		}
+		if (this.parent != null) {
+			ArrayList<PointObject> siblings = this.parent.children;
+			for (int i = siblings.size() - 1; i >= 0; i--) {
+				if (siblings.get(i) == this) {
+					siblings.remove(i);
+					break;
+				}
+			}
+		}
+		this.parent = parent;
+		if (parent != null) {
+			if (parent.children == null) parent.children = new ArrayList<>();
+			parent.children.add(this);
+		}
+		if (keepWorldTransform) {
+			if (parent == null) {
+				pos.set(worldX, worldY);
+				rot = oldWorldRot;
+			} else {
+				//undo the parent's transform, which is a rotation and a translation
+				parent.updateWorldTransform();
+				double[] data = parent.getTransformTable().getData();
+				int o = parent.transformSlot * TransformTable.STRIDE;
+				double dx = worldX - data[o + 4], dy = worldY - data[o + 5];
+				pos.set(data[o] * dx + data[o + 2] * dy, data[o + 1] * dx + data[o + 3] * dy);
+				rot = oldWorldRot - parent.worldRot;
+			}
+		}
+		transformChanged(DIRTY_TRANSFORM);
+	}
+
+	/**
+	 * @return the number of objects attached to this object
+	 */
+	public int getChildCount() {
+		return children == null ? 0 : children.size();
+	}
+
+	/**
+	 * @param index the index of the child
+	 * @return the child at the given index
+	 */
+	public PointObject getChild(int index) {
+		if (children == null) throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
+		return children.get(index);
+	}
+
+	/**
+	 * @return a copy of the list of objects attached to this object
+	 */
+	public ArrayList<PointObject> getChildren() {
+		return children == null ? new ArrayList<PointObject>() : new ArrayList<>(children);
+	}
+
+	/**
+	 * Computes the world transform of the object, and of its ancestors, if any of
+	 * them have changed since it was last computed.
+	 * Called by the other world transform methods.
+	 *
+	 * @see PointObject#getTransformSlot()
+	 */
+	public void updateWorldTransform() {
+		if (!worldDirty) return;
+		if (parent != null) parent.updateWorldTransform();
+		TransformTable table = getTransformTable();
+		double rad = Math.toRadians(rot);
+		double cos = Math.cos(rad), sin = Math.sin(rad);
+		double x = pos.x(), y = pos.y();
+		//fetched after the parent is updated, since the table may have grown
+		double[] data = table.getData();
+		int o = transformSlot * TransformTable.STRIDE;
+		if (parent == null) {
+			data[o] = cos;
+			data[o + 1] = -sin;
+			data[o + 2] = sin;
+			data[o + 3] = cos;
+			data[o + 4] = x;
+			data[o + 5] = y;
+			worldRot = rot;
+		} else {
+			double[] pd = parent.transformTable.getData();
+			int p = parent.transformSlot * TransformTable.STRIDE;
+			double p00 = pd[p], p01 = pd[p + 1], p10 = pd[p + 2], p11 = pd[p + 3];
+			data[o] = p00 * cos + p01 * sin;
+			data[o + 1] = -p00 * sin + p01 * cos;
+			data[o + 2] = p10 * cos + p11 * sin;
+			data[o + 3] = -p10 * sin + p11 * cos;
+			data[o + 4] = p00 * x + p01 * y + pd[p + 4];
+			data[o + 5] = p10 * x + p11 * y + pd[p + 5];
+			worldRot = parent.worldRot + rot;
+		}
+		worldDirty = false;
+	}
+
+	/**
+	 * @return the X Coordinate of the object's location in the world
+	 */
+	public double getWorldX() {
+		updateWorldTransform();
+		return transformTable.getData()[transformSlot * TransformTable.STRIDE + 4];
+	}
+
+	/**
+	 * @return the Y Coordinate of the object's location in the world
+	 */
+	public double getWorldY() {
+		updateWorldTransform();
+		return transformTable.getData()[transformSlot * TransformTable.STRIDE + 5];
+	}
+
+	/**
+	 * @return a new Point of the object's location in the world
+	 */
+	public Point getWorldPos() {
+		return Point.make(getWorldX(), getWorldY());
+	}
+
+	/**
+	 * @return the rotation of the object in the world, in degrees
+	 */
+	public double getWorldRot() {
+		updateWorldTransform();
+		return worldRot;
+	}
+
+	/**
+	 * Transforms a point from the object's local space into the world.
+	 *
+	 * @param point the point to transform, which is changed
+	 * @return <code>point</code>, for chaining
+	 */
+	public Point localToWorld(Point point) {
+		updateWorldTransform();
+		double[] data = transformTable.getData();
+		int o = transformSlot * TransformTable.STRIDE;
+		double x = point.x(), y = point.y();
+		return point.set(data[o] * x + data[o + 1] * y + data[o + 4], data[o + 2] * x + data[o + 3] * y + data[o + 5]);
+	}
+
+	/**
+	 * Gets the table that stores the world transform of the object.
+	 * Objects in a World share the World's table.
+	 *
+	 * @return the table holding the object's world transform
+	 * @see PointObject#getTransformSlot()
+	 */
+	public TransformTable getTransformTable() {
+		if (transformTable == null) {
+			transformTable = getOwnTransformTable();
+			transformSlot = transformTable.allocate();
+		}
+		return transformTable;
+	}
+
+	/**
+	 * @return the table that holds the object's world transform while it isn't
+	 * in a World, kept so that removing the object again doesn't need a new one
+	 */
+	TransformTable getOwnTransformTable() {
+		if (ownTransformTable == null) ownTransformTable = new TransformTable(1);
+		return ownTransformTable;
+	}
+
+	/**
+	 * Gets the ID of the object in its World. IDs are handed out in the order
+	 * objects are added and never reused by the same World, so the content of
+	 * a World is always in ascending order of ID. An object removed and
+	 * added again gets a new ID.
+	 *
+	 * @return the ID of the object, 0 if it isn't in a World
+	 * @see World#getNextObjectId()
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return the index of the object's slot in its {@link PointObject#getTransformTable() TransformTable}
+	 */
+	public int getTransformSlot() {
+		getTransformTable();
+		return transformSlot;
+	}
+
+	/**
+	 * Moves the object's world transform into a slot of the given table.
+	 *
+	 * @param table the new table
+	 */
+	void setTransformTable(TransformTable table) {
+		if (table == transformTable) return;
+		int slot = table.allocate();
+		if (transformTable != null) {
+			if (!worldDirty) {
+				System.arraycopy(transformTable.getData(), transformSlot * TransformTable.STRIDE,
+						table.getData(), slot * TransformTable.STRIDE, TransformTable.STRIDE);
+			}
+			transformTable.release(transformSlot);
+		}
+		transformTable = table;
+		transformSlot = slot;
+	}
+
+	/**
+	 * Records a change to the object's own transform and marks the
+	 * world transforms of the object and its descendants as dirty.
+	 *
+	 * @param bits the DIRTY_ bits describing the change
+	 */
+	private void transformChanged(int bits) {
+		worldDirty = true;
+		reportTransform(bits);
+		invalidateChildren();
+	}
+
+	private void invalidateChildren() {
+		if (children == null) return;
+		for (int i = 0, count = children.size(); i < count; i++) {
+			PointObject child = children.get(i);
+			//an object only becomes clean after its ancestors do, so a dirty child's whole subtree is dirty
+			//too, and it was recorded along with the child unless the dirty list has been drained since
+			if (child.worldDirty && !child.transformUnreported()) continue;
+			child.worldDirty = true;
+			child.reportTransform(DIRTY_TRANSFORM);
+			child.invalidateChildren();
+		}
+	}
+
+	/**
+	 * Records a change to the object's world transform in its World's dirty list.
+	 *
+	 * @param bits the DIRTY_ bits describing the change
+	 */
+	private void reportTransform(int bits) {
+		World world = getOwningWorld();
+		//read before recording, so a drain in between leaves the change to be recorded again
+		int generation = world == null ? 0 : world.getDirtyGeneration();
+		markDirty(bits);
+		transformReported = generation;
+	}
+
+	/**
+	 * @return whether the object's World is tracking changes and hasn't recorded
+	 * a change to the object's world transform since its dirty list was last drained
+	 */
+	private boolean transformUnreported() {
+		World world = getOwningWorld();
+		return world != null && world.isDirtyTracking() && transformReported != world.getDirtyGeneration();
+	}
+
+	/**
+	 * @return the render layer of the object
+	 * @see PointObject#setLayer(int)
+	 */
+	public int getLayer() {
+		return layer;
+	}
+
+	/**
+	 * Sets the render layer of the object.
+	 * When the Graphics is sorting, objects on lower layers
+	 * are drawn before objects on higher layers.
+	 *
+	 * @param layer the new layer (-32768 to 32767)
+	 * @see com.apsis.render.Graphics#setLayer(int)
+	 */
+	public void setLayer(int layer) {
+		this.layer = layer;
+		markDirty(DIRTY_LAYER);
+	}
+
+	/**
+	 * @return whether or not the object is static
+	 * @see PointObject#setStatic(boolean)
+	 */
+	public boolean isStatic() {
+		return isStatic;
+	}
+
+	/**
+	 * Marks the object as static (rarely changing) or dynamic.<br>
+	 * The World captures what static Renderable objects draw once and
+	 * replays it every frame instead of calling {@link com.apsis.render.Renderable#render(com.apsis.render.Graphics)}.
+	 * Moving or rotating a static object captures it again. Any other change
+	 * to how it looks must be followed by a call to {@link PointObject#invalidate()}.
+	 *
+	 * @param isStatic whether or not the object is static
+	 */
+	public void setStatic(boolean isStatic) {
+		if (this.isStatic == isStatic) return;
+		this.isStatic = isStatic;
+		World world = getOwningWorld();
+		if (world != null) world.staticChanged(this);
+		markDirty(DIRTY_STATIC);
+	}
+
+	/**
+	 * Tells the owning World that the way the object looks has changed,
+	 * so anything cached about it is rebuilt.<br>
+	 * Must be called by hand when the object changes in a way its own
+	 * methods can't see, such as changing the {@link Point} returned by
+	 * {@link PointObject#getPos()} directly or changing how the object is rendered.
+	 *
+	 * @see PointObject#DIRTY_APPEARANCE
+	 */
+	public void invalidate() {
+		markDirty(DIRTY_APPEARANCE);
+	}
+
+	/**
+	 * Records that the object has changed.<br>
+	 * The first change since the owning World's dirty list was last drained
+	 * puts the object in the list; later changes only add their bits.
+	 * Changes made while the object isn't in a World are not recorded.
+	 *
+	 * @param bits the DIRTY_ bits describing the change
+	 * @see World#drainDirty(com.apsis.world.DirtyVisitor)
+	 */
+	public void markDirty(int bits) {
+		if (owningGroup instanceof World) ((World) owningGroup).markDirty(this, bits);
+	}
+
+	/**
+	 * @return the DIRTY_ bits of the changes made to the object since the
+	 * owning World's dirty list was last drained, 0 if there are none
+	 */
+	public int getDirtyBits() {
+		World world = getOwningWorld();
+		return world == null ? 0 : world.getDirtyBits(this);
+	}
+
+	/**
+	 * Gets the world-space box the object covers when it is rendered.
+	 * Used by {@link World#render(com.apsis.render.Graphics)} to skip objects
+	 * that are outside of the camera's view.<br>
+	 * Objects that don't know their size return null and are never culled,
+	 * which is the default.<br>
+	 * Called every frame, so overriding classes should update and return
+	 * a reused Bounds instead of creating a new one.
+	 *
+	 * @return the bounds of the object, or null if they are unknown
+	 */
+	public Bounds getBounds() {
+		return null;
 	}
 
 	/**
@@ -134,7 +598,9 @@ public class PointObject implements Groupable{
 	
 	@Override
 	public boolean addedTo(Group<? extends Groupable> group) {
-		if(group.getContent().contains(this)){
+		//owningGroup is only set while the object is in the group, so this is the same as
+		//checking the group's content but doesn't copy it or compare objects by value
+		if(owningGroup == group){
 			throw new IllegalArgumentException(group + " already contains this object.");
 		}
 		this.owningGroup = (Group<PointObject>) group;
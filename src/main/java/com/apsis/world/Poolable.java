@@ -0,0 +1,20 @@
+package com.apsis.world;
+
+/**
+ * An object that can be reused through an {@link ObjectPool} instead of being
+ * created again for every short life, such as a bullet or a pickup.
+ *
+ * @author Cal Stephens
+ * @see ObjectPool
+ */
+public interface Poolable {
+
+	/**
+	 * Called when the object is returned to its pool, after it has been removed
+	 * from its World. Should put the object's own fields back the way a new
+	 * object would have them and let go of anything it refers to, so that
+	 * whoever acquires it next only has to set where it goes.
+	 */
+	public void reset();
+
+}
@@ -0,0 +1,102 @@
+package com.apsis.world;
+
+import com.apsis.event.Event;
+import com.apsis.event.Listener;
+
+/**
+ * An event waiting in a {@link Scheduler} to be triggered later.
+ *
+ * @author Cal Stephens
+ * @see Scheduler
+ */
+public class ScheduledTask {
+
+	private final Scheduler scheduler;
+	private final Event event;
+	private final Listener target;
+	private final long period;
+	//the wheel the task is waiting in, null if it isn't waiting
+	TimingWheel wheel = null;
+	long deadline;
+	int slot = -1;
+	ScheduledTask prev = null;
+	ScheduledTask next = null;
+	private boolean cancelled = false;
+	private boolean done = false;
+
+	ScheduledTask(Scheduler scheduler, Event event, Listener target, long deadline, long period) {
+		this.scheduler = scheduler;
+		this.event = event;
+		this.target = target;
+		this.deadline = deadline;
+		this.period = period;
+	}
+
+	/**
+	 * Stops the task from being triggered again.
+	 *
+	 * @return false if the task had already finished or been cancelled
+	 */
+	public boolean cancel() {
+		synchronized (scheduler) {
+			if (done || cancelled) return false;
+			cancelled = true;
+			if (wheel != null) wheel.remove(this);
+			return true;
+		}
+	}
+
+	/**
+	 * @return whether or not the task has been cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return whether or not a one-off task has been triggered
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	void finish() {
+		done = true;
+	}
+
+	/**
+	 * @return whether or not the task is triggered over and over
+	 */
+	public boolean isRepeating() {
+		return period > 0;
+	}
+
+	/**
+	 * @return the time between triggers of a repeating task in the units of its wheel (ticks
+	 * or wheel steps), 0 if the task doesn't repeat
+	 */
+	long getPeriod() {
+		return period;
+	}
+
+	/**
+	 * @return the event the task triggers
+	 */
+	public Event getEvent() {
+		return event;
+	}
+
+	/**
+	 * @return the listener the event is triggered on, or null if it goes to every subscribed listener
+	 */
+	public Listener getTarget() {
+		return target;
+	}
+
+	@Override
+	public String toString() {
+		return "ScheduledTask{event=" + event.getClass().getSimpleName() + ", deadline=" + deadline
+				+ ", period=" + period + ", cancelled=" + cancelled + ", done=" + done + "}";
+	}
+
+}
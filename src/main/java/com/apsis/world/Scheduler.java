@@ -0,0 +1,216 @@
+package com.apsis.world;
+
+import com.apsis.event.Event;
+import com.apsis.event.EventHandler;
+import com.apsis.event.Listener;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Triggers events after a delay, once or repeatedly, through an {@link EventHandler}.<br>
+ * <br>
+ * Deadlines are counted either in ticks (calls to {@link Scheduler#tick(long)}) or in
+ * time measured with {@link System#nanoTime()}, rounded up to the scheduler's
+ * resolution. Each kind is kept in its own {@link TimingWheel}, so scheduling
+ * and cancelling are O(1) and a tick only touches the tasks that expire.<br>
+ * <br>
+ * Every {@link World} has a Scheduler that is advanced at the start of {@link World#tick()}:
+ * <pre>
+ * world.getScheduler().schedule(new ExplodeEvent(), bomb, 3, TimeUnit.SECONDS);
+ * world.getScheduler().scheduleRepeatingTicks(new ThinkEvent(), enemy, 0, 10);
+ * </pre>
+ * The event of a repeating task is triggered again each time, so it should not
+ * hold per-trigger state. Repeating tasks run until they are cancelled, even if
+ * their target leaves the World.
+ *
+ * @author Cal Stephens
+ * @see World#getScheduler()
+ */
+public class Scheduler {
+
+	/**
+	 * The default resolution of time-based deadlines, in nanoseconds
+	 */
+	public final static long DEFAULT_RESOLUTION = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final EventHandler handler;
+	private final long resolution;
+	private final long origin = System.nanoTime();
+	private final TimingWheel ticks = new TimingWheel(0);
+	private final TimingWheel time = new TimingWheel(0);
+	private final ArrayList<ScheduledTask> due = new ArrayList<>();
+	private long triggered = 0;
+
+	/**
+	 * @param handler the EventHandler to trigger events through
+	 */
+	public Scheduler(EventHandler handler) {
+		this(handler, DEFAULT_RESOLUTION);
+	}
+
+	/**
+	 * @param handler the EventHandler to trigger events through
+	 * @param resolution the resolution of time-based deadlines, in nanoseconds
+	 */
+	public Scheduler(EventHandler handler, long resolution) {
+		if (handler == null) throw new IllegalArgumentException("EventHandler cannot be null.");
+		if (resolution <= 0) throw new IllegalArgumentException("Resolution must be positive.");
+		this.handler = handler;
+		this.resolution = resolution;
+	}
+
+	/**
+	 * Triggers an event after the given number of ticks.
+	 *
+	 * @param event the event to trigger
+	 * @param target the listener to trigger the event on, or null for every subscribed listener
+	 * @param delayTicks the number of ticks to wait; 0 or 1 trigger on the next tick
+	 * @return the scheduled task, which can be cancelled
+	 */
+	public ScheduledTask scheduleTicks(Event event, Listener target, long delayTicks) {
+		return scheduleRepeatingTicks(event, target, delayTicks, 0);
+	}
+
+	/**
+	 * Triggers an event after the given number of ticks, then again every <code>periodTicks</code>.
+	 *
+	 * @param event the event to trigger
+	 * @param target the listener to trigger the event on, or null for every subscribed listener
+	 * @param delayTicks the number of ticks to wait before the first trigger
+	 * @param periodTicks the number of ticks between triggers, 0 to trigger once
+	 * @return the scheduled task, which can be cancelled
+	 */
+	public synchronized ScheduledTask scheduleRepeatingTicks(Event event, Listener target, long delayTicks, long periodTicks) {
+		if (event == null) throw new IllegalArgumentException("Event cannot be null.");
+		if (delayTicks < 0 || periodTicks < 0) throw new IllegalArgumentException("Delay and period cannot be negative.");
+		ScheduledTask task = new ScheduledTask(this, event, target, ticks.getTime() + Math.max(1, delayTicks), periodTicks);
+		ticks.add(task);
+		return task;
+	}
+
+	/**
+	 * Triggers an event once the given amount of time has passed.
+	 * The event is triggered on the first tick after the deadline.
+	 *
+	 * @param event the event to trigger
+	 * @param target the listener to trigger the event on, or null for every subscribed listener
+	 * @param delay the amount of time to wait
+	 * @param unit the unit of the delay
+	 * @return the scheduled task, which can be cancelled
+	 */
+	public ScheduledTask schedule(Event event, Listener target, long delay, TimeUnit unit) {
+		return scheduleRepeating(event, target, delay, 0, unit);
+	}
+
+	/**
+	 * Triggers an event once the given amount of time has passed, then again every <code>period</code>.
+	 * If ticks are further apart than the period, missed triggers are skipped
+	 * rather than triggered all at once.
+	 *
+	 * @param event the event to trigger
+	 * @param target the listener to trigger the event on, or null for every subscribed listener
+	 * @param delay the amount of time to wait before the first trigger
+	 * @param period the time between triggers, 0 to trigger once
+	 * @param unit the unit of the delay and period
+	 * @return the scheduled task, which can be cancelled
+	 */
+	public synchronized ScheduledTask scheduleRepeating(Event event, Listener target, long delay, long period, TimeUnit unit) {
+		if (event == null) throw new IllegalArgumentException("Event cannot be null.");
+		if (delay < 0 || period < 0) throw new IllegalArgumentException("Delay and period cannot be negative.");
+		long deadline = steps(System.nanoTime() - origin + unit.toNanos(delay));
+		long steps = period == 0 ? 0 : Math.max(1, steps(unit.toNanos(period)));
+		ScheduledTask task = new ScheduledTask(this, event, target, deadline, steps);
+		time.add(task);
+		return task;
+	}
+
+	/**
+	 * Advances the scheduler by one tick and to the given time,
+	 * triggering every event that is due.
+	 *
+	 * @param nanoTime the current {@link System#nanoTime()}
+	 * @return the number of events triggered
+	 */
+	public int tick(long nanoTime) {
+		synchronized (this) {
+			long tickNow = ticks.getTime() + 1;
+			collect(ticks.advance(tickNow), tickNow, ticks);
+			long timeNow = Math.max(time.getTime(), steps(nanoTime - origin));
+			collect(time.advance(timeNow), timeNow, time);
+		}
+		//triggered without holding the lock, so listeners can schedule and cancel tasks
+		int count = due.size();
+		for (int i = 0; i < count; i++) {
+			ScheduledTask task = due.get(i);
+			//a listener earlier in the batch may have cancelled it
+			if (task.isCancelled()) continue;
+			if (task.getTarget() == null) handler.triggerEvent(task.getEvent());
+			else handler.triggerEvent(task.getEvent(), task.getTarget());
+		}
+		due.clear();
+		synchronized (this) {
+			triggered += count;
+		}
+		return count;
+	}
+
+	/**
+	 * Queues expired tasks to be triggered and puts repeating tasks back in their wheel.
+	 */
+	private void collect(ScheduledTask expired, long now, TimingWheel wheel) {
+		while (expired != null) {
+			ScheduledTask task = expired;
+			expired = task.next;
+			task.next = null;
+			due.add(task);
+			long period = task.getPeriod();
+			if (period > 0) {
+				long next = task.deadline + period;
+				if (next <= now) next += ((now - next) / period + 1) * period;
+				task.deadline = next;
+				wheel.add(task);
+			} else task.finish();
+		}
+	}
+
+	/**
+	 * Rounds nanoseconds up to whole steps of the time wheel.
+	 */
+	private long steps(long nanos) {
+		return (nanos + resolution - 1) / resolution;
+	}
+
+	/**
+	 * @return the number of ticks the scheduler has been advanced
+	 */
+	public synchronized long getTick() {
+		return ticks.getTime();
+	}
+
+	/**
+	 * @return the number of tasks waiting to be triggered
+	 */
+	public synchronized int size() {
+		return ticks.size() + time.size();
+	}
+
+	/**
+	 * @return the total number of events triggered
+	 */
+	public synchronized long getTriggered() {
+		return triggered;
+	}
+
+	/**
+	 * @return the resolution of time-based deadlines, in nanoseconds
+	 */
+	public long getResolution() {
+		return resolution;
+	}
+
+	@Override
+	public String toString() {
+		return "Scheduler{tick=" + getTick() + ", pending=" + size() + ", triggered=" + getTriggered() + "}";
+	}
+
+}
@@ -0,0 +1,22 @@
+package com.apsis.world;
+
+import com.apsis.event.world.TickEvent;
+
+/**
+ * A member of a {@link TimeSlicedGroup}, updated on some ticks instead of every tick.
+ *
+ * @author Cal Stephens
+ * @see TimeSlicedGroup
+ */
+public interface Sliced {
+
+	/**
+	 * Called when it is the member's turn to update.
+	 *
+	 * @param tick the event of the tick the member is updated on
+	 * @param ticksSinceLastTurn the number of ticks since the member's last turn,
+	 * or since it was added to the group, so work can be scaled to the time that passed
+	 */
+	public void sliceTick(TickEvent tick, long ticksSinceLastTurn);
+
+}
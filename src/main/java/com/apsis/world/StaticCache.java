@@ -0,0 +1,226 @@
+package com.apsis.world;
+
+import com.apsis.render.CachedGeometry;
+import com.apsis.render.Graphics;
+import com.apsis.render.Renderable;
+import com.apsis.util.Bounds;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Bakes the static objects of a {@link World} into {@link CachedGeometry}.<br>
+ * <br>
+ * Static objects are grouped into square cells by position. The objects
+ * of a cell are captured into one CachedGeometry, which is drawn every frame
+ * and only captured again when one of its objects changes, is added or is removed.
+ * Cells outside of the camera's view are skipped as a whole.
+ *
+ * @author Cal Stephens
+ * @see PointObject#setStatic(boolean)
+ */
+class StaticCache {
+
+	/**
+	 * The width and height of a cell in world units
+	 */
+	final static double CELL_SIZE = 512;
+
+	private final HashMap<Long, Cell> cells = new HashMap<>();
+	//kept alongside the map so cells can be iterated without allocating
+	private final ArrayList<Cell> cellList = new ArrayList<>();
+	private int objects = 0;
+	private long rebuilds = 0;
+	private int lastDrawn = 0;
+	private int lastCulled = 0;
+
+	/**
+	 * Adds a static object to the cell under its position.
+	 *
+	 * @param object the object to add
+	 */
+	void add(PointObject object) {
+		int cx = (int) Math.floor(object.getWorldX() / CELL_SIZE), cy = (int) Math.floor(object.getWorldY() / CELL_SIZE);
+		long key = ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+		Cell cell = cells.get(key);
+		if (cell == null) {
+			cell = new Cell(key);
+			cells.put(key, cell);
+			cellList.add(cell);
+		}
+		cell.members.add(object);
+		cell.invalidate();
+		object.staticCell = cell;
+		objects++;
+	}
+
+	/**
+	 * Removes a static object from its cell.
+	 *
+	 * @param object the object to remove
+	 */
+	void remove(PointObject object) {
+		Cell cell = object.staticCell;
+		if (cell == null) return;
+		ArrayList<PointObject> members = cell.members;
+		for (int i = members.size() - 1; i >= 0; i--) {
+			if (members.get(i) == object) {
+				members.remove(i);
+				break;
+			}
+		}
+		object.staticCell = null;
+		objects--;
+		if (members.isEmpty()) {
+			cells.remove(cell.key);
+			cellList.remove(cell);
+		} else cell.invalidate();
+	}
+
+	/**
+	 * Marks the cell of a static object for rebuilding,
+	 * moving the object to another cell if it has moved.
+	 *
+	 * @param object the object that changed
+	 */
+	void changed(PointObject object) {
+		if (object.staticCell == null) return;
+		remove(object);
+		add(object);
+	}
+
+	/**
+	 * Removes every object.
+	 */
+	void clear() {
+		for (Cell cell : cellList) {
+			for (PointObject object : cell.members) {
+				object.staticCell = null;
+			}
+		}
+		cells.clear();
+		cellList.clear();
+		objects = 0;
+	}
+
+	/**
+	 * Draws every visible cell, capturing cells that changed since they were last drawn.
+	 *
+	 * @param g the Graphics to draw with
+	 * @param view the visible part of the world, or null to draw every cell
+	 */
+	void render(Graphics g, Bounds view) {
+		int drawn = 0;
+		int culled = 0;
+		for (int i = 0, count = cellList.size(); i < count; i++) {
+			Cell cell = cellList.get(i);
+			if (cell.boundsDirty) cell.updateBounds();
+			if (view != null && !cell.unbounded && !cell.bounds.intersects(view)) {
+				culled++;
+				continue;
+			}
+			if (cell.geometryDirty || !cell.geometry.isComplete()) {
+				cell.capture(g);
+				rebuilds++;
+			}
+			g.drawCached(cell.geometry);
+			drawn++;
+		}
+		lastDrawn = drawn;
+		lastCulled = culled;
+	}
+
+	/**
+	 * @return the number of static objects
+	 */
+	int size() {
+		return objects;
+	}
+
+	/**
+	 * @return the number of cells holding static objects
+	 */
+	int getCellCount() {
+		return cellList.size();
+	}
+
+	/**
+	 * @return the number of times a cell has been captured
+	 */
+	long getRebuilds() {
+		return rebuilds;
+	}
+
+	/**
+	 * @return the number of cells drawn during the last render
+	 */
+	int getLastDrawn() {
+		return lastDrawn;
+	}
+
+	/**
+	 * @return the number of cells skipped during the last render because they were off screen
+	 */
+	int getLastCulled() {
+		return lastCulled;
+	}
+
+	/**
+	 * A square part of the world and the captured geometry of its static objects.
+	 */
+	static class Cell {
+
+		private final long key;
+		private final ArrayList<PointObject> members = new ArrayList<>();
+		private final CachedGeometry geometry = new CachedGeometry();
+		private final Bounds bounds = new Bounds();
+		private boolean unbounded = false;
+		private boolean boundsDirty = true;
+		private boolean geometryDirty = true;
+
+		private Cell(long key) {
+			this.key = key;
+		}
+
+		private void invalidate() {
+			boundsDirty = true;
+			geometryDirty = true;
+		}
+
+		/**
+		 * Sets the bounds of the cell to the box around the bounds of all of its objects.
+		 */
+		private void updateBounds() {
+			double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+			unbounded = false;
+			for (PointObject object : members) {
+				Bounds b = object.getBounds();
+				if (b == null) {
+					unbounded = true;
+					break;
+				}
+				minX = Math.min(minX, b.getMinX());
+				minY = Math.min(minY, b.getMinY());
+				maxX = Math.max(maxX, b.getMaxX());
+				maxY = Math.max(maxY, b.getMaxY());
+			}
+			if (!unbounded) bounds.set(minX, minY, maxX, maxY);
+			boundsDirty = false;
+		}
+
+		private void capture(Graphics g) {
+			g.beginCapture(geometry);
+			try {
+				for (PointObject object : members) {
+					g.setLayer(object.getLayer());
+					((Renderable) object).render(g);
+				}
+			} finally {
+				g.endCapture();
+			}
+			geometryDirty = false;
+		}
+
+	}
+
+}
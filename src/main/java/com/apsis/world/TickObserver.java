@@ -0,0 +1,21 @@
+package com.apsis.world;
+
+/**
+ * Told by a {@link World} every time one of its ticks ends, after every
+ * listener and time-sliced group has run. Unlike a Listener of the
+ * TickEvent, an observer sees the World as the tick left it.
+ *
+ * @author Cal Stephens
+ * @see World#addTickObserver(com.apsis.world.TickObserver)
+ */
+public interface TickObserver {
+
+	/**
+	 * Called on the thread that ticked the World, once the tick has ended.
+	 *
+	 * @param world the World that ticked
+	 * @param tick the number of the tick that ended
+	 */
+	public void tickEnded(World world, long tick);
+
+}
@@ -0,0 +1,123 @@
+package com.apsis.world;
+
+import com.apsis.util.RollingStats;
+
+/**
+ * A snapshot of the performance of a {@link World} over its last ticks.<br>
+ * <br>
+ * Durations are in nanoseconds and cover the last {@link World#STATS_WINDOW} ticks:
+ * <ul>
+ * <li><b>duration</b> - the whole of {@link World#tick()}</li>
+ * <li><b>dispatch</b> - triggering scheduled events, the TickEvent and posted
+ * coalescible events and updating time-sliced groups, not counting structural
+ * changes made by listeners</li>
+ * <li><b>structural</b> - adding and removing objects, switching objects between
+ * static and dynamic, and draining the dirty list, from the end of the
+ * previous tick to the end of this one</li>
+ * <li><b>render</b> - submitting the World to a Graphics, from the end of the previous tick to the end of this one</li>
+ * </ul>
+ * A TickStats is meant to be kept and filled again with
+ * {@link World#getTickStats(com.apsis.world.TickStats)}, which doesn't allocate.
+ *
+ * @author Cal Stephens
+ * @see World#getTickStats(com.apsis.world.TickStats)
+ */
+public class TickStats {
+
+	final RollingStats.Summary duration = new RollingStats.Summary();
+	final RollingStats.Summary dispatch = new RollingStats.Summary();
+	final RollingStats.Summary structural = new RollingStats.Summary();
+	final RollingStats.Summary render = new RollingStats.Summary();
+	final RollingStats.Summary objects = new RollingStats.Summary();
+	long tick;
+	int objectCount;
+	int dynamicCount;
+	int staticCount;
+	int dirtyCount;
+	int scheduledCount;
+
+	/**
+	 * @return the duration of whole ticks
+	 */
+	public RollingStats.Summary getDuration() {
+		return duration;
+	}
+
+	/**
+	 * @return the time spent triggering events each tick
+	 */
+	public RollingStats.Summary getDispatch() {
+		return dispatch;
+	}
+
+	/**
+	 * @return the time spent adding, removing and tracking changes to objects each tick
+	 */
+	public RollingStats.Summary getStructural() {
+		return structural;
+	}
+
+	/**
+	 * @return the time spent submitting the World to a Graphics each tick
+	 */
+	public RollingStats.Summary getRender() {
+		return render;
+	}
+
+	/**
+	 * @return the number of objects in the World at the end of each tick
+	 */
+	public RollingStats.Summary getObjects() {
+		return objects;
+	}
+
+	/**
+	 * @return the number of the tick the snapshot was taken after
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * @return the number of objects in the World when the snapshot was taken
+	 */
+	public int getObjectCount() {
+		return objectCount;
+	}
+
+	/**
+	 * @return the number of dynamic Renderable objects when the snapshot was taken
+	 */
+	public int getDynamicCount() {
+		return dynamicCount;
+	}
+
+	/**
+	 * @return the number of static Renderable objects when the snapshot was taken
+	 */
+	public int getStaticCount() {
+		return staticCount;
+	}
+
+	/**
+	 * @return the number of entries in the dirty list when the snapshot was taken
+	 */
+	public int getDirtyCount() {
+		return dirtyCount;
+	}
+
+	/**
+	 * @return the number of scheduled events waiting when the snapshot was taken
+	 */
+	public int getScheduledCount() {
+		return scheduledCount;
+	}
+
+	@Override
+	public String toString() {
+		return "TickStats{tick=" + tick + ", objects=" + objectCount + " (" + dynamicCount + " dynamic, " + staticCount + " static)"
+				+ ", dirty=" + dirtyCount + ", scheduled=" + scheduledCount + ",\n\tduration=" + duration + ",\n\tdispatch=" + dispatch
+				+ ",\n\tstructural=" + structural + ",\n\trender=" + render + "}";
+	}
+
+}
@@ -0,0 +1,233 @@
+package com.apsis.world;
+
+import com.apsis.event.EventHandler;
+import com.apsis.event.world.BudgetOverrunEvent;
+import com.apsis.event.world.TickEvent;
+import com.apsis.util.Group;
+import java.util.ArrayList;
+
+/**
+ * A Group of {@link Sliced} members that share a per-tick budget, for work
+ * (such as AI or path planning) that doesn't need to run for every member every tick.<br>
+ * <br>
+ * Each tick, the group picks up where it left off on the last tick and
+ * updates members in order until it runs out of budget, wrapping around
+ * to the start once every member has had a turn. The budget is a number of
+ * microseconds, a fraction of the members, or both (whichever runs out first).
+ * At least one member is updated every tick.<br>
+ * The time budget is checked before each member using the average cost of
+ * a member, so a tick only goes over budget if a member takes much longer
+ * than usual. When it does, the overrun is counted and a
+ * {@link BudgetOverrunEvent} is triggered.<br>
+ * <br>
+ * Groups are updated after the {@link TickEvent} once they are added to a World:
+ * <pre>
+ * TimeSlicedGroup&lt;Enemy&gt; ai = new TimeSlicedGroup&lt;&gt;();
+ * ai.setBudgetMicros(2000);
+ * world.addTimeSlicedGroup(ai);
+ * </pre>
+ *
+ * @author Cal Stephens
+ * @param <T> the type of the members
+ * @see World#addTimeSlicedGroup(com.apsis.world.TimeSlicedGroup)
+ */
+public class TimeSlicedGroup<T extends Sliced> extends Group<T> {
+
+	private final ArrayList<Member<T>> members = new ArrayList<>();
+	private long budgetNanos = 0;
+	private double fraction = 1;
+	private int cursor = 0;
+	private long currentTick = 0;
+	private long cycleStart = 0;
+	private long lastCycleTicks = 0;
+	private double averageMemberNanos = 0;
+	private int lastRunCount = 0;
+	private long lastElapsedNanos = 0;
+	private long overruns = 0;
+	private long maxOverrunNanos = 0;
+	private long totalRuns = 0;
+
+	/**
+	 * Creates a group that updates every member every tick
+	 * until a budget is set.
+	 */
+	public TimeSlicedGroup() {
+	}
+
+	/**
+	 * Sets the amount of time the group may spend per tick.
+	 *
+	 * @param micros the budget in microseconds, 0 for no time limit
+	 */
+	public synchronized void setBudgetMicros(long micros) {
+		if (micros < 0) throw new IllegalArgumentException("Budget cannot be negative.");
+		this.budgetNanos = micros * 1000;
+	}
+
+	/**
+	 * @return the amount of time the group may spend per tick in microseconds, 0 if there is no limit
+	 */
+	public synchronized long getBudgetMicros() {
+		return budgetNanos / 1000;
+	}
+
+	/**
+	 * Sets the fraction of the members updated per tick.
+	 * For example, 0.25 updates every member once every four ticks.
+	 *
+	 * @param fraction the fraction of members (greater than 0, up to 1)
+	 */
+	public synchronized void setFraction(double fraction) {
+		if (fraction <= 0 || fraction > 1) throw new IllegalArgumentException("Fraction must be greater than 0 and at most 1.");
+		this.fraction = fraction;
+	}
+
+	/**
+	 * @return the fraction of the members updated per tick
+	 */
+	public synchronized double getFraction() {
+		return fraction;
+	}
+
+	@Override
+	protected synchronized void addContent(T object) {
+		int before = size();
+		super.addContent(object);
+		if (size() > before) members.add(new Member<>(object, currentTick));
+	}
+
+	@Override
+	protected synchronized void removeContent(T object) {
+		super.removeContent(object);
+		for (int i = members.size() - 1; i >= 0; i--) {
+			if (members.get(i).member == object) {
+				members.remove(i);
+				if (i < cursor) cursor--;
+				break;
+			}
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		super.clear();
+		members.clear();
+		cursor = 0;
+	}
+
+	/**
+	 * Updates members until the tick's budget runs out.
+	 *
+	 * @param tick the event of the current tick
+	 * @param tickNumber the number of the current tick
+	 * @param handler the handler to trigger overrun events through
+	 */
+	synchronized void run(TickEvent tick, long tickNumber, EventHandler handler) {
+		currentTick = tickNumber;
+		int count = members.size();
+		if (count == 0) {
+			lastRunCount = 0;
+			lastElapsedNanos = 0;
+			return;
+		}
+		int quota = fraction >= 1 ? count : Math.max(1, (int) Math.ceil(fraction * count));
+		long start = System.nanoTime(), now = start;
+		int ran = 0;
+		//the size is checked every time, since members may add or remove members
+		while (ran < quota && !members.isEmpty()) {
+			if (ran > 0 && budgetNanos > 0 && now - start + averageMemberNanos > budgetNanos) break;
+			if (cursor >= members.size()) {
+				cursor = 0;
+				lastCycleTicks = tickNumber - cycleStart;
+				cycleStart = tickNumber;
+			}
+			Member<T> member = members.get(cursor++);
+			member.member.sliceTick(tick, tickNumber - member.lastTurn);
+			member.lastTurn = tickNumber;
+			long end = System.nanoTime();
+			//exponential moving average of the cost of one member
+			averageMemberNanos += ((end - now) - averageMemberNanos) / 16;
+			now = end;
+			ran++;
+		}
+		lastRunCount = ran;
+		lastElapsedNanos = now - start;
+		totalRuns += ran;
+		if (budgetNanos > 0 && lastElapsedNanos > budgetNanos) {
+			overruns++;
+			maxOverrunNanos = Math.max(maxOverrunNanos, lastElapsedNanos - budgetNanos);
+			handler.triggerEvent(new BudgetOverrunEvent(this, budgetNanos, lastElapsedNanos));
+		}
+	}
+
+	/**
+	 * @return the number of members updated on the last tick
+	 */
+	public synchronized int getLastRunCount() {
+		return lastRunCount;
+	}
+
+	/**
+	 * @return the time spent updating members on the last tick, in nanoseconds
+	 */
+	public synchronized long getLastElapsedNanos() {
+		return lastElapsedNanos;
+	}
+
+	/**
+	 * @return the number of ticks the last full pass over every member took
+	 */
+	public synchronized long getLastCycleTicks() {
+		return lastCycleTicks;
+	}
+
+	/**
+	 * @return the average time taken by one member's update, in nanoseconds
+	 */
+	public synchronized double getAverageMemberNanos() {
+		return averageMemberNanos;
+	}
+
+	/**
+	 * @return the number of ticks the group went over its time budget on
+	 */
+	public synchronized long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 * @return the most the group has gone over its time budget by, in nanoseconds
+	 */
+	public synchronized long getMaxOverrunNanos() {
+		return maxOverrunNanos;
+	}
+
+	/**
+	 * @return the total number of member updates
+	 */
+	public synchronized long getTotalRuns() {
+		return totalRuns;
+	}
+
+	@Override
+	public String toString() {
+		return "TimeSlicedGroup{size=" + size() + ", budgetMicros=" + getBudgetMicros() + ", fraction=" + getFraction()
+				+ ", overruns=" + getOverruns() + "}";
+	}
+
+	/**
+	 * A member and the tick of its last turn.
+	 */
+	private static class Member<T> {
+
+		private final T member;
+		private long lastTurn;
+
+		private Member(T member, long lastTurn) {
+			this.member = member;
+			this.lastTurn = lastTurn;
+		}
+
+	}
+
+}
@@ -0,0 +1,157 @@
+package com.apsis.world;
+
+/**
+ * A hierarchical timing wheel holding {@link ScheduledTask}s.<br>
+ * <br>
+ * Time is counted in whole steps. The wheel has four levels of 256 slots;
+ * a slot on level <code>L</code> covers <code>256^L</code> steps. Tasks are put
+ * in the lowest level that can reach their deadline, and each slot is an
+ * intrusive doubly linked list, so adding and removing a task are O(1).
+ * Every 256 steps one slot of the next level up is emptied into the levels
+ * below it, so each task is moved at most once per level.
+ * Not thread safe; the {@link Scheduler} owning the wheel locks around it.
+ *
+ * @author Cal Stephens
+ */
+class TimingWheel {
+
+	private final static int SLOT_BITS = 8;
+	private final static int SLOTS = 1 << SLOT_BITS;
+	private final static int MASK = SLOTS - 1;
+	private final static int LEVELS = 4;
+	//tasks further out than this are placed this far out and placed again when their slot is emptied
+	private final static long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+	private final ScheduledTask[] slots = new ScheduledTask[SLOTS * LEVELS];
+	private long now;
+	private int size = 0;
+
+	/**
+	 * @param start the step the wheel starts at
+	 */
+	TimingWheel(long start) {
+		this.now = start;
+	}
+
+	/**
+	 * @return the step the wheel is at
+	 */
+	long getTime() {
+		return now;
+	}
+
+	/**
+	 * @return the number of tasks in the wheel
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Adds a task to the slot matching its deadline.
+	 * Tasks whose deadline has passed expire on the next step.
+	 *
+	 * @param task the task to add
+	 */
+	void add(ScheduledTask task) {
+		place(task, now + 1);
+	}
+
+	/**
+	 * Links a task into the slot matching its deadline.
+	 *
+	 * @param task the task to place
+	 * @param earliest the earliest step the task may expire at
+	 */
+	private void place(ScheduledTask task, long earliest) {
+		long deadline = Math.max(task.deadline, earliest);
+		long delta = Math.min(deadline - now, MAX_DELTA);
+		deadline = now + delta;
+		int level = 0;
+		while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+			level++;
+		}
+		int slot = level * SLOTS + (int) ((deadline >>> (SLOT_BITS * level)) & MASK);
+		ScheduledTask head = slots[slot];
+		task.next = head;
+		task.prev = null;
+		if (head != null) head.prev = task;
+		slots[slot] = task;
+		task.slot = slot;
+		task.wheel = this;
+		size++;
+	}
+
+	/**
+	 * Removes a task from its slot.
+	 *
+	 * @param task a task in the wheel
+	 */
+	void remove(ScheduledTask task) {
+		if (task.prev == null) slots[task.slot] = task.next;
+		else task.prev.next = task.next;
+		if (task.next != null) task.next.prev = task.prev;
+		unlink(task);
+	}
+
+	/**
+	 * Steps the wheel forward to the given step, collecting every task that expires.
+	 *
+	 * @param to the step to advance to
+	 * @return the first expired task, with the rest chained through {@link ScheduledTask#next},
+	 * or null if none expired
+	 */
+	ScheduledTask advance(long to) {
+		ScheduledTask expired = null, last = null;
+		while (now < to) {
+			if (size == 0) {
+				//nothing can expire, so skip ahead
+				now = to;
+				break;
+			}
+			now++;
+			if ((now & MASK) == 0) cascade(1);
+			int slot = (int) (now & MASK);
+			ScheduledTask task = slots[slot];
+			slots[slot] = null;
+			while (task != null) {
+				ScheduledTask next = task.next;
+				unlink(task);
+				if (last == null) expired = task;
+				else last.next = task;
+				last = task;
+				task = next;
+			}
+		}
+		return expired;
+	}
+
+	/**
+	 * Empties the current slot of the given level into the levels below it,
+	 * after emptying the level above if it also wrapped around.
+	 */
+	private void cascade(int level) {
+		if (level == LEVELS) return;
+		int index = (int) ((now >>> (SLOT_BITS * level)) & MASK);
+		if (index == 0) cascade(level + 1);
+		int slot = level * SLOTS + index;
+		ScheduledTask task = slots[slot];
+		slots[slot] = null;
+		while (task != null) {
+			ScheduledTask next = task.next;
+			unlink(task);
+			//the level 0 slot of the current step hasn't been emptied yet, so tasks due now still expire now
+			place(task, now);
+			task = next;
+		}
+	}
+
+	private void unlink(ScheduledTask task) {
+		task.prev = null;
+		task.next = null;
+		task.slot = -1;
+		task.wheel = null;
+		size--;
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.apsis.world;
+
+import java.util.Arrays;
+
+/**
+ * Contiguous storage for the world transforms of PointObjects.<br>
+ * <br>
+ * Every object in a {@link World} owns one slot of its World's table. A slot holds
+ * the object's world transform as {@link TransformTable#STRIDE} doubles,
+ * <code>{m00, m01, m10, m11, tx, ty}</code>, so that a local point <code>(x, y)</code>
+ * is at <code>(m00 * x + m01 * y + tx, m10 * x + m11 * y + ty)</code> in the world.
+ * Keeping the transforms in one array lets renderers walk many of them
+ * without chasing a pointer per object.<br>
+ * A slot is only up to date after the object's world transform has been
+ * computed, such as by {@link PointObject#updateWorldTransform()}.
+ *
+ * @author Cal Stephens
+ * @see PointObject#getTransformSlot()
+ */
+public class TransformTable {
+
+	/**
+	 * The number of doubles in each slot
+	 */
+	public final static int STRIDE = 6;
+
+	private double[] data;
+	private int[] free = new int[16];
+	private int freeCount = 0;
+	private int used = 0;
+
+	/**
+	 * @param capacity the number of slots to make room for up front
+	 */
+	public TransformTable(int capacity) {
+		if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+		this.data = new double[capacity * STRIDE];
+	}
+
+	/**
+	 * Claims a slot, reusing released slots first.
+	 *
+	 * @return the index of the slot
+	 */
+	synchronized int allocate() {
+		if (freeCount > 0) return free[--freeCount];
+		if (used * STRIDE == data.length) data = Arrays.copyOf(data, data.length * 2);
+		return used++;
+	}
+
+	/**
+	 * Gives back a slot so it can be reused.
+	 *
+	 * @param slot the index of the slot
+	 */
+	synchronized void release(int slot) {
+		if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+		free[freeCount++] = slot;
+	}
+
+	/**
+	 * Returns the internal array of transforms.
+	 * The array is replaced when the table grows, so it should be
+	 * fetched again instead of kept.
+	 *
+	 * @return the internal array, with slot <code>i</code> starting at <code>i * STRIDE</code>
+	 */
+	public double[] getData() {
+		return data;
+	}
+
+	/**
+	 * @return the number of slots in use
+	 */
+	public synchronized int size() {
+		return used - freeCount;
+	}
+
+	/**
+	 * @return the number of slots that have ever been handed out, in use or not
+	 */
+	public synchronized int getHighestSlot() {
+		return used;
+	}
+
+	@Override
+	public String toString() {
+		return "TransformTable{size=" + size() + ", capacity=" + data.length / STRIDE + "}";
+	}
+
+}
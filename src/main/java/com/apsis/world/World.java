@@ -3,50 +3,393 @@ package com.apsis.world;
 import com.apsis.event.EventHandler;
 import com.apsis.event.Listener;
 import com.apsis.event.world.*;
+import com.apsis.jfr.GroupChangeEvent;
+import com.apsis.jfr.WorldTickEvent;
+import com.apsis.render.Camera;
 import com.apsis.render.Graphics;
 import com.apsis.render.Renderable;
+import com.apsis.util.Bounds;
 import com.apsis.util.Group;
-import com.apsis.util.Runner;
+import com.apsis.util.RollingStats;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @author Cal Stephens
  */
 public class World extends Group<PointObject> implements Renderable {
+
+	//changes that require the geometry of a static object to be captured again
+	private final static int STATIC_REBUILD_BITS = PointObject.DIRTY_POSITION | PointObject.DIRTY_ROTATION
+			| PointObject.DIRTY_TRANSFORM | PointObject.DIRTY_LAYER | PointObject.DIRTY_APPEARANCE;
+
+	/**
+	 * The number of ticks the {@link TickStats} of a World cover
+	 */
+	public final static int STATS_WINDOW = 256;
 	
 	private final EventHandler handler = new EventHandler();
+	private final Scheduler scheduler = new Scheduler(handler);
+	private final ArrayList<TimeSlicedGroup<?>> slicedGroups = new ArrayList<>();
+	private final ArrayList<TickObserver> tickObservers = new ArrayList<>();
+	private final StaticCache staticCache = new StaticCache();
+	private final TransformTable transforms = new TransformTable(256);
+	private final ArrayList<PointObject> dynamicRenderables = new ArrayList<>();
+	private final ArrayList<PointObject> renderList = new ArrayList<>();
+	//the dirty list is double buffered so it can be drained while objects keep changing
+	private PointObject[] dirtyObjects = new PointObject[64];
+	private int[] dirtyBits = new int[64];
+	private int dirtyCount = 0;
+	//entries dropped from the dirty list, for objects added and removed between drains
+	private int droppedDirty = 0;
+	//changes are only recorded once someone drains them
+	private volatile boolean trackingDirty = false;
+	//bumped whenever the dirty list is drained or tracking starts or stops
+	private volatile int dirtyGeneration = 0;
+	private PointObject[] drainingObjects = new PointObject[64];
+	private int[] drainingBits = new int[64];
+	private final TickEvent tickEvent = new TickEvent(this);
+	//Add and Remove events carry nothing, so one of each is triggered for every object
+	private final AddToWorldEvent addEvent = new AddToWorldEvent();
+	private final RemoveFromWorldEvent removeEvent = new RemoveFromWorldEvent();
+	private final List<PointObject> orderedContent = Collections.unmodifiableList(getContentList());
+	private final RollingStats tickNanos = new RollingStats(STATS_WINDOW);
+	private final RollingStats dispatchNanos = new RollingStats(STATS_WINDOW);
+	private final RollingStats structuralNanos = new RollingStats(STATS_WINDOW);
+	private final RollingStats renderNanos = new RollingStats(STATS_WINDOW);
+	private final RollingStats objectCounts = new RollingStats(STATS_WINDOW);
+	//time spent on each phase since it was last recorded
+	private long pendingStructuralNanos = 0;
+	private long pendingRenderNanos = 0;
+	private int lastRenderConsidered = 0;
+	private int lastRenderCulled = 0;
+	private int lastRenderDrawn = 0;
+	private long nextObjectId = 1;
+	//the ID given to the object being restored, 0 if add() should hand out a new one
+	private long restoringId = 0;
 
 	/**
-	 * Renders all of the objects contained
-	 * in the World
+	 * Renders all of the objects contained in the World.<br>
+	 * If the Graphics has a {@link Camera}, objects whose
+	 * {@link PointObject#getBounds() bounds} are outside of
+	 * the camera's view are skipped.<br>
+	 * {@link PointObject#setStatic(boolean) Static} objects are drawn from
+	 * geometry captured the last time they changed. Unless the Graphics is
+	 * sorting, they are drawn before the dynamic objects.
 	 *
 	 * @param g the Graphics implementation to render with
 	 */
 	@Override
 	public void render(Graphics g) {
-		Runner<PointObject> render = new Runner<PointObject>() {
-			public void render(PointObject object, Graphics g) {
-				if (object instanceof Renderable) {
-					((Renderable) object).render(g);
+		long start = System.nanoTime();
+		Camera camera = g.getCamera();
+		Bounds view = camera == null ? null : camera.getVisibleBounds();
+		synchronized (this) {
+			staticCache.render(g, view);
+			renderList.addAll(dynamicRenderables);
+		}
+		int considered = 0;
+		int culled = 0;
+		for (int i = 0, count = renderList.size(); i < count; i++) {
+			PointObject object = renderList.get(i);
+			considered++;
+			if (view != null) {
+				Bounds bounds = object.getBounds();
+				if (bounds != null && !bounds.intersects(view)) {
+					culled++;
+					continue;
 				}
 			}
-		};
-		this.runOnAll(render, g);
+			g.setLayer(object.getLayer());
+			((Renderable) object).render(g);
+		}
+		renderList.clear();
+		lastRenderConsidered = considered;
+		lastRenderCulled = culled;
+		lastRenderDrawn = considered - culled;
+		long elapsed = System.nanoTime() - start;
+		synchronized (this) {
+			pendingRenderNanos += elapsed;
+		}
+	}
+
+	/**
+	 * @return the number of dynamic Renderable objects checked during the last render
+	 */
+	public int getLastRenderConsidered() {
+		return lastRenderConsidered;
+	}
+
+	/**
+	 * @return the number of objects skipped during the last render because they were off screen
+	 */
+	public int getLastRenderCulled() {
+		return lastRenderCulled;
+	}
+
+	/**
+	 * @return the number of objects drawn during the last render
+	 */
+	public int getLastRenderDrawn() {
+		return lastRenderDrawn;
+	}
+
+	/**
+	 * @return the number of static Renderable objects in the World
+	 * @see PointObject#setStatic(boolean)
+	 */
+	public synchronized int getStaticCount() {
+		return staticCache.size();
+	}
+
+	/**
+	 * @return the number of cells of static objects drawn during the last render
+	 */
+	public synchronized int getLastRenderStaticCells() {
+		return staticCache.getLastDrawn();
+	}
+
+	/**
+	 * @return the number of cells of static objects skipped during the last render because they were off screen
+	 */
+	public synchronized int getLastRenderStaticCellsCulled() {
+		return staticCache.getLastCulled();
+	}
+
+	/**
+	 * @return the number of times the geometry of a cell of static objects has been captured
+	 */
+	public synchronized long getStaticRebuilds() {
+		return staticCache.getRebuilds();
 	}
 	
 	private long lastTickStart = 0L;
 	private long lastTickEnd = 0L;
-	private long lastTickDuration = 0L;
+	private long lastTickDurationNanos = 0L;
 
 	/**
-	 * Manually starts a tick
+	 * Manually starts a tick.<br>
+	 * Events {@link World#getScheduler() scheduled} for this tick are triggered
+	 * first, followed by the {@link TickEvent}. Time-sliced groups are
+	 * updated next, then the {@link com.apsis.event.Coalescible} events
+	 * {@link EventHandler#post(com.apsis.event.Event) posted} since the last
+	 * tick are triggered, and {@link TickObserver}s are told the tick ended last.
+	 * The duration of the tick and its phases is recorded
+	 * in the World's {@link World#getTickStats(com.apsis.world.TickStats) TickStats}.
 	 */
 	public void tick() {
+		WorldTickEvent event = new WorldTickEvent();
+		event.begin();
+		long start = System.nanoTime();
 		long tickStart = System.currentTimeMillis();
-		TickEvent tick = new TickEvent(lastTickStart, lastTickEnd, lastTickDuration, tickStart);
-		handler.triggerEvent(tick);
+		long structuralBefore;
+		synchronized (this) {
+			structuralBefore = pendingStructuralNanos;
+		}
+		int scheduled = scheduler.tick(start);
+		long tickNumber = scheduler.getTick();
+		tickEvent.update(lastTickStart, lastTickEnd, lastTickDurationNanos, tickStart, start, tickNumber);
+		handler.triggerEvent(tickEvent);
+		for (int i = 0; i < slicedGroups.size(); i++) {
+			slicedGroups.get(i).run(tickEvent, tickNumber, handler);
+		}
+		handler.flush();
+		long end = System.nanoTime();
 		lastTickStart = tickStart;
 		lastTickEnd = System.currentTimeMillis();
-		lastTickDuration = lastTickEnd - lastTickStart;
+		lastTickDurationNanos = end - start;
+		synchronized (this) {
+			long structural = pendingStructuralNanos;
+			tickNanos.add(lastTickDurationNanos);
+			//structural changes made by listeners are counted once, as structural
+			dispatchNanos.add(Math.max(0, lastTickDurationNanos - (structural - structuralBefore)));
+			structuralNanos.add(structural);
+			renderNanos.add(pendingRenderNanos);
+			objectCounts.add(size());
+			pendingStructuralNanos = 0;
+			pendingRenderNanos = 0;
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.tick = tickNumber;
+			event.objects = size();
+			event.scheduled = scheduled;
+			event.dirty = getDirtyCount();
+			event.commit();
+		}
+		for (int i = 0; i < tickObservers.size(); i++) {
+			tickObservers.get(i).tickEnded(this, tickNumber);
+		}
+	}
+
+	/**
+	 * Fills a TickStats with the rolling statistics of the World's last
+	 * {@link World#STATS_WINDOW} ticks and its current object counts.
+	 * Doesn't allocate, so it can be called every frame with the same TickStats.
+	 *
+	 * @param stats the TickStats to fill
+	 * @return <code>return stats;</code> for chaining
+	 */
+	public synchronized TickStats getTickStats(TickStats stats) {
+		tickNanos.summarize(stats.duration);
+		dispatchNanos.summarize(stats.dispatch);
+		structuralNanos.summarize(stats.structural);
+		renderNanos.summarize(stats.render);
+		objectCounts.summarize(stats.objects);
+		stats.tick = scheduler.getTick();
+		stats.objectCount = size();
+		stats.dynamicCount = dynamicRenderables.size();
+		stats.staticCount = staticCache.size();
+		stats.dirtyCount = getDirtyCount();
+		stats.scheduledCount = scheduler.size();
+		return stats;
+	}
+
+	/**
+	 * @return a new TickStats with the rolling statistics of the World's last ticks
+	 * @see World#getTickStats(com.apsis.world.TickStats)
+	 */
+	public TickStats getTickStats() {
+		return getTickStats(new TickStats());
+	}
+
+	/**
+	 * @return how long the last tick took, in nanoseconds
+	 */
+	public long getLastTickDurationNanos() {
+		return lastTickDurationNanos;
+	}
+
+	/**
+	 * @return the table holding the world transforms of the objects in the World
+	 * @see PointObject#getTransformSlot()
+	 */
+	public TransformTable getTransformTable() {
+		return transforms;
+	}
+
+	/**
+	 * Gets the Scheduler of the World, which triggers events through
+	 * the World's EventHandler after a delay.
+	 *
+	 * @return the world's Scheduler
+	 * @see Scheduler
+	 */
+	public Scheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Adds a group whose members are updated in turns, within a budget, after each tick.
+	 *
+	 * @param group the group to update
+	 * @see TimeSlicedGroup
+	 */
+	public synchronized void addTimeSlicedGroup(TimeSlicedGroup<?> group) {
+		if (group == null) throw new IllegalArgumentException("TimeSlicedGroup cannot be null.");
+		if (indexOf(slicedGroups, group) < 0) slicedGroups.add(group);
+	}
+
+	/**
+	 * Stops updating a time-sliced group.
+	 *
+	 * @param group the group to stop updating
+	 */
+	public synchronized void removeTimeSlicedGroup(TimeSlicedGroup<?> group) {
+		int index = indexOf(slicedGroups, group);
+		if (index >= 0) slicedGroups.remove(index);
+	}
+
+	/**
+	 * Adds an observer that is told every time a tick ends.
+	 *
+	 * @param observer the observer to add
+	 * @see TickObserver
+	 */
+	public synchronized void addTickObserver(TickObserver observer) {
+		if (observer == null) throw new IllegalArgumentException("TickObserver cannot be null.");
+		if (indexOf(tickObservers, observer) < 0) tickObservers.add(observer);
+	}
+
+	/**
+	 * Stops telling an observer when ticks end.
+	 *
+	 * @param observer the observer to remove
+	 */
+	public synchronized void removeTickObserver(TickObserver observer) {
+		int index = indexOf(tickObservers, observer);
+		if (index >= 0) tickObservers.remove(index);
+	}
+
+	/**
+	 * Finds an element by identity, since Groups with the same content are
+	 * equal, so two empty TimeSlicedGroups would be mistaken for each other.
+	 *
+	 * @return the index of the element, or -1 if it isn't in the list
+	 */
+	private static int indexOf(ArrayList<?> list, Object element) {
+		for (int i = 0; i < list.size(); i++) {
+			if (list.get(i) == element) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the {@link PointObject#getId() ID} the next object added to the World will get
+	 */
+	public synchronized long getNextObjectId() {
+		return nextObjectId;
+	}
+
+	/**
+	 * Sets the ID the next object added to the World will get. Used to
+	 * restore a World to a recorded state, so that objects added afterwards
+	 * get the same IDs they did when it was recorded.
+	 *
+	 * @param id the next ID, greater than the ID of every object in the World
+	 */
+	public synchronized void setNextObjectId(long id) {
+		ArrayList<PointObject> content = getContentList();
+		long highest = content.isEmpty() ? 0 : content.get(content.size() - 1).id;
+		if (id <= highest) throw new IllegalArgumentException("The next ID must be greater than " + highest);
+		nextObjectId = id;
+	}
+
+	/**
+	 * Adds an object to the World with an ID it had when the World was recorded,
+	 * instead of a new one. Objects must be restored in ascending order of ID
+	 * so the content of the World stays in that order.
+	 *
+	 * @param object the object to add
+	 * @param id the ID of the object, greater than the ID of every object in the World
+	 */
+	public synchronized void restore(PointObject object, long id) {
+		ArrayList<PointObject> content = getContentList();
+		long highest = content.isEmpty() ? 0 : content.get(content.size() - 1).id;
+		if (id <= highest) throw new IllegalArgumentException("Objects must be restored in ascending order of ID, after " + highest);
+		restoringId = id;
+		try {
+			add(object);
+		} finally {
+			restoringId = 0;
+		}
+	}
+
+	/**
+	 * Gets the objects in the World in ascending order of {@link PointObject#getId() ID},
+	 * which is the order they were added in, without copying them.<br>
+	 * The list can't be changed, but it isn't a copy: it changes as the World
+	 * does. It must only be read while holding the World's lock
+	 * (<code>synchronized (world)</code>), or on the only thread that adds
+	 * and removes the World's objects. Use {@link World#getContent()} for a copy.
+	 *
+	 * @return a read-only view of the World's objects
+	 */
+	public List<PointObject> getOrderedContent() {
+		return orderedContent;
 	}
 
 	/**
@@ -61,44 +404,422 @@ public class World extends Group<PointObject> implements Renderable {
 	
 	@Override
 	public synchronized void add(PointObject... objects) {
+		GroupChangeEvent event = new GroupChangeEvent();
+		event.begin();
+		long start = System.nanoTime();
 		for (PointObject object : objects) {
-			if (object instanceof Listener) {
-				Listener listener = (Listener) object;
-				handler.triggerEvent(new AddToWorldEvent(), listener);
-				handler.subscribeAll(listener);
-			}
-			addToGroup(object);
+			addObject(object, null);
 		}
+		pendingStructuralNanos += System.nanoTime() - start;
+		commit(event, "add", objects.length);
 	}
 	
 	@Override
 	public synchronized void remove(PointObject... objects) {
+		GroupChangeEvent event = new GroupChangeEvent();
+		event.begin();
+		long start = System.nanoTime();
 		for (PointObject object : objects) {
-			if (object instanceof Listener) {
-				Listener listener = (Listener) object;
-				handler.triggerEvent(new RemoveFromWorldEvent(), listener);
+			removeObject(object, true, true);
+		}
+		pendingStructuralNanos += System.nanoTime() - start;
+		commit(event, "remove", objects.length);
+	}
+
+	/**
+	 * Removes objects like {@link World#remove(com.apsis.world.PointObject...)},
+	 * but keeps objects that came from an {@link ObjectPool} out of it, for a
+	 * caller that still uses the objects after removing them, such as one
+	 * saving them on another thread. A pooled object would otherwise be reset
+	 * and handed out again while it is still being used.
+	 * The caller gives them back with {@link World#release(com.apsis.world.PointObject...)}.
+	 *
+	 * @param objects the objects to remove
+	 */
+	public synchronized void removeRetained(PointObject... objects) {
+		GroupChangeEvent event = new GroupChangeEvent();
+		event.begin();
+		long start = System.nanoTime();
+		for (PointObject object : objects) {
+			removeObject(object, true, false);
+		}
+		pendingStructuralNanos += System.nanoTime() - start;
+		commit(event, "remove", objects.length);
+	}
+
+	/**
+	 * Returns objects removed with {@link World#removeRetained(com.apsis.world.PointObject...)}
+	 * to the pools they came from, once the caller is done with them.
+	 * Objects that didn't come from a pool, or that are in a Group again, are left alone.
+	 *
+	 * @param objects the objects to return
+	 */
+	public static void release(PointObject... objects) {
+		for (PointObject object : objects) {
+			if (object.pool != null && object.getOwningGroup() == null) object.pool.release(object);
+		}
+	}
+
+	/**
+	 * Removes an object so it can be handed to another World with
+	 * {@link World#attach(com.apsis.world.PointObject, java.util.ArrayList)}.
+	 * Unlike {@link World#remove(com.apsis.world.PointObject...)}, no
+	 * RemoveFromWorldEvent is triggered, and the methods the object was
+	 * subscribed with are returned instead of forgotten. Its children aren't detached.
+	 *
+	 * @param object an object in the World
+	 * @return the methods the object was subscribed with, empty if it isn't a Listener
+	 */
+	public synchronized ArrayList<Method> detach(PointObject object) {
+		if (object.getOwningGroup() != this) throw new IllegalArgumentException(object + " is not in this World");
+		GroupChangeEvent event = new GroupChangeEvent();
+		event.begin();
+		long start = System.nanoTime();
+		ArrayList<Method> subscriptions = new ArrayList<>();
+		if (object instanceof Listener) {
+			subscriptions = handler.getSubscriptions((Listener) object);
+			for (Method method : subscriptions) {
+				handler.unsubscribe(method, (Listener) object);
+			}
+		}
+		removeObject(object, false, false);
+		pendingStructuralNanos += System.nanoTime() - start;
+		commit(event, "detach", 1);
+		return subscriptions;
+	}
+
+	/**
+	 * Adds an object detached from another World, subscribing the methods it was
+	 * subscribed with there instead of all of them, and without triggering an
+	 * AddToWorldEvent. The object is given a new ID.
+	 *
+	 * @param object the detached object
+	 * @param subscriptions the methods returned by {@link World#detach(com.apsis.world.PointObject)}
+	 */
+	public synchronized void attach(PointObject object, ArrayList<Method> subscriptions) {
+		if (subscriptions == null) throw new IllegalArgumentException("The subscriptions cannot be null");
+		GroupChangeEvent event = new GroupChangeEvent();
+		event.begin();
+		long start = System.nanoTime();
+		addObject(object, subscriptions);
+		pendingStructuralNanos += System.nanoTime() - start;
+		commit(event, "attach", 1);
+	}
+
+	/**
+	 * @param subscriptions the methods to subscribe, or null to subscribe every
+	 * listener method and trigger an AddToWorldEvent
+	 */
+	private void addObject(PointObject object, ArrayList<Method> subscriptions) {
+		if (object.idle) throw new IllegalArgumentException(object + " is waiting in its pool and must be acquired first");
+		addToGroup(object);
+		if (object.getOwningGroup() != this) return;
+		if (object instanceof Listener) {
+			Listener listener = (Listener) object;
+			if (subscriptions == null) {
+				//subscribed first, since the event is only triggered on the object's own listeners
+				ArrayList<Method> methods = object.pool == null ? null : object.pool.listenerMethods;
+				if (methods != null) {
+					//pooled objects of a type share its listener methods, so only the first is scanned
+					for (int i = 0; i < methods.size(); i++) {
+						handler.subscribe(methods.get(i), listener);
+					}
+				} else {
+					ArrayList<Method> subscribed = handler.subscribeAll(listener);
+					if (object.pool != null) object.pool.listenerMethods = subscribed;
+				}
+				handler.triggerEvent(addEvent, listener);
+			} else {
+				for (Method method : subscriptions) {
+					handler.subscribe(method, listener);
+				}
+			}
+		}
+		if (restoringId != 0) {
+			object.id = restoringId;
+			nextObjectId = Math.max(nextObjectId, restoringId + 1);
+		} else {
+			object.id = nextObjectId++;
+		}
+		object.setTransformTable(transforms);
+		if (object instanceof Renderable) {
+			if (object.isStatic()) staticCache.add(object);
+			else dynamicRenderables.add(object);
+		}
+		markDirty(object, PointObject.DIRTY_ADDED);
+	}
+
+	/**
+	 * @param notify whether to trigger a RemoveFromWorldEvent and unsubscribe the object
+	 * @param release whether to return the object to its {@link ObjectPool} if it came from one
+	 */
+	private void removeObject(PointObject object, boolean notify, boolean release) {
+		if (notify && object instanceof Listener) {
+			Listener listener = (Listener) object;
+			handler.triggerEvent(removeEvent, listener);
+			ArrayList<Method> methods = object.pool == null ? null : object.pool.listenerMethods;
+			if (methods != null) {
+				for (int i = 0; i < methods.size(); i++) {
+					handler.unsubscribe(methods.get(i), listener);
+				}
+			} else {
 				handler.unsubscribeAll(listener);
 			}
-			removeFromGroup(object);
 		}
+		boolean contained = object.getOwningGroup() == this;
+		if (contained) {
+			if (trackingDirty) removedDirty(object);
+			object.id = 0;
+			object.setTransformTable(object.getOwnTransformTable());
+		}
+		removeFromGroup(object);
+		staticCache.remove(object);
+		removeDynamic(object);
+		if (release && contained && object.pool != null) object.pool.release(object);
+	}
+
+	/**
+	 * Removes every object from the World, as if each one was passed to
+	 * {@link World#remove(com.apsis.world.PointObject...)}.
+	 */
+	@Override
+	public synchronized void clear() {
+		ArrayList<PointObject> content = getContent();
+		remove(content.toArray(new PointObject[content.size()]));
+	}
+
+	/**
+	 * Moves an object between the static and dynamic objects
+	 * after {@link PointObject#setStatic(boolean)}.
+	 *
+	 * @param object the object that changed
+	 */
+	synchronized void staticChanged(PointObject object) {
+		if (!(object instanceof Renderable)) return;
+		long start = System.nanoTime();
+		if (object.isStatic()) {
+			removeDynamic(object);
+			staticCache.add(object);
+		} else {
+			staticCache.remove(object);
+			dynamicRenderables.add(object);
+		}
+		pendingStructuralNanos += System.nanoTime() - start;
+	}
+
+	/**
+	 * Records a change to one of the World's objects.
+	 *
+	 * @param object the object that changed
+	 * @param bits the DIRTY_ bits describing the change
+	 * @see PointObject#markDirty(int)
+	 */
+	void markDirty(PointObject object, int bits) {
+		if (bits == 0) return;
+		//a change nothing is waiting for doesn't need the World's lock
+		if (!trackingDirty && (object.staticCell == null || (bits & STATIC_REBUILD_BITS) == 0)) return;
+		synchronized (this) {
+			if (trackingDirty) {
+				int index = object.dirtyIndex;
+				if (index < 0) {
+					if (dirtyCount == dirtyObjects.length) {
+						dirtyObjects = Arrays.copyOf(dirtyObjects, dirtyCount * 2);
+						dirtyBits = Arrays.copyOf(dirtyBits, dirtyCount * 2);
+					}
+					index = object.dirtyIndex = dirtyCount++;
+					dirtyObjects[index] = object;
+					dirtyBits[index] = 0;
+				}
+				dirtyBits[index] |= bits;
+			}
+			if (object.staticCell != null && (bits & STATIC_REBUILD_BITS) != 0) staticCache.changed(object);
+		}
+	}
+
+	/**
+	 * Records that an object was removed. An object added since the last drain
+	 * is dropped from the dirty list instead, since the drain would never have
+	 * seen it, so objects that come and go between drains aren't kept.
+	 */
+	private void removedDirty(PointObject object) {
+		int index = object.dirtyIndex;
+		if (index >= 0 && (dirtyBits[index] & PointObject.DIRTY_ADDED) != 0) {
+			dirtyObjects[index] = null;
+			droppedDirty++;
+			//entries are kept in order, so only trailing gaps can be closed
+			while (dirtyCount > 0 && dirtyObjects[dirtyCount - 1] == null) {
+				dirtyCount--;
+				droppedDirty--;
+			}
+		} else {
+			markDirty(object, PointObject.DIRTY_REMOVED);
+		}
+		//the entry stays in the dirty list, but later changes go to a new one
+		object.dirtyIndex = -1;
+	}
+
+	/**
+	 * @param object an object in the World
+	 * @return the DIRTY_ bits recorded for the object since the dirty list was last drained
+	 */
+	int getDirtyBits(PointObject object) {
+		if (!trackingDirty) return 0;
+		synchronized (this) {
+			return object.dirtyIndex < 0 ? 0 : dirtyBits[object.dirtyIndex];
+		}
+	}
+
+	/**
+	 * @return a number that changes whenever the dirty list is drained or
+	 * tracking starts or stops, so objects can tell whether a change they
+	 * recorded is still waiting in the list without taking the World's lock
+	 */
+	int getDirtyGeneration() {
+		return dirtyGeneration;
 	}
 
 	/**
-	 * A direct call to the masked method {@link Group#add(java.lang.Object...)}
+	 * @return the number of objects in the dirty list
+	 * @see World#drainDirty(com.apsis.world.DirtyVisitor)
+	 */
+	public synchronized int getDirtyCount() {
+		return dirtyCount - droppedDirty;
+	}
+
+	/**
+	 * Starts or stops recording changes to the World's objects in its dirty list.
+	 * Changes aren't recorded until the list is first {@link World#drainDirty(com.apsis.world.DirtyVisitor) drained},
+	 * so that a World nobody drains doesn't keep growing the list or take its
+	 * lock on every change. A system that needs every change since before its
+	 * first drain should start tracking before objects are added.
+	 * Stopping empties the list.
+	 *
+	 * @param tracking whether to record changes
+	 */
+	public synchronized void setDirtyTracking(boolean tracking) {
+		if (tracking == trackingDirty) return;
+		trackingDirty = tracking;
+		dirtyGeneration++;
+		if (tracking) return;
+		for (int i = 0; i < dirtyCount; i++) {
+			if (dirtyObjects[i] != null && dirtyObjects[i].dirtyIndex == i) dirtyObjects[i].dirtyIndex = -1;
+			dirtyObjects[i] = null;
+		}
+		dirtyCount = 0;
+		droppedDirty = 0;
+	}
+
+	/**
+	 * @return whether changes to the World's objects are recorded in its dirty list
+	 * @see World#setDirtyTracking(boolean)
+	 */
+	public boolean isDirtyTracking() {
+		return trackingDirty;
+	}
+
+	/**
+	 * Hands every object that changed since the last drain to the visitor,
+	 * along with the DIRTY_ bits of {@link PointObject} describing what changed,
+	 * and empties the dirty list. Meant to be called once per frame by a
+	 * system that keeps its own data about the objects (such as a spatial index),
+	 * so that it only has to process the objects that changed.<br>
+	 * <br>
+	 * Each object is visited once, unless it was removed from the World and
+	 * added back, in which case it is visited once with {@link PointObject#DIRTY_REMOVED}
+	 * and again with {@link PointObject#DIRTY_ADDED}. Objects changed by the
+	 * visitor are kept for the next drain, and objects added and removed
+	 * between drains aren't visited at all. Nothing is allocated once the list
+	 * has grown to fit a frame's changes.<br>
+	 * <br>
+	 * The first drain starts {@link World#setDirtyTracking(boolean) tracking}
+	 * changes, so it visits nothing unless tracking was started earlier.
+	 *
+	 * @param visitor the visitor to hand the changed objects to
+	 * @return the number of objects visited
+	 */
+	public int drainDirty(DirtyVisitor visitor) {
+		long start = System.nanoTime();
+		PointObject[] objects;
+		int[] bits;
+		int count;
+		long structuralBefore;
+		synchronized (this) {
+			structuralBefore = pendingStructuralNanos;
+			trackingDirty = true;
+			dirtyGeneration++;
+			objects = dirtyObjects;
+			bits = dirtyBits;
+			count = dirtyCount;
+			for (int i = 0; i < count; i++) {
+				if (objects[i] != null && objects[i].dirtyIndex == i) objects[i].dirtyIndex = -1;
+			}
+			if (drainingObjects.length < objects.length) {
+				drainingObjects = new PointObject[objects.length];
+				drainingBits = new int[objects.length];
+			}
+			dirtyObjects = drainingObjects;
+			dirtyBits = drainingBits;
+			dirtyCount = 0;
+			droppedDirty = 0;
+			drainingObjects = objects;
+			drainingBits = bits;
+		}
+		int visited = 0;
+		for (int i = 0; i < count; i++) {
+			PointObject object = objects[i];
+			if (object == null) continue;
+			objects[i] = null;
+			visitor.visit(object, bits[i]);
+			visited++;
+		}
+		long elapsed = System.nanoTime() - start;
+		synchronized (this) {
+			//objects added or removed by the visitor have already been counted
+			pendingStructuralNanos += Math.max(0, elapsed - (pendingStructuralNanos - structuralBefore));
+		}
+		return visited;
+	}
+
+	/**
+	 * Removes an object from the dynamic objects by identity,
+	 * since PointObjects with the same position are equal.
+	 */
+	private void removeDynamic(PointObject object) {
+		for (int i = dynamicRenderables.size() - 1; i >= 0; i--) {
+			if (dynamicRenderables.get(i) == object) {
+				dynamicRenderables.remove(i);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * A direct call to {@link Group#addContent(java.lang.Object)}
 	 *
 	 * @param object the object to add
 	 */
 	private synchronized void addToGroup(PointObject object) {
-		super.add(object);
+		super.addContent(object);
 	}
 
 	/**
-	 * A direct call to the masked method {@link Group#add(java.lang.Object...)}
+	 * Removes an object from the Group's content by identity, since
+	 * {@link Group#removeContent(java.lang.Object)} compares by value and
+	 * PointObjects with the same position are equal.
 	 *
-	 * @param object the object to add
+	 * @param object the object to remove
 	 */
 	private synchronized void removeFromGroup(PointObject object) {
-		super.remove(object);
+		if (object.getOwningGroup() != this) return;
+		object.removedFrom(this);
+		ArrayList<PointObject> content = getContentList();
+		//searched from the end, since recently added objects are the most likely to be removed
+		for (int i = content.size() - 1; i >= 0; i--) {
+			if (content.get(i) == object) {
+				content.remove(i);
+				return;
+			}
+		}
 	}
 	
 }
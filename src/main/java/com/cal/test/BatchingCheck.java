@@ -0,0 +1,104 @@
+package com.cal.test;
+
+import com.apsis.render.BlendMode;
+import com.apsis.render.GLImage;
+import com.apsis.render.Graphics;
+import com.apsis.render.ImageCache;
+import com.apsis.render.RecordingBackend;
+import com.apsis.util.Color;
+import com.apsis.util.Point;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws known scenes through a {@link Graphics} onto a {@link RecordingBackend}
+ * and checks the draw calls it makes: that primitives with the same state share
+ * a batch, that a full batch is flushed before it overflows, that a change of
+ * texture or blend mode flushes the batch, and that the end of a frame flushes
+ * whatever is left.<br>
+ * Usage: <code>BatchingCheck</code>
+ *
+ * @author Cal Stephens
+ */
+public class BatchingCheck {
+
+	public static void main(String[] args) {
+		RecordingBackend backend = new RecordingBackend();
+		//holds 10 quads of 6 vertices
+		Graphics graphics = new Graphics(backend, 60);
+		Point dim = Point.make(4, 4);
+
+		graphics.beginFrame();
+		for (int i = 0; i < 25; i++) {
+			graphics.drawRectangle(Color.RED, Point.make(i * 5, 0), dim);
+		}
+		check(backend.getDrawCalls() == 2, "full batches are flushed as they fill up");
+		graphics.endFrame();
+		check(backend.getDrawCalls() == 3 && graphics.getDrawCalls() == 3, "the end of the frame flushes the rest");
+		check(backend.getVertexCount(0) == 60 && backend.getVertexCount(1) == 60 && backend.getVertexCount(2) == 30,
+				"25 rectangles go out as batches of 10, 10 and 5");
+		check(backend.getStateChanges() == 2 && graphics.getStateChanges() == 2, "the state is set once, at the first primitive");
+
+		graphics.beginFrame();
+		graphics.endFrame();
+		check(backend.getDrawCalls() == 0 && backend.getStateChanges() == 0 && backend.getFrames() == 2, "an empty frame draws nothing");
+
+		graphics.beginFrame();
+		graphics.drawRectangle(Color.RED, Point.make(0, 0), dim);
+		graphics.flush();
+		graphics.flush();
+		graphics.endFrame();
+		check(backend.getDrawCalls() == 1 && backend.getVertexCount(0) == 6, "flushing an empty batch draws nothing");
+
+		float[] xs = new float[23], ys = new float[23];
+		int[] colors = new int[23];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = i * 5;
+			colors[i] = 0xFF00FF00;
+		}
+		graphics.beginFrame();
+		graphics.drawRectangle(Color.RED, Point.make(0, 0), dim);
+		graphics.drawRectangle(Color.RED, Point.make(5, 0), dim);
+		graphics.drawSquares(xs, ys, colors, 0, xs.length, 4);
+		graphics.endFrame();
+		check(backend.getDrawCalls() == 3 && backend.getVertexCount(0) == 60 && backend.getVertexCount(1) == 60
+				&& backend.getVertexCount(2) == 30, "squares fill the batch the rectangles started");
+
+		ImageCache cache = new ImageCache(Long.MAX_VALUE, 64, 1);
+		GLImage sprite = cache.load("sprite", new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB));
+		GLImage other = cache.load("other", new BufferedImage(80, 80, BufferedImage.TYPE_INT_ARGB));
+		check(sprite.isLoaded() && other.isLoaded() && sprite.getAtlas() != other.getAtlas(), "the images are on different pages");
+		graphics.beginFrame();
+		graphics.drawRectangle(Color.RED, Point.make(0, 0), dim);
+		graphics.drawImage(sprite, Point.make(5, 0), dim);
+		graphics.drawImage(sprite, Point.make(10, 0), dim);
+		graphics.drawImage(other, Point.make(15, 0), dim);
+		graphics.drawRectangle(Color.RED, Point.make(20, 0), dim);
+		graphics.endFrame();
+		check(backend.getDrawCalls() == 4 && backend.getVertexCount(1) == 12, "a change of texture flushes the batch");
+		check(backend.getTexture(0) == null && backend.getTexture(1) == sprite.getAtlas() && backend.getTexture(2) == other.getAtlas()
+				&& backend.getTexture(3) == null, "each batch is drawn with its texture");
+		check(backend.getStateChanges() == 5, "only the texture is changed between them");
+
+		graphics.beginFrame();
+		graphics.drawRectangle(Color.RED, Point.make(0, 0), dim);
+		graphics.setBlendMode(BlendMode.ADDITIVE);
+		graphics.drawRectangle(Color.RED, Point.make(5, 0), dim);
+		graphics.drawRectangle(Color.RED, Point.make(10, 0), dim);
+		graphics.setBlendMode(BlendMode.ALPHA);
+		graphics.drawRectangle(Color.RED, Point.make(15, 0), dim);
+		graphics.endFrame();
+		check(backend.getDrawCalls() == 3 && backend.getVertexCount(1) == 12 && backend.getBlendMode(1) == BlendMode.ADDITIVE
+				&& backend.getBlendMode(2) == BlendMode.ALPHA, "a change of blend mode flushes the batch");
+
+		check(backend.getFrames() == 6 && backend.getTotalDrawCalls() == 14 && backend.getTotalVertices() == 150 + 6 + 150 + 30 + 24,
+				"the totals add up across frames");
+		cache.shutdown();
+		System.out.println("OK");
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) throw new IllegalStateException("FAILED: " + message);
+		System.out.println("ok: " + message);
+	}
+
+}
@@ -0,0 +1,336 @@
+package com.cal.test;
+
+import com.apsis.entity.Entity;
+import com.apsis.event.EventListener;
+import com.apsis.event.world.AddToWorldEvent;
+import com.apsis.event.world.RemoveFromWorldEvent;
+import com.apsis.event.world.TickEvent;
+import com.apsis.snapshot.Snapshot;
+import com.apsis.snapshot.SnapshotCodec;
+import com.apsis.snapshot.SnapshotCodecs;
+import com.apsis.stream.ChunkStreamer;
+import com.apsis.util.Point;
+import com.apsis.world.ObjectPool;
+import com.apsis.world.PointObject;
+import com.apsis.world.Poolable;
+import com.apsis.world.World;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Streams a map of critters around a moving player with a {@link ChunkStreamer}
+ * and checks that listeners and Add/Remove events stay consistent, that a player
+ * hovering over a chunk border doesn't thrash, that the object budget is kept
+ * and that no critter is lost. Pooled objects must be saved as they were, and
+ * not as their pool resets them.<br>
+ * Usage: <code>ChunkStreamingCheck [chunks per side] [critters per chunk]</code>
+ *
+ * @author Cal Stephens
+ */
+public class ChunkStreamingCheck {
+
+	private static final double CHUNK = 100;
+
+	private static int added = 0;
+	private static int removed = 0;
+	private static int ticked = 0;
+
+	private static final ObjectPool<Spark> SPARKS = new ObjectPool<>(Spark.class, new ObjectPool.Factory<Spark>() {
+		@Override
+		public Spark create() {
+			return new Spark();
+		}
+	}, 1000);
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int side = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+		int perChunk = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		SnapshotCodecs codecs = new SnapshotCodecs()
+				.register("critter", new CritterCodec())
+				.register("point", new PlainCodec())
+				.register("spark", new SparkCodec());
+		ExecutorService executor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Chunk IO");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		Path directory = Files.createTempDirectory("apsis-chunks");
+		World world = new World();
+		int total = 0;
+		for (int cx = 0; cx < side; cx++) {
+			for (int cy = 0; cy < side; cy++) {
+				for (int i = 0; i < perChunk; i++) {
+					Critter critter = new Critter((cx + 0.5) * CHUNK, (cy + 0.5) * CHUNK, i * 17);
+					world.add(critter);
+					total++;
+					if (i % 10 == 0) {
+						PointObject marker = new PointObject(Point.make(0, 3));
+						marker.setParent(critter);
+						world.add(marker);
+						total++;
+					}
+				}
+				Spark spark = SPARKS.acquire();
+				spark.charge = 1 + cx * side + cy;
+				spark.moveTo((cx + 0.25) * CHUNK, (cy + 0.25) * CHUNK);
+				world.add(spark);
+				total++;
+			}
+		}
+		ChunkStreamer streamer = new ChunkStreamer(world, CHUNK, directory, codecs, executor);
+		streamer.setRadii(1, 2);
+		long start = System.nanoTime();
+		check(streamer.saveAll(60000), "every chunk saved");
+		System.out.printf("saved %d objects in %.0f ms%n", total, (System.nanoTime() - start) / 1e6);
+		check(world.size() == 0 && removed == added, "world empty after saving, " + removed + " critters removed");
+		check(SPARKS.getReleases() == side * side, "pooled objects are returned once they're written");
+
+		PointObject player = new PointObject(Point.make(150, 150));
+		world.add(player);
+		streamer.addFocus(player);
+		int maxResident = 0;
+		long worstTick = 0;
+		for (int tick = 0; tick < 1000; tick++) {
+			int critters = added - removed;
+			ticked = 0;
+			long tickStart = System.nanoTime();
+			world.tick();
+			worstTick = Math.max(worstTick, System.nanoTime() - tickStart);
+			check(ticked == critters, "every resident critter ticked once", false);
+			check(countCritters(world) == added - removed, "add and remove events match the World", false);
+			maxResident = Math.max(maxResident, world.size());
+			double angle = tick * 0.004;
+			player.moveTo(Point.make(side * CHUNK / 2 + Math.cos(angle) * side * CHUNK / 3, side * CHUNK / 2 + Math.sin(angle) * side * CHUNK / 3));
+		}
+		System.out.printf("walked 1000 ticks: %d loads, %d unloads, at most %d objects resident of %d, worst tick %.2f ms%n",
+				streamer.getLoadCount(), streamer.getUnloadCount(), maxResident, total, worstTick / 1e6);
+		check(maxResident < total / 10, "only the chunks near the player are resident");
+		check(streamer.getLastError() == null, "no IO errors");
+
+		//once both sides of a border are loaded, hovering over it doesn't load or unload anything
+		player.moveTo(Point.make(5 * CHUNK - 10, 5 * CHUNK + 50));
+		settle(world, streamer);
+		player.moveTo(Point.make(5 * CHUNK + 10, 5 * CHUNK + 50));
+		settle(world, streamer);
+		long loads = streamer.getLoadCount(), unloads = streamer.getUnloadCount();
+		for (int tick = 0; tick < 200; tick++) {
+			player.moveTo(Point.make(5 * CHUNK + (tick % 2 == 0 ? -10 : 10), 5 * CHUNK + 50));
+			world.tick();
+		}
+		check(streamer.getLoadCount() == loads && streamer.getUnloadCount() == unloads, "no thrashing at a border, "
+				+ streamer.getMergedCount() + " wandering objects merged into unloaded chunks so far");
+
+		//a small budget unloads chunks between the radii early
+		streamer.setRadii(1, 4);
+		player.moveTo(Point.make(10 * CHUNK + 50, 10 * CHUNK + 50));
+		settle(world, streamer);
+		player.moveTo(Point.make(13 * CHUNK + 50, 10 * CHUNK + 50));
+		settle(world, streamer);
+		int unbudgeted = streamer.getResidentChunkCount();
+		streamer.setMaxResidentObjects(9 * perChunk);
+		settle(world, streamer);
+		check(streamer.getResidentChunkCount() < unbudgeted, "budget unloads chunks early: " + unbudgeted
+				+ " -> " + streamer.getResidentChunkCount() + " chunks resident");
+
+		check(streamer.saveAll(60000), "every chunk saved again");
+		int saved = 0, sparks = 0;
+		boolean charged = true;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				for (PointObject object : Snapshot.open(file, codecs).materializeAll()) {
+					saved++;
+					if (!(object instanceof Spark)) continue;
+					sparks++;
+					if (((Spark) object).charge == 0) charged = false;
+				}
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+		check(saved == total, "no objects lost: " + saved + " saved of " + total);
+		check(sparks == side * side && charged, "pooled objects are saved before they're reset");
+		executor.shutdown();
+		System.out.println("OK");
+	}
+
+	private static void settle(World world, ChunkStreamer streamer) throws InterruptedException {
+		for (int i = 0; i < 40; i++) {
+			world.tick();
+			streamer.awaitIdle(1000);
+		}
+	}
+
+	private static int countCritters(World world) {
+		int count = 0;
+		for (PointObject object : world.getContent()) {
+			if (object instanceof Critter) count++;
+		}
+		return count;
+	}
+
+	private static void check(boolean condition, String message) {
+		check(condition, message, true);
+	}
+
+	private static void check(boolean condition, String message, boolean print) {
+		if (!condition) throw new IllegalStateException("FAILED: " + message);
+		if (print) System.out.println("ok: " + message);
+	}
+
+	/**
+	 * Circles its home, far enough to wander into the chunks next to it.
+	 */
+	public static class Critter extends Entity {
+
+		private final double homeX;
+		private final double homeY;
+		private int phase;
+
+		public Critter(double homeX, double homeY, int phase) {
+			super(Point.make(homeX, homeY), 0);
+			this.homeX = homeX;
+			this.homeY = homeY;
+			this.phase = phase;
+		}
+
+		@EventListener
+		public void onTick(TickEvent tick) {
+			phase++;
+			moveTo(Point.make(homeX + Math.cos(phase * 0.05) * 60, homeY + Math.sin(phase * 0.05) * 60));
+			ticked++;
+		}
+
+		@EventListener
+		public void onAdd(AddToWorldEvent event) {
+			added++;
+		}
+
+		@EventListener
+		public void onRemove(RemoveFromWorldEvent event) {
+			removed++;
+		}
+
+	}
+
+	private static class CritterCodec implements SnapshotCodec<Critter> {
+
+		@Override
+		public Class<Critter> getType() {
+			return Critter.class;
+		}
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getPayloadSize(Critter critter) {
+			return 20;
+		}
+
+		@Override
+		public void writePayload(Critter critter, ByteBuffer out) {
+			out.putDouble(critter.homeX);
+			out.putDouble(critter.homeY);
+			out.putInt(critter.phase);
+		}
+
+		@Override
+		public Critter create(Point pos, double rot, ByteBuffer payload, int version) {
+			Critter critter = new Critter(payload.getDouble(), payload.getDouble(), payload.getInt());
+			critter.moveTo(pos);
+			return critter;
+		}
+
+	}
+
+	/**
+	 * A pooled object, which its pool resets when it is released.
+	 */
+	public static class Spark extends PointObject implements Poolable {
+
+		private int charge = 0;
+
+		public Spark() {
+			super(Point.make(0, 0));
+		}
+
+		@Override
+		public void reset() {
+			charge = 0;
+			moveTo(0, 0);
+		}
+
+	}
+
+	private static class SparkCodec implements SnapshotCodec<Spark> {
+
+		@Override
+		public Class<Spark> getType() {
+			return Spark.class;
+		}
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getPayloadSize(Spark spark) {
+			return 4;
+		}
+
+		@Override
+		public void writePayload(Spark spark, ByteBuffer out) {
+			out.putInt(spark.charge);
+		}
+
+		@Override
+		public Spark create(Point pos, double rot, ByteBuffer payload, int version) {
+			Spark spark = SPARKS.acquire();
+			spark.charge = payload.getInt();
+			spark.moveTo(pos);
+			return spark;
+		}
+
+	}
+
+	private static class PlainCodec implements SnapshotCodec<PointObject> {
+
+		@Override
+		public Class<PointObject> getType() {
+			return PointObject.class;
+		}
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getPayloadSize(PointObject object) {
+			return 0;
+		}
+
+		@Override
+		public void writePayload(PointObject object, ByteBuffer out) {
+		}
+
+		@Override
+		public PointObject create(Point pos, double rot, ByteBuffer payload, int version) {
+			return new PointObject(pos, rot);
+		}
+
+	}
+
+}
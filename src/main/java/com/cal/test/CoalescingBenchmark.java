@@ -0,0 +1,200 @@
+package com.cal.test;
+
+import com.apsis.event.Coalescible;
+import com.apsis.event.Event;
+import com.apsis.event.EventHandler;
+import com.apsis.event.EventListener;
+import com.apsis.event.Listener;
+import com.apsis.world.World;
+
+/**
+ * Moves objects many times per tick and tells listeners about every move,
+ * once by triggering each move as it happens and once by posting them as
+ * {@link Coalescible} events that a World delivers at the end of the tick.
+ * Reports the time spent on events per tick either way and the events posted
+ * versus delivered. Checks that each object's latest move is delivered once
+ * per tick, in the order the objects first moved, that events posted by
+ * listeners wait for the next tick, and that other events aren't held.<br>
+ * Usage: <code>CoalescingBenchmark [listeners] [objects] [moves] [ticks]</code>
+ *
+ * @author Cal Stephens
+ */
+public class CoalescingBenchmark {
+
+	public static class MoveEvent extends Event implements Coalescible {
+
+		public final long id;
+		public final double x, y;
+
+		public MoveEvent(long id, double x, double y) {
+			this.id = id;
+			this.x = x;
+			this.y = y;
+		}
+
+		@Override
+		public Object getCoalesceKey() {
+			return id;
+		}
+
+	}
+
+	public static class ResizeEvent extends Event implements Coalescible {
+
+		public final int width, height;
+
+		public ResizeEvent(int width, int height) {
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public Object getCoalesceKey() {
+			return null;
+		}
+
+	}
+
+	public static class ClickEvent extends Event {
+	}
+
+	public static class Tracker implements Listener {
+
+		final double[] lastX;
+		final int[] moves;
+		int calls = 0;
+		//the ID of the last object moved, to check the order of delivery
+		long lastId = -1;
+		boolean ordered = true;
+
+		Tracker(int objects) {
+			lastX = new double[objects];
+			moves = new int[objects];
+		}
+
+		@EventListener
+		public void onMove(MoveEvent event) {
+			calls++;
+			if (event.id < lastId) ordered = false;
+			lastId = event.id;
+			lastX[(int) event.id] = event.x;
+			moves[(int) event.id]++;
+		}
+
+	}
+
+	public static class Resizer implements Listener {
+
+		final EventHandler handler;
+		int width = 0, resizes = 0, clicks = 0;
+
+		Resizer(EventHandler handler) {
+			this.handler = handler;
+		}
+
+		@EventListener
+		public void onResize(ResizeEvent event) {
+			width = event.width;
+			resizes++;
+			//a listener reacting to a resize by resizing something else
+			if (event.width < 1000) handler.post(new ResizeEvent(event.width + 1000, event.height));
+		}
+
+		@EventListener
+		public void onClick(ClickEvent event) {
+			clicks++;
+		}
+
+	}
+
+	public static void main(String[] args) {
+		int listeners = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int objects = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int moves = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		int ticks = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+		MoveEvent[][] events = new MoveEvent[ticks][objects * moves];
+		for (int t = 0; t < ticks; t++) {
+			for (int m = 0; m < moves; m++) {
+				for (int o = 0; o < objects; o++) {
+					events[t][m * objects + o] = new MoveEvent(o, t * moves + m, o);
+				}
+			}
+		}
+
+		World direct = new World();
+		Tracker[] directTrackers = subscribe(direct, listeners, objects);
+		long directNanos = 0;
+		for (int t = 0; t < ticks; t++) {
+			long start = System.nanoTime();
+			for (MoveEvent event : events[t]) {
+				direct.getEventHandler().triggerEvent(event);
+			}
+			directNanos += System.nanoTime() - start;
+			direct.tick();
+		}
+
+		World world = new World();
+		EventHandler handler = world.getEventHandler();
+		Tracker[] trackers = subscribe(world, listeners, objects);
+		long postNanos = 0;
+		for (int t = 0; t < ticks; t++) {
+			long start = System.nanoTime();
+			for (MoveEvent event : events[t]) {
+				handler.post(event);
+			}
+			check(trackers[0].calls == t * objects, "nothing is delivered before the tick ends", false);
+			world.tick();
+			postNanos += System.nanoTime() - start;
+			check(trackers[0].lastX[objects - 1] == t * moves + moves - 1, "the latest move is delivered", false);
+			for (Tracker tracker : trackers) {
+				tracker.lastId = -1;
+			}
+		}
+		System.out.printf("%d listeners, %d objects moved %d times per tick: %.2f ms per tick triggered, %.2f ms posted%n",
+				listeners, objects, moves, directNanos / 1e6 / ticks, postNanos / 1e6 / ticks);
+		System.out.printf("%d events posted, %d delivered%n", handler.getPostedCount(), handler.getDeliveredCount());
+		check(handler.getPostedCount() == (long) ticks * objects * moves
+				&& handler.getDeliveredCount() == (long) ticks * objects && handler.getPendingCount() == 0, "each object's moves are delivered once per tick");
+		boolean same = true, ordered = true;
+		for (int l = 0; l < listeners; l++) {
+			ordered &= trackers[l].ordered;
+			for (int o = 0; o < objects; o++) {
+				same &= trackers[l].lastX[o] == directTrackers[l].lastX[o] && trackers[l].moves[o] == ticks;
+			}
+		}
+		check(same, "listeners end up where they would with every move triggered");
+		check(ordered, "events are delivered in the order their keys were first posted");
+
+		Resizer resizer = new Resizer(handler);
+		handler.subscribeAll(resizer);
+		for (int i = 0; i < 10; i++) {
+			handler.post(new ResizeEvent(i, i));
+		}
+		handler.post(new ClickEvent());
+		check(resizer.clicks == 1 && resizer.resizes == 0, "other events are triggered as they're posted");
+		world.tick();
+		check(resizer.resizes == 1 && resizer.width == 9 && handler.getPendingCount() == 1, "events posted by listeners wait for the next tick");
+		world.tick();
+		check(resizer.resizes == 2 && resizer.width == 1009 && handler.getPendingCount() == 0, "and are delivered then");
+		System.out.println("OK");
+	}
+
+	private static Tracker[] subscribe(World world, int listeners, int objects) {
+		Tracker[] trackers = new Tracker[listeners];
+		for (int i = 0; i < listeners; i++) {
+			trackers[i] = new Tracker(objects);
+			world.getEventHandler().subscribeAll(trackers[i]);
+		}
+		return trackers;
+	}
+
+	private static void check(boolean condition, String message, boolean print) {
+		if (!condition) throw new IllegalStateException("FAILED: " + message);
+		if (print) System.out.println("ok: " + message);
+	}
+
+	private static void check(boolean condition, String message) {
+		check(condition, message, true);
+	}
+
+}
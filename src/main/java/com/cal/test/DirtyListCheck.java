@@ -0,0 +1,80 @@
+package com.cal.test;
+
+import com.apsis.util.Point;
+import com.apsis.world.DirtyVisitor;
+import com.apsis.world.PointObject;
+import com.apsis.world.World;
+
+/**
+ * Adds and removes objects in a World with and without anything draining its
+ * dirty list, and checks that a World nobody drains keeps no entries, that
+ * objects which come and go between drains aren't kept or visited, and that
+ * a drained World still reports every change once.<br>
+ * Usage: <code>DirtyListCheck [pairs]</code>
+ *
+ * @author Cal Stephens
+ */
+public class DirtyListCheck {
+
+	private static int visited = 0;
+	private static int lastBits = 0;
+
+	private static final DirtyVisitor COUNT = new DirtyVisitor() {
+		@Override
+		public void visit(PointObject object, int dirtyBits) {
+			visited++;
+			lastBits = dirtyBits;
+		}
+	};
+
+	public static void main(String[] args) {
+		int pairs = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		World world = new World();
+		PointObject object = new PointObject(Point.make(0, 0));
+		long start = System.nanoTime();
+		for (int i = 0; i < pairs; i++) {
+			world.add(object);
+			object.move(1, 0);
+			world.remove(object);
+		}
+		System.out.printf("%d add, move and remove rounds undrained: %.0f ns each%n", pairs, (System.nanoTime() - start) / (double) pairs);
+		check(world.size() == 0 && world.getDirtyCount() == 0 && !world.isDirtyTracking(), "a World nobody drains keeps no dirty entries");
+
+		check(world.drainDirty(COUNT) == 0 && world.isDirtyTracking(), "the first drain starts tracking");
+		start = System.nanoTime();
+		for (int i = 0; i < pairs; i++) {
+			world.add(object);
+			object.move(1, 0);
+			world.remove(object);
+		}
+		System.out.printf("%d add, move and remove rounds tracked: %.0f ns each%n", pairs, (System.nanoTime() - start) / (double) pairs);
+		check(world.getDirtyCount() == 0 && world.drainDirty(COUNT) == 0, "objects added and removed between drains aren't kept");
+
+		PointObject kept = new PointObject(Point.make(0, 0));
+		//the removed object leaves a hole before the kept one
+		world.add(object);
+		world.add(kept);
+		world.remove(object);
+		check(world.getDirtyCount() == 1 && world.getTickStats().getDirtyCount() == 1, "the tick stats count the same entries");
+		check(world.drainDirty(COUNT) == 1 && lastBits == PointObject.DIRTY_ADDED, "the others still are");
+		kept.move(1, 1);
+		world.remove(kept);
+		world.add(kept);
+		check(world.getDirtyCount() == 2 && world.drainDirty(COUNT) == 2 && lastBits == PointObject.DIRTY_ADDED,
+				"an object removed and added back is visited as removed and as added");
+		world.remove(kept);
+		check(world.drainDirty(COUNT) == 1 && lastBits == PointObject.DIRTY_REMOVED, "an object the drain saw is visited as removed");
+
+		world.setDirtyTracking(false);
+		world.add(kept);
+		kept.move(1, 1);
+		check(world.getDirtyCount() == 0 && kept.getDirtyBits() == 0, "stopping tracking records nothing");
+		System.out.println("OK");
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) throw new IllegalStateException("FAILED: " + message);
+		System.out.println("ok: " + message);
+	}
+
+}
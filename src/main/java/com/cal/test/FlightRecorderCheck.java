@@ -0,0 +1,131 @@
+package com.cal.test;
+
+import com.apsis.event.EventListener;
+import com.apsis.event.Listener;
+import com.apsis.event.world.TickEvent;
+import com.apsis.jfr.JfrSettings;
+import com.apsis.render.Graphics;
+import com.apsis.render.RecordingBackend;
+import com.apsis.render.Renderable;
+import com.apsis.util.Bounds;
+import com.apsis.util.Color;
+import com.apsis.util.Point;
+import com.apsis.world.PointObject;
+import com.apsis.world.World;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Records a short run of a World with JDK Flight Recorder, using the Apsis
+ * settings, then reads the recording back and checks that every Apsis event
+ * was written with its fields filled in.<br>
+ * Usage: <code>FlightRecorderCheck [objects] [ticks]</code>
+ *
+ * @author Cal Stephens
+ */
+public class FlightRecorderCheck {
+
+	private final static String[] EVENTS = {"apsis.WorldTick", "apsis.EventDispatch", "apsis.GroupChange",
+		"apsis.RenderFrame", "apsis.BatchFlush"};
+
+	public static void main(String[] args) throws Exception {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		Path file = Files.createTempFile("apsis", ".jfr");
+		try (Recording recording = new Recording(JfrSettings.getConfiguration())) {
+			recording.start();
+			run(objects, ticks);
+			recording.stop();
+			recording.dump(file);
+		}
+		Map<String, Integer> counts = new TreeMap<>();
+		for (String name : EVENTS) {
+			counts.put(name, 0);
+		}
+		boolean ok = true;
+		for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+			String name = event.getEventType().getName();
+			if (!counts.containsKey(name)) continue;
+			counts.put(name, counts.get(name) + 1);
+			ok &= check(event);
+		}
+		Files.delete(file);
+		for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+			System.out.println(entry.getKey() + ": " + entry.getValue());
+			ok &= entry.getValue() > 0;
+		}
+		System.out.println(ok ? "OK" : "FAILED");
+		if (!ok) System.exit(1);
+	}
+
+	private static void run(int objects, int ticks) {
+		World world = new World();
+		Ticker[] tickers = new Ticker[objects];
+		for (int i = 0; i < objects; i++) {
+			tickers[i] = new Ticker(Point.make(i % 200 * 10, i / 200 * 10));
+		}
+		//one bulk load, so there is a group change well over the threshold
+		world.add(tickers);
+		Graphics g = new Graphics(new RecordingBackend());
+		for (int i = 0; i < ticks; i++) {
+			world.tick();
+			g.beginFrame();
+			world.render(g);
+			g.endFrame();
+		}
+	}
+
+	/**
+	 * @return whether the fields of the event were filled in
+	 */
+	private static boolean check(RecordedEvent event) {
+		switch (event.getEventType().getName()) {
+			case "apsis.WorldTick":
+				return event.getLong("tick") > 0 && event.getInt("objects") > 0;
+			case "apsis.EventDispatch":
+				return event.getClass("eventClass") != null && event.getInt("listeners") > 0;
+			case "apsis.GroupChange":
+				return event.getClass("groupClass") != null && event.getString("operation") != null;
+			case "apsis.RenderFrame":
+				return event.getInt("primitives") > 0 && event.getInt("drawCalls") > 0;
+			case "apsis.BatchFlush":
+				return event.getInt("vertices") > 0;
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * A square that spins a little every tick.
+	 */
+	public static class Ticker extends PointObject implements Renderable, Listener {
+
+		private final static Point DIM = Point.make(4, 4);
+
+		public Ticker(Point pos) {
+			super(pos);
+		}
+
+		@EventListener
+		public void onTick(TickEvent tick) {
+			rotate(0.01);
+		}
+
+		@Override
+		public Bounds getBounds() {
+			return null;
+		}
+
+		@Override
+		public void render(Graphics g) {
+			g.drawRectangle(Color.RED, pos(), DIM, getRot(), pos());
+		}
+
+	}
+
+}
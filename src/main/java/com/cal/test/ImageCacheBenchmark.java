@@ -0,0 +1,120 @@
+package com.cal.test;
+
+import com.apsis.render.GLImage;
+import com.apsis.render.ImageCache;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+
+/**
+ * Measures the decode throughput and packing efficiency of the {@link ImageCache}
+ * using randomly sized PNG sprites written to a temporary directory. Then checks
+ * that a cache whose images are released out of order stays within its byte
+ * budget, atlas pages included, and that sub-images must lie within their image.<br>
+ * Usage: <code>ImageCacheBenchmark [sprites] [max sprite size] [page size]</code>
+ *
+ * @author Cal Stephens
+ */
+public class ImageCacheBenchmark {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int sprites = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		int maxSize = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+		int pageSize = args.length > 2 ? Integer.parseInt(args[2]) : ImageCache.DEFAULT_PAGE_SIZE;
+		File dir = new File(System.getProperty("java.io.tmpdir"), "apsis-sprites-" + System.nanoTime());
+		if (!dir.mkdirs()) throw new IOException("Could not create " + dir);
+		Random random = new Random(42);
+		File[] files = new File[sprites];
+		for (int i = 0; i < sprites; i++) {
+			int w = 4 + random.nextInt(maxSize - 3), h = 4 + random.nextInt(maxSize - 3);
+			BufferedImage sprite = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+			for (int y = 0; y < h; y++) {
+				for (int x = 0; x < w; x++) {
+					sprite.setRGB(x, y, random.nextInt());
+				}
+			}
+			files[i] = new File(dir, "sprite" + i + ".png");
+			ImageIO.write(sprite, "png", files[i]);
+		}
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (int threads = 1; threads <= cores; threads *= 2) {
+			run(files, pageSize, threads);
+			if (threads * 2 > cores && threads != cores) run(files, pageSize, cores);
+		}
+		for (File file : files) {
+			file.delete();
+		}
+		dir.delete();
+		checkBudget(pageSize);
+		System.out.println("OK");
+	}
+
+	private static void checkBudget(int pageSize) {
+		int pages = 3, side = pageSize / 4 - 1;
+		long budget = (long) pages * pageSize * pageSize * 4;
+		ImageCache cache = new ImageCache(budget, pageSize, 1);
+		BufferedImage sprite = new BufferedImage(side, side, BufferedImage.TYPE_INT_ARGB);
+		GLImage[] held = new GLImage[pages * 2];
+		for (int i = 0; i < 2000; i++) {
+			GLImage image = cache.load("sprite" + i, sprite);
+			check(cache.getBytesUsed() <= budget + (long) pageSize * pageSize * 4, "the pages stay within a page of the budget", false);
+			//keep every other image for a while, so that pages are left with holes
+			if (i % 2 == 0) {
+				int slot = (i / 2) % held.length;
+				if (held[slot] != null) cache.release(held[slot]);
+				held[slot] = image;
+			} else {
+				cache.release(image);
+			}
+		}
+		System.out.printf("%d images released out of order: %d bytes of pages for a budget of %d, %d evictions%n",
+				2000, cache.getBytesUsed(), budget, cache.getEvictions());
+		check(cache.getBytesUsed() <= budget && cache.getPageCount() <= pages, "pages with holes are evicted to stay within the budget");
+		boolean loaded = true;
+		for (GLImage image : held) {
+			loaded &= image.isLoaded();
+		}
+		check(loaded, "pages holding referenced images are kept");
+
+		GLImage image = held[0];
+		check(image.getSubImage(side - 2, side - 2, 2, 2).isLoaded(), "a sub-image within the image loads");
+		boolean rejected = false;
+		try {
+			image.getSubImage(side - 2, 0, 3, 2);
+		} catch (IllegalArgumentException ex) {
+			rejected = true;
+		}
+		check(rejected, "a sub-image past the image's edge is rejected");
+		cache.shutdown();
+	}
+
+	private static void check(boolean condition, String message, boolean print) {
+		if (!condition) throw new IllegalStateException("FAILED: " + message);
+		if (print) System.out.println("ok: " + message);
+	}
+
+	private static void check(boolean condition, String message) {
+		check(condition, message, true);
+	}
+
+	private static void run(File[] files, int pageSize, int threads) throws InterruptedException {
+		ImageCache cache = new ImageCache(Long.MAX_VALUE, pageSize, threads);
+		GLImage[] images = new GLImage[files.length];
+		long start = System.nanoTime();
+		for (int i = 0; i < files.length; i++) {
+			images[i] = cache.load(files[i]);
+		}
+		for (GLImage image : images) {
+			image.await(1, TimeUnit.MINUTES);
+		}
+		long wall = System.nanoTime() - start;
+		cache.shutdown();
+		System.out.printf("threads=%d images=%d: %.0f images/s, %.1f MPix/s, pages=%d, packing efficiency=%.1f%%%n",
+				threads, cache.getDecodedImages(), cache.getDecodedImages() * 1e9 / wall, cache.getDecodedPixels() * 1e3 / wall,
+				cache.getPageCount(), cache.getPackingEfficiency() * 100);
+	}
+
+}
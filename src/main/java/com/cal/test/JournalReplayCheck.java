@@ -0,0 +1,291 @@
+package com.cal.test;
+
+import com.apsis.entity.Entity;
+import com.apsis.event.Event;
+import com.apsis.event.EventListener;
+import com.apsis.event.world.TickEvent;
+import com.apsis.journal.EventCodec;
+import com.apsis.journal.EventCodecs;
+import com.apsis.journal.Journal;
+import com.apsis.journal.Replay;
+import com.apsis.snapshot.SnapshotCodec;
+import com.apsis.snapshot.SnapshotCodecs;
+import com.apsis.util.Point;
+import com.apsis.world.PointObject;
+import com.apsis.world.Sliced;
+import com.apsis.world.TimeSlicedGroup;
+import com.apsis.world.World;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Records a World with a {@link Journal}, then checks that a {@link Replay}
+ * can seek to recorded ticks, re-simulate them without desyncing, catch a
+ * deliberate desync, and still replay once the ring file has wrapped.<br>
+ * Usage: <code>JournalReplayCheck [ticks]</code>
+ *
+ * @author Cal Stephens
+ */
+public class JournalReplayCheck {
+
+	//makes walkers move differently, to check that a replay notices
+	private static boolean drift = false;
+
+	public static void main(String[] args) throws IOException {
+		int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+		SnapshotCodecs objects = new SnapshotCodecs()
+				.register("walker", new WalkerCodec())
+				.register("point", new PlainCodec());
+		EventCodecs events = new EventCodecs().register("steer", new SteerCodec());
+
+		Path file = Files.createTempFile("apsis", ".journal");
+		HashMap<Long, Long> fingerprints = record(file, 64 << 20, ticks, objects, events);
+		Replay replay = Replay.open(file, objects, events);
+		check(replay.getFirstTick() == 1 && replay.getLastTick() == ticks, "all ticks recorded");
+		long middle = ticks / 2 + 7;
+		replay.seek(middle, setUp(new World()));
+		check(fingerprint(replay.getWorld()) == fingerprints.get(middle), "seek rebuilds tick " + middle);
+		long start = System.nanoTime();
+		long desync = replay.simulateTo(ticks);
+		double millis = (System.nanoTime() - start) / 1e6;
+		check(desync == -1, "simulating to the end matches, first mismatch " + desync);
+		check(fingerprint(replay.getWorld()) == fingerprints.get((long) ticks), "simulation ends where the recording did");
+		System.out.printf("simulated %d ticks in %.1f ms (%.0fx real time at 60 ticks per second)%n",
+				ticks - middle, millis, (ticks - middle) / 60.0 * 1000 / millis);
+
+		replay.seek(middle, setUp(new World()));
+		drift = true;
+		desync = replay.simulateTo(middle + 20);
+		drift = false;
+		check(desync == middle + 1, "drift is caught on tick " + desync + ", " + replay.getMismatchCount()
+				+ " objects off, first ID " + replay.getFirstMismatchId());
+		replay.close();
+
+		//a small file wraps many times, so the replay starts from a later keyframe
+		fingerprints = record(file, 160 << 10, ticks, objects, events);
+		replay = Replay.open(file, objects, events);
+		check(replay.getFirstTick() > 1 && replay.getLastTick() == ticks, "wrapped file keeps ticks "
+				+ replay.getFirstTick() + " to " + replay.getLastTick());
+		replay.seek(replay.getFirstTick(), setUp(new World()));
+		check(fingerprint(replay.getWorld()) == fingerprints.get(replay.getFirstTick()), "seek to the oldest keyframe");
+		check(replay.simulateTo(ticks) == -1, "simulating a wrapped file matches");
+		replay.close();
+		Files.delete(file);
+		System.out.println("OK");
+	}
+
+	private static HashMap<Long, Long> record(Path file, long capacity, int ticks, SnapshotCodecs objects, EventCodecs events) throws IOException {
+		World world = setUp(new World());
+		Journal journal = new Journal(world, file, capacity, objects, events, 50);
+		HashMap<Long, Long> fingerprints = new HashMap<>();
+		for (int tick = 1; tick <= ticks; tick++) {
+			if (tick % 7 == 0) journal.input(new Steer(tick % 90 - 45));
+			world.tick();
+			fingerprints.put((long) tick, fingerprint(world));
+		}
+		journal.close();
+		System.out.printf("recorded %d ticks, %d keyframes, %d KB encoded, %d objects at the end%n",
+				journal.getRecordedTicks(), journal.getKeyframeCount(), journal.getBytesRecorded() / 1024, world.size());
+		return fingerprints;
+	}
+
+	private static World setUp(World world) {
+		TimeSlicedGroup<Director> directors = new TimeSlicedGroup<>();
+		directors.add(new Director(world));
+		world.addTimeSlicedGroup(directors);
+		return world;
+	}
+
+	private static long fingerprint(World world) {
+		long hash = 17;
+		for (PointObject object : world.getContent()) {
+			long parent = object.getParent() == null ? 0 : object.getParent().getId();
+			hash = hash * 31 + object.getId();
+			hash = hash * 31 + Double.doubleToLongBits(object.x());
+			hash = hash * 31 + Double.doubleToLongBits(object.y());
+			hash = hash * 31 + Double.doubleToLongBits(object.getRot());
+			hash = hash * 31 + object.getLayer();
+			hash = hash * 31 + parent;
+		}
+		return hash;
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) throw new IllegalStateException("FAILED: " + message);
+		System.out.println("ok: " + message);
+	}
+
+	/**
+	 * An input that turns every walker.
+	 */
+	public static class Steer extends Event {
+
+		private final double degrees;
+
+		public Steer(double degrees) {
+			this.degrees = degrees;
+		}
+
+	}
+
+	/**
+	 * Walks forward every tick and gets a layer for every 10 ticks it has lived.
+	 */
+	public static class Walker extends Entity {
+
+		private int age;
+
+		public Walker(Point pos, double rot, int age) {
+			super(pos, rot);
+			this.age = age;
+		}
+
+		@EventListener
+		public void onTick(TickEvent tick) {
+			age++;
+			double radians = Math.toRadians(getRot());
+			double speed = drift ? 1.01 : 1 + (getId() % 5) * 0.25;
+			move(Math.cos(radians) * speed, Math.sin(radians) * speed);
+			setLayer(age / 10);
+		}
+
+		@EventListener
+		public void onSteer(Steer steer) {
+			rotate(steer.degrees);
+		}
+
+	}
+
+	/**
+	 * Keeps about 40 walkers in the World, replacing them once they are 60 ticks old.
+	 * Every fifth walker carries a marker as a child. It only looks at the
+	 * World, so a replay can start it again from any tick.
+	 */
+	private static class Director implements Sliced {
+
+		private final World world;
+
+		private Director(World world) {
+			this.world = world;
+		}
+
+		@Override
+		public void sliceTick(TickEvent tick, long ticksSinceLastTurn) {
+			ArrayList<PointObject> content = world.getContent();
+			int walkers = 0;
+			for (PointObject object : content) {
+				if (!(object instanceof Walker)) continue;
+				if (((Walker) object).age >= 60) {
+					world.remove(object);
+					for (PointObject child : object.getChildren()) {
+						world.remove(child);
+					}
+				} else {
+					walkers++;
+				}
+			}
+			for (int i = walkers; i < 40; i += 8) {
+				long id = world.getNextObjectId();
+				Walker walker = new Walker(Point.make(id % 100, id * 7 % 100), id * 37 % 360, 0);
+				world.add(walker);
+				if (walker.getId() % 5 == 0) {
+					PointObject marker = new PointObject(Point.make(2, 0));
+					marker.setParent(walker);
+					world.add(marker);
+				}
+			}
+		}
+
+	}
+
+	private static class WalkerCodec implements SnapshotCodec<Walker> {
+
+		@Override
+		public Class<Walker> getType() {
+			return Walker.class;
+		}
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getPayloadSize(Walker walker) {
+			return 4;
+		}
+
+		@Override
+		public void writePayload(Walker walker, ByteBuffer out) {
+			out.putInt(walker.age);
+		}
+
+		@Override
+		public Walker create(Point pos, double rot, ByteBuffer payload, int version) {
+			return new Walker(pos, rot, payload.getInt());
+		}
+
+	}
+
+	private static class PlainCodec implements SnapshotCodec<PointObject> {
+
+		@Override
+		public Class<PointObject> getType() {
+			return PointObject.class;
+		}
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getPayloadSize(PointObject object) {
+			return 0;
+		}
+
+		@Override
+		public void writePayload(PointObject object, ByteBuffer out) {
+		}
+
+		@Override
+		public PointObject create(Point pos, double rot, ByteBuffer payload, int version) {
+			return new PointObject(pos, rot);
+		}
+
+	}
+
+	private static class SteerCodec implements EventCodec<Steer> {
+
+		@Override
+		public Class<Steer> getType() {
+			return Steer.class;
+		}
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getSize(Steer steer) {
+			return 8;
+		}
+
+		@Override
+		public void write(Steer steer, ByteBuffer out) {
+			out.putDouble(steer.degrees);
+		}
+
+		@Override
+		public Steer read(ByteBuffer in, int version) {
+			return new Steer(in.getDouble());
+		}
+
+	}
+
+}
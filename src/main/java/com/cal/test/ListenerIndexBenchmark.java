@@ -0,0 +1,253 @@
+package com.cal.test;
+
+import com.apsis.event.Event;
+import com.apsis.event.EventHandler;
+import com.apsis.event.Listener;
+import com.apsis.event.processing.ListenerProcessor;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Writes the source of a content pack of Listener classes, compiles it once
+ * with the {@link ListenerProcessor} and once without, and compares the time
+ * the first subscription of every class takes and the time to trigger an
+ * event on many listeners. Checks that processed classes have dispatchers,
+ * that both builds subscribe exactly the same methods, including for classes
+ * that inherit or override listener methods, that checked exceptions thrown
+ * by listeners are reported either way, and that the processor reports
+ * listener methods that would never be subscribed.<br>
+ * Usage: <code>ListenerIndexBenchmark [classes] [listeners] [triggers]</code>
+ *
+ * @author Cal Stephens
+ */
+public class ListenerIndexBenchmark {
+
+	private static final int EVENTS = 4;
+	private static final String PACKAGE = "pack";
+
+	public static void main(String[] args) throws Exception {
+		int classes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int listeners = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		int triggers = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) throw new IllegalStateException("Run on a JDK, which has a compiler");
+		Path root = Files.createTempDirectory("listeners");
+		List<File> sources = write(root.resolve("src"), classes);
+		Path scanned = compile(compiler, root, "scanned", sources, false);
+		Path processed = compile(compiler, root, "processed", sources, true);
+		check(Files.exists(processed.resolve(PACKAGE + "/Content0$$Dispatcher.class")), "the processor generated dispatchers");
+		check(!Files.exists(processed.resolve(PACKAGE + "/Holder$Hidden$$Dispatcher.class")), "private classes are left to be scanned");
+
+		URLClassLoader scannedLoader = new URLClassLoader(new URL[]{scanned.toUri().toURL()}, ListenerIndexBenchmark.class.getClassLoader());
+		URLClassLoader processedLoader = new URLClassLoader(new URL[]{processed.toUri().toURL()}, ListenerIndexBenchmark.class.getClassLoader());
+		//the engine's own paths are warmed up on another class first
+		subscribeEach(scannedLoader, "Warm", 1);
+		long scanNanos = subscribeEach(scannedLoader, "Content", classes);
+		long indexNanos = subscribeEach(processedLoader, "Content", classes);
+		System.out.printf("first subscription of %d classes: %.1f ms scanned, %.1f ms with dispatchers%n",
+				classes, scanNanos / 1e6, indexNanos / 1e6);
+
+		Class<? extends Listener> scannedType = load(scannedLoader, "Content0");
+		Class<? extends Listener> processedType = load(processedLoader, "Content0");
+		check(!EventHandler.hasDispatcher(scannedType) && EventHandler.hasDispatcher(processedType), "processed classes are dispatched directly");
+		for (String name : new String[]{"Content0", "Content7", "Child", "Base", "Holder$Open", "Holder$Hidden", "Generic", "Thrower"}) {
+			check(subscribed(scannedLoader, name).equals(subscribed(processedLoader, name)), name + " subscribes the same methods either way", false);
+		}
+		check(subscribed(processedLoader, "Child").equals(Arrays.asList("onE1(E1)", "onE2(E2)")),
+				"a method overridden without the annotation isn't a listener, as with scanning");
+		check(EventHandler.hasDispatcher(load(processedLoader, "Child")) && !EventHandler.hasDispatcher(load(processedLoader, "Holder$Hidden")),
+				"subclasses get dispatchers and private classes are scanned");
+
+		for (ClassLoader loader : new ClassLoader[]{scannedLoader, processedLoader}) {
+			check(thrown(loader) instanceof IOException, "a checked exception thrown by a listener is the cause of the failure", false);
+		}
+		check(EventHandler.hasDispatcher(load(processedLoader, "Thrower")), "listeners declaring checked exceptions get dispatchers");
+
+		double scanTrigger = trigger(scannedLoader, listeners, triggers);
+		double indexTrigger = trigger(processedLoader, listeners, triggers);
+		System.out.printf("triggering an event on %d listeners: %.1f ns per listener scanned, %.1f ns with dispatchers%n",
+				listeners, scanTrigger, indexTrigger);
+		System.out.println("OK");
+	}
+
+	/**
+	 * Writes a content pack: many Listener classes with a few listener methods
+	 * among plain ones, and a few classes that exercise the edge cases.
+	 */
+	private static List<File> write(Path src, int classes) throws IOException {
+		Path dir = src.resolve(PACKAGE);
+		Files.createDirectories(dir);
+		List<File> files = new ArrayList<>();
+		for (int e = 0; e < EVENTS; e++) {
+			files.add(source(dir, "E" + e, "public class E" + e + " extends com.apsis.event.Event {\n}\n"));
+		}
+		files.add(source(dir, "Hits", "public class Hits {\n\tpublic static long count;\n}\n"));
+		for (int c = 0; c < classes; c++) {
+			files.add(source(dir, "Content" + c, content("Content" + c, c)));
+		}
+		files.add(source(dir, "Warm0", content("Warm0", 0)));
+		files.add(source(dir, "Base", "public class Base implements com.apsis.event.Listener {\n"
+				+ "\t@com.apsis.event.EventListener\n\tpublic void onE0(E0 e) {\n\t\tHits.count++;\n\t}\n"
+				+ "\t@com.apsis.event.EventListener\n\tpublic void onE1(E1 e) {\n\t\tHits.count++;\n\t}\n}\n"));
+		files.add(source(dir, "Child", "public class Child extends Base {\n"
+				+ "\t@Override\n\tpublic void onE0(E0 e) {\n\t}\n"
+				+ "\t@com.apsis.event.EventListener\n\tpublic void onE2(E2 e) {\n\t\tHits.count++;\n\t}\n"
+				+ "\t@com.apsis.event.EventListener\n\tvoid notPublic(E3 e) {\n\t}\n}\n"));
+		files.add(source(dir, "Holder", "public class Holder {\n"
+				+ "\tpublic static class Open implements com.apsis.event.Listener {\n"
+				+ "\t\t@com.apsis.event.EventListener\n\t\tpublic void onE3(E3 e) {\n\t\t\tHits.count++;\n\t\t}\n\t}\n"
+				+ "\tprivate static class Hidden implements com.apsis.event.Listener {\n"
+				+ "\t\t@com.apsis.event.EventListener\n\t\tpublic void onE3(E3 e) {\n\t\t\tHits.count++;\n\t\t}\n\t}\n}\n"));
+		files.add(source(dir, "Thrower", "public class Thrower implements com.apsis.event.Listener {\n"
+				+ "\t@com.apsis.event.EventListener\n\tpublic void onE0(E0 e) throws java.io.IOException {\n"
+				+ "\t\tthrow new java.io.IOException(\"thrown\");\n\t}\n}\n"));
+		files.add(source(dir, "Generic", "public class Generic<T> implements com.apsis.event.Listener {\n"
+				+ "\tpublic T value;\n"
+				+ "\t@com.apsis.event.EventListener\n\tpublic void onE0(E0 e) {\n\t\tHits.count++;\n\t}\n}\n"));
+		return files;
+	}
+
+	private static String content(String name, int seed) {
+		StringBuilder source = new StringBuilder("public class " + name + " implements com.apsis.event.Listener {\n");
+		for (int e = 0; e < EVENTS; e++) {
+			source.append("\t@com.apsis.event.EventListener\n\tpublic void on").append(e).append("(E").append((e + seed) % EVENTS)
+					.append(" event) {\n\t\tHits.count++;\n\t}\n");
+		}
+		//real content classes have far more plain methods than listener methods
+		for (int m = 0; m < 20; m++) {
+			source.append("\tpublic int value").append(m).append("(int x) {\n\t\treturn x + ").append(m).append(";\n\t}\n");
+		}
+		return source.append("}\n").toString();
+	}
+
+	private static File source(Path dir, String name, String body) throws IOException {
+		Path file = dir.resolve(name + ".java");
+		Files.write(file, ("package " + PACKAGE + ";\n\n" + body).getBytes(StandardCharsets.UTF_8));
+		return file.toFile();
+	}
+
+	private static Path compile(JavaCompiler compiler, Path root, String name, List<File> sources, boolean process) throws IOException {
+		Path out = root.resolve(name), generated = root.resolve(name + "-generated");
+		Files.createDirectories(out);
+		Files.createDirectories(generated);
+		List<String> options = new ArrayList<>(Arrays.asList("-d", out.toString(), "-s", generated.toString(),
+				"-cp", System.getProperty("java.class.path"), "-Xlint:-options"));
+		if (process) {
+			options.add("-processor");
+			options.add(ListenerProcessor.class.getName());
+		} else {
+			options.add("-proc:none");
+		}
+		StringWriter log = new StringWriter();
+		Boolean ok = compiler.getTask(log, null, null, options, null, compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)
+				.getJavaFileObjectsFromFiles(sources)).call();
+		if (!ok) throw new IllegalStateException("FAILED: compiling the " + name + " pack\n" + log);
+		if (process) check(log.toString().contains("notPublic") && log.toString().contains("warning"),
+				"the processor warns about a listener method that will never be subscribed");
+		return out;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Class<? extends Listener> load(ClassLoader loader, String name) throws ClassNotFoundException {
+		return (Class<? extends Listener>) Class.forName(PACKAGE + "." + name, true, loader);
+	}
+
+	/**
+	 * Subscribes one object of each class, the first time each class is seen.
+	 *
+	 * @return the time taken, not counting loading the classes
+	 */
+	private static long subscribeEach(ClassLoader loader, String prefix, int classes) throws Exception {
+		Listener[] objects = new Listener[classes];
+		for (int c = 0; c < classes; c++) {
+			objects[c] = load(loader, prefix + c).getDeclaredConstructor().newInstance();
+		}
+		EventHandler handler = new EventHandler();
+		long start = System.nanoTime();
+		for (Listener object : objects) {
+			handler.subscribeAll(object);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static List<String> subscribed(ClassLoader loader, String name) throws Exception {
+		Class<? extends Listener> type = load(loader, name);
+		Constructor<? extends Listener> constructor = type.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		List<String> names = new ArrayList<>();
+		for (Method method : new EventHandler().subscribeAll(constructor.newInstance())) {
+			names.add(method.getName() + "(" + method.getParameterTypes()[0].getSimpleName() + ")");
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	/**
+	 * Triggers an event on a listener that throws a checked exception.
+	 *
+	 * @return the innermost cause of the failure
+	 */
+	private static Throwable thrown(ClassLoader loader) throws Exception {
+		EventHandler handler = new EventHandler();
+		handler.subscribeAll(load(loader, "Thrower").getDeclaredConstructor().newInstance());
+		try {
+			handler.triggerEvent((Event) Class.forName(PACKAGE + ".E0", true, loader).getDeclaredConstructor().newInstance());
+		} catch (IllegalArgumentException e) {
+			Throwable cause = e;
+			while (cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			return cause;
+		}
+		throw new IllegalStateException("FAILED: the exception thrown by a listener was swallowed");
+	}
+
+	/**
+	 * @return the time per listener called
+	 */
+	private static double trigger(ClassLoader loader, int listeners, int triggers) throws Exception {
+		EventHandler handler = new EventHandler();
+		Class<? extends Listener> type = load(loader, "Content0");
+		for (int i = 0; i < listeners; i++) {
+			handler.subscribeAll(type.getDeclaredConstructor().newInstance());
+		}
+		Event event = (Event) Class.forName(PACKAGE + ".E0", true, loader).getDeclaredConstructor().newInstance();
+		Field hits = Class.forName(PACKAGE + ".Hits", true, loader).getField("count");
+		for (int i = 0; i < triggers / 4; i++) {
+			handler.triggerEvent(event);
+		}
+		long before = hits.getLong(null);
+		long start = System.nanoTime();
+		for (int i = 0; i < triggers; i++) {
+			handler.triggerEvent(event);
+		}
+		long nanos = System.nanoTime() - start;
+		check(hits.getLong(null) - before == (long) listeners * triggers, "every listener was called once per trigger", false);
+		return (double) nanos / listeners / triggers;
+	}
+
+	private static void check(boolean condition, String message, boolean print) {
+		if (!condition) throw new IllegalStateException("FAILED: " + message);
+		if (print) System.out.println("ok: " + message);
+	}
+
+	private static void check(boolean condition, String message) {
+		check(condition, message, true);
+	}
+
+}
@@ -0,0 +1,347 @@
+package com.cal.test;
+
+import com.apsis.entity.Entity;
+import com.apsis.event.Event;
+import com.apsis.event.EventHandler;
+import com.apsis.event.EventListener;
+import com.apsis.event.world.TickEvent;
+import com.apsis.render.Camera;
+import com.apsis.render.Graphics;
+import com.apsis.render.RecordingBackend;
+import com.apsis.render.Renderable;
+import com.apsis.util.Bounds;
+import com.apsis.util.Color;
+import com.apsis.util.Point;
+import com.apsis.world.PointObject;
+import com.apsis.world.World;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Load-tests a synthetic World without a window, for capacity planning on build servers.<br>
+ * <br>
+ * The World holds <code>entities</code> moving {@link Entity} listeners and
+ * <code>statics</code> static objects spread over a square map. Every tick,
+ * <code>churn</code> entities are removed and as many new ones spawned,
+ * <code>events</code> targeted events are triggered on random entities, and the
+ * World is ticked and rendered into a {@link RecordingBackend}. After a warmup, it
+ * runs for a fixed time and prints one JSON object with the settings, ticks per
+ * second, tick/render/frame latency percentiles, allocation rate and GC time.<br>
+ * Usage: <code>LoadTest [key=value ...]</code>, for example
+ * <code>LoadTest entities=20000 statics=50000 churn=50 events=500 duration=30 out=load.json</code>
+ *
+ * @author Cal Stephens
+ */
+public class LoadTest {
+
+	private final static Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+	static {
+		DEFAULTS.put("entities", "5000");
+		DEFAULTS.put("statics", "20000");
+		DEFAULTS.put("churn", "10");
+		DEFAULTS.put("events", "100");
+		DEFAULTS.put("size", "8000");
+		DEFAULTS.put("view", "2000");
+		DEFAULTS.put("warmup", "5");
+		DEFAULTS.put("duration", "20");
+		DEFAULTS.put("seed", "42");
+		DEFAULTS.put("out", "");
+	}
+
+	public static void main(String[] args) throws IOException {
+		Map<String, String> settings = new LinkedHashMap<>(DEFAULTS);
+		for (String arg : args) {
+			int split = arg.indexOf('=');
+			if (split < 0 || !DEFAULTS.containsKey(arg.substring(0, split))) {
+				throw new IllegalArgumentException("Unknown argument " + arg + ", expected one of " + DEFAULTS.keySet());
+			}
+			settings.put(arg.substring(0, split), arg.substring(split + 1));
+		}
+		String json = new LoadTest(settings).run();
+		String out = settings.get("out");
+		if (out.isEmpty()) System.out.println(json);
+		else {
+			try (Writer writer = new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8)) {
+				writer.write(json);
+				writer.write('\n');
+			}
+		}
+	}
+
+	private final Map<String, String> settings;
+	private final int churn;
+	private final int events;
+	private final double size;
+	private final Random random;
+	private final World world = new World();
+	private final Graphics g = new Graphics(new RecordingBackend());
+	private final ArrayList<Mover> movers = new ArrayList<>();
+	private final Pulse pulse = new Pulse();
+	private long spawned = 0;
+
+	private LoadTest(Map<String, String> settings) {
+		this.settings = settings;
+		this.churn = Integer.parseInt(settings.get("churn"));
+		this.events = Integer.parseInt(settings.get("events"));
+		this.size = Double.parseDouble(settings.get("size"));
+		this.random = new Random(Long.parseLong(settings.get("seed")));
+		int view = Integer.parseInt(settings.get("view"));
+		Camera camera = new Camera(view, view);
+		camera.moveTo(size / 2, size / 2);
+		g.setCamera(camera);
+	}
+
+	/**
+	 * Builds the World, warms it up, then measures it.
+	 *
+	 * @return the results as JSON
+	 */
+	private String run() {
+		long loadStart = System.nanoTime();
+		int statics = Integer.parseInt(settings.get("statics"));
+		PointObject[] props = new PointObject[statics];
+		for (int i = 0; i < statics; i++) {
+			props[i] = new Prop(randomPoint());
+		}
+		world.add(props);
+		int entities = Integer.parseInt(settings.get("entities"));
+		for (int i = 0; i < entities; i++) {
+			spawn();
+		}
+		long loadNanos = System.nanoTime() - loadStart;
+
+		long warmupEnd = System.nanoTime() + (long) (Double.parseDouble(settings.get("warmup")) * 1e9);
+		while (System.nanoTime() < warmupEnd) {
+			frame(null, null, null, 0);
+		}
+
+		long duration = (long) (Double.parseDouble(settings.get("duration")) * 1e9);
+		//sized for a generous tick rate, so recording samples doesn't allocate during the run
+		int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1024, duration / 50000));
+		long[] tickNanos = new long[capacity], renderNanos = new long[capacity], frameNanos = new long[capacity];
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long gcCount = -gcCount(), gcMillis = -gcMillis();
+		long allocated = -allocatedBytes(threads);
+		long start = System.nanoTime(), end = start + duration;
+		int ticks = 0;
+		while (System.nanoTime() < end && ticks < capacity) {
+			frame(tickNanos, renderNanos, frameNanos, ticks++);
+		}
+		long elapsed = System.nanoTime() - start;
+		allocated += allocatedBytes(threads);
+		gcCount += gcCount();
+		gcMillis += gcMillis();
+
+		double seconds = elapsed / 1e9;
+		StringBuilder json = new StringBuilder("{");
+		json.append("\"settings\":{");
+		boolean first = true;
+		for (Map.Entry<String, String> setting : settings.entrySet()) {
+			if (setting.getKey().equals("out")) continue;
+			if (!first) json.append(',');
+			first = false;
+			json.append('"').append(setting.getKey()).append("\":").append(setting.getValue());
+		}
+		json.append("},");
+		json.append("\"loadMillis\":").append(format(loadNanos / 1e6)).append(',');
+		json.append("\"ticks\":").append(ticks).append(',');
+		json.append("\"seconds\":").append(format(seconds)).append(',');
+		json.append("\"ticksPerSecond\":").append(format(ticks / seconds)).append(',');
+		json.append("\"objects\":").append(world.size()).append(',');
+		json.append("\"spawned\":").append(spawned).append(',');
+		json.append("\"tickMicros\":").append(percentiles(tickNanos, ticks)).append(',');
+		json.append("\"renderMicros\":").append(percentiles(renderNanos, ticks)).append(',');
+		json.append("\"frameMicros\":").append(percentiles(frameNanos, ticks)).append(',');
+		json.append("\"allocatedBytes\":").append(allocated).append(',');
+		json.append("\"allocationMBPerSecond\":").append(allocated < 0 ? "null" : format(allocated / 1048576.0 / seconds)).append(',');
+		json.append("\"allocatedBytesPerTick\":").append(allocated < 0 ? "null" : format((double) allocated / Math.max(1, ticks))).append(',');
+		json.append("\"gcCount\":").append(gcCount).append(',');
+		json.append("\"gcMillis\":").append(gcMillis).append(',');
+		json.append("\"gcPercent\":").append(format(gcMillis / 10.0 / seconds)).append(',');
+		json.append("\"jvm\":\"").append(System.getProperty("java.vm.name")).append(' ').append(System.getProperty("java.version")).append("\",");
+		json.append("\"processors\":").append(Runtime.getRuntime().availableProcessors()).append(',');
+		json.append("\"maxHeapMB\":").append(Runtime.getRuntime().maxMemory() / 1048576);
+		json.append('}');
+		return json.toString();
+	}
+
+	/**
+	 * Runs one frame: churn, events, a tick and a render.
+	 * Times are only recorded if the arrays are given.
+	 */
+	private void frame(long[] tickNanos, long[] renderNanos, long[] frameNanos, int index) {
+		long start = System.nanoTime();
+		for (int i = 0; i < churn && !movers.isEmpty(); i++) {
+			//swap-remove a random entity
+			int victim = random.nextInt(movers.size());
+			Mover mover = movers.get(victim);
+			movers.set(victim, movers.get(movers.size() - 1));
+			movers.remove(movers.size() - 1);
+			world.remove(mover);
+			spawn();
+		}
+		EventHandler handler = world.getEventHandler();
+		for (int i = 0; i < events && !movers.isEmpty(); i++) {
+			handler.triggerEvent(pulse, movers.get(random.nextInt(movers.size())));
+		}
+		long tickStart = System.nanoTime();
+		world.tick();
+		long renderStart = System.nanoTime();
+		g.beginFrame();
+		world.render(g);
+		g.endFrame();
+		long end = System.nanoTime();
+		if (tickNanos != null) {
+			tickNanos[index] = renderStart - tickStart;
+			renderNanos[index] = end - renderStart;
+			frameNanos[index] = end - start;
+		}
+	}
+
+	private void spawn() {
+		Mover mover = new Mover(randomPoint(), random.nextDouble() * 360, size);
+		movers.add(mover);
+		world.add(mover);
+		spawned++;
+	}
+
+	private Point randomPoint() {
+		return Point.make(random.nextDouble() * size, random.nextDouble() * size);
+	}
+
+	/**
+	 * @return the mean, percentiles and max of the samples in microseconds, as a JSON object
+	 */
+	private static String percentiles(long[] samples, int count) {
+		if (count == 0) return "null";
+		long[] sorted = Arrays.copyOf(samples, count);
+		Arrays.sort(sorted);
+		double sum = 0;
+		for (long sample : sorted) {
+			sum += sample;
+		}
+		return "{\"mean\":" + format(sum / count / 1e3) + ",\"p50\":" + format(rank(sorted, 50) / 1e3)
+				+ ",\"p90\":" + format(rank(sorted, 90) / 1e3) + ",\"p99\":" + format(rank(sorted, 99) / 1e3)
+				+ ",\"p999\":" + format(rank(sorted, 99.9) / 1e3) + ",\"max\":" + format(sorted[count - 1] / 1e3) + "}";
+	}
+
+	private static long rank(long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	private static String format(double value) {
+		return String.format("%.3f", value);
+	}
+
+	/**
+	 * @return the bytes allocated by this thread, or a negative number if the JVM can't tell
+	 */
+	private static long allocatedBytes(ThreadMXBean threads) {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+
+	/**
+	 * A targeted event triggered on random entities.
+	 */
+	public static class Pulse extends Event {
+	}
+
+	/**
+	 * An entity that wanders around the map every tick and turns when pulsed.
+	 */
+	public static class Mover extends Entity implements Renderable {
+
+		private final static Point DIM = Point.make(8, 8);
+		private final double size;
+		private final Bounds bounds = new Bounds();
+		private final Point corner = Point.make(0, 0);
+
+		public Mover(Point pos, double rot, double size) {
+			super(pos, rot);
+			this.size = size;
+		}
+
+		@EventListener
+		public void onTick(TickEvent tick) {
+			double radians = Math.toRadians(getRot());
+			double dx = Math.cos(radians), dy = Math.sin(radians);
+			double x = x() + dx, y = y() + dy;
+			if (x < 0 || y < 0 || x > size || y > size) rotate(180);
+			else move(dx, dy);
+		}
+
+		@EventListener
+		public void onPulse(Pulse pulse) {
+			rotate(45);
+		}
+
+		@Override
+		public Bounds getBounds() {
+			return bounds.setAround(x(), y(), 8);
+		}
+
+		@Override
+		public void render(Graphics g) {
+			g.drawRectangle(Color.BLUE, corner.set(x() - 4, y() - 4), DIM, getRot(), pos());
+		}
+
+	}
+
+	/**
+	 * A static object that is drawn from the World's cached geometry.
+	 */
+	public static class Prop extends PointObject implements Renderable {
+
+		private final static Point DIM = Point.make(16, 16);
+		private final Bounds bounds = new Bounds();
+
+		public Prop(Point pos) {
+			super(pos);
+			setStatic(true);
+		}
+
+		@Override
+		public Bounds getBounds() {
+			return bounds.setAround(x(), y(), 16);
+		}
+
+		@Override
+		public void render(Graphics g) {
+			g.drawRectangle(Color.DARK_GREEN, Point.make(x() - 8, y() - 8), DIM);
+		}
+
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.cal.test;
+
+import com.apsis.particle.ParticleEmitter;
+import com.apsis.particle.ParticleSystem;
+import com.apsis.render.Graphics;
+import com.apsis.render.RecordingBackend;
+import com.apsis.util.PackedColor;
+import com.apsis.world.World;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Keeps about half a million particles alive in a {@link ParticleSystem} on
+ * 1, 2 and 4 threads and reports the particles updated per millisecond, and
+ * the time to submit them all to a Graphics. Checks that no particle is lost
+ * or outlives its life, that the threads don't change the result, that an
+ * update on one thread allocates nothing, and that a World's ticks drive the
+ * system.<br>
+ * Usage: <code>ParticleBenchmark [particles] [updates]</code>
+ *
+ * @author Cal Stephens
+ */
+public class ParticleBenchmark {
+
+	private static final int EMITTERS = 50;
+	private static final float LIFE = 2;
+
+	public static void main(String[] args) {
+		int particles = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+		int updates = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+		System.out.println(Runtime.getRuntime().availableProcessors() + " processors available");
+		long fingerprint = 0;
+		for (int threads = 1; threads <= 4; threads *= 2) {
+			ParticleSystem system = create(particles, threads);
+			//the first lifetimes fill the system up to its steady count
+			for (int i = 0; i < 60 * LIFE * 1.5f; i++) {
+				system.update();
+			}
+			long nanos = 0, updated = 0;
+			for (int i = 0; i < updates; i++) {
+				updated += system.getCount();
+				system.update();
+				nanos += system.getLastUpdateNanos();
+			}
+			System.out.printf("%d threads: %d particles, %.2f ms per update, %.0f particles per ms%n",
+					threads, system.getCount(), nanos / 1e6 / updates, updated / (nanos / 1e6));
+			check(system.getEmitted() == system.getCount() + system.getExpired() && system.getDropped() == 0, "no particle is lost", false);
+			boolean alive = true;
+			for (int i = 0; i < system.getCount(); i++) {
+				if (!(system.getLife(i) > 0)) alive = false;
+			}
+			check(alive, "dead particles are removed on the update they die", false);
+			long hash = hash(system);
+			if (threads == 1) fingerprint = hash;
+			else check(hash == fingerprint, threads + " threads end the same way as one");
+			if (threads == 1) {
+				com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+				long thread = Thread.currentThread().getId();
+				long before = mx.getThreadAllocatedBytes(thread);
+				for (int i = 0; i < 10; i++) {
+					system.update();
+				}
+				long allocated = mx.getThreadAllocatedBytes(thread) - before;
+				check(allocated == 0, "an update on one thread allocates nothing: " + allocated);
+				render(system);
+			}
+			system.close();
+		}
+
+		ParticleSystem system = create(1000, 1);
+		World world = new World();
+		world.addTickObserver(system);
+		for (int i = 0; i < 10; i++) {
+			world.tick();
+		}
+		check(system.getEmitted() > 0 && system.getCount() == system.getEmitted(), "the World's ticks update the system");
+		System.out.println("OK");
+	}
+
+	/**
+	 * A fountain of emitters, spread across the map, that together keep about
+	 * the given number of particles alive.
+	 */
+	private static ParticleSystem create(int particles, int threads) {
+		ParticleSystem system = new ParticleSystem(particles * 2, threads);
+		system.setSeed(48);
+		system.setGravity(0, -40);
+		for (int i = 0; i < EMITTERS; i++) {
+			ParticleEmitter emitter = new ParticleEmitter(i % 10 * 100, i / 10 * 100);
+			emitter.setRate(particles / LIFE / EMITTERS);
+			emitter.setDirection(90, 60);
+			emitter.setSpeed(20, 80);
+			emitter.setLife(LIFE * 0.5f, LIFE * 1.5f);
+			emitter.setColor(PackedColor.pack(255, 64 + i * 3, 16, 200));
+			system.addEmitter(emitter);
+		}
+		return system;
+	}
+
+	private static void render(ParticleSystem system) {
+		RecordingBackend backend = new RecordingBackend();
+		Graphics g = new Graphics(backend);
+		long nanos = 0;
+		int frames = 20;
+		for (int i = 0; i < frames; i++) {
+			long start = System.nanoTime();
+			g.beginFrame();
+			system.render(g);
+			g.endFrame();
+			nanos += System.nanoTime() - start;
+		}
+		System.out.printf("rendering %d particles: %.2f ms per frame in %d draw calls%n",
+				system.getCount(), nanos / 1e6 / frames, g.getDrawCalls());
+		check(backend.getTotalVertices() == (long) system.getCount() * 6 * frames, "every particle is drawn as two triangles");
+	}
+
+	private static long hash(ParticleSystem system) {
+		long hash = 17;
+		for (int i = 0; i < system.getCount(); i++) {
+			hash = hash * 31 + Float.floatToIntBits(system.getX(i));
+			hash = hash * 31 + Float.floatToIntBits(system.getY(i));
+			hash = hash * 31 + Float.floatToIntBits(system.getLife(i));
+			hash = hash * 31 + system.getColor(i);
+		}
+		return hash;
+	}
+
+	private static void check(boolean condition, String message, boolean print) {
+		if (!condition) throw new IllegalStateException("FAILED: " + message);
+		if (print) System.out.println("ok: " + message);
+	}
+
+	private static void check(boolean condition, String message) {
+		check(condition, message, true);
+	}
+
+}
@@ -0,0 +1,203 @@
+package com.cal.test;
+
+import com.apsis.entity.Entity;
+import com.apsis.event.Event;
+import com.apsis.event.EventListener;
+import com.apsis.event.world.AddToWorldEvent;
+import com.apsis.event.world.RemoveFromWorldEvent;
+import com.apsis.event.world.TickEvent;
+import com.apsis.util.Point;
+import com.apsis.world.ObjectPool;
+import com.apsis.world.ObjectPools;
+import com.apsis.world.Poolable;
+import com.apsis.world.World;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Fires bursts of short-lived bullets into a World, first creating a new
+ * Bullet for each shot and then acquiring them from an {@link ObjectPool},
+ * and reports the time and allocation per tick and the pool's hit rate.
+ * Checks that pooled bullets see one AddToWorldEvent and one
+ * RemoveFromWorldEvent per life, are reset between lives, and come back
+ * subscribed like new bullets.<br>
+ * Usage: <code>PoolingBenchmark [shots per tick] [ticks]</code>
+ *
+ * @author Cal Stephens
+ */
+public class PoolingBenchmark {
+
+	private static final int LIFETIME = 30;
+
+	public static void main(String[] args) throws NoSuchMethodException {
+		int shots = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		//the first run warms up the code both share
+		run(shots, ticks / 4, null);
+		Result created = run(shots, ticks, null);
+		ObjectPools pools = new ObjectPools();
+		ObjectPool<Bullet> pool = pools.register(Bullet.class, new ObjectPool.Factory<Bullet>() {
+			@Override
+			public Bullet create() {
+				return new Bullet();
+			}
+		}, shots * LIFETIME * 2);
+		Result pooled = run(shots, ticks, pools);
+		System.out.printf("new bullets: %.1f us per tick, %.0f bytes allocated per tick%n", created.micros, created.bytes);
+		System.out.printf("pooled bullets: %.1f us per tick, %.0f bytes allocated per tick, %.2f%% hit rate (%d created for %d acquires)%n",
+				pooled.micros, pooled.bytes, pool.getHitRate() * 100, pool.getCreated(), pool.getAcquires());
+		check(pool.getHitRate() > 0.95, "the pool serves almost every shot once it has grown");
+		check(pooled.bytes < created.bytes / 4, "pooling cuts the allocation per tick");
+
+		//every life of a pooled bullet is announced once and starts from reset
+		check(Bullet.adds == Bullet.removes && Bullet.adds == Bullet.lives, "one Add and one Remove event per life");
+		check(Bullet.dirtyResets == 0, "bullets are reset before they are reused");
+
+		//a bullet that stopped listening is subscribed like a new one when it comes back
+		World world = new World();
+		Bullet deaf = pools.acquire(Bullet.class);
+		world.add(deaf);
+		world.getEventHandler().unsubscribe(Bullet.class.getMethod("onPing", Ping.class), deaf);
+		world.remove(deaf);
+		Bullet again = pools.acquire(Bullet.class);
+		check(again == deaf, "the last bullet returned is the next acquired");
+		world.add(again);
+		int pings = again.pings;
+		world.getEventHandler().triggerEvent(new Ping());
+		check(again.pings == pings + 1, "reused bullets are subscribed like new ones");
+		world.remove(again);
+		boolean refused = false;
+		try {
+			world.add(again);
+		} catch (IllegalArgumentException e) {
+			refused = true;
+		}
+		check(refused, "a bullet waiting in its pool can't be added");
+		System.out.println("OK");
+	}
+
+	private static class Result {
+		double micros;
+		double bytes;
+	}
+
+	private static Result run(int shots, int ticks, ObjectPools pools) {
+		World world = new World();
+		Random random = new Random(47);
+		ArrayList<Bullet> live = new ArrayList<>();
+		ArrayList<Bullet> spent = new ArrayList<>();
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long allocated = 0, nanos = 0;
+		int measured = 0;
+		for (int tick = 0; tick < ticks; tick++) {
+			long before = threads.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			for (int i = 0; i < shots; i++) {
+				Bullet bullet = pools == null ? new Bullet() : pools.acquire(Bullet.class);
+				if (bullet.life != 0) Bullet.dirtyResets++;
+				bullet.fire(random.nextDouble() * 1000, random.nextDouble() * 1000, random.nextDouble() * 10 - 5, random.nextDouble() * 10 - 5);
+				world.add(bullet);
+				live.add(bullet);
+			}
+			world.tick();
+			for (int i = live.size() - 1; i >= 0; i--) {
+				Bullet bullet = live.get(i);
+				if (bullet.life > 0) continue;
+				live.set(i, live.get(live.size() - 1));
+				live.remove(live.size() - 1);
+				spent.add(bullet);
+			}
+			for (int i = 0; i < spent.size(); i++) {
+				world.remove(spent.get(i));
+			}
+			spent.clear();
+			long elapsed = System.nanoTime() - start;
+			long bytes = threads.getThreadAllocatedBytes(thread) - before;
+			//the first lifetimes fill the World and the pool
+			if (tick >= LIFETIME * 2) {
+				nanos += elapsed;
+				allocated += bytes;
+				measured++;
+			}
+		}
+		for (int i = 0; i < live.size(); i++) {
+			world.remove(live.get(i));
+		}
+		Result result = new Result();
+		result.micros = nanos / 1e3 / measured;
+		result.bytes = (double) allocated / measured;
+		return result;
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) throw new IllegalStateException("FAILED: " + message);
+		System.out.println("ok: " + message);
+	}
+
+	/**
+	 * Triggered on the whole World to see which bullets are listening.
+	 */
+	public static class Ping extends Event {
+	}
+
+	/**
+	 * Flies in a straight line until it runs out of life.
+	 */
+	public static class Bullet extends Entity implements Poolable {
+
+		private static long lives;
+		private static long adds;
+		private static long removes;
+		private static long dirtyResets;
+
+		private double vx;
+		private double vy;
+		private int life;
+		private int pings;
+
+		public Bullet() {
+			super(Point.make(0, 0), 0);
+		}
+
+		public void fire(double x, double y, double vx, double vy) {
+			moveTo(x, y);
+			this.vx = vx;
+			this.vy = vy;
+			life = LIFETIME;
+			lives++;
+		}
+
+		@Override
+		public void reset() {
+			vx = 0;
+			vy = 0;
+			life = 0;
+			setRot(0);
+		}
+
+		@EventListener
+		public void onTick(TickEvent tick) {
+			move(vx, vy);
+			life--;
+		}
+
+		@EventListener
+		public void onPing(Ping ping) {
+			pings++;
+		}
+
+		@EventListener
+		public void onAdd(AddToWorldEvent event) {
+			adds++;
+		}
+
+		@EventListener
+		public void onRemove(RemoveFromWorldEvent event) {
+			removes++;
+		}
+
+	}
+
+}
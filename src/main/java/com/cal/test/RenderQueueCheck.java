@@ -0,0 +1,192 @@
+package com.cal.test;
+
+import com.apsis.render.BlendMode;
+import com.apsis.render.GLImage;
+import com.apsis.render.Graphics;
+import com.apsis.render.ImageCache;
+import com.apsis.render.RecordingBackend;
+import com.apsis.render.TextureAtlas;
+import com.apsis.render.VertexBuffer;
+import com.apsis.util.Color;
+import com.apsis.util.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Draws primitives with interleaved layers, textures, blend modes and depths
+ * through a sorting {@link Graphics} onto a {@link RecordingBackend}, and checks
+ * that they reach the backend in order of layer, texture, blend mode and depth,
+ * that primitives with equal keys keep the order they were drawn in, and that
+ * the batches and state changes counted match the runs of equal state in that
+ * order. Each primitive is a quad whose X is its index, so the backend can tell
+ * the order they arrived in.<br>
+ * Usage: <code>RenderQueueCheck [primitives]</code>
+ *
+ * @author Cal Stephens
+ */
+public class RenderQueueCheck {
+
+	/**
+	 * Records the index of every quad it draws, in the order they arrive.
+	 */
+	private static class OrderBackend extends RecordingBackend {
+
+		final ArrayList<Integer> quads = new ArrayList<>();
+
+		@Override
+		public void draw(VertexBuffer buffer) {
+			super.draw(buffer);
+			float[] positions = buffer.getPositions();
+			for (int v = 0; v < buffer.getVertexCount(); v += 6) {
+				quads.add((int) positions[v * 2]);
+			}
+		}
+
+	}
+
+	/**
+	 * A primitive in the scene.
+	 */
+	private static class Primitive {
+
+		final int index, layer, depth;
+		final GLImage image;
+		final BlendMode blend;
+
+		Primitive(int index, int layer, GLImage image, BlendMode blend, int depth) {
+			this.index = index;
+			this.layer = layer;
+			this.image = image;
+			this.blend = blend;
+			this.depth = depth;
+		}
+
+		TextureAtlas texture() {
+			return image == null ? null : image.getAtlas();
+		}
+
+		int textureId() {
+			return image == null ? 0 : image.getAtlas().getId();
+		}
+
+	}
+
+	private final static Comparator<Primitive> ORDER = new Comparator<Primitive>() {
+		@Override
+		public int compare(Primitive a, Primitive b) {
+			if (a.layer != b.layer) return Integer.compare(a.layer, b.layer);
+			if (a.textureId() != b.textureId()) return Integer.compare(a.textureId(), b.textureId());
+			if (a.blend != b.blend) return Integer.compare(a.blend.ordinal(), b.blend.ordinal());
+			return Integer.compare(a.depth, b.depth);
+		}
+	};
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		ImageCache cache = new ImageCache(Long.MAX_VALUE, 64, 1);
+		//each image fills a page of its own
+		GLImage first = cache.load("first", new BufferedImage(40, 40, BufferedImage.TYPE_INT_ARGB));
+		GLImage second = cache.load("second", new BufferedImage(40, 40, BufferedImage.TYPE_INT_ARGB));
+		GLImage[] images = {null, first, second};
+		check(first.getAtlas() != second.getAtlas(), "the images are on different pages");
+
+		//two layers and three textures, interleaved
+		Primitive[] scene = new Primitive[12];
+		for (int i = 0; i < scene.length; i++) {
+			scene[i] = new Primitive(i, i % 2 == 0 ? 1 : 0, images[i % 3], BlendMode.ALPHA, 0);
+		}
+		OrderBackend backend = new OrderBackend();
+		Graphics graphics = new Graphics(backend);
+		draw(graphics, scene);
+		check(graphics.getDrawCalls() == 12 && graphics.getStateChanges() == 13, "unsorted, every primitive changes the texture");
+		graphics.setSorting(true);
+		backend.quads.clear();
+		draw(graphics, scene);
+		checkOrder(backend, scene);
+		check(graphics.getDrawCalls() == 6 && backend.getDrawCalls() == 6, "sorted, each layer draws each texture once");
+		check(graphics.getStateChanges() == 7 && backend.getStateChanges() == 7, "and only binds a texture between them");
+
+		//depth orders primitives within a layer without breaking up their batch
+		Primitive[] depths = {new Primitive(0, 0, first, BlendMode.ALPHA, 5), new Primitive(1, 0, first, BlendMode.ALPHA, 1),
+			new Primitive(2, 0, first, BlendMode.ADDITIVE, 0), new Primitive(3, 0, first, BlendMode.ALPHA, 3)};
+		backend.quads.clear();
+		draw(graphics, depths);
+		check(backend.quads.equals(Arrays.asList(1, 3, 0, 2)), "depth orders primitives after their layer, texture and blend mode");
+		check(graphics.getDrawCalls() == 2 && backend.getBlendMode(1) == BlendMode.ADDITIVE, "primitives of different depths share a batch");
+
+		Random random = new Random(42);
+		BlendMode[] blends = BlendMode.values();
+		Primitive[] mixed = new Primitive[count];
+		for (int i = 0; i < count; i++) {
+			//few distinct keys, so many primitives have equal keys
+			mixed[i] = new Primitive(i, random.nextInt(4) - 2, images[random.nextInt(3)], blends[random.nextInt(blends.length)],
+					random.nextInt(3) * 300);
+		}
+		backend.quads.clear();
+		draw(graphics, mixed);
+		Primitive[] sorted = checkOrder(backend, mixed);
+		int batches = 0, changes = 0, vertices = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			boolean textureChanged = i == 0 || sorted[i].texture() != sorted[i - 1].texture();
+			boolean blendChanged = i == 0 || sorted[i].blend != sorted[i - 1].blend;
+			if (textureChanged) changes++;
+			if (blendChanged) changes++;
+			//a batch that fills up is flushed as well
+			if (textureChanged || blendChanged || vertices + 6 > graphics.getBatchSize()) {
+				batches++;
+				vertices = 0;
+			}
+			vertices += 6;
+		}
+		System.out.printf("%d primitives: %d batches, %d state changes%n", count, graphics.getDrawCalls(), graphics.getStateChanges());
+		check(graphics.getStateChanges() == changes && backend.getStateChanges() == changes, "a state change is counted for each change of texture or blend mode");
+		check(graphics.getDrawCalls() == batches && backend.getDrawCalls() == batches, "a batch is counted for each run of equal state");
+
+		backend.quads.clear();
+		draw(graphics, mixed);
+		check(graphics.getDrawCalls() == batches && graphics.getStateChanges() == changes, "the counters start over each frame");
+		checkOrder(backend, mixed);
+		cache.shutdown();
+		System.out.println("OK");
+	}
+
+	private static void draw(Graphics graphics, Primitive[] scene) {
+		Point dim = Point.make(0.5, 0.5);
+		graphics.beginFrame();
+		for (Primitive primitive : scene) {
+			graphics.setLayer(primitive.layer);
+			graphics.setDepth(primitive.depth);
+			graphics.setBlendMode(primitive.blend);
+			Point origin = Point.make(primitive.index, 0);
+			if (primitive.image == null) graphics.drawRectangle(Color.RED, origin, dim);
+			else graphics.drawImage(primitive.image, origin, dim);
+		}
+		graphics.endFrame();
+	}
+
+	/**
+	 * Checks that the backend drew the scene in sorted order, keeping the drawing
+	 * order of equal keys, which a stable sort of the scene gives.
+	 *
+	 * @return the scene in the order it should have been drawn
+	 */
+	private static Primitive[] checkOrder(OrderBackend backend, Primitive[] scene) {
+		Primitive[] sorted = scene.clone();
+		Arrays.sort(sorted, ORDER);
+		boolean same = backend.quads.size() == sorted.length;
+		for (int i = 0; same && i < sorted.length; i++) {
+			same = backend.quads.get(i) == sorted[i].index;
+		}
+		check(same, scene.length + " primitives are drawn by layer, texture, blend mode and depth, in drawing order when equal");
+		return sorted;
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) throw new IllegalStateException("FAILED: " + message);
+		System.out.println("ok: " + message);
+	}
+
+}
@@ -0,0 +1,283 @@
+package com.cal.test;
+
+import com.apsis.entity.Entity;
+import com.apsis.event.EventListener;
+import com.apsis.event.world.TickEvent;
+import com.apsis.net.ReplicationClient;
+import com.apsis.net.ReplicationServer;
+import com.apsis.snapshot.SnapshotCodec;
+import com.apsis.snapshot.SnapshotCodecs;
+import com.apsis.util.Point;
+import com.apsis.world.PointObject;
+import com.apsis.world.World;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Replicates a World of wandering movers and still rocks to many clients over
+ * loopback with a {@link ReplicationServer}, and reports the server's time and
+ * allocation per tick, the bandwidth per client and the clients' decode time.
+ * Then it stops the movers and checks that every client's mirror has exactly
+ * the objects in its view, within the quantization step.<br>
+ * Usage: <code>ReplicationBenchmark [clients] [movers] [ticks]</code>
+ *
+ * @author Cal Stephens
+ */
+public class ReplicationBenchmark {
+
+	private static final double SIZE = 8000;
+	private static final double RADIUS = 300;
+
+	private static boolean frozen = false;
+
+	public static void main(String[] args) throws IOException {
+		int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int moverCount = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+		SnapshotCodecs codecs = new SnapshotCodecs()
+				.register("mover", new MoverCodec())
+				.register("rock", new RockCodec());
+		Random random = new Random(45);
+		World world = new World();
+		for (int i = 0; i < moverCount; i++) {
+			world.add(new Mover(random.nextDouble() * SIZE, random.nextDouble() * SIZE, random.nextInt(1000)));
+		}
+		for (int i = 0; i < moverCount / 4; i++) {
+			world.add(new Rock(Point.make(random.nextDouble() * SIZE, random.nextDouble() * SIZE), random.nextInt(360)));
+		}
+		ReplicationServer server = new ReplicationServer(world, codecs, new InetSocketAddress("127.0.0.1", 0));
+		server.setCellSize(RADIUS);
+		world.addTickObserver(server);
+
+		ArrayList<ReplicationClient> clients = new ArrayList<>();
+		ArrayList<World> mirrors = new ArrayList<>();
+		double[] views = new double[clientCount * 2];
+		long start = System.nanoTime();
+		while (clients.size() < clientCount) {
+			for (int i = 0; i < 100 && clients.size() < clientCount; i++) {
+				int c = clients.size();
+				World mirror = new World();
+				ReplicationClient client = new ReplicationClient(mirror, codecs, server.getAddress());
+				views[c * 2] = random.nextDouble() * SIZE;
+				views[c * 2 + 1] = random.nextDouble() * SIZE;
+				client.setView(views[c * 2], views[c * 2 + 1], RADIUS);
+				clients.add(client);
+				mirrors.add(mirror);
+			}
+			world.tick();
+			pollAll(clients, mirrors);
+		}
+		System.out.printf("connected %d clients in %.0f ms%n", clients.size(), (System.nanoTime() - start) / 1e6);
+		for (int tick = 0; tick < 50; tick++) {
+			world.tick();
+			pollAll(clients, mirrors);
+		}
+		check(server.getClientCount() == clientCount, "every client connected");
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long sentBefore = server.getBytesSent(), statesBefore = server.getStatesSent();
+		long serverNanos = 0, worstServer = 0, clientNanos = 0, allocated = 0;
+		for (int tick = 0; tick < ticks; tick++) {
+			//a few clients look somewhere else every tick, so objects come and go
+			for (int i = 0; i < 10; i++) {
+				int c = random.nextInt(clientCount);
+				views[c * 2] = Math.min(SIZE, Math.max(0, views[c * 2] + random.nextGaussian() * RADIUS));
+				views[c * 2 + 1] = Math.min(SIZE, Math.max(0, views[c * 2 + 1] + random.nextGaussian() * RADIUS));
+				clients.get(c).setView(views[c * 2], views[c * 2 + 1], RADIUS);
+			}
+			world.tick();
+			serverNanos += server.getLastTickNanos();
+			worstServer = Math.max(worstServer, server.getLastTickNanos());
+			long clientStart = System.nanoTime();
+			pollAll(clients, mirrors);
+			clientNanos += System.nanoTime() - clientStart;
+			//allocation is measured apart from the tick, whose movers allocate points
+			if (tick % 10 == 0) {
+				long before = threads.getThreadAllocatedBytes(thread);
+				server.update();
+				allocated += threads.getThreadAllocatedBytes(thread) - before;
+				pollAll(clients, mirrors);
+			}
+		}
+		long bytes = server.getBytesSent() - sentBefore, states = server.getStatesSent() - statesBefore;
+		System.out.printf("%d objects to %d clients, %d ticks: server %.2f ms per tick (worst %.2f), "
+				+ "%.0f bytes per client per tick (%.1f KB/s at 60 ticks per second), clients %.1f us each per tick, "
+				+ "%d states skipped%n", server.getObjectCount(), clientCount, ticks, serverNanos / 1e6 / ticks, worstServer / 1e6,
+				(double) bytes / states, bytes / (double) states * 60 / 1024, clientNanos / 1e3 / ticks / clientCount,
+				server.getStatesSkipped());
+		System.out.printf("server updates allocated %.0f bytes each, growing buffers for views that moved somewhere busier%n",
+				allocated / Math.ceil(ticks / 10.0));
+		check(server.getStatesSkipped() == 0, "no client fell behind");
+
+		//once nothing moves, every mirror settles on exactly what is in view
+		frozen = true;
+		for (int tick = 0; tick < 3; tick++) {
+			world.tick();
+			pollAll(clients, mirrors);
+		}
+		long sent = server.getBytesSent();
+		world.tick();
+		pollAll(clients, mirrors);
+		check(server.getBytesSent() - sent <= clientCount * 32L, "a still World costs a few bytes per client: "
+				+ (server.getBytesSent() - sent) / clientCount);
+		int mismatched = 0, inView = 0;
+		double precision = clients.get(0).getPrecision();
+		for (int c = 0; c < clientCount; c++) {
+			ReplicationClient client = clients.get(c);
+			int expected = 0;
+			for (PointObject object : world.getContent()) {
+				double dx = object.getWorldX() - views[c * 2], dy = object.getWorldY() - views[c * 2 + 1];
+				if (dx * dx + dy * dy > RADIUS * RADIUS) continue;
+				expected++;
+				PointObject mirror = client.getObject(object.getId());
+				if (mirror == null || Math.abs(mirror.getWorldX() - object.getWorldX()) > precision / 2 + 1e-9
+						|| Math.abs(mirror.getWorldY() - object.getWorldY()) > precision / 2 + 1e-9
+						|| mirror.getClass() != object.getClass()) {
+					mismatched++;
+				}
+			}
+			if (client.getObjectCount() != expected) mismatched++;
+			inView += expected;
+		}
+		check(mismatched == 0, "every mirror matches its view, " + inView / clientCount + " objects each on average");
+		//every remembered state has held a view of the still World by now
+		for (int tick = 0; tick < 20; tick++) {
+			world.tick();
+			pollAll(clients, mirrors);
+		}
+		allocated = 0;
+		for (int tick = 0; tick < 5; tick++) {
+			long before = threads.getThreadAllocatedBytes(thread);
+			server.update();
+			allocated += threads.getThreadAllocatedBytes(thread) - before;
+			pollAll(clients, mirrors);
+		}
+		check(allocated == 0, "once its buffers fit, an update allocates nothing: " + allocated);
+		for (ReplicationClient client : clients) {
+			client.close();
+		}
+		for (int tick = 0; tick < 3; tick++) {
+			world.tick();
+		}
+		check(server.getClientCount() == 0, "disconnected clients are dropped");
+		server.close();
+		System.out.println("OK");
+	}
+
+	private static void pollAll(ArrayList<ReplicationClient> clients, ArrayList<World> mirrors) throws IOException {
+		for (int i = 0; i < clients.size(); i++) {
+			clients.get(i).poll();
+		}
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) throw new IllegalStateException("FAILED: " + message);
+		System.out.println("ok: " + message);
+	}
+
+	/**
+	 * Wanders in a slow circle and turns to face where it is going.
+	 */
+	public static class Mover extends Entity {
+
+		private final double homeX;
+		private final double homeY;
+		private int phase;
+
+		public Mover(double homeX, double homeY, int phase) {
+			super(Point.make(homeX, homeY), 0);
+			this.homeX = homeX;
+			this.homeY = homeY;
+			this.phase = phase;
+		}
+
+		@EventListener
+		public void onTick(TickEvent tick) {
+			if (frozen) return;
+			phase++;
+			double angle = phase * 0.01;
+			moveTo(Point.make(homeX + Math.cos(angle) * 100, homeY + Math.sin(angle) * 100));
+			setRot(Math.toDegrees(angle) + 90);
+		}
+
+	}
+
+	/**
+	 * Never moves.
+	 */
+	public static class Rock extends PointObject {
+
+		public Rock(Point pos, double rot) {
+			super(pos, rot);
+		}
+
+	}
+
+	private static class MoverCodec implements SnapshotCodec<Mover> {
+
+		@Override
+		public Class<Mover> getType() {
+			return Mover.class;
+		}
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getPayloadSize(Mover mover) {
+			return 20;
+		}
+
+		@Override
+		public void writePayload(Mover mover, ByteBuffer out) {
+			out.putDouble(mover.homeX);
+			out.putDouble(mover.homeY);
+			out.putInt(mover.phase);
+		}
+
+		@Override
+		public Mover create(Point pos, double rot, ByteBuffer payload, int version) {
+			Mover mover = new Mover(payload.getDouble(), payload.getDouble(), payload.getInt());
+			mover.moveTo(pos);
+			mover.setRot(rot);
+			return mover;
+		}
+
+	}
+
+	private static class RockCodec implements SnapshotCodec<Rock> {
+
+		@Override
+		public Class<Rock> getType() {
+			return Rock.class;
+		}
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getPayloadSize(Rock rock) {
+			return 0;
+		}
+
+		@Override
+		public void writePayload(Rock rock, ByteBuffer out) {
+		}
+
+		@Override
+		public Rock create(Point pos, double rot, ByteBuffer payload, int version) {
+			return new Rock(pos, rot);
+		}
+
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.cal.test;
+
+import com.apsis.entity.Entity;
+import com.apsis.event.Event;
+import com.apsis.event.EventListener;
+import com.apsis.event.world.AddToWorldEvent;
+import com.apsis.event.world.TickEvent;
+import com.apsis.shard.Shard;
+import com.apsis.shard.ShardManager;
+import com.apsis.util.Point;
+import com.apsis.world.PointObject;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Runs the same map of walkers on 1, 2, 4 and 8 shards with a thread each and
+ * reports the time per tick and the speedup over one shard. Every run checks
+ * that no walker is lost or ticked twice, that walkers keep their listener
+ * subscriptions and their children as they move between shards, that posted
+ * events arrive once, and that the result doesn't depend on the threads.<br>
+ * Usage: <code>ShardScalingBenchmark [walkers] [ticks]</code>
+ *
+ * @author Cal Stephens
+ */
+public class ShardScalingBenchmark {
+
+	private static final double SIZE = 4000;
+
+	public static void main(String[] args) throws NoSuchMethodException {
+		int walkers = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		System.out.println(Runtime.getRuntime().availableProcessors() + " processors available");
+		int[][] grids = {{1, 1}, {2, 1}, {2, 2}, {4, 2}};
+		double single = 0;
+		long fingerprint = 0;
+		for (int[] grid : grids) {
+			int shards = grid[0] * grid[1];
+			double millis = run(grid[0], grid[1], walkers, ticks);
+			if (shards == 1) single = millis;
+			System.out.printf("%d shards: %.2f ms per tick, %.2fx one shard%n", shards, millis, single / millis);
+			if (shards == 4) {
+				fingerprint = lastFingerprint;
+				run(grid[0], grid[1], walkers, ticks);
+				check(lastFingerprint == fingerprint, "4 shards end the same way twice");
+			}
+		}
+		System.out.println("OK");
+	}
+
+	private static long lastFingerprint;
+
+	private static double run(int columns, int rows, int count, int ticks) throws NoSuchMethodException {
+		ShardManager manager = new ShardManager(columns, rows, SIZE / columns, SIZE / rows, columns * rows);
+		manager.setHandoffMargin(5);
+		Random random = new Random(46);
+		Method onPing = Walker.class.getMethod("onPing", Ping.class);
+		ArrayList<Walker> walkers = new ArrayList<>();
+		ArrayList<PointObject> markers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			double angle = random.nextDouble() * Math.PI * 2, speed = 1 + random.nextDouble() * 4;
+			Walker walker = new Walker(random.nextDouble() * SIZE, random.nextDouble() * SIZE, Math.cos(angle) * speed, Math.sin(angle) * speed);
+			manager.add(walker);
+			walkers.add(walker);
+			//odd walkers ignore pings, which has to survive moving between shards
+			if (i % 2 == 1) manager.getShardOf(walker).getWorld().getEventHandler().unsubscribe(onPing, walker);
+			if (i % 10 == 0) {
+				PointObject marker = new PointObject(Point.make(0, 4));
+				marker.setParent(walker);
+				manager.add(marker);
+				markers.add(marker);
+			}
+		}
+		int objects = manager.getObjectCount();
+		long start = System.nanoTime();
+		for (int tick = 0; tick < ticks; tick++) {
+			for (Shard shard : manager.getShards()) {
+				shard.post(new Ping());
+			}
+			manager.tick();
+		}
+		double millis = (System.nanoTime() - start) / 1e6 / ticks;
+		manager.close();
+
+		check(manager.getObjectCount() == objects, "no objects lost", false);
+		if (columns * rows > 1) check(manager.getMigrationCount() > 0, "walkers moved between shards", false);
+		long hash = 17;
+		for (int i = 0; i < walkers.size(); i++) {
+			Walker walker = walkers.get(i);
+			check(walker.ticks == ticks, "every walker ticked once per tick", false);
+			check(walker.adds == 1, "moving between shards doesn't trigger AddToWorldEvent", false);
+			check(walker.pings == (i % 2 == 0 ? ticks : 0), "subscriptions move with walkers", false);
+			hash = hash * 31 + Double.doubleToLongBits(walker.x());
+			hash = hash * 31 + Double.doubleToLongBits(walker.y());
+		}
+		for (Shard shard : manager.getShards()) {
+			for (PointObject object : shard.getWorld().getContent()) {
+				hash = hash * 31 + Double.doubleToLongBits(object.getWorldX());
+			}
+		}
+		for (PointObject marker : markers) {
+			check(marker.getOwningGroup() == marker.getParent().getOwningGroup(), "children move with their parents", false);
+		}
+		lastFingerprint = hash;
+		System.out.printf("ok: %d objects on %d shards, %d handoffs, every walker ticked, pinged and parented as expected%n",
+				objects, columns * rows, manager.getMigrationCount());
+		return millis;
+	}
+
+	private static void check(boolean condition, String message, boolean print) {
+		if (!condition) throw new IllegalStateException("FAILED: " + message);
+		if (print) System.out.println("ok: " + message);
+	}
+
+	private static void check(boolean condition, String message) {
+		check(condition, message, true);
+	}
+
+	/**
+	 * Posted to every shard before each tick.
+	 */
+	public static class Ping extends Event {
+	}
+
+	/**
+	 * Walks in a straight line, bouncing off the edges of the map, and does a
+	 * little arithmetic every tick to stand in for some behaviour.
+	 */
+	public static class Walker extends Entity {
+
+		private double vx;
+		private double vy;
+		private double heading;
+		private int ticks;
+		private int pings;
+		private int adds;
+
+		public Walker(double x, double y, double vx, double vy) {
+			super(Point.make(x, y), 0);
+			this.vx = vx;
+			this.vy = vy;
+		}
+
+		@EventListener
+		public void onTick(TickEvent tick) {
+			ticks++;
+			if (x() + vx < 0 || x() + vx > SIZE) vx = -vx;
+			if (y() + vy < 0 || y() + vy > SIZE) vy = -vy;
+			move(vx, vy);
+			for (int i = 0; i < 20; i++) {
+				heading += Math.atan2(vy, vx + i) * 1e-3;
+			}
+		}
+
+		@EventListener
+		public void onPing(Ping ping) {
+			pings++;
+		}
+
+		@EventListener
+		public void onAdd(AddToWorldEvent event) {
+			adds++;
+		}
+
+	}
+
+}
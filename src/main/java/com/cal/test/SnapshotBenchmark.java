@@ -0,0 +1,138 @@
+package com.cal.test;
+
+import com.apsis.snapshot.Snapshot;
+import com.apsis.snapshot.SnapshotCodec;
+import com.apsis.snapshot.SnapshotCodecs;
+import com.apsis.snapshot.SnapshotWriter;
+import com.apsis.util.Point;
+import com.apsis.world.PointObject;
+import com.apsis.world.World;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Measures saving a World to a snapshot, opening the snapshot, reading
+ * single objects from it and loading the whole World back.<br>
+ * Usage: <code>SnapshotBenchmark [objects]</code>
+ *
+ * @author Cal Stephens
+ */
+public class SnapshotBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		SnapshotCodecs codecs = new SnapshotCodecs()
+				.register("point", new PlainCodec())
+				.register("crate", new CrateCodec());
+		Random random = new Random(42);
+		World world = new World();
+		PointObject[] content = new PointObject[objects];
+		for (int i = 0; i < objects; i++) {
+			Point pos = Point.make(random.nextDouble() * 10000, random.nextDouble() * 10000);
+			content[i] = i % 4 == 0 ? new Crate(pos, random.nextInt(100)) : new PointObject(pos, random.nextDouble() * 360);
+			content[i].setLayer(random.nextInt(4));
+			content[i].setStatic(random.nextBoolean());
+		}
+		world.add(content);
+		Path file = Files.createTempFile("apsis", ".snap");
+		SnapshotWriter writer = new SnapshotWriter(codecs);
+		//the first round warms up
+		for (int round = 0; round < 2; round++) {
+			long start = System.nanoTime();
+			writer.write(world, file);
+			long written = System.nanoTime();
+			Snapshot snapshot = Snapshot.open(file, codecs);
+			long opened = System.nanoTime();
+			double sum = 0;
+			for (int i = 0; i < 1000; i++) {
+				sum += snapshot.get(random.nextInt(objects)).x();
+			}
+			long sampled = System.nanoTime();
+			World loaded = new World();
+			snapshot.addTo(loaded);
+			long done = System.nanoTime();
+			if (round == 0) continue;
+			System.out.printf("objects=%d file=%.1f MB: write %.1f ms, open %.3f ms, 1000 random gets %.2f ms, load all %.1f ms (%d objects, checksum %.0f)%n",
+					objects, Files.size(file) / 1048576.0, (written - start) / 1e6, (opened - written) / 1e6,
+					(sampled - opened) / 1e6, (done - sampled) / 1e6, loaded.size(), sum);
+		}
+		Files.delete(file);
+	}
+
+	/**
+	 * A box with a number of items in it.
+	 */
+	private static class Crate extends PointObject {
+
+		private final int items;
+
+		private Crate(Point pos, int items) {
+			super(pos);
+			this.items = items;
+		}
+
+	}
+
+	private static class CrateCodec implements SnapshotCodec<Crate> {
+
+		@Override
+		public Class<Crate> getType() {
+			return Crate.class;
+		}
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getPayloadSize(Crate crate) {
+			return 4;
+		}
+
+		@Override
+		public void writePayload(Crate crate, ByteBuffer out) {
+			out.putInt(crate.items);
+		}
+
+		@Override
+		public Crate create(Point pos, double rot, ByteBuffer payload, int version) {
+			Crate crate = new Crate(pos, payload.getInt());
+			crate.setRot(rot);
+			return crate;
+		}
+
+	}
+
+	private static class PlainCodec implements SnapshotCodec<PointObject> {
+
+		@Override
+		public Class<PointObject> getType() {
+			return PointObject.class;
+		}
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getPayloadSize(PointObject object) {
+			return 0;
+		}
+
+		@Override
+		public void writePayload(PointObject object, ByteBuffer out) {
+		}
+
+		@Override
+		public PointObject create(Point pos, double rot, ByteBuffer payload, int version) {
+			return new PointObject(pos, rot);
+		}
+
+	}
+
+}
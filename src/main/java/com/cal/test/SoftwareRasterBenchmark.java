@@ -0,0 +1,62 @@
+package com.cal.test;
+
+import com.apsis.render.Graphics;
+import com.apsis.render.SoftwareBackend;
+import com.apsis.util.Color;
+import com.apsis.util.Point;
+import java.util.Random;
+
+/**
+ * Measures the fill rate of the {@link SoftwareBackend} in megapixels per second.<br>
+ * Usage: <code>SoftwareRasterBenchmark [width] [height] [shapes per frame] [frames]</code>
+ *
+ * @author Cal Stephens
+ */
+public class SoftwareRasterBenchmark {
+
+	public static void main(String[] args) {
+		int width = args.length > 0 ? Integer.parseInt(args[0]) : 1280;
+		int height = args.length > 1 ? Integer.parseInt(args[1]) : 720;
+		int shapes = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+		int frames = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (int threads = 1; threads <= cores; threads *= 2) {
+			run(width, height, shapes, frames, threads);
+			if (threads * 2 > cores && threads != cores) run(width, height, shapes, frames, cores);
+		}
+	}
+
+	private static void run(int width, int height, int shapes, int frames, int threads) {
+		SoftwareBackend backend = new SoftwareBackend(width, height, SoftwareBackend.DEFAULT_TILE_SIZE, threads);
+		Graphics g = new Graphics(backend);
+		Random random = new Random(42);
+		Color[] colors = new Color[64];
+		for (int i = 0; i < colors.length; i++) {
+			colors[i] = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256), 64 + random.nextInt(192));
+		}
+		Point origin = Point.make(0, 0);
+		Point dim = Point.make(0, 0);
+		long pixels = 0;
+		long nanos = 0;
+		for (int frame = 0; frame < frames; frame++) {
+			g.beginFrame();
+			for (int i = 0; i < shapes; i++) {
+				origin.set(random.nextInt(width), random.nextInt(height));
+				dim.set(8 + random.nextInt(120), 8 + random.nextInt(120));
+				Color color = colors[i & (colors.length - 1)];
+				if ((i & 1) == 0) g.drawRectangle(color, origin, dim, random.nextInt(360), origin);
+				else g.drawOval(color, origin, dim);
+			}
+			g.endFrame();
+			//skip the first quarter of the frames as warmup
+			if (frame >= frames / 4) {
+				pixels += backend.getLastFramePixels();
+				nanos += backend.getLastFrameNanos();
+			}
+		}
+		backend.shutdown();
+		System.out.printf("threads=%d %dx%d shapes=%d: %.1f MPix/s (%.2f ms/frame)%n", threads, width, height, shapes,
+				pixels * 1000.0 / nanos, nanos / 1e6 / (frames - frames / 4));
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.cal.test;
+
+import com.apsis.render.Camera;
+import com.apsis.render.Graphics;
+import com.apsis.render.RecordingBackend;
+import com.apsis.render.Renderable;
+import com.apsis.util.Bounds;
+import com.apsis.util.Color;
+import com.apsis.util.Point;
+import com.apsis.world.PointObject;
+import com.apsis.world.World;
+import java.util.Random;
+
+/**
+ * Measures the CPU cost of submitting a World to the Graphics each frame,
+ * with different fractions of the scene marked as static.<br>
+ * Usage: <code>StaticRenderBenchmark [objects] [frames]</code>
+ *
+ * @author Cal Stephens
+ */
+public class StaticRenderBenchmark {
+
+	public static void main(String[] args) {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		for (double fraction : new double[]{0, 0.5, 0.9, 0.99}) {
+			run(objects, frames, fraction);
+		}
+	}
+
+	private static void run(int objects, int frames, double staticFraction) {
+		Random random = new Random(42);
+		World world = new World();
+		Block[] blocks = new Block[objects];
+		for (int i = 0; i < objects; i++) {
+			blocks[i] = new Block(Point.make(random.nextDouble() * 4000, random.nextDouble() * 4000), random.nextInt(3));
+			blocks[i].setStatic(random.nextDouble() < staticFraction);
+			world.add(blocks[i]);
+		}
+		RecordingBackend backend = new RecordingBackend();
+		Graphics g = new Graphics(backend);
+		Camera camera = new Camera(4000, 4000);
+		g.setCamera(camera);
+		long nanos = 0;
+		for (int frame = 0; frame < frames; frame++) {
+			//move the dynamic objects a little every frame
+			for (Block block : blocks) {
+				if (!block.isStatic()) block.move(random.nextDouble() - 0.5, random.nextDouble() - 0.5);
+			}
+			long start = System.nanoTime();
+			g.beginFrame();
+			world.render(g);
+			g.endFrame();
+			//skip the first quarter of the frames as warmup
+			if (frame >= frames / 4) nanos += System.nanoTime() - start;
+		}
+		System.out.printf("objects=%d static=%.0f%%: %.3f ms/frame, primitives=%d, draw calls=%d, static cells=%d, rebuilds=%d%n",
+				objects, staticFraction * 100, nanos / 1e6 / (frames - frames / 4), g.getPrimitives(), g.getDrawCalls(),
+				world.getLastRenderStaticCells(), world.getStaticRebuilds());
+	}
+
+	/**
+	 * A rectangle with a ring of ovals around it.
+	 */
+	private static class Block extends PointObject implements Renderable {
+
+		private final static Point DIM = Point.make(12, 12);
+		private final static Point SMALL = Point.make(3, 3);
+		private final Color color;
+		private final Bounds bounds = new Bounds();
+		private final Point corner = Point.make(0, 0);
+
+		private Block(Point pos, int layer) {
+			super(pos);
+			this.color = Color.COLORS[layer];
+			setLayer(layer);
+		}
+
+		@Override
+		public Bounds getBounds() {
+			return bounds.setAround(x(), y(), 12);
+		}
+
+		@Override
+		public void render(Graphics g) {
+			g.drawRectangle(color, corner.set(x() - 6, y() - 6), DIM, getRot(), pos());
+			for (int i = 0; i < 6; i++) {
+				double angle = Math.PI * i / 3;
+				g.drawOval(color, corner.set(x() + Math.cos(angle) * 9 - 1.5, y() + Math.sin(angle) * 9 - 1.5), SMALL);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,206 @@
+package com.cal.test;
+
+import com.apsis.render.Graphics;
+import com.apsis.render.Mesh;
+import com.apsis.render.RecordingBackend;
+import com.apsis.render.Tessellator;
+import com.apsis.render.VertexBuffer;
+import com.apsis.util.Color;
+import com.apsis.util.Point;
+import com.apsis.world.DirtyVisitor;
+import com.apsis.world.PointObject;
+import com.apsis.world.TransformTable;
+import com.apsis.world.World;
+import java.util.Arrays;
+
+/**
+ * Attaches a turret to a tank and a barrel to the turret, draws a mesh on each
+ * of them from their world transforms in the World's {@link TransformTable},
+ * and checks that the vertices reaching a {@link RecordingBackend} are where
+ * {@link PointObject#localToWorld(com.apsis.util.Point)} puts them, before and
+ * after the tank moves and turns, one object at a time and all at once. Then
+ * moves a root with many children repeatedly and checks that its subtree is
+ * only invalidated again once its transforms are computed or, while the World
+ * is tracking changes, once the dirty list is drained.<br>
+ * Usage: <code>TransformRenderCheck</code>
+ *
+ * @author Cal Stephens
+ */
+public class TransformRenderCheck {
+
+	/**
+	 * Keeps a copy of the positions of every vertex it draws.
+	 */
+	private static class PositionBackend extends RecordingBackend {
+
+		float[] positions = new float[0];
+		int count = 0;
+
+		@Override
+		public void draw(VertexBuffer buffer) {
+			super.draw(buffer);
+			int vertices = buffer.getVertexCount();
+			positions = Arrays.copyOf(positions, (count + vertices) * 2);
+			System.arraycopy(buffer.getPositions(), 0, positions, count * 2, vertices * 2);
+			count += vertices;
+		}
+
+	}
+
+	/**
+	 * Counts the changes to world transforms it is told about.
+	 */
+	private static class Counted extends PointObject {
+
+		static int invalidations = 0;
+
+		Counted() {
+			super(Point.make(1, 0));
+		}
+
+		@Override
+		public void markDirty(int bits) {
+			if ((bits & DIRTY_TRANSFORM) != 0) invalidations++;
+			super.markDirty(bits);
+		}
+
+	}
+
+	private static final DirtyVisitor IGNORE = new DirtyVisitor() {
+		@Override
+		public void visit(PointObject object, int dirtyBits) {
+		}
+	};
+
+	private final static Point[] TRIANGLE = {Point.make(0, 0), Point.make(4, 0), Point.make(0, 2)};
+
+	public static void main(String[] args) {
+		World world = new World();
+		PointObject tank = new PointObject(Point.make(100, 50));
+		PointObject turret = new PointObject(Point.make(10, 0));
+		PointObject barrel = new PointObject(Point.make(5, 0));
+		tank.setRot(30);
+		turret.setRot(45);
+		turret.setParent(tank);
+		barrel.setParent(turret);
+		world.add(tank, turret, barrel);
+		PointObject[] objects = {tank, turret, barrel};
+		Mesh mesh = Tessellator.triangulate(TRIANGLE);
+		PositionBackend backend = new PositionBackend();
+		Graphics graphics = new Graphics(backend);
+
+		drawEach(graphics, backend, mesh, objects);
+		check(placed(backend, mesh, objects), "each mesh is drawn where its object's world transform puts it");
+		tank.move(-40, 20);
+		tank.setRot(120);
+		drawEach(graphics, backend, mesh, objects);
+		check(placed(backend, mesh, objects), "and follows its parents when they move and turn");
+
+		TransformTable table = world.getTransformTable();
+		int[] slots = new int[objects.length];
+		for (int i = 0; i < objects.length; i++) {
+			check(objects[i].getTransformTable() == table, "the objects share the World's table", false);
+			objects[i].updateWorldTransform();
+			slots[i] = objects[i].getTransformSlot();
+		}
+		backend.count = 0;
+		graphics.beginFrame();
+		graphics.drawMeshes(Color.RED, mesh, table, slots, 0, slots.length);
+		graphics.endFrame();
+		check(placed(backend, mesh, objects) && graphics.getPrimitives() == 1 && backend.getDrawCalls() == 1,
+				"the meshes of many slots are drawn as one primitive");
+
+		boolean rejected = false;
+		try {
+			graphics.beginFrame();
+			graphics.drawMeshes(Color.RED, mesh, table, new int[]{table.getData().length}, 0, 1);
+		} catch (IllegalArgumentException ex) {
+			rejected = true;
+		}
+		check(rejected, "a slot outside of the table is rejected");
+
+		int children = 1000, moves = 100;
+		PointObject root = new PointObject(Point.make(0, 0));
+		Counted[] subtree = new Counted[children];
+		for (int i = 0; i < children; i++) {
+			subtree[i] = new Counted();
+			subtree[i].setParent(root);
+		}
+		compute(subtree);
+		check(invalidations(root, moves) == children, "outside of a World, a moved root invalidates its subtree once");
+		World quiet = new World();
+		quiet.add(root);
+		quiet.add(subtree);
+		compute(subtree);
+		check(!quiet.isDirtyTracking() && invalidations(root, moves) == children, "with tracking off, once as well");
+		subtree[0].getWorldX();
+		check(invalidations(root, 1) == 1, "and again only for the children computed since");
+		quiet.setDirtyTracking(true);
+		check(invalidations(root, moves) == children, "once tracking starts, the subtree is recorded once");
+		Counted.invalidations = 0;
+		for (int i = 0; i < moves; i++) {
+			quiet.drainDirty(IGNORE);
+			root.move(1, 0);
+		}
+		check(Counted.invalidations == moves * children, "and again after every drain");
+		System.out.println("OK");
+	}
+
+	private static void compute(PointObject[] objects) {
+		for (PointObject object : objects) {
+			object.updateWorldTransform();
+		}
+	}
+
+	/**
+	 * Moves the root without computing any transforms.
+	 *
+	 * @return the number of world transform changes recorded in the root's subtree
+	 */
+	private static int invalidations(PointObject root, int moves) {
+		Counted.invalidations = 0;
+		for (int i = 0; i < moves; i++) {
+			root.move(1, 0);
+		}
+		return Counted.invalidations;
+	}
+
+	private static void drawEach(Graphics graphics, PositionBackend backend, Mesh mesh, PointObject[] objects) {
+		backend.count = 0;
+		graphics.beginFrame();
+		for (PointObject object : objects) {
+			graphics.drawMesh(Color.RED, mesh, object);
+		}
+		graphics.endFrame();
+	}
+
+	/**
+	 * @return whether or not the backend drew the triangle once for each object, in order, at the object's world transform
+	 */
+	private static boolean placed(PositionBackend backend, Mesh mesh, PointObject[] objects) {
+		if (mesh.getVertexCount() != 3 || backend.count != 3 * objects.length) return false;
+		for (int o = 0; o < objects.length; o++) {
+			//the triangulation may reorder the corners, so each drawn vertex has to match one of them
+			for (int v = 0; v < 3; v++) {
+				int drawn = (o * 3 + v) * 2;
+				boolean found = false;
+				for (Point corner : TRIANGLE) {
+					Point expected = objects[o].localToWorld(Point.make(corner.x(), corner.y()));
+					found |= Math.abs(backend.positions[drawn] - expected.x()) < 1e-3 && Math.abs(backend.positions[drawn + 1] - expected.y()) < 1e-3;
+				}
+				if (!found) return false;
+			}
+		}
+		return true;
+	}
+
+	private static void check(boolean condition, String message, boolean print) {
+		if (!condition) throw new IllegalStateException("FAILED: " + message);
+		if (print) System.out.println("ok: " + message);
+	}
+
+	private static void check(boolean condition, String message) {
+		check(condition, message, true);
+	}
+
+}